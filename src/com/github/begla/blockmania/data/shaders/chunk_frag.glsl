@@ -6,6 +6,8 @@ uniform int swimming = 0;
 uniform float animationOffset = 0;
 uniform int animationType = 0;
 
+const float TEXTURE_TILE_SIZE = 0.0624;
+
 varying float fog;
 varying vec3 normal;
 
@@ -20,6 +22,10 @@ vec4 linearToSrgb(vec4 color){
 void main(){
     vec4 texCoord = gl_TexCoord[0];
 
+    // TEXTURE TILING OF MERGED FACES (WRAPS TO (0, 1] SO SINGLE FACES REACH THE END OF THE TILE)
+    vec2 tiling = gl_TexCoord[2].xy;
+    texCoord.xy += (tiling - max(ceil(tiling) - 1.0, 0.0)) * TEXTURE_TILE_SIZE;
+
     // TEXTURE ANIMATION
     if (animationType == 1) {
         texCoord.x *= 16;
@@ -1,5 +1,12 @@
 #version 120
 
+// Packed vertex layout: gl_Vertex contains the fixed point position relative to the
+// origin of the mesh and the index of the texture tile, gl_Color the normalized color.
+attribute vec4 lightAndTiling;
+
+const float POSITION_SCALE = 1.0 / 16.0;
+const float ATLAS_TILES = 16.0;
+
 varying float fog;
 
 float c = 0.01;
@@ -10,14 +17,21 @@ float fogEyeRadial(vec4 eyePos) {
 
 void main()
 {
-	gl_Position = gl_ModelViewProjectionMatrix * gl_Vertex;
+	vec4 vertex = vec4(gl_Vertex.xyz * POSITION_SCALE, 1.0);
+	float tile = gl_Vertex.w;
+
+	gl_Position = gl_ModelViewProjectionMatrix * vertex;
 	//gl_Position.z = log(c*gl_Position.z + 1) / log(c*756 + 1) * gl_Position.w;
 
-	gl_TexCoord[0] = gl_MultiTexCoord0;
-    gl_TexCoord[1] = gl_MultiTexCoord1;
+	// Origin of the texture tile within the atlas
+	gl_TexCoord[0] = vec4(mod(tile, ATLAS_TILES), floor(tile / ATLAS_TILES), 0.0, 1.0) / vec4(ATLAS_TILES, ATLAS_TILES, 1.0, 1.0);
+    // Sunlight and block light
+    gl_TexCoord[1] = vec4(lightAndTiling.xy / 255.0, 0.0, 1.0);
+    // Position within the (repeated) texture tile
+    gl_TexCoord[2] = vec4(lightAndTiling.zw, 0.0, 1.0);
     gl_FrontColor = gl_Color;
 
-    gl_FogFragCoord = fogEyeRadial(gl_ModelViewMatrix  * gl_Vertex);
+    gl_FogFragCoord = fogEyeRadial(gl_ModelViewMatrix * vertex);
 
     float fogScale = 1.0 / (gl_Fog.end - gl_Fog.start);
     fog = (gl_Fog.end - gl_FogFragCoord) * fogScale;
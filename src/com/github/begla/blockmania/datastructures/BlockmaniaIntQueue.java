@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.datastructures;
+
+/**
+ * A FIFO queue for primitive int values backed by a growable ring buffer. Once the buffer
+ * is large enough, adding and removing values does not allocate any memory.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class BlockmaniaIntQueue {
+
+    private int[] _buffer;
+    private int _mask;
+    private int _head, _tail;
+
+    public BlockmaniaIntQueue() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity The initial capacity (rounded up to the next power of two)
+     */
+    public BlockmaniaIntQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        _buffer = new int[size];
+        _mask = size - 1;
+    }
+
+    public void add(int value) {
+        if (_tail - _head == _buffer.length)
+            grow();
+
+        _buffer[_tail++ & _mask] = value;
+    }
+
+    /**
+     * Removes and returns the first value of the queue.
+     *
+     * @return The first value
+     */
+    public int poll() {
+        if (_head == _tail)
+            throw new IllegalStateException("The queue is empty.");
+
+        return _buffer[_head++ & _mask];
+    }
+
+    private void grow() {
+        int[] buffer = new int[_buffer.length << 1];
+        int size = size();
+
+        for (int i = 0; i < size; i++)
+            buffer[i] = _buffer[(_head + i) & _mask];
+
+        _buffer = buffer;
+        _mask = buffer.length - 1;
+        _head = 0;
+        _tail = size;
+    }
+
+    public boolean isEmpty() {
+        return _head == _tail;
+    }
+
+    public int size() {
+        return _tail - _head;
+    }
+
+    public void clear() {
+        _head = 0;
+        _tail = 0;
+    }
+
+    public int getCapacity() {
+        return _buffer.length;
+    }
+}
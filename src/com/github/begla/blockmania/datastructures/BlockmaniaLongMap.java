@@ -0,0 +1,359 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.datastructures;
+
+import com.github.begla.blockmania.utilities.MathHelper;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A hash map using primitive long values as keys. Uses open addressing with linear probing,
+ * so lookups do not allocate any objects.
+ * <p/>
+ * Reading from the map is lock-free and may happen concurrently to modifications. Modifications
+ * are synchronized. Slots of removed entries are not reused until the table is rebuilt, so the key
+ * of an occupied slot never changes and readers always see consistent key/value pairs.
+ * <p/>
+ * Keys created with {@link MathHelper#packCoordinates(int, int)} can be queried by region.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class BlockmaniaLongMap<T> implements Iterable<T> {
+
+    /* MARKS THE VALUE OF A REMOVED ENTRY */
+    private static final Object REMOVED = new Object();
+    /* ------ */
+    private static final int MIN_CAPACITY = 16;
+    /* ------ */
+    private volatile Table _table;
+    private volatile int _size;
+
+    private static final class Table {
+        final long[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+        int used;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<Object>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    public BlockmaniaLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The expected amount of entries
+     */
+    public BlockmaniaLongMap(int expectedSize) {
+        _table = new Table(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int size) {
+        // Keep the load factor below 0.5
+        int capacity = MIN_CAPACITY;
+
+        while (capacity < size * 2)
+            capacity <<= 1;
+
+        return capacity;
+    }
+
+    /**
+     * Spreads the bits of the key to reduce clustering (finalizer of MurmurHash3).
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+    /**
+     * Returns the value for the given key.
+     *
+     * @param key The key
+     * @return The value or null if no value is stored for the key
+     */
+    @SuppressWarnings({"unchecked"})
+    public T get(long key) {
+        Table t = _table;
+
+        for (int i = hash(key) & t.mask; ; i = (i + 1) & t.mask) {
+            Object value = t.values.get(i);
+
+            if (value == null)
+                return null;
+
+            // Removed keys might have been inserted again at a later slot
+            if (t.keys[i] == key && value != REMOVED)
+                return (T) value;
+        }
+    }
+
+    /**
+     * Returns the value stored for the given packed coordinates.
+     *
+     * @param x Position on the x-axis
+     * @param z Position on the z-axis
+     * @return The value or null if no value is stored for the coordinates
+     */
+    public T get(int x, int z) {
+        return get(MathHelper.packCoordinates(x, z));
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores the value for the given key.
+     *
+     * @param key   The key
+     * @param value The value (not null)
+     * @return The previous value or null
+     */
+    public synchronized T put(long key, T value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Stores the value for the given key if no value is present yet.
+     *
+     * @param key   The key
+     * @param value The value (not null)
+     * @return The present value or null if the given value was stored
+     */
+    public synchronized T putIfAbsent(long key, T value) {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private T put(long key, T value, boolean onlyIfAbsent) {
+        if (value == null)
+            throw new NullPointerException("Null values are not supported.");
+
+        Table t = _table;
+
+        for (int i = hash(key) & t.mask; ; i = (i + 1) & t.mask) {
+            Object present = t.values.get(i);
+
+            if (present == null)
+                break;
+
+            if (t.keys[i] == key && present != REMOVED) {
+                if (!onlyIfAbsent)
+                    t.values.set(i, value);
+
+                return (T) present;
+            }
+        }
+
+        if ((t.used + 1) * 2 > t.keys.length) {
+            t = rebuild(t, capacityFor(_size + 1));
+        }
+
+        insert(t, key, value);
+        _size++;
+
+        return null;
+    }
+
+    /**
+     * Inserts a key which is known to be absent into the given table.
+     */
+    private static void insert(Table t, long key, Object value) {
+        int i = hash(key) & t.mask;
+
+        while (t.values.get(i) != null)
+            i = (i + 1) & t.mask;
+
+        // The key has to be visible before the value is published
+        t.keys[i] = key;
+        t.values.set(i, value);
+        t.used++;
+    }
+
+    /**
+     * Copies all live entries into a new table and publishes it. Drops removed entries.
+     */
+    private Table rebuild(Table old, int capacity) {
+        Table t = new Table(capacity);
+
+        for (int i = 0; i < old.keys.length; i++) {
+            Object value = old.values.get(i);
+
+            if (value != null && value != REMOVED)
+                insert(t, old.keys[i], value);
+        }
+
+        _table = t;
+        return t;
+    }
+
+    /**
+     * Removes the value for the given key.
+     *
+     * @param key The key
+     * @return The removed value or null
+     */
+    @SuppressWarnings({"unchecked"})
+    public synchronized T remove(long key) {
+        Table t = _table;
+
+        for (int i = hash(key) & t.mask; ; i = (i + 1) & t.mask) {
+            Object value = t.values.get(i);
+
+            if (value == null)
+                return null;
+
+            if (t.keys[i] == key && value != REMOVED) {
+                t.values.set(i, REMOVED);
+                _size--;
+                return (T) value;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        _table = new Table(MIN_CAPACITY);
+        _size = 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Adds all values to the given collection.
+     *
+     * @param result The collection
+     */
+    @SuppressWarnings({"unchecked"})
+    public void values(Collection<? super T> result) {
+        Table t = _table;
+
+        for (int i = 0; i < t.keys.length; i++) {
+            Object value = t.values.get(i);
+
+            if (value != null && value != REMOVED)
+                result.add((T) value);
+        }
+    }
+
+    /**
+     * Adds all values stored for coordinates within the given region (inclusive) to the given
+     * collection. The keys have to be created using {@link MathHelper#packCoordinates(int, int)}.
+     *
+     * @param minX   Minimum position on the x-axis
+     * @param minZ   Minimum position on the z-axis
+     * @param maxX   Maximum position on the x-axis
+     * @param maxZ   Maximum position on the z-axis
+     * @param result The collection
+     */
+    @SuppressWarnings({"unchecked"})
+    public void valuesInRegion(int minX, int minZ, int maxX, int maxZ, Collection<? super T> result) {
+        long area = ((long) maxX - minX + 1) * ((long) maxZ - minZ + 1);
+
+        if (area <= 0)
+            return;
+
+        Table t = _table;
+
+        // Either look up each position of the region or scan the table, whatever is cheaper
+        if (area < t.keys.length) {
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    T value = get(MathHelper.packCoordinates(x, z));
+
+                    if (value != null)
+                        result.add(value);
+                }
+            }
+        } else {
+            for (int i = 0; i < t.keys.length; i++) {
+                Object value = t.values.get(i);
+
+                if (value == null || value == REMOVED)
+                    continue;
+
+                int x = MathHelper.unpackX(t.keys[i]);
+                int z = MathHelper.unpackZ(t.keys[i]);
+
+                if (x >= minX && x <= maxX && z >= minZ && z <= maxZ)
+                    result.add((T) value);
+            }
+        }
+    }
+
+    /**
+     * Iterates over a snapshot of the current table. Modifications during the iteration
+     * may or may not be visible.
+     *
+     * @return The iterator
+     */
+    public Iterator<T> iterator() {
+        final Table t = _table;
+
+        return new Iterator<T>() {
+            int _index = -1;
+            Object _next = advance();
+
+            private Object advance() {
+                while (++_index < t.keys.length) {
+                    Object value = t.values.get(_index);
+
+                    if (value != null && value != REMOVED)
+                        return value;
+                }
+
+                return null;
+            }
+
+            public boolean hasNext() {
+                return _next != null;
+            }
+
+            @SuppressWarnings({"unchecked"})
+            public T next() {
+                if (_next == null)
+                    throw new NoSuchElementException();
+
+                Object value = _next;
+                _next = advance();
+
+                return (T) value;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.datastructures;
+
+/**
+ * A palette compressed 3D array for byte values. Instead of storing the values directly,
+ * each cell stores an index into a small palette of the distinct values present. The indices
+ * are packed with 0, 1, 2, 4 or 8 bits per cell depending on the size of the palette. The bit width
+ * grows automatically if a new value does not fit into the palette anymore.
+ * <p/>
+ * Provides the same interface as {@link BlockmaniaArray}.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class BlockmaniaPaletteArray {
+
+    private final int _lX, _lY, _lZ;
+    private final int _size;
+
+    /**
+     * The current storage. Replaced as a whole if the bit width changes, so readers
+     * always see a consistent combination of palette and packed data.
+     */
+    private Storage _storage;
+
+    private static final class Storage {
+        /* Bits per cell and log2 of the bits per cell */
+        final int bits, bitsShift, mask;
+        final byte[] palette;
+        final byte[] data;
+        int paletteSize;
+
+        Storage(int bits, int size, int paletteCapacity) {
+            this.bits = bits;
+            this.bitsShift = bits == 0 ? 0 : Integer.numberOfTrailingZeros(bits);
+            this.mask = (1 << bits) - 1;
+            this.palette = new byte[paletteCapacity];
+            this.data = bits == 0 ? null : new byte[(size * bits) >> 3];
+        }
+
+        int getIndex(int pos) {
+            if (bits == 0)
+                return 0;
+
+            int byteIdx = pos >> (3 - bitsShift);
+            int bitOffset = (pos & ((8 >> bitsShift) - 1)) << bitsShift;
+
+            return (data[byteIdx] >> bitOffset) & mask;
+        }
+
+        void setIndex(int pos, int index) {
+            if (bits == 0)
+                return;
+
+            int byteIdx = pos >> (3 - bitsShift);
+            int bitOffset = (pos & ((8 >> bitsShift) - 1)) << bitsShift;
+
+            data[byteIdx] = (byte) ((data[byteIdx] & ~(mask << bitOffset)) | (index << bitOffset));
+        }
+
+        int indexOf(byte b) {
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == b)
+                    return i;
+            }
+
+            return -1;
+        }
+    }
+
+    public BlockmaniaPaletteArray(int x, int y, int z) {
+        _lX = x;
+        _lY = y;
+        _lZ = z;
+
+        _size = _lX * _lY * _lZ;
+
+        // Everything starts out as zero, which does not need any storage at all
+        _storage = new Storage(0, _size, 1);
+        _storage.paletteSize = 1;
+    }
+
+    public byte get(int x, int y, int z) {
+        int pos = (x * _lX * _lY) + (y * _lX) + z;
+
+        if (x >= _lX || y >= _lY || z >= _lZ || x < 0 || y < 0 || z < 0)
+            return 0;
+
+        Storage s = _storage;
+        return s.palette[s.getIndex(pos)];
+    }
+
+    public void set(int x, int y, int z, byte b) {
+        int pos = (x * _lX * _lY) + (y * _lX) + z;
+
+        if (x >= _lX || y >= _lY || z >= _lZ || x < 0 || y < 0 || z < 0)
+            return;
+
+        setRawByte(pos, b);
+    }
+
+    public byte getRawByte(int i) {
+        Storage s = _storage;
+        return s.palette[s.getIndex(i)];
+    }
+
+    public void setRawByte(int i, byte b) {
+        Storage s = _storage;
+        int index = s.indexOf(b);
+
+        if (index == -1) {
+            // Don't touch the palette if the value would not change anyway
+            if (s.palette[s.getIndex(i)] == b)
+                return;
+
+            if (s.paletteSize == s.palette.length) {
+                s = grow(s);
+            }
+
+            index = s.paletteSize;
+            s.palette[index] = b;
+            s.paletteSize++;
+        }
+
+        s.setIndex(i, index);
+    }
+
+    /**
+     * Doubles the bit width of the storage (0 -> 1 -> 2 -> 4 -> 8).
+     *
+     * @param old The current storage
+     * @return The new storage
+     */
+    private Storage grow(Storage old) {
+        int bits = old.bits == 0 ? 1 : old.bits << 1;
+        Storage s = repack(old, bits, old.palette, old.paletteSize, null);
+        _storage = s;
+        return s;
+    }
+
+    /**
+     * Copies the content of the old storage into a new storage using the given bit width and palette.
+     *
+     * @param old         The old storage
+     * @param bits        The bit width of the new storage
+     * @param palette     The palette of the new storage
+     * @param paletteSize The amount of used palette entries
+     * @param remap       Maps old palette indices to new palette indices (or null for identity)
+     * @return The new storage
+     */
+    private Storage repack(Storage old, int bits, byte[] palette, int paletteSize, int[] remap) {
+        Storage s = new Storage(bits, _size, 1 << bits);
+        System.arraycopy(palette, 0, s.palette, 0, paletteSize);
+        s.paletteSize = paletteSize;
+
+        if (bits > 0) {
+            for (int i = 0; i < _size; i++) {
+                int index = old.getIndex(i);
+                s.setIndex(i, remap != null ? remap[index] : index);
+            }
+        }
+
+        return s;
+    }
+
+    /**
+     * Removes unused entries from the palette and shrinks the bit width
+     * to the smallest possible value.
+     */
+    public void compact() {
+        Storage old = _storage;
+
+        if (old.bits == 0)
+            return;
+
+        boolean[] used = new boolean[old.paletteSize];
+        for (int i = 0; i < _size; i++)
+            used[old.getIndex(i)] = true;
+
+        int[] remap = new int[old.paletteSize];
+        byte[] palette = new byte[old.paletteSize];
+        int paletteSize = 0;
+
+        for (int i = 0; i < old.paletteSize; i++) {
+            if (used[i]) {
+                remap[i] = paletteSize;
+                palette[paletteSize++] = old.palette[i];
+            }
+        }
+
+        int bits = bitsForPaletteSize(paletteSize);
+
+        if (bits == old.bits && paletteSize == old.paletteSize)
+            return;
+
+        _storage = repack(old, bits, palette, paletteSize, remap);
+    }
+
+    private static int bitsForPaletteSize(int paletteSize) {
+        if (paletteSize <= 1)
+            return 0;
+        if (paletteSize <= 2)
+            return 1;
+        if (paletteSize <= 4)
+            return 2;
+        if (paletteSize <= 16)
+            return 4;
+        return 8;
+    }
+
+    /**
+     * Returns true if all cells of the array contain the same value.
+     *
+     * @return True if uniform
+     */
+    public boolean isUniform() {
+        return _storage.bits == 0;
+    }
+
+    /**
+     * Returns the amount of bits currently used per cell.
+     *
+     * @return The bit width
+     */
+    public int getBitsPerEntry() {
+        return _storage.bits;
+    }
+
+    /**
+     * Returns the amount of bytes used to store the packed cells and the palette.
+     *
+     * @return The amount of bytes
+     */
+    public int getPackedSize() {
+        Storage s = _storage;
+        return (s.data != null ? s.data.length : 0) + s.palette.length;
+    }
+
+    public int getSize() {
+        return _size;
+    }
+}
@@ -77,6 +77,37 @@ public class BlockmaniaSmartArray {
         _array[i] = b;
     }
 
+    /**
+     * Sets all values of the array to the given value.
+     *
+     * @param b The value
+     */
+    public void fill(byte b) {
+        byte packed = (byte) ((b & 0x0F) | (b << 4));
+
+        for (int i = 0; i < _halfSize; i++)
+            _array[i] = packed;
+    }
+
+    /**
+     * Returns true if all values of the array are equal.
+     *
+     * @return True if uniform
+     */
+    public boolean isUniform() {
+        byte first = _array[0];
+
+        if ((first & 0x0F) != ((first >> 4) & 0x0F))
+            return false;
+
+        for (int i = 1; i < _halfSize; i++) {
+            if (_array[i] != first)
+                return false;
+        }
+
+        return true;
+    }
+
     public int getSize() {
         return _size;
     }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.debug;
+
+import com.github.begla.blockmania.noise.NoiseGenerator;
+
+/**
+ * Compares the throughput of the available noise generators for the access patterns used by
+ * the terrain generator: single 3D samples (mountain density), columns of 3D fBm (caves) and
+ * planes of 2D fBm (temperature).
+ * <p/>
+ * Each measurement is repeated a few times, so the results of the later rounds are not
+ * distorted by the JIT compiler.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class NoiseBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int SAMPLES = 1 << 22;
+    private static final int COLUMN_HEIGHT = 129;
+    private static final int PLANE_SIZE = 17;
+
+    /* PREVENTS THE JIT FROM REMOVING THE MEASURED CODE */
+    private static double _sink;
+
+    public static void main(String[] args) {
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ":");
+
+            for (NoiseGenerator.NOISE_TYPE type : NoiseGenerator.NOISE_TYPE.values())
+                benchmark(type);
+        }
+
+        System.out.println("(" + _sink + ")");
+    }
+
+    private static void benchmark(NoiseGenerator.NOISE_TYPE type) {
+        NoiseGenerator noise = NoiseGenerator.create(type, 42);
+
+        long timeStart = System.nanoTime();
+
+        for (int i = 0; i < SAMPLES; i++)
+            _sink += noise.noise(i * 0.0131, i * 0.0007, i * 0.0173);
+
+        double noiseTime = (System.nanoTime() - timeStart) / (double) SAMPLES;
+
+        double[] column = new double[COLUMN_HEIGHT];
+        timeStart = System.nanoTime();
+
+        for (int i = 0; i < SAMPLES / COLUMN_HEIGHT; i++) {
+            noise.fBm(column, i * 0.06, 0, i * 0.03, 0, 0.06, 0, 1, COLUMN_HEIGHT, 1, 2, 2.1287129, 0.8531);
+            _sink += column[i % COLUMN_HEIGHT];
+        }
+
+        double columnTime = (System.nanoTime() - timeStart) / (double) (SAMPLES / COLUMN_HEIGHT * COLUMN_HEIGHT);
+
+        double[] plane = new double[PLANE_SIZE * PLANE_SIZE];
+        int planes = SAMPLES / (PLANE_SIZE * PLANE_SIZE * 4);
+        timeStart = System.nanoTime();
+
+        for (int i = 0; i < planes; i++) {
+            noise.fBm(plane, i * 16 * 0.0008, 0, 0, 0.0008, 0, 0.0008, PLANE_SIZE, 1, PLANE_SIZE, 7, 2.1836171, 0.7631);
+            _sink += plane[i % plane.length];
+        }
+
+        double planeTime = (System.nanoTime() - timeStart) / (double) (planes * plane.length);
+
+        System.out.println(String.format("  %-8s noise %6.1f ns/sample, cave column (2 octaves) %6.1f ns/sample, temperature plane (7 octaves) %6.1f ns/sample", type, noiseTime, columnTime, planeTime));
+    }
+}
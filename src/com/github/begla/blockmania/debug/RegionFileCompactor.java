@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.debug;
+
+import com.github.begla.blockmania.world.chunk.ChunkFormat;
+import com.github.begla.blockmania.world.chunk.RegionFile;
+import com.github.begla.blockmania.world.chunk.RegionFileCache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Imports the chunk files of older versions into region files and compacts the region files of
+ * the given world save directories. The worlds must not be opened while the tool is running.
+ * <p/>
+ * Usage: RegionFileCompactor [-archive] SAVED_WORLDS/World1 [SAVED_WORLDS/World2 ...]
+ * <p/>
+ * With -archive all chunks are recompressed using the archive codec before the region files
+ * are compacted.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class RegionFileCompactor {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: RegionFileCompactor [-archive] <world save directory>...");
+            return;
+        }
+
+        boolean archive = false;
+
+        for (String path : args) {
+            if (path.equals("-archive")) {
+                archive = true;
+                continue;
+            }
+
+            File directory = new File(path);
+
+            if (!directory.isDirectory()) {
+                System.out.println(path + " is not a directory.");
+                continue;
+            }
+
+            RegionFileCache regionFiles = new RegionFileCache(directory);
+
+            try {
+                int imported = regionFiles.migrateLegacyChunkFiles();
+
+                if (archive)
+                    regionFiles.recode(ChunkFormat.ARCHIVE_CODEC);
+
+                int reclaimed = regionFiles.compact();
+
+                System.out.println(String.format("%s: imported %d chunk files, reclaimed %d KB.", path, imported, reclaimed * RegionFile.SECTOR_SIZE / 1024));
+            } catch (IOException e) {
+                System.out.println(path + ": " + e);
+            } finally {
+                try {
+                    regionFiles.close();
+                } catch (IOException e) {
+                    System.out.println(path + ": " + e);
+                }
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.github.begla.blockmania.debug;
 
 import com.github.begla.blockmania.generators.ChunkGeneratorTerrain;
+import com.github.begla.blockmania.noise.NoiseGenerator;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -39,18 +40,55 @@ public class TerrainPreviewGenerator extends ChunkGeneratorTerrain {
         super(seed);
     }
 
+    /**
+     * @param seed
+     * @param noiseType
+     */
+    public TerrainPreviewGenerator(String seed, NoiseGenerator.NOISE_TYPE noiseType) {
+        super(seed, noiseType);
+    }
+
+    /**
+     * Usage: TerrainPreviewGenerator [PERLIN|SIMPLEX]
+     *
+     * @param args
+     */
     public static void main(String[] args) {
-        TerrainPreviewGenerator gen = new TerrainPreviewGenerator("abcd");
+        NoiseGenerator.NOISE_TYPE noiseType = args.length > 0 ? NoiseGenerator.NOISE_TYPE.valueOf(args[0].toUpperCase()) : NoiseGenerator.NOISE_TYPE.PERLIN;
+
+        TerrainPreviewGenerator gen = new TerrainPreviewGenerator("abcd", noiseType);
         gen.generateBaseTerrainImage();
         gen.generateBiomeMap();
     }
 
     public void generateBiomeMap() {
-        BufferedImage image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+        try {
+            ImageIO.write(createBiomeMap(1024), "png", new File("BiomeMap.png"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void generateBaseTerrainImage() {
+        try {
+            ImageIO.write(createBaseTerrainImage(1024), "png", new File("BaseTerrain.png"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates an image of the biomes around the origin of the world.
+     *
+     * @param size The width and height of the image in pixels
+     * @return The image
+     */
+    public BufferedImage createBiomeMap(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = image.createGraphics();
 
-        for (int x = -512; x < 512; x++) {
-            for (int y = -512; y < 512; y++) {
+        for (int x = -size / 2; x < size / 2; x++) {
+            for (int y = -size / 2; y < size / 2; y++) {
                 BIOME_TYPE n = calcBiomeType(x * zoomOut, y * zoomOut);
 
                 Color color = Color.BLACK;
@@ -71,23 +109,25 @@ public class TerrainPreviewGenerator extends ChunkGeneratorTerrain {
                 }
 
                 g.setColor(color);
-                g.fillRect(x + 512, y + 512, 1, 1);
+                g.fillRect(x + size / 2, y + size / 2, 1, 1);
             }
         }
 
-        try {
-            ImageIO.write(image, "png", new File("BiomeMap.png"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return image;
     }
 
-    public void generateBaseTerrainImage() {
-        BufferedImage image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+    /**
+     * Creates an image of the base terrain around the origin of the world.
+     *
+     * @param size The width and height of the image in pixels
+     * @return The image
+     */
+    public BufferedImage createBaseTerrainImage(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = image.createGraphics();
 
-        for (int x = -512; x < 512; x++) {
-            for (int y = -512; y < 512; y++) {
+        for (int x = -size / 2; x < size / 2; x++) {
+            for (int y = -size / 2; y < size / 2; y++) {
                 double n = calcBaseTerrain(x * zoomOut, y * zoomOut);
 
                 int color = (int) (n * 255.0);
@@ -95,14 +135,10 @@ public class TerrainPreviewGenerator extends ChunkGeneratorTerrain {
                 color = (color < 0) ? 0 : color;
 
                 g.setColor(new Color(color, color, color));
-                g.fillRect(x + 512, y + 512, 1, 1);
+                g.fillRect(x + size / 2, y + size / 2, 1, 1);
             }
         }
 
-        try {
-            ImageIO.write(image, "png", new File("BaseTerrain.png"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return image;
     }
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.debug;
+
+import com.github.begla.blockmania.main.Blockmania;
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.utilities.MathHelper;
+import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.chunk.Chunk;
+import com.github.begla.blockmania.world.chunk.ChunkCache;
+import javolution.util.FastList;
+import javolution.util.FastSet;
+import org.lwjgl.util.vector.Vector3f;
+
+import java.util.logging.Level;
+
+/**
+ * Generates and lights a square area of chunks of a world without opening a window and writes
+ * the chunks to disk, so they do not have to be generated when they are visited the first time.
+ * <p/>
+ * Usage: WorldPregenerator TITLE SEED SIZE [-threads N] [-center CHUNK_X CHUNK_Z]
+ * <p/>
+ * The area of SIZE x SIZE chunks is centered on the spawning point of the world by default.
+ * The chunks are processed by one thread per core. Each thread generates the chunk it processes
+ * and its direct neighbors and spreads the light of the chunk into its direct neighbors, so each
+ * thread claims the 3x3 neighborhood of the chunk it processes. The generators only write to the
+ * chunk they generate. Chunks are written to disk and released as soon as no chunk processed later
+ * can modify them anymore, so the memory usage does not depend on the size of the area.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class WorldPregenerator {
+
+    /* TIME BETWEEN TWO PROGRESS REPORTS IN MS */
+    private static final long REPORT_INTERVAL = 2000;
+    /* DISTANCE OF CHUNKS WHICH CAN STILL MODIFY A CHUNK (GENERATION OF THE NEIGHBORS AND LIGHT) */
+    private static final int INFLUENCE_DISTANCE = 1;
+    /* RADIUS OF THE NEIGHBORHOOD CLAIMED BY A THREAD (ALL CHUNKS THE THREAD CAN MODIFY) */
+    private static final int CLAIM_RADIUS = INFLUENCE_DISTANCE;
+    /* ------ */
+    private final World _world;
+    private final int _minX, _minZ, _size;
+    /* ------ */
+    private final FastList<Long> _pendingChunks = new FastList<Long>();
+    private final FastSet<Long> _claimedChunks = new FastSet<Long>();
+    private final boolean[][] _processedChunks, _savedChunks;
+    private int _processedCount, _activeWorkers;
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: WorldPregenerator <title> <seed> <size> [-threads <count>] [-center <chunk x> <chunk z>]");
+            return;
+        }
+
+        int size = Integer.parseInt(args[2]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        Integer centerX = null, centerZ = null;
+
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-center") && i + 2 < args.length) {
+                centerX = Integer.parseInt(args[++i]);
+                centerZ = Integer.parseInt(args[++i]);
+            } else {
+                System.out.println("Unknown argument " + args[i] + ".");
+                return;
+            }
+        }
+
+        World world = new World(args[0], args[1], true);
+
+        if (centerX == null) {
+            Vector3f spawningPoint = world.getSpawningPoint();
+            centerX = (int) (spawningPoint.x / Configuration.CHUNK_DIMENSIONS.x);
+            centerZ = (int) (spawningPoint.z / Configuration.CHUNK_DIMENSIONS.z);
+        }
+
+        System.out.println(String.format("Generating %d x %d chunks around chunk (%d, %d) of world \"%s\" using %d threads.", size, size, centerX, centerZ, args[0], threads));
+
+        new WorldPregenerator(world, centerX - size / 2, centerZ - size / 2, size).run(threads);
+
+        long timeStart = System.currentTimeMillis();
+        world.dispose();
+
+        System.out.println(String.format("Saved the world in %.1fs.", (System.currentTimeMillis() - timeStart) / 1000d));
+    }
+
+    /**
+     * @param world The headless world
+     * @param minX  The position of the first chunk on the x-axis
+     * @param minZ  The position of the first chunk on the z-axis
+     * @param size  The amount of chunks on the x- and z-axis
+     */
+    public WorldPregenerator(World world, int minX, int minZ, int size) {
+        _world = world;
+        _minX = minX;
+        _minZ = minZ;
+        _size = size;
+
+        _processedChunks = new boolean[size][size];
+        _savedChunks = new boolean[size][size];
+
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++)
+                _pendingChunks.addLast(MathHelper.packCoordinates(minX + x, minZ + z));
+        }
+    }
+
+    /**
+     * Processes all chunks of the area and reports the progress until all chunks are done.
+     *
+     * @param threadCount The amount of threads
+     */
+    public void run(int threadCount) {
+        Thread[] workers = new Thread[Math.max(1, threadCount)];
+        long timeStart = System.currentTimeMillis();
+        long peakMemory = 0;
+
+        _activeWorkers = workers.length;
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Long key;
+
+                        while ((key = claimNextChunk()) != null)
+                            processChunk(MathHelper.unpackX(key), MathHelper.unpackZ(key));
+                    } catch (InterruptedException e) {
+                        // Stop processing
+                    } finally {
+                        synchronized (WorldPregenerator.this) {
+                            _activeWorkers--;
+                            WorldPregenerator.this.notifyAll();
+                        }
+                    }
+                }
+            }, "Pregeneration Worker " + i);
+
+            workers[i].start();
+        }
+
+        synchronized (this) {
+            long lastReport = timeStart;
+
+            while (_activeWorkers > 0) {
+                try {
+                    wait(REPORT_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                // The workers wake this thread up whenever a chunk is done
+                if (System.currentTimeMillis() - lastReport < REPORT_INTERVAL)
+                    continue;
+
+                lastReport = System.currentTimeMillis();
+
+                Runtime runtime = Runtime.getRuntime();
+                long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+                peakMemory = Math.max(peakMemory, usedMemory);
+
+                double seconds = (System.currentTimeMillis() - timeStart) / 1000d;
+                System.out.println(String.format("%d/%d chunks, %.1f chunks/s, %d MB used, %d chunks cached.", _processedCount, _size * _size, _processedCount / seconds, usedMemory / (1024 * 1024), _world.getChunkCache().size()));
+            }
+        }
+
+        double seconds = (System.currentTimeMillis() - timeStart) / 1000d;
+        System.out.println(String.format("Generated %d chunks in %.1fs (%.1f chunks/s, peak memory usage %d MB).", _processedCount, seconds, _processedCount / seconds, peakMemory / (1024 * 1024)));
+    }
+
+    /**
+     * Removes the first pending chunk whose neighborhood is not claimed by another thread from the
+     * queue and claims its neighborhood. Blocks until such a chunk is available.
+     *
+     * @return The packed position of the chunk or null if all chunks were claimed
+     * @throws InterruptedException
+     */
+    private synchronized Long claimNextChunk() throws InterruptedException {
+        while (!_pendingChunks.isEmpty()) {
+            for (FastList.Node<Long> n = _pendingChunks.head(), end = _pendingChunks.tail(); (n = n.getNext()) != end; ) {
+                long key = n.getValue();
+
+                if (isNeighborhoodClaimed(MathHelper.unpackX(key), MathHelper.unpackZ(key)))
+                    continue;
+
+                _pendingChunks.delete(n);
+                setNeighborhoodClaimed(MathHelper.unpackX(key), MathHelper.unpackZ(key), true);
+
+                return key;
+            }
+
+            wait();
+        }
+
+        return null;
+    }
+
+    /**
+     * Generates and lights the given chunk the same way the chunk update manager does.
+     */
+    private void processChunk(int chunkX, int chunkZ) {
+        ChunkCache chunkCache = _world.getChunkCache();
+
+        try {
+            Chunk c = chunkCache.loadOrCreateChunk(chunkX, chunkZ);
+
+            c.generate();
+
+            for (Chunk neighbor : c.loadOrCreateNeighbors())
+                neighbor.generate();
+
+            if (c.isLightDirty())
+                c.updateLight();
+        } catch (Exception e) {
+            Blockmania.getInstance().getLogger().log(Level.SEVERE, "Failed to generate chunk (" + chunkX + ", " + chunkZ + ").", e);
+        }
+
+        for (Chunk finishedChunk : releaseChunk(chunkX, chunkZ))
+            chunkCache.saveAndDisposeChunk(finishedChunk);
+    }
+
+    /**
+     * Releases the neighborhood of the given processed chunk and returns the chunks which can not
+     * be modified by any of the remaining chunks.
+     */
+    private synchronized FastList<Chunk> releaseChunk(int chunkX, int chunkZ) {
+        setNeighborhoodClaimed(chunkX, chunkZ, false);
+        _processedChunks[chunkX - _minX][chunkZ - _minZ] = true;
+        _processedCount++;
+
+        FastList<Chunk> finishedChunks = new FastList<Chunk>();
+
+        for (int x = chunkX - INFLUENCE_DISTANCE; x <= chunkX + INFLUENCE_DISTANCE; x++) {
+            for (int z = chunkZ - INFLUENCE_DISTANCE; z <= chunkZ + INFLUENCE_DISTANCE; z++) {
+                if (!isWithinArea(x, z) || _savedChunks[x - _minX][z - _minZ] || !isFinished(x, z))
+                    continue;
+
+                _savedChunks[x - _minX][z - _minZ] = true;
+
+                Chunk c = _world.getChunkCache().getCachedChunk(x, z);
+
+                if (c != null)
+                    finishedChunks.add(c);
+            }
+        }
+
+        notifyAll();
+        return finishedChunks;
+    }
+
+    /**
+     * Returns true if all chunks of the area which could still modify the given chunk are processed.
+     */
+    private boolean isFinished(int chunkX, int chunkZ) {
+        for (int x = chunkX - INFLUENCE_DISTANCE; x <= chunkX + INFLUENCE_DISTANCE; x++) {
+            for (int z = chunkZ - INFLUENCE_DISTANCE; z <= chunkZ + INFLUENCE_DISTANCE; z++) {
+                if (isWithinArea(x, z) && !_processedChunks[x - _minX][z - _minZ])
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isWithinArea(int chunkX, int chunkZ) {
+        return chunkX >= _minX && chunkZ >= _minZ && chunkX < _minX + _size && chunkZ < _minZ + _size;
+    }
+
+    private boolean isNeighborhoodClaimed(int chunkX, int chunkZ) {
+        for (int x = chunkX - CLAIM_RADIUS; x <= chunkX + CLAIM_RADIUS; x++) {
+            for (int z = chunkZ - CLAIM_RADIUS; z <= chunkZ + CLAIM_RADIUS; z++) {
+                if (_claimedChunks.contains(MathHelper.packCoordinates(x, z)))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void setNeighborhoodClaimed(int chunkX, int chunkZ, boolean claimed) {
+        for (int x = chunkX - CLAIM_RADIUS; x <= chunkX + CLAIM_RADIUS; x++) {
+            for (int z = chunkZ - CLAIM_RADIUS; z <= chunkZ + CLAIM_RADIUS; z++) {
+                if (claimed)
+                    _claimedChunks.add(MathHelper.packCoordinates(x, z));
+                else
+                    _claimedChunks.remove(MathHelper.packCoordinates(x, z));
+            }
+        }
+    }
+}
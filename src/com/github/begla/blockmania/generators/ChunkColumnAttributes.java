@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.generators;
+
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.noise.NoiseGenerator;
+
+/**
+ * The attributes of the columns of a chunk which only depend on the position of the column:
+ * temperature, biome, height of the base terrain and intensity of lakes.
+ * <p/>
+ * The attributes are calculated once per chunk and shared by all generators applied to the chunk.
+ * Temperature, biome and base terrain also cover the border of the chunk towards the positive x-
+ * and z-axis, since the density map is sampled up to this border.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+final class ChunkColumnAttributes {
+
+    /* AMOUNT OF COLUMNS INCLUDING THE BORDER */
+    static final int SIZE_X = (int) Configuration.CHUNK_DIMENSIONS.x + 1;
+    static final int SIZE_Z = (int) Configuration.CHUNK_DIMENSIONS.z + 1;
+    /* ------ */
+    private final int _blockPosX, _blockPosZ;
+    private final String _seed;
+    private final NoiseGenerator.NOISE_TYPE _noiseType;
+    /* ------ */
+    private final double[] _temperature = new double[SIZE_X * SIZE_Z];
+    private final double[] _baseTerrain = new double[SIZE_X * SIZE_Z];
+    private final double[] _lakeIntensity = new double[SIZE_X * SIZE_Z];
+    private final ChunkGeneratorTerrain.BIOME_TYPE[] _biomes = new ChunkGeneratorTerrain.BIOME_TYPE[SIZE_X * SIZE_Z];
+
+    /**
+     * Calculates the attributes of all columns of the chunk at the given position.
+     *
+     * @param generator The generator providing the noise functions
+     * @param blockPosX The position of the first column of the chunk on the x-axis
+     * @param blockPosZ The position of the first column of the chunk on the z-axis
+     */
+    ChunkColumnAttributes(ChunkGeneratorTerrain generator, int blockPosX, int blockPosZ) {
+        _blockPosX = blockPosX;
+        _blockPosZ = blockPosZ;
+        _seed = generator._seed;
+        _noiseType = generator._noiseType;
+
+        generator.calcTemperature(_temperature, blockPosX, blockPosZ, SIZE_X, SIZE_Z);
+        generator.calcBaseTerrain(_baseTerrain, blockPosX, blockPosZ, SIZE_X, SIZE_Z);
+        generator.calcLakeIntensity(_lakeIntensity, blockPosX, blockPosZ, SIZE_X, SIZE_Z);
+
+        for (int i = 0; i < _biomes.length; i++)
+            _biomes[i] = generator.calcBiomeType(_temperature[i]);
+    }
+
+    /**
+     * Returns true if these attributes belong to the given chunk position and were calculated
+     * using the same noise functions as the given generator.
+     */
+    boolean isValidFor(ChunkGeneratorTerrain generator, int blockPosX, int blockPosZ) {
+        return _blockPosX == blockPosX && _blockPosZ == blockPosZ && _seed.equals(generator._seed) && _noiseType == generator._noiseType;
+    }
+
+    double getTemperature(int x, int z) {
+        return _temperature[x * SIZE_Z + z];
+    }
+
+    double getBaseTerrain(int x, int z) {
+        return _baseTerrain[x * SIZE_Z + z];
+    }
+
+    double getLakeIntensity(int x, int z) {
+        return _lakeIntensity[x * SIZE_Z + z];
+    }
+
+    ChunkGeneratorTerrain.BIOME_TYPE getBiome(int x, int z) {
+        return _biomes[x * SIZE_Z + z];
+    }
+}
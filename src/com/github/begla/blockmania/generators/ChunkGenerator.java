@@ -15,7 +15,7 @@
  */
 package com.github.begla.blockmania.generators;
 
-import com.github.begla.blockmania.noise.PerlinNoise;
+import com.github.begla.blockmania.noise.NoiseGenerator;
 import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.chunk.Chunk;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
@@ -28,11 +28,9 @@ import sun.reflect.generics.reflectiveObjects.NotImplementedException;
  */
 public abstract class ChunkGenerator {
 
-    final PerlinNoise _pGen1, _pGen2, _pGen3, _pGen4, _pGen5, _pGen6;
-    /**
-     * Fast random number generator.
-     */
-    final FastRandom _rand;
+    final NoiseGenerator _pGen1, _pGen2, _pGen3, _pGen4, _pGen5, _pGen6;
+    final String _seed;
+    final NoiseGenerator.NOISE_TYPE _noiseType;
 
     /**
      * Init. the generator with a given seed value.
@@ -40,13 +38,50 @@ public abstract class ChunkGenerator {
      * @param seed
      */
     ChunkGenerator(String seed) {
-        _rand = new FastRandom(seed.hashCode());
-        _pGen1 = new PerlinNoise(seed.hashCode());
-        _pGen2 = new PerlinNoise(seed.hashCode() + 1);
-        _pGen3 = new PerlinNoise(seed.hashCode() + 2);
-        _pGen4 = new PerlinNoise(seed.hashCode() + 3);
-        _pGen5 = new PerlinNoise(seed.hashCode() + 4);
-        _pGen6 = new PerlinNoise(seed.hashCode() + 5);
+        this(seed, NoiseGenerator.NOISE_TYPE.PERLIN);
+    }
+
+    /**
+     * Init. the generator with a given seed value and the type of noise used by the generator.
+     *
+     * @param seed
+     * @param noiseType
+     */
+    ChunkGenerator(String seed, NoiseGenerator.NOISE_TYPE noiseType) {
+        _seed = seed;
+        _noiseType = noiseType;
+        _pGen1 = NoiseGenerator.create(noiseType, seed.hashCode());
+        _pGen2 = NoiseGenerator.create(noiseType, seed.hashCode() + 1);
+        _pGen3 = NoiseGenerator.create(noiseType, seed.hashCode() + 2);
+        _pGen4 = NoiseGenerator.create(noiseType, seed.hashCode() + 3);
+        _pGen5 = NoiseGenerator.create(noiseType, seed.hashCode() + 4);
+        _pGen6 = NoiseGenerator.create(noiseType, seed.hashCode() + 5);
+    }
+
+    /**
+     * Returns a new random number generator for the given chunk. The sequence of random values only
+     * depends on the seed, the generator and the position of the chunk, so the generated content
+     * does not depend on the order the chunks are generated in and generators can be used by
+     * multiple threads at once.
+     *
+     * @param c The chunk
+     * @return The random number generator
+     */
+    FastRandom createRandom(Chunk c) {
+        return createRandom((int) c.getPosition().x, (int) c.getPosition().z, 0);
+    }
+
+    /**
+     * Returns a new random number generator for the chunk at the given position. Generators
+     * needing several independent sequences for the same chunk use different streams.
+     *
+     * @param chunkX The position of the chunk on the x-axis
+     * @param chunkZ The position of the chunk on the z-axis
+     * @param stream The index of the sequence
+     * @return The random number generator
+     */
+    FastRandom createRandom(int chunkX, int chunkZ, int stream) {
+        return new FastRandom(FastRandom.deriveSeed(_seed.hashCode() + stream, chunkX, getClass().getName().hashCode(), chunkZ));
     }
 
     /**
@@ -15,24 +15,72 @@
  */
 package com.github.begla.blockmania.generators;
 
+import com.github.begla.blockmania.blocks.Block;
 import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.noise.NoiseGenerator;
 import com.github.begla.blockmania.utilities.FastRandom;
+import com.github.begla.blockmania.utilities.MathHelper;
 import com.github.begla.blockmania.world.chunk.Chunk;
+import javolution.util.FastMap;
+import org.lwjgl.util.vector.Vector3f;
 
 /**
  * Generates some trees, flowers and high grass.
+ * <p/>
+ * Trees are allowed to reach into the neighboring chunks. To make the content of a chunk
+ * independent of the order the chunks are generated in, the objects of a chunk are only derived
+ * from the seed and the terrain of the chunk they originate from, and every chunk places the parts
+ * of the objects of its neighbors which reach into it. Objects never write to any other chunk.
  *
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
  */
 public class ChunkGeneratorForest extends ChunkGeneratorTerrain {
 
+    /* OBJECTS REACH AT MOST THIS FAR FROM THEIR ORIGIN ON THE X- AND Z-AXIS */
+    private static final int OBJECT_RADIUS = 4;
+    /* RANDOM NUMBER STREAM OF THE OBJECTS */
+    private static final int OBJECT_STREAM = 1;
+    /* MAXIMUM AMOUNT OF CACHED SURFACES */
+    private static final int MAX_CACHED_SURFACES = 256;
+    /* ------ */
+    private final ObjectGenerator _tree, _pineTree, _firTree, _cactus;
+    /* ------ */
+    private final FastMap<Long, int[]> _surfaces = new FastMap<Long, int[]>();
+
     /**
      * Init. the forest generator.
      *
      * @param seed
      */
     public ChunkGeneratorForest(String seed) {
-        super(seed);
+        this(seed, NoiseGenerator.NOISE_TYPE.PERLIN);
+    }
+
+    /**
+     * @param seed
+     * @param noiseType
+     */
+    public ChunkGeneratorForest(String seed, NoiseGenerator.NOISE_TYPE noiseType) {
+        this(seed, noiseType, DEFAULT_CAVE_SAMPLE_RATE_HOR, DEFAULT_CAVE_SAMPLE_RATE_VERT);
+    }
+
+    /**
+     * Init. the forest generator. The cave sample rates have to match the ones of the terrain
+     * generator, since the surface of the neighbors is derived from their terrain.
+     *
+     * @param seed
+     * @param noiseType
+     * @param caveSampleRateHor
+     * @param caveSampleRateVert
+     */
+    public ChunkGeneratorForest(String seed, NoiseGenerator.NOISE_TYPE noiseType, int caveSampleRateHor, int caveSampleRateVert) {
+        super(seed, noiseType, caveSampleRateHor, caveSampleRateVert);
+
+        // The objects are only placed within the generated chunk, so they do not need the world
+        _tree = new ObjectGeneratorTree(null, seed);
+        _pineTree = new ObjectGeneratorPineTree(null, seed);
+        _firTree = new ObjectGeneratorFirTree(null, seed);
+        _cactus = new ObjectGeneratorCactus(null, seed);
     }
 
     /**
@@ -42,32 +90,82 @@ public class ChunkGeneratorForest extends ChunkGeneratorTerrain {
      */
     @Override
     public void generate(Chunk c) {
+        int chunkX = (int) c.getPosition().x;
+        int chunkZ = (int) c.getPosition().z;
+
+        // The neighbors use the surface of this chunk to place their objects
+        int[] surface = calcSurface(c);
+        cacheSurface(MathHelper.packCoordinates(chunkX, chunkZ), surface);
+
+        FastRandom rand = createRandom(c);
+
         for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
             for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
                 for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++) {
-                    generateGrassAndFlowers(c, x, y, z);
+                    generateGrassAndFlowers(c, x, y, z, rand);
                 }
             }
         }
 
-        FastRandom rand = new FastRandom(c.getChunkId());
+        for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+            for (int z = chunkZ - 1; z <= chunkZ + 1; z++)
+                generateObjects(c, x, z, x == chunkX && z == chunkZ ? surface : null);
+        }
+    }
+
+    /**
+     * Places the parts of the objects originating from the given chunk which reach into the
+     * target chunk.
+     *
+     * @param target  The chunk the objects are placed in
+     * @param chunkX  The position of the chunk the objects originate from on the x-axis
+     * @param chunkZ  The position of the chunk the objects originate from on the z-axis
+     * @param surface The surface of the chunk the objects originate from or null if unknown
+     */
+    void generateObjects(Chunk target, int chunkX, int chunkZ, int[] surface) {
+        FastRandom rand = createRandom(chunkX, chunkZ, OBJECT_STREAM);
 
-        for (int y = 32; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
-            for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x += 4) {
-                for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z += 4) {
-                    double forestDens = calcForestDensity(c.getBlockWorldPosX(x), c.getBlockWorldPosZ(z));
+        int originX = chunkX * (int) Configuration.CHUNK_DIMENSIONS.x;
+        int originZ = chunkZ * (int) Configuration.CHUNK_DIMENSIONS.z;
+        int targetX = target.getBlockWorldPosX(0);
+        int targetZ = target.getBlockWorldPosZ(0);
 
-                    if (forestDens > 0.01) {
+        for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x += 4) {
+            for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z += 4) {
+                if (calcForestDensity(originX + x, originZ + z) <= 0.01)
+                    continue;
 
-                        int randX = x + rand.randomInt() % 12 + 4;
-                        int randZ = z + rand.randomInt() % 12 + 4;
+                // Always draw the same values, so the objects do not depend on the target chunk
+                int randX = x + rand.randomInt() % 12 + 4;
+                int randZ = z + rand.randomInt() % 12 + 4;
+                double r = rand.standNormalDistrDouble();
 
-                        if (c.getBlock(randX, y, randZ) == 0x1 || c.getBlock(randX, y, randZ) == 0x17) {
-                            generateTree(c, randX, y, randZ);
-                        } else if (c.getBlock(randX, y, randZ) == 0x7) {
-                            c.getParent().getObjectGenerator("cactus").generate(c.getBlockWorldPosX(randX), y + 1, c.getBlockWorldPosZ(randZ), false);
-                        }
-                    }
+                if (randX < 0 || randX >= Configuration.CHUNK_DIMENSIONS.x || randZ < 0 || randZ >= Configuration.CHUNK_DIMENSIONS.z)
+                    continue;
+
+                int posX = originX + randX;
+                int posZ = originZ + randZ;
+
+                // Skip objects which can't reach the target chunk
+                if (posX < targetX - OBJECT_RADIUS || posX >= targetX + Configuration.CHUNK_DIMENSIONS.x + OBJECT_RADIUS)
+                    continue;
+                if (posZ < targetZ - OBJECT_RADIUS || posZ >= targetZ + Configuration.CHUNK_DIMENSIONS.z + OBJECT_RADIUS)
+                    continue;
+
+                if (surface == null)
+                    surface = getSurface(chunkX, chunkZ);
+
+                int column = surface[randX * (int) Configuration.CHUNK_DIMENSIONS.z + randZ];
+                int y = column >> 8;
+                byte type = (byte) column;
+
+                if (column < 0 || y < 32)
+                    continue;
+
+                if (type == 0x1 || type == 0x17) {
+                    generateTree(target, posX, y, posZ, r);
+                } else if (type == 0x7) {
+                    _cactus.generate(target, posX, y + 1, posZ);
                 }
             }
         }
@@ -78,9 +176,9 @@ public class ChunkGeneratorForest extends ChunkGeneratorTerrain {
      * @param x
      * @param y
      * @param z
+     * @param rand
      */
-
-    void generateGrassAndFlowers(Chunk c, int x, int y, int z) {
+    void generateGrassAndFlowers(Chunk c, int x, int y, int z, FastRandom rand) {
 
         if (c.getBlock(x, y, z) == 0x1) {
             double grassDens = calcGrassDensity(c.getBlockWorldPosX(x), c.getBlockWorldPosZ(z));
@@ -89,18 +187,18 @@ public class ChunkGeneratorForest extends ChunkGeneratorTerrain {
                 /*
                  * Generate high grass.
                  */
-                double rand = _rand.standNormalDistrDouble();
-                if (rand > -0.4 && rand < 0.4) {
+                double r = rand.standNormalDistrDouble();
+                if (r > -0.4 && r < 0.4) {
                     c.setBlock(x, y + 1, z, (byte) 0xB);
-                } else if (rand > -0.8 && rand < -0.8) {
+                } else if (r > -0.8 && r < -0.8) {
                     c.setBlock(x, y + 1, z, (byte) 0xC);
                 }
 
                 /*
                  * Generate flowers.
                  */
-                if (_rand.standNormalDistrDouble() < -2) {
-                    if (_rand.randomBoolean()) {
+                if (rand.standNormalDistrDouble() < -2) {
+                    if (rand.randomBoolean()) {
                         c.setBlock(x, y + 1, z, (byte) 0x9);
                     } else {
                         c.setBlock(x, y + 1, z, (byte) 0xA);
@@ -112,29 +210,97 @@ public class ChunkGeneratorForest extends ChunkGeneratorTerrain {
     }
 
     /**
-     * @param c
-     * @param x
-     * @param y
-     * @param z
+     * Places the part of a tree standing on the given block which lies within the target chunk.
+     *
+     * @param target The chunk the tree is placed in
+     * @param x      Position of the block on the x-axis
+     * @param y      Position of the block on the y-axis
+     * @param z      Position of the block on the z-axis
+     * @param r      Normally distributed value selecting the type of the tree
      */
-    void generateTree(Chunk c, int x, int y, int z) {
-        // Trees should only be placed in direct sunlight
-        if (!c.canBlockSeeTheSky(x, y + 1, z))
-            return;
-
-        double r2 = _rand.standNormalDistrDouble();
-        if (r2 > -2 && r2 < -1) {
-            c.setBlock(x, y + 1, z, (byte) 0x0);
-            c.getParent().getObjectGenerator("pineTree").generate(c.getBlockWorldPosX(x), y + 1, c.getBlockWorldPosZ(z), false);
-        } else if (r2 > 1 && r2 < 2) {
-            c.setBlock(x, y + 1, z, (byte) 0x0);
-            c.getParent().getObjectGenerator("firTree").generate(c.getBlockWorldPosX(x), y + 1, c.getBlockWorldPosZ(z), false);
+    void generateTree(Chunk target, int x, int y, int z, double r) {
+        // Remove the high grass the tree is placed on
+        target.setBlock(x - target.getBlockWorldPosX(0), y + 1, z - target.getBlockWorldPosZ(0), (byte) 0x0);
+
+        if (r > -2 && r < -1) {
+            _pineTree.generate(target, x, y + 1, z);
+        } else if (r > 1 && r < 2) {
+            _firTree.generate(target, x, y + 1, z);
         } else {
-            c.setBlock(x, y + 1, z, (byte) 0x0);
-            c.getParent().getObjectGenerator("tree").generate(c.getBlockWorldPosX(x), y + 1, c.getBlockWorldPosZ(z), false);
+            _tree.generate(target, x, y + 1, z);
         }
     }
 
+    /**
+     * Returns the surface of the terrain of the given chunk. Chunks which were not generated by
+     * this generator recently are generated again without the objects.
+     *
+     * @param chunkX The position of the chunk on the x-axis
+     * @param chunkZ The position of the chunk on the z-axis
+     * @return The surface
+     */
+    private int[] getSurface(int chunkX, int chunkZ) {
+        Long key = MathHelper.packCoordinates(chunkX, chunkZ);
+
+        synchronized (_surfaces) {
+            // Move the surface to the end of the list of recently used surfaces
+            int[] surface = _surfaces.remove(key);
+
+            if (surface != null) {
+                _surfaces.put(key, surface);
+                return surface;
+            }
+        }
+
+        Chunk terrain = new Chunk(null, new Vector3f(chunkX, 0, chunkZ), null);
+        super.generate(terrain);
+
+        int[] surface = calcSurface(terrain);
+        cacheSurface(key, surface);
+
+        return surface;
+    }
+
+    private void cacheSurface(Long key, int[] surface) {
+        synchronized (_surfaces) {
+            _surfaces.put(key, surface);
+
+            while (_surfaces.size() > MAX_CACHED_SURFACES)
+                _surfaces.remove(_surfaces.head().getNext().getKey());
+        }
+    }
+
+    /**
+     * Returns the topmost opaque block of each column of the given chunk. The position on the
+     * y-axis is stored in the upper bits, the block type in the lowest byte. Columns without any
+     * opaque block are marked with -1.
+     *
+     * @param c The chunk
+     * @return The surface
+     */
+    private static int[] calcSurface(Chunk c) {
+        int[] surface = new int[(int) Configuration.CHUNK_DIMENSIONS.x * (int) Configuration.CHUNK_DIMENSIONS.z];
+
+        for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
+            for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++) {
+                int column = -1;
+
+                for (int y = (int) Configuration.CHUNK_DIMENSIONS.y - 1; y >= 0; y--) {
+                    byte type = c.getBlock(x, y, z);
+
+                    if (!Block.getBlockForType(type).isBlockTypeTranslucent()) {
+                        column = (y << 8) | (type & 0xFF);
+                        break;
+                    }
+                }
+
+                surface[x * (int) Configuration.CHUNK_DIMENSIONS.z + z] = column;
+            }
+        }
+
+        return surface;
+    }
+
     /**
      * Returns the cave density for the base terrain.
      *
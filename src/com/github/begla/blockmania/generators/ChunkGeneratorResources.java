@@ -18,6 +18,8 @@ package com.github.begla.blockmania.generators;
 import com.github.begla.blockmania.blocks.Block;
 import com.github.begla.blockmania.blocks.BlockStone;
 import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.noise.NoiseGenerator;
+import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.chunk.Chunk;
 
 /**
@@ -34,31 +36,41 @@ public class ChunkGeneratorResources extends ChunkGeneratorTerrain {
         super(seed);
     }
 
+    /**
+     * @param seed
+     * @param noiseType
+     */
+    public ChunkGeneratorResources(String seed, NoiseGenerator.NOISE_TYPE noiseType) {
+        super(seed, noiseType);
+    }
+
     /**
      * @param c
      */
     @Override
     public void generate(Chunk c) {
+        FastRandom rand = createRandom(c);
+
         for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
             for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++) {
                 for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
                     if (Block.getBlockForType(c.getBlock(x, y, z)).getClass() == BlockStone.class) {
-                        if (_rand.standNormalDistrDouble() < Configuration.PROB_COAL) {
+                        if (rand.standNormalDistrDouble() < Configuration.PROB_COAL) {
                             c.setBlock(x, y, z, (byte) 0x14);
                         }
 
-                        if (_rand.standNormalDistrDouble() < Configuration.PROB_GOLD) {
+                        if (rand.standNormalDistrDouble() < Configuration.PROB_GOLD) {
                             c.setBlock(x, y, z, (byte) 0x15);
                         }
 
-                        if (_rand.standNormalDistrDouble() < Configuration.PROB_DIAMOND) {
+                        if (rand.standNormalDistrDouble() < Configuration.PROB_DIAMOND) {
                             c.setBlock(x, y, z, (byte) 35);
                         }
-                        if (_rand.standNormalDistrDouble() < Configuration.PROB_REDSTONE) {
+                        if (rand.standNormalDistrDouble() < Configuration.PROB_REDSTONE) {
                             c.setBlock(x, y, z, (byte) 33);
                         }
 
-                        if (_rand.standNormalDistrDouble() < Configuration.PROB_SILVER) {
+                        if (rand.standNormalDistrDouble() < Configuration.PROB_SILVER) {
                             c.setBlock(x, y, z, (byte) 34);
                         }
                     }
@@ -16,9 +16,12 @@
 package com.github.begla.blockmania.generators;
 
 import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.noise.NoiseGenerator;
 import com.github.begla.blockmania.utilities.MathHelper;
 import com.github.begla.blockmania.world.chunk.Chunk;
 
+import java.util.Arrays;
+
 /**
  * Generates the terrain of the world using a hybrid voxel-/heightmap-based approach.
  *
@@ -28,6 +31,21 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
 
     private static final int SAMPLE_RATE_3D_HOR = 8;
     private static final int SAMPLE_RATE_3D_VERT = 4;
+    /* DEFAULT DISTANCE OF THE SAMPLED POSITIONS OF THE CAVE DENSITY */
+    public static final int DEFAULT_CAVE_SAMPLE_RATE_HOR = 4;
+    public static final int DEFAULT_CAVE_SAMPLE_RATE_VERT = 2;
+    /* SIZE OF THE DENSITY MAPS (INCLUDING THE BORDER TOWARDS THE NEIGHBORING CHUNKS) */
+    private static final int DENSITY_MAP_SIZE_X = (int) Configuration.CHUNK_DIMENSIONS.x + 1;
+    private static final int DENSITY_MAP_SIZE_Y = (int) Configuration.CHUNK_DIMENSIONS.y + 1;
+    private static final int DENSITY_MAP_SIZE_Z = (int) Configuration.CHUNK_DIMENSIONS.z + 1;
+    /* DENSITY MAPS OF EACH THREAD */
+    private static final ThreadLocal<double[]> _densityMaps = new ThreadLocal<double[]>();
+    private static final ThreadLocal<double[]> _caveDensityMaps = new ThreadLocal<double[]>();
+    private static final ThreadLocal<double[]> _caveSamples = new ThreadLocal<double[]>();
+    /* COLUMN ATTRIBUTES OF THE CHUNK PROCESSED LAST BY EACH THREAD */
+    private static final ThreadLocal<ChunkColumnAttributes> _columnAttributes = new ThreadLocal<ChunkColumnAttributes>();
+    /* ------ */
+    private final int _caveSampleRateHor, _caveSampleRateVert;
 
     public enum BIOME_TYPE {
         MOUNTAINS, SNOW, DESERT, PLAINS
@@ -37,7 +55,40 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
      * @param seed
      */
     public ChunkGeneratorTerrain(String seed) {
-        super(seed);
+        this(seed, NoiseGenerator.NOISE_TYPE.PERLIN);
+    }
+
+    /**
+     * @param seed
+     * @param noiseType
+     */
+    public ChunkGeneratorTerrain(String seed, NoiseGenerator.NOISE_TYPE noiseType) {
+        this(seed, noiseType, DEFAULT_CAVE_SAMPLE_RATE_HOR, DEFAULT_CAVE_SAMPLE_RATE_VERT);
+    }
+
+    /**
+     * Init. the generator with the distances of the positions the cave density is sampled at. The
+     * density in between is interpolated, so larger distances are faster but produce smoother
+     * caves. A rate of 1 samples every block.
+     *
+     * @param seed
+     * @param noiseType
+     * @param caveSampleRateHor  The distance of the sampled positions on the x- and z-axis (has to
+     *                           divide the size of the chunks)
+     * @param caveSampleRateVert The distance of the sampled positions on the y-axis (has to divide
+     *                           the height of the chunks)
+     */
+    public ChunkGeneratorTerrain(String seed, NoiseGenerator.NOISE_TYPE noiseType, int caveSampleRateHor, int caveSampleRateVert) {
+        super(seed, noiseType);
+
+        if (caveSampleRateHor < 1 || Configuration.CHUNK_DIMENSIONS.x % caveSampleRateHor != 0 || Configuration.CHUNK_DIMENSIONS.z % caveSampleRateHor != 0)
+            throw new IllegalArgumentException("Invalid horizontal cave sample rate " + caveSampleRateHor + ".");
+
+        if (caveSampleRateVert < 1 || Configuration.CHUNK_DIMENSIONS.y % caveSampleRateVert != 0)
+            throw new IllegalArgumentException("Invalid vertical cave sample rate " + caveSampleRateVert + ".");
+
+        _caveSampleRateHor = caveSampleRateHor;
+        _caveSampleRateVert = caveSampleRateVert;
     }
 
     /**
@@ -45,32 +96,53 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
      */
     @Override
     public void generate(Chunk c) {
-        double[][][] densityMap = new double[(int) Configuration.CHUNK_DIMENSIONS.x + 1][(int) Configuration.CHUNK_DIMENSIONS.y + 1][(int) Configuration.CHUNK_DIMENSIONS.z + 1];
+        double[] densityMap = getDensityMap(_densityMaps);
+        double[] caveDensityMap = getDensityMap(_caveDensityMaps);
+        ChunkColumnAttributes columns = getColumnAttributes(c);
 
         /*
          * Create the density map at a lower sample rate.
          */
         for (int x = 0; x <= Configuration.CHUNK_DIMENSIONS.x; x += SAMPLE_RATE_3D_HOR) {
             for (int z = 0; z <= Configuration.CHUNK_DIMENSIONS.z; z += SAMPLE_RATE_3D_HOR) {
-                BIOME_TYPE type = calcBiomeType(c.getBlockWorldPosX(x), c.getBlockWorldPosZ(z));
+                BIOME_TYPE type = columns.getBiome(x, z);
+                double height = columns.getBaseTerrain(x, z);
 
                 for (int y = 0; y <= Configuration.CHUNK_DIMENSIONS.y; y += SAMPLE_RATE_3D_VERT) {
-                    densityMap[x][y][z] = calcDensity(c.getBlockWorldPosX(x), y, c.getBlockWorldPosZ(z), type);
+                    densityMap[getDensityMapIndex(x, y, z)] = combineDensity(height, calcMountainDensity(c.getBlockWorldPosX(x), y, c.getBlockWorldPosZ(z)), y, type);
                 }
             }
         }
 
+        /*
+         * Create the cave density map at its own lower sample rate.
+         */
+        int caveSizeX = (int) Configuration.CHUNK_DIMENSIONS.x / _caveSampleRateHor + 1;
+        int caveSizeY = (int) Configuration.CHUNK_DIMENSIONS.y / _caveSampleRateVert + 1;
+        int caveSizeZ = (int) Configuration.CHUNK_DIMENSIONS.z / _caveSampleRateHor + 1;
+        double[] caveSamples = getCaveSamples(caveSizeX * caveSizeY * caveSizeZ);
+
+        calcCaveDensity(caveSamples, c.getBlockWorldPosX(0), c.getBlockWorldPosZ(0), _caveSampleRateHor, _caveSampleRateVert, caveSizeX, caveSizeY, caveSizeZ);
+
+        for (int x = 0, i = 0; x < caveSizeX; x++) {
+            for (int y = 0; y < caveSizeY; y++) {
+                for (int z = 0; z < caveSizeZ; z++, i++)
+                    caveDensityMap[getDensityMapIndex(x * _caveSampleRateHor, y * _caveSampleRateVert, z * _caveSampleRateHor)] = caveSamples[i];
+            }
+        }
+
         /*
          * Trilinear interpolate the missing values.
          */
-        triLerpDensityMap(densityMap);
+        triLerpDensityMap(densityMap, SAMPLE_RATE_3D_HOR, SAMPLE_RATE_3D_VERT);
+        triLerpDensityMap(caveDensityMap, _caveSampleRateHor, _caveSampleRateVert);
 
         /*
          * Generate the chunk from the density map.
          */
         for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
             for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++) {
-                BIOME_TYPE type = calcBiomeType(c.getBlockWorldPosX(x), c.getBlockWorldPosZ(z));
+                BIOME_TYPE type = columns.getBiome(x, z);
                 int firstBlockHeight = -1;
 
                 for (int y = (int) Configuration.CHUNK_DIMENSIONS.y; y >= 0; y--) {
@@ -90,7 +162,7 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
                         }
                     }
 
-                    double dens = densityMap[x][y][z];
+                    double dens = densityMap[getDensityMapIndex(x, y, z)];
 
                     if ((dens >= 0.008 && dens < 0.01)) {
 
@@ -98,7 +170,7 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
                         if (firstBlockHeight == -1)
                             firstBlockHeight = y;
 
-                        GenerateOuterLayer(x, y, z, firstBlockHeight, c, type);
+                        GenerateOuterLayer(x, y, z, firstBlockHeight, c, type, columns);
                         continue;
                     } else if (dens >= 0.01) {
 
@@ -106,7 +178,7 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
                         if (firstBlockHeight == -1)
                             firstBlockHeight = y;
 
-                        if (calcCaveDensity(c.getBlockWorldPosX(x), y, c.getBlockWorldPosZ(z)) > -0.6)
+                        if (caveDensityMap[getDensityMapIndex(x, y, z)] > -0.6)
                             GenerateInnerLayer(x, y, z, c, type);
 
                         continue;
@@ -119,11 +191,31 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
         }
     }
 
+    /**
+     * Returns the column attributes of the given chunk. The attributes of the chunk processed last
+     * are kept per thread, so the generators applied to a chunk one after another calculate them
+     * only once.
+     *
+     * @param c The chunk
+     * @return The column attributes
+     */
+    ChunkColumnAttributes getColumnAttributes(Chunk c) {
+        int blockPosX = c.getBlockWorldPosX(0), blockPosZ = c.getBlockWorldPosZ(0);
+        ChunkColumnAttributes columns = _columnAttributes.get();
+
+        if (columns == null || !columns.isValidFor(this, blockPosX, blockPosZ)) {
+            columns = new ChunkColumnAttributes(this, blockPosX, blockPosZ);
+            _columnAttributes.set(columns);
+        }
+
+        return columns;
+    }
+
     private void GenerateInnerLayer(int x, int y, int z, Chunk c, BIOME_TYPE type) {
         c.setBlock(x, y, z, (byte) 0x3);
     }
 
-    private void GenerateOuterLayer(int x, int y, int z, int firstBlockHeight, Chunk c, BIOME_TYPE type) {
+    private void GenerateOuterLayer(int x, int y, int z, int firstBlockHeight, Chunk c, BIOME_TYPE type, ChunkColumnAttributes columns) {
 
         double heightPercentage = (firstBlockHeight - y) / Configuration.CHUNK_DIMENSIONS.y;
 
@@ -145,7 +237,7 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
                 }
 
                 if (type == BIOME_TYPE.PLAINS)
-                    generateRiver(c, x, y, z, heightPercentage, type);
+                    generateRiver(c, x, y, z, heightPercentage, type, columns);
                 break;
             case SNOW:
 
@@ -160,7 +252,7 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
                     c.setBlock(x, y, z, (byte) 0x2);
                 }
 
-                generateRiver(c, x, y, z, heightPercentage, type);
+                generateRiver(c, x, y, z, heightPercentage, type, columns);
                 break;
 
             case DESERT:
@@ -176,12 +268,12 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
         }
     }
 
-    private void generateRiver(Chunk c, int x, int y, int z, double heightPercentage, BIOME_TYPE type) {
+    private void generateRiver(Chunk c, int x, int y, int z, double heightPercentage, BIOME_TYPE type, ChunkColumnAttributes columns) {
         // Rivers under water? Nope.
         if (y <= 32)
             return;
 
-        double lakeIntens = calcLakeIntensity(c.getBlockWorldPosX(x), c.getBlockWorldPosZ(z));
+        double lakeIntens = columns.getLakeIntensity(x, z);
 
         if (lakeIntens < 0.2 && heightPercentage < 0.015) {
             c.setBlock(x, y, z, (byte) 0x0);
@@ -195,8 +287,16 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
     }
 
     protected BIOME_TYPE calcBiomeType(int x, int z) {
-        double temp = calcTemperature(x, z);
+        return calcBiomeType(calcTemperature(x, z));
+    }
 
+    /**
+     * Returns the biome type for the given temperature.
+     *
+     * @param temp
+     * @return
+     */
+    protected BIOME_TYPE calcBiomeType(double temp) {
         if (temp >= 60) {
             return BIOME_TYPE.DESERT;
         } else if (temp >= 32) {
@@ -209,17 +309,65 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
     }
 
     /**
-     * @param densityMap
+     * Returns the cleared density map of the current thread. The density maps are reused, since
+     * they are needed for every generated chunk.
+     */
+    private static double[] getDensityMap(ThreadLocal<double[]> densityMaps) {
+        double[] densityMap = densityMaps.get();
+
+        if (densityMap == null) {
+            densityMap = new double[DENSITY_MAP_SIZE_X * DENSITY_MAP_SIZE_Y * DENSITY_MAP_SIZE_Z];
+            densityMaps.set(densityMap);
+        } else {
+            Arrays.fill(densityMap, 0.0);
+        }
+
+        return densityMap;
+    }
+
+    private static double[] getCaveSamples(int size) {
+        double[] caveSamples = _caveSamples.get();
+
+        if (caveSamples == null || caveSamples.length < size) {
+            caveSamples = new double[size];
+            _caveSamples.set(caveSamples);
+        }
+
+        return caveSamples;
+    }
+
+    /**
+     * Returns the index of the given block within a density map.
+     */
+    private static int getDensityMapIndex(int x, int y, int z) {
+        return (x * DENSITY_MAP_SIZE_Y + y) * DENSITY_MAP_SIZE_Z + z;
+    }
+
+    /**
+     * Trilinear interpolates the values of the given density map between the sampled positions.
+     *
+     * @param densityMap     The density map
+     * @param sampleRateHor The distance of the sampled positions on the x- and z-axis
+     * @param sampleRateVert The distance of the sampled positions on the y-axis
      */
-    private void triLerpDensityMap(double[][][] densityMap) {
+    private static void triLerpDensityMap(double[] densityMap, int sampleRateHor, int sampleRateVert) {
         for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
             for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
                 for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++) {
-                    if (!(x % SAMPLE_RATE_3D_HOR == 0 && y % SAMPLE_RATE_3D_VERT == 0 && z % SAMPLE_RATE_3D_HOR == 0)) {
-                        int offsetX = (x / SAMPLE_RATE_3D_HOR) * SAMPLE_RATE_3D_HOR;
-                        int offsetY = (y / SAMPLE_RATE_3D_VERT) * SAMPLE_RATE_3D_VERT;
-                        int offsetZ = (z / SAMPLE_RATE_3D_HOR) * SAMPLE_RATE_3D_HOR;
-                        densityMap[x][y][z] = MathHelper.triLerp(x, y, z, densityMap[offsetX][offsetY][offsetZ], densityMap[offsetX][SAMPLE_RATE_3D_VERT + offsetY][offsetZ], densityMap[offsetX][offsetY][offsetZ + SAMPLE_RATE_3D_HOR], densityMap[offsetX][offsetY + SAMPLE_RATE_3D_VERT][offsetZ + SAMPLE_RATE_3D_HOR], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY][offsetZ], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY + SAMPLE_RATE_3D_VERT][offsetZ], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY][offsetZ + SAMPLE_RATE_3D_HOR], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY + SAMPLE_RATE_3D_VERT][offsetZ + SAMPLE_RATE_3D_HOR], offsetX, SAMPLE_RATE_3D_HOR + offsetX, offsetY, SAMPLE_RATE_3D_VERT + offsetY, offsetZ, offsetZ + SAMPLE_RATE_3D_HOR);
+                    if (!(x % sampleRateHor == 0 && y % sampleRateVert == 0 && z % sampleRateHor == 0)) {
+                        int offsetX = (x / sampleRateHor) * sampleRateHor;
+                        int offsetY = (y / sampleRateVert) * sampleRateVert;
+                        int offsetZ = (z / sampleRateHor) * sampleRateHor;
+                        densityMap[getDensityMapIndex(x, y, z)] = MathHelper.triLerp(x, y, z,
+                                densityMap[getDensityMapIndex(offsetX, offsetY, offsetZ)],
+                                densityMap[getDensityMapIndex(offsetX, sampleRateVert + offsetY, offsetZ)],
+                                densityMap[getDensityMapIndex(offsetX, offsetY, offsetZ + sampleRateHor)],
+                                densityMap[getDensityMapIndex(offsetX, offsetY + sampleRateVert, offsetZ + sampleRateHor)],
+                                densityMap[getDensityMapIndex(sampleRateHor + offsetX, offsetY, offsetZ)],
+                                densityMap[getDensityMapIndex(sampleRateHor + offsetX, offsetY + sampleRateVert, offsetZ)],
+                                densityMap[getDensityMapIndex(sampleRateHor + offsetX, offsetY, offsetZ + sampleRateHor)],
+                                densityMap[getDensityMapIndex(sampleRateHor + offsetX, offsetY + sampleRateVert, offsetZ + sampleRateHor)],
+                                offsetX, sampleRateHor + offsetX, offsetY, sampleRateVert + offsetY, offsetZ, offsetZ + sampleRateHor);
                     }
                 }
             }
@@ -234,9 +382,19 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
      * @return
      */
     public double calcDensity(double x, double y, double z, BIOME_TYPE type) {
-        double height = calcBaseTerrain(x, z);
-        double density = calcMountainDensity(x, y, z);
+        return combineDensity(calcBaseTerrain(x, z), calcMountainDensity(x, y, z), y, type);
+    }
 
+    /**
+     * Combines the height of the base terrain and the mountain density of a position.
+     *
+     * @param height  The height of the base terrain
+     * @param density The mountain density
+     * @param y       The position on the y-axis
+     * @param type    The biome type
+     * @return The density
+     */
+    double combineDensity(double height, double density, double y, BIOME_TYPE type) {
         double divHeight = (y + 1) * 1.2;
 
         if (y > 100)
@@ -270,6 +428,22 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
         return result;
     }
 
+    /**
+     * Calculates the roughness for the base terrain of a grid of columns at once.
+     *
+     * @param result The array the values are written to (x-axis first)
+     * @param x      The position of the first column on the x-axis
+     * @param z      The position of the first column on the z-axis
+     * @param sizeX  The amount of columns on the x-axis
+     * @param sizeZ  The amount of columns on the z-axis
+     */
+    protected void calcBaseTerrain(double[] result, double x, double z, int sizeX, int sizeZ) {
+        _pGen2.fBm(result, 0.0009 * x, 0, 0.0009 * z, 0.0009, 0, 0.0009, sizeX, 1, sizeZ, 3, 2.2341, 0.94321);
+
+        for (int i = 0; i < sizeX * sizeZ; i++)
+            result[i] += 0.4;
+    }
+
     /**
      * @param x
      * @param y
@@ -309,6 +483,22 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
         return Math.sqrt(Math.abs(result));
     }
 
+    /**
+     * Calculates the lake intensity of a grid of columns at once.
+     *
+     * @param result The array the values are written to (x-axis first)
+     * @param x      The position of the first column on the x-axis
+     * @param z      The position of the first column on the z-axis
+     * @param sizeX  The amount of columns on the x-axis
+     * @param sizeZ  The amount of columns on the z-axis
+     */
+    protected void calcLakeIntensity(double[] result, double x, double z, int sizeX, int sizeZ) {
+        _pGen3.fBm(result, x * 0.01, 0.01, 0.01 * z, 0.01, 0, 0.01, sizeX, 1, sizeZ, 3, 2.1836171, 0.9631);
+
+        for (int i = 0; i < sizeX * sizeZ; i++)
+            result[i] = Math.sqrt(Math.abs(result[i]));
+    }
+
     protected double calcTemperature(double x, double z) {
         double result = 0.0;
         result += _pGen4.fBm(x * 0.0008, 0, 0.0008 * z, 7, 2.1836171, 0.7631);
@@ -318,9 +508,41 @@ public class ChunkGeneratorTerrain extends ChunkGenerator {
         return result;
     }
 
+    /**
+     * Calculates the temperature of a grid of columns at once.
+     *
+     * @param result The array the temperatures are written to (x-axis first)
+     * @param x      The position of the first column on the x-axis
+     * @param z      The position of the first column on the z-axis
+     * @param sizeX  The amount of columns on the x-axis
+     * @param sizeZ  The amount of columns on the z-axis
+     */
+    protected void calcTemperature(double[] result, double x, double z, int sizeX, int sizeZ) {
+        _pGen4.fBm(result, x * 0.0008, 0, 0.0008 * z, 0.0008, 0, 0.0008, sizeX, 1, sizeZ, 7, 2.1836171, 0.7631);
+
+        for (int i = 0; i < sizeX * sizeZ; i++)
+            result[i] = 32.0 + result[i] * 64.0;
+    }
+
     protected double calcCaveDensity(double x, double y, double z) {
         double result = 0.0;
         result += _pGen6.fBm(x * 0.06, y * 0.06, z * 0.06, 2, 2.1287129, 0.8531);
         return result;
     }
+
+    /**
+     * Calculates the cave density of a grid of positions at once.
+     *
+     * @param result         The array the densities are written to (x-axis first, z-axis innermost)
+     * @param x              The position of the first sample on the x-axis
+     * @param z              The position of the first sample on the z-axis
+     * @param sampleRateHor  The distance of the samples on the x- and z-axis
+     * @param sampleRateVert The distance of the samples on the y-axis
+     * @param sizeX          The amount of samples on the x-axis
+     * @param sizeY          The amount of samples on the y-axis, starting at the bottom of the world
+     * @param sizeZ          The amount of samples on the z-axis
+     */
+    protected void calcCaveDensity(double[] result, double x, double z, int sampleRateHor, int sampleRateVert, int sizeX, int sizeY, int sizeZ) {
+        _pGen6.fBm(result, x * 0.06, 0, z * 0.06, sampleRateHor * 0.06, sampleRateVert * 0.06, sampleRateHor * 0.06, sizeX, sizeY, sizeZ, 2, 2.1287129, 0.8531);
+    }
 }
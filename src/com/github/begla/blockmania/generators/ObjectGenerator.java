@@ -18,6 +18,7 @@ package com.github.begla.blockmania.generators;
 
 import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.chunk.Chunk;
 
 /**
  * Object generators are used to generate objects like trees etc.
@@ -29,7 +30,7 @@ public abstract class ObjectGenerator {
     /**
      *
      */
-    final FastRandom _rand;
+    final int _seed;
     /**
      *
      */
@@ -40,17 +41,93 @@ public abstract class ObjectGenerator {
      * @param seed
      */
     ObjectGenerator(World w, String seed) {
-        _rand = new FastRandom(seed.hashCode());
+        _seed = seed.hashCode();
         _world = w;
     }
 
+    /**
+     * Returns a new random number generator for an object at the given position, so the shape of
+     * the object only depends on the seed and its position.
+     *
+     * @param posX Position on the x-axis
+     * @param posY Position on the y-axis
+     * @param posZ Position on the z-axis
+     * @return The random number generator
+     */
+    FastRandom createRandom(int posX, int posY, int posZ) {
+        return new FastRandom(FastRandom.deriveSeed(_seed ^ getClass().getName().hashCode(), posX, posY, posZ));
+    }
+
+    /**
+     * Generates an object at the given position.
+     *
+     * @param posX   Position on the x-axis
+     * @param posY   Position on the y-axis
+     * @param posZ   Position on the z-axis
+     * @param update If true, the chunk will be queued for updating
+     */
+    public void generate(int posX, int posY, int posZ, boolean update) {
+        generate(null, posX, posY, posZ, update);
+    }
+
+    /**
+     * Generates the part of an object at the given position which lies within the given chunk.
+     * Blocks outside of the chunk are skipped, so the chunk does not depend on its neighbors.
+     *
+     * @param target The chunk
+     * @param posX   Position on the x-axis
+     * @param posY   Position on the y-axis
+     * @param posZ   Position on the z-axis
+     */
+    public void generate(Chunk target, int posX, int posY, int posZ) {
+        generate(target, posX, posY, posZ, false);
+    }
+
     /**
      * Generates an object at the given position.
      *
+     * @param target The chunk the blocks are restricted to or null to place them within the world
      * @param posX   Position on the x-axis
      * @param posY   Position on the y-axis
      * @param posZ   Position on the z-axis
      * @param update If true, the chunk will be queued for updating
      */
-    public abstract void generate(int posX, int posY, int posZ, boolean update);
+    abstract void generate(Chunk target, int posX, int posY, int posZ, boolean update);
+
+    /**
+     * Places a block of the object if the position is not occupied yet.
+     *
+     * @param target The chunk the blocks are restricted to or null to place them within the world
+     * @param x      Position on the x-axis
+     * @param y      Position on the y-axis
+     * @param z      Position on the z-axis
+     * @param type   The block type
+     * @param update If true, the chunk will be queued for updating
+     */
+    void setBlock(Chunk target, int x, int y, int z, byte type, boolean update) {
+        if (target == null) {
+            _world.setBlock(x, y, z, type, update, false);
+            return;
+        }
+
+        int localX = x - target.getBlockWorldPosX(0);
+        int localZ = z - target.getBlockWorldPosZ(0);
+
+        // Positions outside of the chunk are reported as empty but are not written
+        if (target.getBlock(localX, y, localZ) == 0x0)
+            target.setBlock(localX, y, localZ, type);
+    }
+
+    /**
+     * Refreshes the sunlight at the given position. The sunlight of chunks which are generated is
+     * calculated afterwards, so this is only necessary for objects placed within the world.
+     *
+     * @param target The chunk the blocks are restricted to or null to place them within the world
+     * @param x      Position on the x-axis
+     * @param z      Position on the z-axis
+     */
+    void refreshSunlightAt(Chunk target, int x, int z) {
+        if (target == null)
+            _world.refreshSunlightAt(x, z, false, true);
+    }
 }
@@ -16,6 +16,7 @@
 package com.github.begla.blockmania.generators;
 
 import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.chunk.Chunk;
 
 /**
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
@@ -33,14 +34,15 @@ public class ObjectGeneratorCactus extends ObjectGenerator {
     /**
      * Generates the cactus.
      *
-     * @param posX Origin on the x-axis
-     * @param posY Origin on the y-axis
-     * @param posZ Origin on the z-axis
+     * @param target The chunk the blocks are restricted to or null to place them within the world
+     * @param posX   Origin on the x-axis
+     * @param posY   Origin on the y-axis
+     * @param posZ   Origin on the z-axis
      */
     @Override
-    public void generate(int posX, int posY, int posZ, boolean update) {
+    void generate(Chunk target, int posX, int posY, int posZ, boolean update) {
         for (int y = posY; y < posY + 3; y++) {
-            _world.setBlock(posX, y, posZ, (byte) 0x18, update, false);
+            setBlock(target, posX, y, posZ, (byte) 0x18, update);
         }
     }
 }
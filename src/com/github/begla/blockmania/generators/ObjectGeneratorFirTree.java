@@ -16,7 +16,9 @@
 package com.github.begla.blockmania.generators;
 
 import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.chunk.Chunk;
 
 /**
  * A strange thing that looks like a magic tree.
@@ -37,13 +39,15 @@ public class ObjectGeneratorFirTree extends ObjectGenerator {
     /**
      * Generates the tree.
      *
-     * @param posX Origin on the x-axis
-     * @param posY Origin on the y-axis
-     * @param posZ Origin on the z-axis
+     * @param target The chunk the blocks are restricted to or null to place them within the world
+     * @param posX   Origin on the x-axis
+     * @param posY   Origin on the y-axis
+     * @param posZ   Origin on the z-axis
      */
     @Override
-    public void generate(int posX, int posY, int posZ, boolean update) {
-        int height = _rand.randomInt() % 2 + 8;
+    void generate(Chunk target, int posX, int posY, int posZ, boolean update) {
+        FastRandom rand = createRandom(posX, posY, posZ);
+        int height = rand.randomInt() % 2 + 8;
 
         if (posY + height >= Configuration.CHUNK_DIMENSIONS.y) {
             return;
@@ -51,7 +55,7 @@ public class ObjectGeneratorFirTree extends ObjectGenerator {
 
         // Generate tree trunk
         for (int i = 0; i < height; i++) {
-            _world.setBlock(posX, posY + i, posZ, (byte) 0x5, update, false);
+            setBlock(target, posX, posY + i, posZ, (byte) 0x5, update);
         }
 
         int stage = 2;
@@ -59,20 +63,20 @@ public class ObjectGeneratorFirTree extends ObjectGenerator {
         for (int y = height - 1; y >= (height * (1.0 / 3.0)); y--) {
             for (int x = -(stage / 2); x <= (stage / 2); x++) {
                 if (!(x == 0)) {
-                    _world.setBlock(posX + x, posY + y, posZ, (byte) 0x16, update, false);
-                    _world.refreshSunlightAt(posX + x, 0, false, true);
+                    setBlock(target, posX + x, posY + y, posZ, (byte) 0x16, update);
+                    refreshSunlightAt(target, posX + x, 0);
                 }
             }
             for (int z = -(stage / 2); z <= (stage / 2); z++) {
                 if (!(z == 0)) {
-                    _world.setBlock(posX, posY + y, posZ + z, (byte) 0x16, update, false);
-                    _world.refreshSunlightAt(0, posZ + z, false, true);
+                    setBlock(target, posX, posY + y, posZ + z, (byte) 0x16, update);
+                    refreshSunlightAt(target, 0, posZ + z);
                 }
             }
 
             stage++;
         }
 
-        _world.setBlock(posX, posY + height, posZ, (byte) 0x16, update, false);
+        setBlock(target, posX, posY + height, posZ, (byte) 0x16, update);
     }
 }
@@ -16,7 +16,9 @@
 package com.github.begla.blockmania.generators;
 
 import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.chunk.Chunk;
 
 /**
  * Generates a simple pine tree.
@@ -36,13 +38,15 @@ public class ObjectGeneratorPineTree extends ObjectGenerator {
     /**
      * Generates the tree.
      *
-     * @param posX Origin on the x-axis
-     * @param posY Origin on the y-axis
-     * @param posZ Origin on the z-axis
+     * @param target The chunk the blocks are restricted to or null to place them within the world
+     * @param posX   Origin on the x-axis
+     * @param posY   Origin on the y-axis
+     * @param posZ   Origin on the z-axis
      */
     @Override
-    public void generate(int posX, int posY, int posZ, boolean update) {
-        int height = _rand.randomInt() % 2 + 8;
+    void generate(Chunk target, int posX, int posY, int posZ, boolean update) {
+        FastRandom rand = createRandom(posX, posY, posZ);
+        int height = rand.randomInt() % 2 + 8;
 
         if (posY + height >= Configuration.CHUNK_DIMENSIONS.y) {
             return;
@@ -50,7 +54,7 @@ public class ObjectGeneratorPineTree extends ObjectGenerator {
 
         // Generate tree trunk
         for (int i = 0; i < height; i++) {
-            _world.setBlock(posX, posY + i, posZ, (byte) 0x5, update, false);
+            setBlock(target, posX, posY + i, posZ, (byte) 0x5, update);
         }
 
         int stage = 2;
@@ -59,8 +63,8 @@ public class ObjectGeneratorPineTree extends ObjectGenerator {
             for (int x = -(stage / 2); x <= (stage / 2); x++) {
                 for (int z = -(stage / 2); z <= (stage / 2); z++) {
                     if (!(x == 0 && z == 0)) {
-                        _world.setBlock(posX + x, posY + y, posZ + z, (byte) 0x16, update, false);
-                        _world.refreshSunlightAt(posX + x, posZ + z, false, true);
+                        setBlock(target, posX + x, posY + y, posZ + z, (byte) 0x16, update);
+                        refreshSunlightAt(target, posX + x, posZ + z);
                     }
                 }
             }
@@ -68,6 +72,6 @@ public class ObjectGeneratorPineTree extends ObjectGenerator {
             stage++;
         }
 
-        _world.setBlock(posX, posY + height, posZ, (byte) 0x16, update, false);
+        setBlock(target, posX, posY + height, posZ, (byte) 0x16, update);
     }
 }
@@ -17,6 +17,7 @@ package com.github.begla.blockmania.main;
 
 import com.github.begla.blockmania.blocks.Block;
 import com.github.begla.blockmania.rendering.ShaderManager;
+import com.github.begla.blockmania.rendering.TextureManager;
 import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.World;
 import com.github.begla.blockmania.world.characters.Player;
@@ -215,11 +216,6 @@ public final class Blockmania {
         // Init. fonts
         _font1 = new TrueTypeFont(new Font("Arial", Font.PLAIN, 12), true);
 
-        /*
-         * Load shaders.
-         */
-        ShaderManager.getInstance();
-
         /*
          * Init. OpenGL
          */
@@ -605,12 +601,90 @@ public final class Blockmania {
         _player = new Player(_world);
         _world.setPlayer(_player);
 
-        _world.startUpdateThread();
+        warmUpWorld();
 
         // Reset the delta value
         _lastLoopTime = getTime();
     }
 
+    /**
+     * Generates the chunks around the player before the game starts. The chunk update workers
+     * generate, light and tessellate the chunks in parallel, while this thread loads the shaders
+     * and textures and uploads the finished meshes. Returns as soon as all chunks within the
+     * radius WARMUP_RADIUS are complete or after WARMUP_TIME_LIMIT seconds. The remaining chunks
+     * are completed while playing.
+     */
+    private void warmUpWorld() {
+        _world.loadChunksWithinViewingDistance();
+        _world.startUpdateThread();
+
+        // Load the resources while the chunks are being generated
+        ShaderManager.getInstance();
+        TextureManager.getInstance();
+
+        int radius = Configuration.getSettingNumeric("WARMUP_RADIUS").intValue();
+        long timeLimit = (long) (Configuration.getSettingNumeric("WARMUP_TIME_LIMIT") * 1000);
+        long timeStart = getTime();
+        double progress;
+
+        while ((progress = _world.calcSpawnAreaProgress(radius)) < 1.0 && !Display.isCloseRequested()) {
+            if (getTime() - timeStart > timeLimit) {
+                Blockmania.getInstance().getLogger().log(Level.WARNING, "Generating the spawn area exceeded the time limit, continuing at {0}%.", (int) (progress * 100));
+                break;
+            }
+
+            _world.getChunkUpdateManager().updateVBOs();
+
+            renderWarmUpProgress(progress);
+            Display.update();
+        }
+
+        Blockmania.getInstance().getLogger().log(Level.INFO, "Generated the spawn area in {0}s.", (getTime() - timeStart) / 1000d);
+    }
+
+    /**
+     * Renders the progress of the generation of the spawn area.
+     *
+     * @param progress The progress (between 0 and 1)
+     */
+    private void renderWarmUpProgress(double progress) {
+        int width = Display.getDisplayMode().getWidth();
+        int height = Display.getDisplayMode().getHeight();
+
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+        glMatrixMode(GL_PROJECTION);
+        glPushMatrix();
+        glLoadIdentity();
+        glOrtho(0, width, height, 0, -5, 1);
+        glMatrixMode(GL_MODELVIEW);
+        glPushMatrix();
+        glLoadIdentity();
+
+        glDisable(GL_DEPTH_TEST);
+
+        // Progress bar
+        glColor4f(1f, 1f, 1f, 1f);
+        glBegin(GL_QUADS);
+        glVertex2d(width / 4f, height / 2f);
+        glVertex2d(width / 4f + width / 2f * progress, height / 2f);
+        glVertex2d(width / 4f + width / 2f * progress, height / 2f + 8f);
+        glVertex2d(width / 4f, height / 2f + 8f);
+        glEnd();
+
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        _font1.drawString(width / 4f, height / 2f - 20f, String.format("Generating the world... %d%%", (int) (progress * 100)));
+        glDisable(GL_BLEND);
+
+        glEnable(GL_DEPTH_TEST);
+
+        glMatrixMode(GL_PROJECTION);
+        glPopMatrix();
+        glMatrixMode(GL_MODELVIEW);
+        glPopMatrix();
+    }
+
     /**
      * Updates the game statistics like FPS and memory usage.
      */
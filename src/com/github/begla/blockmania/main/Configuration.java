@@ -150,6 +150,8 @@ public final class Configuration {
         _settingsBoolean.put("BOBBING", true);
         _settingsBoolean.put("DEMO_FLIGHT", false);
         _settingsBoolean.put("GOD_MODE", false);
+        _settingsBoolean.put("GREEDY_MESHING", true);
+        _settingsBoolean.put("DELTA_SAVES", false);
         _settingsNumeric.put("JUMP_INTENSITY", 0.125);
         _settingsNumeric.put("MAX_GRAVITY", 0.7);
         _settingsNumeric.put("WALKING_SPEED", 0.03);
@@ -160,6 +162,12 @@ public final class Configuration {
         _settingsNumeric.put("FRICTION", 0.08);
         _settingsNumeric.put("V_DIST_X", 24.0);
         _settingsNumeric.put("V_DIST_Z", 24.0);
+        _settingsNumeric.put("CHUNK_UPDATE_WORKERS", (double) Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        _settingsNumeric.put("CHUNK_IO_WORKERS", (double) Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        _settingsNumeric.put("PREFETCH_BUDGET", 128.0);
+        _settingsNumeric.put("WARMUP_RADIUS", 4.0);
+        _settingsNumeric.put("WARMUP_TIME_LIMIT", 30.0);
+        _settingsNumeric.put("SANDBOX_CHUNK_STORE_SIZE", 32.0);
     }
 
     private static void loadDebug() {
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.noise;
+
+import com.github.begla.blockmania.utilities.FastRandom;
+
+import java.util.Arrays;
+
+/**
+ * Base class of the gradient noise generators. Provides fBm and the evaluation of whole grids of
+ * positions on top of the single noise function of the implementations.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public abstract class NoiseGenerator {
+
+    public enum NOISE_TYPE {
+        PERLIN, SIMPLEX
+    }
+
+    private volatile OctaveAmplitudes _lastAmplitudes;
+
+    /**
+     * Creates a noise generator of the given type.
+     *
+     * @param type The type of the noise
+     * @param seed The seed value
+     * @return The noise generator
+     */
+    public static NoiseGenerator create(NOISE_TYPE type, int seed) {
+        switch (type) {
+            case SIMPLEX:
+                return new SimplexNoise(seed);
+            default:
+                return new PerlinNoise(seed);
+        }
+    }
+
+    /**
+     * Returns the shuffled permutation table for the given seed. The table is stored twice in a row,
+     * so lookups of summed indices do not have to wrap.
+     *
+     * @param seed The seed value
+     * @return The permutation table with 512 entries
+     */
+    static int[] createPermutations(int seed) {
+        FastRandom rand = new FastRandom(seed);
+        int[] permutations = new int[512];
+        int[] noiseTable = new int[256];
+
+        for (int i = 0; i < 256; i++)
+            noiseTable[i] = i;
+
+        for (int i = 0; i < 256; i++) {
+            int j = rand.randomInt() % 256;
+            j = (j < 0) ? -j : j;
+
+            int swap = noiseTable[i];
+            noiseTable[i] = noiseTable[j];
+            noiseTable[j] = swap;
+        }
+
+        for (int i = 0; i < 256; i++)
+            permutations[i] = permutations[i + 256] = noiseTable[i];
+
+        return permutations;
+    }
+
+    /**
+     * Returns the noise value at the given position.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return The noise value within the range of -1 to 1
+     */
+    public abstract double noise(double x, double y, double z);
+
+    /**
+     * Fills the given array with the noise values of a regular grid of positions. The values are
+     * stored in x, y, z order with z being the innermost axis, so the grid can also be a single
+     * line or plane by setting the size of the other axes to one.
+     *
+     * @param result The array the values are written to
+     * @param x      The position of the first grid point on the x-axis
+     * @param y      The position of the first grid point on the y-axis
+     * @param z      The position of the first grid point on the z-axis
+     * @param stepX  The distance of two grid points on the x-axis
+     * @param stepY  The distance of two grid points on the y-axis
+     * @param stepZ  The distance of two grid points on the z-axis
+     * @param sizeX  The amount of grid points on the x-axis
+     * @param sizeY  The amount of grid points on the y-axis
+     * @param sizeZ  The amount of grid points on the z-axis
+     */
+    public void noise(double[] result, double x, double y, double z, double stepX, double stepY, double stepZ, int sizeX, int sizeY, int sizeZ) {
+        Arrays.fill(result, 0, sizeX * sizeY * sizeZ, 0.0);
+        addNoise(result, x, y, z, stepX, stepY, stepZ, sizeX, sizeY, sizeZ, 1.0);
+    }
+
+    /**
+     * Single precision variant of {@link #noise(double[], double, double, double, double, double, double, int, int, int)}.
+     */
+    public void noise(float[] result, float x, float y, float z, float stepX, float stepY, float stepZ, int sizeX, int sizeY, int sizeZ) {
+        Arrays.fill(result, 0, sizeX * sizeY * sizeZ, 0.0f);
+        addNoise(result, x, y, z, stepX, stepY, stepZ, sizeX, sizeY, sizeZ, 1.0f);
+    }
+
+    /**
+     * Adds the scaled noise values of a regular grid of positions to the given array. Evaluates the
+     * positions one by one, implementations can override this with a faster variant.
+     */
+    protected void addNoise(double[] result, double x, double y, double z, double stepX, double stepY, double stepZ, int sizeX, int sizeY, int sizeZ, double amplitude) {
+        int i = 0;
+
+        for (int iX = 0; iX < sizeX; iX++) {
+            for (int iY = 0; iY < sizeY; iY++) {
+                for (int iZ = 0; iZ < sizeZ; iZ++, i++)
+                    result[i] += amplitude * noise(x + iX * stepX, y + iY * stepY, z + iZ * stepZ);
+            }
+        }
+    }
+
+    /**
+     * Single precision variant of {@link #addNoise(double[], double, double, double, double, double, double, int, int, int, double)}.
+     */
+    protected void addNoise(float[] result, float x, float y, float z, float stepX, float stepY, float stepZ, int sizeX, int sizeY, int sizeZ, float amplitude) {
+        int i = 0;
+
+        for (int iX = 0; iX < sizeX; iX++) {
+            for (int iY = 0; iY < sizeY; iY++) {
+                for (int iZ = 0; iZ < sizeZ; iZ++, i++)
+                    result[i] += amplitude * (float) noise(x + iX * stepX, y + iY * stepY, z + iZ * stepZ);
+            }
+        }
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param z
+     * @param octaves
+     * @param lacunarity
+     * @param h
+     * @return
+     */
+    public double fBm(double x, double y, double z, int octaves, double lacunarity, double h) {
+        double[] amplitudes = getAmplitudes(octaves, lacunarity, h);
+        double result = 0.0;
+
+        for (int i = 0; i < octaves; i++) {
+            result += noise(x, y, z) * amplitudes[i];
+
+            x *= lacunarity;
+            y *= lacunarity;
+            z *= lacunarity;
+        }
+
+        return result;
+    }
+
+    /**
+     * Fills the given array with the fBm values of a regular grid of positions. See
+     * {@link #noise(double[], double, double, double, double, double, double, int, int, int)} for
+     * the layout of the grid.
+     */
+    public void fBm(double[] result, double x, double y, double z, double stepX, double stepY, double stepZ, int sizeX, int sizeY, int sizeZ, int octaves, double lacunarity, double h) {
+        double[] amplitudes = getAmplitudes(octaves, lacunarity, h);
+        Arrays.fill(result, 0, sizeX * sizeY * sizeZ, 0.0);
+
+        for (int i = 0; i < octaves; i++) {
+            addNoise(result, x, y, z, stepX, stepY, stepZ, sizeX, sizeY, sizeZ, amplitudes[i]);
+
+            x *= lacunarity;
+            y *= lacunarity;
+            z *= lacunarity;
+            stepX *= lacunarity;
+            stepY *= lacunarity;
+            stepZ *= lacunarity;
+        }
+    }
+
+    /**
+     * Single precision variant of {@link #fBm(double[], double, double, double, double, double, double, int, int, int, int, double, double)}.
+     */
+    public void fBm(float[] result, float x, float y, float z, float stepX, float stepY, float stepZ, int sizeX, int sizeY, int sizeZ, int octaves, double lacunarity, double h) {
+        double[] amplitudes = getAmplitudes(octaves, lacunarity, h);
+        float l = (float) lacunarity;
+        Arrays.fill(result, 0, sizeX * sizeY * sizeZ, 0.0f);
+
+        for (int i = 0; i < octaves; i++) {
+            addNoise(result, x, y, z, stepX, stepY, stepZ, sizeX, sizeY, sizeZ, (float) amplitudes[i]);
+
+            x *= l;
+            y *= l;
+            z *= l;
+            stepX *= l;
+            stepY *= l;
+            stepZ *= l;
+        }
+    }
+
+    /**
+     * Returns the amplitudes of the octaves of a fBm. The amplitudes of the parameters used last are
+     * kept, since each noise generator is mostly used with the same parameters.
+     */
+    private double[] getAmplitudes(int octaves, double lacunarity, double h) {
+        OctaveAmplitudes amplitudes = _lastAmplitudes;
+
+        if (amplitudes == null || amplitudes._octaves < octaves || amplitudes._lacunarity != lacunarity || amplitudes._h != h) {
+            amplitudes = new OctaveAmplitudes(octaves, lacunarity, h);
+            _lastAmplitudes = amplitudes;
+        }
+
+        return amplitudes._values;
+    }
+
+    /**
+     * Faster replacement for Math.floor for values within the range of int.
+     *
+     * @param x
+     * @return
+     */
+    public static int fastFloor(double x) {
+        int i = (int) x;
+        return x < i ? i - 1 : i;
+    }
+
+    /**
+     * @param x
+     * @return
+     */
+    public static int fastFloor(float x) {
+        int i = (int) x;
+        return x < i ? i - 1 : i;
+    }
+
+    /**
+     * The immutable amplitudes of the octaves of a fBm, which can be shared between threads.
+     */
+    private static final class OctaveAmplitudes {
+
+        private final int _octaves;
+        private final double _lacunarity, _h;
+        private final double[] _values;
+
+        OctaveAmplitudes(int octaves, double lacunarity, double h) {
+            _octaves = octaves;
+            _lacunarity = lacunarity;
+            _h = h;
+            _values = new double[octaves];
+
+            for (int i = 0; i < octaves; i++)
+                _values[i] = Math.pow(lacunarity, -h * i);
+        }
+    }
+}
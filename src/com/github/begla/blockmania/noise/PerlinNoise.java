@@ -15,40 +15,20 @@
  */
 package com.github.begla.blockmania.noise;
 
-import com.github.begla.blockmania.utilities.FastRandom;
-
 /**
  * Improved Perlin noise based on the reference implementation by Ken Perlin.
  *
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
  */
-public class PerlinNoise {
+public class PerlinNoise extends NoiseGenerator {
 
-    private final int[] _noisePermutations, _noiseTable;
+    private final int[] _noisePermutations;
 
     /**
      * @param seed
      */
     public PerlinNoise(int seed) {
-        FastRandom rand = new FastRandom(seed);
-        _noisePermutations = new int[512];
-        _noiseTable = new int[256];
-
-        for (int i = 0; i < 256; i++)
-            _noiseTable[i] = i;
-
-        for (int i = 0; i < 256; i++) {
-            int j = rand.randomInt() % 256;
-            j = (j < 0) ? -j : j;
-
-            int swap = _noiseTable[i];
-            _noiseTable[i] = _noiseTable[j];
-            _noiseTable[j] = swap;
-        }
-
-        for (int i = 0; i < 256; i++)
-            _noisePermutations[i] = _noisePermutations[i + 256] = _noiseTable[i];
-
+        _noisePermutations = createPermutations(seed);
     }
 
     /**
@@ -57,12 +37,14 @@ public class PerlinNoise {
      * @param z
      * @return
      */
+    @Override
     public double noise(double x, double y, double z) {
-        int X = (int) Math.floor(x) & 255, Y = (int) Math.floor(y) & 255, Z = (int) Math.floor(z) & 255;
+        int fX = fastFloor(x), fY = fastFloor(y), fZ = fastFloor(z);
+        int X = fX & 255, Y = fY & 255, Z = fZ & 255;
 
-        x -= Math.floor(x);
-        y -= Math.floor(y);
-        z -= Math.floor(z);
+        x -= fX;
+        y -= fY;
+        z -= fZ;
 
         double u = fade(x), v = fade(y), w = fade(z);
         int A = _noisePermutations[X] + Y, AA = _noisePermutations[A] + Z, AB = _noisePermutations[(A + 1)] + Z,
@@ -78,6 +60,87 @@ public class PerlinNoise {
                                 grad(_noisePermutations[(BB + 1)], x - 1, y - 1, z - 1))));
     }
 
+    /**
+     * Adds the scaled noise values of a regular grid of positions to the given array. The parts of
+     * the calculation depending on the x- and y-axis are done once per row of the grid.
+     */
+    @Override
+    protected void addNoise(double[] result, double x, double y, double z, double stepX, double stepY, double stepZ, int sizeX, int sizeY, int sizeZ, double amplitude) {
+        int i = 0;
+
+        for (int iX = 0; iX < sizeX; iX++) {
+            double pX = x + iX * stepX;
+            int fX = fastFloor(pX), X = fX & 255;
+            double rX = pX - fX, u = fade(rX);
+
+            for (int iY = 0; iY < sizeY; iY++) {
+                double pY = y + iY * stepY;
+                int fY = fastFloor(pY), Y = fY & 255;
+                double rY = pY - fY, v = fade(rY);
+
+                int A = _noisePermutations[X] + Y, B = _noisePermutations[(X + 1)] + Y;
+                int PA = _noisePermutations[A], PAB = _noisePermutations[(A + 1)], PB = _noisePermutations[B], PBB = _noisePermutations[(B + 1)];
+
+                for (int iZ = 0; iZ < sizeZ; iZ++, i++) {
+                    double pZ = z + iZ * stepZ;
+                    int fZ = fastFloor(pZ), Z = fZ & 255;
+                    double rZ = pZ - fZ, w = fade(rZ);
+
+                    int AA = PA + Z, AB = PAB + Z, BA = PB + Z, BB = PBB + Z;
+
+                    result[i] += amplitude * lerp(w, lerp(v, lerp(u, grad(_noisePermutations[AA], rX, rY, rZ),
+                            grad(_noisePermutations[BA], rX - 1, rY, rZ)),
+                            lerp(u, grad(_noisePermutations[AB], rX, rY - 1, rZ),
+                                    grad(_noisePermutations[BB], rX - 1, rY - 1, rZ))),
+                            lerp(v, lerp(u, grad(_noisePermutations[(AA + 1)], rX, rY, rZ - 1),
+                                    grad(_noisePermutations[(BA + 1)], rX - 1, rY, rZ - 1)),
+                                    lerp(u, grad(_noisePermutations[(AB + 1)], rX, rY - 1, rZ - 1),
+                                            grad(_noisePermutations[(BB + 1)], rX - 1, rY - 1, rZ - 1))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Single precision variant of {@link #addNoise(double[], double, double, double, double, double, double, int, int, int, double)}.
+     */
+    @Override
+    protected void addNoise(float[] result, float x, float y, float z, float stepX, float stepY, float stepZ, int sizeX, int sizeY, int sizeZ, float amplitude) {
+        int i = 0;
+
+        for (int iX = 0; iX < sizeX; iX++) {
+            float pX = x + iX * stepX;
+            int fX = fastFloor(pX), X = fX & 255;
+            float rX = pX - fX, u = fade(rX);
+
+            for (int iY = 0; iY < sizeY; iY++) {
+                float pY = y + iY * stepY;
+                int fY = fastFloor(pY), Y = fY & 255;
+                float rY = pY - fY, v = fade(rY);
+
+                int A = _noisePermutations[X] + Y, B = _noisePermutations[(X + 1)] + Y;
+                int PA = _noisePermutations[A], PAB = _noisePermutations[(A + 1)], PB = _noisePermutations[B], PBB = _noisePermutations[(B + 1)];
+
+                for (int iZ = 0; iZ < sizeZ; iZ++, i++) {
+                    float pZ = z + iZ * stepZ;
+                    int fZ = fastFloor(pZ), Z = fZ & 255;
+                    float rZ = pZ - fZ, w = fade(rZ);
+
+                    int AA = PA + Z, AB = PAB + Z, BA = PB + Z, BB = PBB + Z;
+
+                    result[i] += amplitude * lerp(w, lerp(v, lerp(u, grad(_noisePermutations[AA], rX, rY, rZ),
+                            grad(_noisePermutations[BA], rX - 1, rY, rZ)),
+                            lerp(u, grad(_noisePermutations[AB], rX, rY - 1, rZ),
+                                    grad(_noisePermutations[BB], rX - 1, rY - 1, rZ))),
+                            lerp(v, lerp(u, grad(_noisePermutations[(AA + 1)], rX, rY, rZ - 1),
+                                    grad(_noisePermutations[(BA + 1)], rX - 1, rY, rZ - 1)),
+                                    lerp(u, grad(_noisePermutations[(AB + 1)], rX, rY - 1, rZ - 1),
+                                            grad(_noisePermutations[(BB + 1)], rX - 1, rY - 1, rZ - 1))));
+                }
+            }
+        }
+    }
+
     /**
      * @param t
      * @return
@@ -86,6 +149,10 @@ public class PerlinNoise {
         return t * t * t * (t * (t * 6 - 15) + 10);
     }
 
+    private static float fade(float t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
     /**
      * @param t
      * @param a
@@ -96,6 +163,10 @@ public class PerlinNoise {
         return a + t * (b - a);
     }
 
+    private static float lerp(float t, float a, float b) {
+        return a + t * (b - a);
+    }
+
     /**
      * @param hash
      * @param x
@@ -109,26 +180,9 @@ public class PerlinNoise {
         return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
     }
 
-    /**
-     * @param x
-     * @param y
-     * @param z
-     * @param octaves
-     * @param lacunarity
-     * @param h
-     * @return
-     */
-    public double fBm(double x, double y, double z, int octaves, double lacunarity, double h) {
-        double result = 0.0;
-
-        for (int i = 0; i < octaves; i++) {
-            result += noise(x, y, z) * Math.pow(lacunarity, -h * i);
-
-            x *= lacunarity;
-            y *= lacunarity;
-            z *= lacunarity;
-        }
-
-        return result;
+    private static float grad(int hash, float x, float y, float z) {
+        int h = hash & 15;
+        float u = h < 8 ? x : y, v = h < 4 ? y : h == 12 || h == 14 ? x : z;
+        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
     }
 }
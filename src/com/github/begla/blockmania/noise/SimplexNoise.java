@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.noise;
+
+/**
+ * Simplex noise based on the reference implementation by Stefan Gustavson.
+ * <p/>
+ * Each sample only evaluates the gradients of the four corners of the surrounding simplex
+ * (instead of the eight corners of the surrounding cube used by Perlin noise) and does not
+ * produce the axis-aligned artifacts of Perlin noise.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public class SimplexNoise extends NoiseGenerator {
+
+    /* SKEWING AND UNSKEWING FACTORS FOR THREE DIMENSIONS */
+    private static final double F3 = 1.0 / 3.0;
+    private static final double G3 = 1.0 / 6.0;
+    /* GRADIENTS TO THE EDGES OF A CUBE (X, Y AND Z OF EACH GRADIENT IN A ROW) */
+    private static final double[] GRADIENTS = {1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1, 0,
+            1, 0, 1, -1, 0, 1, 1, 0, -1, -1, 0, -1,
+            0, 1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1};
+    /* ------ */
+    private final int[] _noisePermutations, _gradientIndices;
+
+    /**
+     * @param seed
+     */
+    public SimplexNoise(int seed) {
+        _noisePermutations = createPermutations(seed);
+        _gradientIndices = new int[512];
+
+        for (int i = 0; i < 512; i++)
+            _gradientIndices[i] = (_noisePermutations[i] % 12) * 3;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    @Override
+    public double noise(double x, double y, double z) {
+        // Find the simplex cell containing the position
+        double s = (x + y + z) * F3;
+        int i = fastFloor(x + s), j = fastFloor(y + s), k = fastFloor(z + s);
+
+        double t = (i + j + k) * G3;
+        double x0 = x - (i - t), y0 = y - (j - t), z0 = z - (k - t);
+
+        // Determine which of the six simplices of the cell contains the position
+        int i1, j1, k1, i2, j2, k2;
+
+        if (x0 >= y0) {
+            if (y0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            } else if (x0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+            } else {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+            }
+        } else {
+            if (y0 < z0) {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+            } else if (x0 < z0) {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+            } else {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            }
+        }
+
+        double x1 = x0 - i1 + G3, y1 = y0 - j1 + G3, z1 = z0 - k1 + G3;
+        double x2 = x0 - i2 + 2.0 * G3, y2 = y0 - j2 + 2.0 * G3, z2 = z0 - k2 + 2.0 * G3;
+        double x3 = x0 - 1.0 + 3.0 * G3, y3 = y0 - 1.0 + 3.0 * G3, z3 = z0 - 1.0 + 3.0 * G3;
+
+        int ii = i & 255, jj = j & 255, kk = k & 255;
+
+        int gi0 = _gradientIndices[ii + _noisePermutations[jj + _noisePermutations[kk]]];
+        int gi1 = _gradientIndices[ii + i1 + _noisePermutations[jj + j1 + _noisePermutations[kk + k1]]];
+        int gi2 = _gradientIndices[ii + i2 + _noisePermutations[jj + j2 + _noisePermutations[kk + k2]]];
+        int gi3 = _gradientIndices[ii + 1 + _noisePermutations[jj + 1 + _noisePermutations[kk + 1]]];
+
+        return 32.0 * (contribution(gi0, x0, y0, z0) + contribution(gi1, x1, y1, z1)
+                + contribution(gi2, x2, y2, z2) + contribution(gi3, x3, y3, z3));
+    }
+
+    /**
+     * Returns the contribution of a corner of the simplex.
+     *
+     * @param gradient The offset of the gradient of the corner
+     * @param x        The distance to the corner on the x-axis
+     * @param y        The distance to the corner on the y-axis
+     * @param z        The distance to the corner on the z-axis
+     * @return The contribution
+     */
+    private static double contribution(int gradient, double x, double y, double z) {
+        double t = 0.6 - x * x - y * y - z * z;
+
+        if (t < 0)
+            return 0.0;
+
+        t *= t;
+        return t * t * (GRADIENTS[gradient] * x + GRADIENTS[gradient + 1] * y + GRADIENTS[gradient + 2] * z);
+    }
+}
@@ -16,6 +16,7 @@
 package com.github.begla.blockmania.rendering;
 
 import com.github.begla.blockmania.main.Blockmania;
+import com.github.begla.blockmania.world.chunk.ChunkMesh;
 import javolution.util.FastMap;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.ARBShaderObjects;
@@ -75,9 +76,17 @@ public class ShaderManager {
 
             GL20.glAttachShader(shaderProgram, _fragmentShader.get(e.getKey()));
             GL20.glAttachShader(shaderProgram, _vertexShader.get(e.getKey()));
+
+            // The chunk meshes use a fixed location for their packed vertex attribute
+            if (e.getKey().equals("chunk"))
+                GL20.glBindAttribLocation(shaderProgram, ChunkMesh.ATTRIBUTE_LIGHT_AND_TILING_LOCATION, ChunkMesh.ATTRIBUTE_LIGHT_AND_TILING);
+
             GL20.glLinkProgram(shaderProgram);
             GL20.glValidateProgram(shaderProgram);
 
+            if (e.getKey().equals("chunk") && GL20.glGetAttribLocation(shaderProgram, ChunkMesh.ATTRIBUTE_LIGHT_AND_TILING) != ChunkMesh.ATTRIBUTE_LIGHT_AND_TILING_LOCATION)
+                throw new IllegalStateException("The chunk shader does not provide the attribute " + ChunkMesh.ATTRIBUTE_LIGHT_AND_TILING + ".");
+
             _shaderPrograms.put(e.getKey(), shaderProgram);
         }
     }
@@ -19,6 +19,7 @@ import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.ARBVertexBufferObject;
 import org.lwjgl.opengl.GLContext;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
@@ -57,6 +58,22 @@ public class VBOHelper {
         }
     }
 
+    public void bufferVboData(int id, ByteBuffer buffer, int drawMode) {
+        if (GLContext.getCapabilities().GL_ARB_vertex_buffer_object) {
+            ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, id);
+            ARBVertexBufferObject.glBufferDataARB(ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, buffer, drawMode);
+            ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, 0);
+        }
+    }
+
+    public void bufferVboElementData(int id, ByteBuffer buffer, int drawMode) {
+        if (GLContext.getCapabilities().GL_ARB_vertex_buffer_object) {
+            ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, id);
+            ARBVertexBufferObject.glBufferDataARB(ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, buffer, drawMode);
+            ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, 0);
+        }
+    }
+
     public void bufferVboElementData(int id, IntBuffer buffer, int drawMode) {
         if (GLContext.getCapabilities().GL_ARB_vertex_buffer_object) {
             ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, id);
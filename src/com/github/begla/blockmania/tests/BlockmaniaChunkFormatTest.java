@@ -0,0 +1,87 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.world.chunk.ChunkCodec;
+import com.github.begla.blockmania.world.chunk.ChunkCodecDeflate;
+import com.github.begla.blockmania.world.chunk.ChunkCodecRunLength;
+import com.github.begla.blockmania.world.chunk.ChunkFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class BlockmaniaChunkFormatTest extends junit.framework.TestCase {
+
+    private static final int LENGTH = 16 * 128 * 16 * 2 + 1;
+
+    /**
+     * Creates data similar to a serialized chunk: layers of blocks and light values with a few
+     * scattered blocks.
+     */
+    private static byte[] createLayeredData() {
+        byte[] data = new byte[LENGTH];
+        Random random = new Random(42);
+
+        for (int i = 1; i < LENGTH; i++) {
+            int y = (i / 16) % 128;
+            data[i] = (byte) (y < 60 ? 1 : (y < 64 ? 2 : 0));
+
+            if (random.nextInt(200) == 0)
+                data[i] = (byte) random.nextInt(30);
+        }
+
+        return data;
+    }
+
+    private static void assertRoundTrip(byte[] data, ChunkCodec codec) throws IOException {
+        ByteBuffer encoded = ChunkFormat.encode(data, data.length, codec);
+
+        assertEquals(ChunkFormat.MAGIC, encoded.get(0));
+        assertEquals(codec.getId(), encoded.get(2));
+        assertTrue(Arrays.equals(data, ChunkFormat.decode(encoded, data.length)));
+    }
+
+    public void testRunLength() throws Exception {
+        ChunkCodec codec = ChunkFormat.getCodec(ChunkCodecRunLength.ID);
+
+        assertRoundTrip(createLayeredData(), codec);
+        assertRoundTrip(new byte[LENGTH], codec);
+        assertRoundTrip(new byte[]{1, 2, 2, 3, 3, 3, 4, 4, 4, 4}, codec);
+
+        byte[] random = new byte[LENGTH];
+        new Random(1).nextBytes(random);
+        assertRoundTrip(random, codec);
+
+        // Layered terrain has to shrink by at least an order of magnitude
+        assertTrue(ChunkFormat.encode(createLayeredData(), LENGTH, codec).remaining() * 10 < LENGTH);
+    }
+
+    public void testDeflate() throws Exception {
+        assertRoundTrip(createLayeredData(), ChunkFormat.getCodec(ChunkCodecDeflate.ID));
+    }
+
+    public void testLegacyAndRecode() throws Exception {
+        byte[] data = createLayeredData();
+
+        // Chunks saved without a header
+        assertTrue(Arrays.equals(data, ChunkFormat.decode(ByteBuffer.wrap(data), LENGTH)));
+
+        ByteBuffer archived = ChunkFormat.recode(ByteBuffer.wrap(data), ChunkFormat.ARCHIVE_CODEC);
+        assertEquals(ChunkCodecDeflate.ID, archived.get(2));
+        assertTrue(Arrays.equals(data, ChunkFormat.decode(archived, LENGTH)));
+    }
+
+    public void testCorruptedData() throws Exception {
+        ByteBuffer encoded = ChunkFormat.encode(createLayeredData(), LENGTH, ChunkFormat.DEFAULT_CODEC);
+        encoded.limit(encoded.limit() / 2);
+
+        try {
+            ChunkFormat.decode(encoded, LENGTH);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}
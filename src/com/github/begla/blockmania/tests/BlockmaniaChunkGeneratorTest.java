@@ -0,0 +1,141 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.generators.ChunkGenerator;
+import com.github.begla.blockmania.generators.ChunkGeneratorForest;
+import com.github.begla.blockmania.generators.ChunkGeneratorResources;
+import com.github.begla.blockmania.generators.ChunkGeneratorTerrain;
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.noise.NoiseGenerator;
+import com.github.begla.blockmania.utilities.FastRandom;
+import com.github.begla.blockmania.world.chunk.Chunk;
+import org.lwjgl.util.vector.Vector3f;
+
+public class BlockmaniaChunkGeneratorTest extends junit.framework.TestCase {
+
+    private static final String SEED = "abcd";
+
+    private static Chunk generateChunk(int chunkX, int chunkZ, ChunkGenerator... generators) {
+        Chunk chunk = new Chunk(null, new Vector3f(chunkX, 0, chunkZ), null);
+
+        for (ChunkGenerator generator : generators)
+            generator.generate(chunk);
+
+        return chunk;
+    }
+
+    private static void assertSameBlocks(Chunk expected, Chunk actual) {
+        for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
+            for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
+                for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++)
+                    assertEquals(expected.getBlock(x, y, z), actual.getBlock(x, y, z));
+            }
+        }
+    }
+
+    private static int isLeaf(byte type) {
+        return type == 0x6 || type == 0x16 ? 1 : 0;
+    }
+
+    public void testGenerationOrder() {
+        ChunkGenerator terrain = new ChunkGeneratorTerrain(SEED);
+        ChunkGenerator resources = new ChunkGeneratorResources(SEED);
+
+        Chunk first = generateChunk(3, -2, terrain, resources);
+
+        // Generating other chunks in between must not change the content of the chunk
+        generateChunk(0, 0, terrain, resources);
+        generateChunk(-7, 12, terrain, resources);
+
+        assertSameBlocks(first, generateChunk(3, -2, terrain, resources));
+        assertSameBlocks(first, generateChunk(3, -2, new ChunkGeneratorTerrain(SEED), new ChunkGeneratorResources(SEED)));
+    }
+
+    public void testForestGenerationOrder() {
+        ChunkGenerator terrain = new ChunkGeneratorTerrain(SEED);
+        ChunkGenerator resources = new ChunkGeneratorResources(SEED);
+        ChunkGenerator forest = new ChunkGeneratorForest(SEED);
+
+        int[][] positions = {{1, -1}, {2, -1}, {1, 0}, {2, 0}};
+        Chunk[] chunks = new Chunk[positions.length];
+
+        for (int i = 0; i < positions.length; i++)
+            chunks[i] = generateChunk(positions[i][0], positions[i][1], terrain, resources, forest);
+
+        // Make sure trees reach across the borders of the chunks
+        int leaves = 0;
+
+        for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
+            for (int i = 0; i < Configuration.CHUNK_DIMENSIONS.z; i++) {
+                leaves += isLeaf(chunks[0].getBlock((int) Configuration.CHUNK_DIMENSIONS.x - 1, y, i)) + isLeaf(chunks[1].getBlock(0, y, i));
+                leaves += isLeaf(chunks[2].getBlock((int) Configuration.CHUNK_DIMENSIONS.x - 1, y, i)) + isLeaf(chunks[3].getBlock(0, y, i));
+                leaves += isLeaf(chunks[0].getBlock(i, y, (int) Configuration.CHUNK_DIMENSIONS.z - 1)) + isLeaf(chunks[2].getBlock(i, y, 0));
+                leaves += isLeaf(chunks[1].getBlock(i, y, (int) Configuration.CHUNK_DIMENSIONS.z - 1)) + isLeaf(chunks[3].getBlock(i, y, 0));
+            }
+        }
+
+        assertTrue(leaves > 0);
+
+        // Generating the neighbors first must not change the content of the chunks
+        forest = new ChunkGeneratorForest(SEED);
+
+        for (int i = positions.length - 1; i >= 0; i--)
+            assertSameBlocks(chunks[i], generateChunk(positions[i][0], positions[i][1], terrain, resources, forest));
+    }
+
+    public void testParallelGeneration() throws Exception {
+        final ChunkGenerator terrain = new ChunkGeneratorTerrain(SEED);
+        final ChunkGenerator resources = new ChunkGeneratorResources(SEED);
+        final Chunk[] chunks = new Chunk[4];
+
+        Thread[] threads = new Thread[chunks.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    chunks[index] = generateChunk(index, -index, terrain, resources);
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        for (int i = 0; i < chunks.length; i++)
+            assertSameBlocks(generateChunk(i, -i, new ChunkGeneratorTerrain(SEED), new ChunkGeneratorResources(SEED)), chunks[i]);
+    }
+
+    public void testCaveSampleRates() {
+        ChunkGenerator resources = new ChunkGeneratorResources(SEED);
+        ChunkGenerator defaultTerrain = new ChunkGeneratorTerrain(SEED, NoiseGenerator.NOISE_TYPE.PERLIN,
+                ChunkGeneratorTerrain.DEFAULT_CAVE_SAMPLE_RATE_HOR, ChunkGeneratorTerrain.DEFAULT_CAVE_SAMPLE_RATE_VERT);
+
+        assertSameBlocks(generateChunk(5, 5, new ChunkGeneratorTerrain(SEED), resources), generateChunk(5, 5, defaultTerrain, resources));
+
+        // The buffers of the thread are reused for different sample rates
+        ChunkGenerator fineTerrain = new ChunkGeneratorTerrain(SEED, NoiseGenerator.NOISE_TYPE.PERLIN, 1, 1);
+        Chunk fine = generateChunk(5, 5, fineTerrain, resources);
+
+        generateChunk(5, 5, defaultTerrain, resources);
+        assertSameBlocks(fine, generateChunk(5, 5, fineTerrain, resources));
+
+        try {
+            new ChunkGeneratorTerrain(SEED, NoiseGenerator.NOISE_TYPE.PERLIN, 3, 2);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    public void testDeriveSeed() {
+        assertEquals(FastRandom.deriveSeed(42, 1, 2, 3), FastRandom.deriveSeed(42, 1, 2, 3));
+        assertFalse(FastRandom.deriveSeed(42, 1, 2, 3) == FastRandom.deriveSeed(42, 3, 2, 1));
+        assertFalse(FastRandom.deriveSeed(42, 1, 2, 3) == FastRandom.deriveSeed(43, 1, 2, 3));
+        assertFalse(FastRandom.deriveSeed(0, 0, 0, 0) == 0);
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.world.chunk.ChunkFormat;
+import com.github.begla.blockmania.world.chunk.ChunkIOService;
+import com.github.begla.blockmania.world.chunk.ChunkStore;
+import com.github.begla.blockmania.world.chunk.RegionFileCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BlockmaniaChunkIOServiceTest extends junit.framework.TestCase {
+
+    private static final int LENGTH = 1000;
+
+    private File _directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        _directory = File.createTempFile("blockmania", "io");
+        _directory.delete();
+        _directory.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File f : _directory.listFiles())
+            f.delete();
+
+        _directory.delete();
+    }
+
+    private static byte[] createData(int seed) {
+        byte[] data = new byte[LENGTH];
+        Arrays.fill(data, 0, LENGTH / 2, (byte) seed);
+        return data;
+    }
+
+    public void testWriteAndLoad() throws Exception {
+        RegionFileCache regionFiles = new RegionFileCache(_directory);
+        ChunkIOService service = new ChunkIOService(regionFiles, 4);
+
+        for (int i = 0; i < 100; i++)
+            service.queueWrite(i, -i, createData(i));
+
+        // Repeated writes are coalesced or written in order
+        service.queueWrite(5, -5, createData(42));
+
+        assertTrue(Arrays.equals(createData(42), service.loadChunk(5, -5)));
+        assertNull(service.loadChunk(1000, 0));
+
+        service.dispose();
+        assertEquals(0, service.getPendingWritesSize());
+        regionFiles.close();
+
+        regionFiles = new RegionFileCache(_directory);
+        service = new ChunkIOService(regionFiles, 1);
+
+        assertTrue(Arrays.equals(createData(42), service.loadChunk(5, -5)));
+        assertTrue(Arrays.equals(createData(99), service.loadChunk(99, -99)));
+
+        service.dispose();
+        regionFiles.close();
+    }
+
+    public void testPrefetch() throws Exception {
+        RegionFileCache regionFiles = new RegionFileCache(_directory);
+        ChunkIOService service = new ChunkIOService(regionFiles, 2);
+
+        service.queueWrite(1, 2, createData(7));
+        service.flush();
+
+        service.prefetch(1, 2);
+        service.prefetch(3, 4);
+
+        assertTrue(Arrays.equals(createData(7), service.loadChunk(1, 2)));
+        assertNull(service.loadChunk(3, 4));
+
+        service.dispose();
+        regionFiles.close();
+    }
+
+    public void testPrefetchOverlappingWrite() throws Exception {
+        final RegionFileCache regionFiles = new RegionFileCache(_directory);
+        final CountDownLatch readStarted = new CountDownLatch(1);
+        final CountDownLatch writeFinished = new CountDownLatch(1);
+        final CountDownLatch readFinished = new CountDownLatch(1);
+
+        // Blocks the read ahead after it fetched the old data until the new data is written
+        ChunkStore store = new ChunkStore() {
+            public ByteBuffer readChunk(int chunkX, int chunkZ) throws IOException {
+                ByteBuffer data = regionFiles.readChunk(chunkX, chunkZ);
+                readStarted.countDown();
+
+                try {
+                    writeFinished.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                readFinished.countDown();
+                return data;
+            }
+
+            public void writeChunk(int chunkX, int chunkZ, ByteBuffer data, boolean regenerable) throws IOException {
+                regionFiles.writeChunk(chunkX, chunkZ, data, regenerable);
+            }
+
+            public void flush() {
+                regionFiles.flush();
+            }
+
+            public void close() throws IOException {
+                regionFiles.close();
+            }
+        };
+
+        regionFiles.writeChunk(1, 2, ChunkFormat.encode(createData(7), LENGTH, ChunkFormat.DEFAULT_CODEC), false);
+
+        ChunkIOService service = new ChunkIOService(store, 2);
+        service.prefetch(1, 2);
+        readStarted.await();
+
+        service.queueWrite(1, 2, createData(8));
+        service.flush();
+        writeFinished.countDown();
+
+        // Give the read ahead the chance to store its outdated data
+        readFinished.await();
+        Thread.sleep(100);
+
+        assertTrue(Arrays.equals(createData(8), service.loadChunk(1, 2)));
+
+        service.dispose();
+        regionFiles.close();
+    }
+
+    public void testLoadDuringPrefetch() throws Exception {
+        final RegionFileCache regionFiles = new RegionFileCache(_directory);
+        final CountDownLatch readStarted = new CountDownLatch(1);
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+
+        // Blocks the read ahead until the chunk is loaded
+        ChunkStore store = new ChunkStore() {
+            public ByteBuffer readChunk(int chunkX, int chunkZ) throws IOException {
+                reads.incrementAndGet();
+                readStarted.countDown();
+
+                try {
+                    loadStarted.await();
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                return regionFiles.readChunk(chunkX, chunkZ);
+            }
+
+            public void writeChunk(int chunkX, int chunkZ, ByteBuffer data, boolean regenerable) throws IOException {
+                regionFiles.writeChunk(chunkX, chunkZ, data, regenerable);
+            }
+
+            public void flush() {
+                regionFiles.flush();
+            }
+
+            public void close() throws IOException {
+                regionFiles.close();
+            }
+        };
+
+        regionFiles.writeChunk(1, 2, ChunkFormat.encode(createData(7), LENGTH, ChunkFormat.DEFAULT_CODEC), false);
+
+        ChunkIOService service = new ChunkIOService(store, 2);
+        service.prefetch(1, 2);
+        readStarted.await();
+
+        // The chunk is not read a second time
+        loadStarted.countDown();
+        assertTrue(Arrays.equals(createData(7), service.loadChunk(1, 2)));
+        assertEquals(1, reads.get());
+
+        service.dispose();
+        regionFiles.close();
+    }
+
+    public void testFailedWrite() throws Exception {
+        final RegionFileCache regionFiles = new RegionFileCache(_directory);
+        final boolean[] fail = {true};
+
+        ChunkStore store = new ChunkStore() {
+            public ByteBuffer readChunk(int chunkX, int chunkZ) throws IOException {
+                return regionFiles.readChunk(chunkX, chunkZ);
+            }
+
+            public void writeChunk(int chunkX, int chunkZ, ByteBuffer data, boolean regenerable) throws IOException {
+                if (fail[0])
+                    throw new IOException("Disk full.");
+
+                regionFiles.writeChunk(chunkX, chunkZ, data, regenerable);
+            }
+
+            public void flush() {
+                regionFiles.flush();
+            }
+
+            public void close() throws IOException {
+                regionFiles.close();
+            }
+        };
+
+        ChunkIOService service = new ChunkIOService(store, 2);
+        service.queueWrite(1, 2, createData(7));
+        service.flush();
+
+        // The chunk has to be written again
+        assertTrue(service.isWriteFailed(1, 2));
+        assertFalse(service.isWriteFailed(2, 1));
+        assertNull(service.loadChunk(1, 2));
+
+        fail[0] = false;
+        service.queueWrite(1, 2, createData(7));
+        assertFalse(service.isWriteFailed(1, 2));
+        service.flush();
+
+        assertFalse(service.isWriteFailed(1, 2));
+        assertTrue(Arrays.equals(createData(7), service.loadChunk(1, 2)));
+
+        service.dispose();
+        regionFiles.close();
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.world.chunk.ChunkIOService;
+import com.github.begla.blockmania.world.chunk.ChunkMemoryStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class BlockmaniaChunkMemoryStoreTest extends junit.framework.TestCase {
+
+    private static ByteBuffer createData(int length, int seed) {
+        ByteBuffer data = ByteBuffer.allocate(length);
+
+        for (int i = 0; i < length; i++)
+            data.put((byte) (i * 31 + seed));
+
+        data.flip();
+        return data;
+    }
+
+    public void testReadWrite() throws Exception {
+        ChunkMemoryStore store = new ChunkMemoryStore(64 * 1024);
+
+        assertNull(store.readChunk(1, 2));
+
+        store.writeChunk(1, 2, createData(3000, 1), false);
+        store.writeChunk(-1, -2, createData(100, 2), false);
+
+        assertEquals(createData(3000, 1), store.readChunk(1, 2));
+        assertEquals(createData(100, 2), store.readChunk(-1, -2));
+        assertEquals(4 * ChunkMemoryStore.BLOCK_SIZE, store.getUsedBytes());
+
+        // Rewriting releases the old blocks
+        store.writeChunk(1, 2, createData(500, 3), false);
+        assertEquals(createData(500, 3), store.readChunk(1, 2));
+        assertEquals(2 * ChunkMemoryStore.BLOCK_SIZE, store.getUsedBytes());
+    }
+
+    public void testLeastRecentlyUsedChunksAreDropped() throws Exception {
+        ChunkMemoryStore store = new ChunkMemoryStore(8 * ChunkMemoryStore.BLOCK_SIZE);
+
+        for (int i = 0; i < 4; i++)
+            store.writeChunk(i, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, i), true);
+
+        // Chunk 0 was used recently, so chunk 1 is dropped first
+        store.readChunk(0, 0);
+        store.writeChunk(4, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, 4), true);
+
+        assertNull(store.readChunk(1, 0));
+        assertEquals(createData(2 * ChunkMemoryStore.BLOCK_SIZE, 0), store.readChunk(0, 0));
+        assertEquals(createData(2 * ChunkMemoryStore.BLOCK_SIZE, 4), store.readChunk(4, 0));
+        assertEquals(4, store.size());
+        assertEquals(1, store.getDroppedChunks());
+
+        // Chunks larger than the arena are not stored at all and do not replace the old data
+        store.writeChunk(0, 0, createData(ChunkMemoryStore.BLOCK_SIZE, 5), true);
+
+        try {
+            store.writeChunk(0, 0, createData(9 * ChunkMemoryStore.BLOCK_SIZE, 6), true);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        assertEquals(createData(ChunkMemoryStore.BLOCK_SIZE, 5), store.readChunk(0, 0));
+    }
+
+    public void testEditedChunksAreKept() throws Exception {
+        ChunkMemoryStore store = new ChunkMemoryStore(8 * ChunkMemoryStore.BLOCK_SIZE);
+
+        store.writeChunk(0, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, 0), false);
+        store.writeChunk(1, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, 1), true);
+        store.writeChunk(2, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, 2), false);
+        store.writeChunk(3, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, 3), false);
+
+        // Only the chunk which was not edited can be dropped, although chunk 0 was used longer ago
+        store.writeChunk(4, 0, createData(2 * ChunkMemoryStore.BLOCK_SIZE, 4), false);
+
+        assertNull(store.readChunk(1, 0));
+        assertEquals(createData(2 * ChunkMemoryStore.BLOCK_SIZE, 0), store.readChunk(0, 0));
+        assertEquals(1, store.getDroppedChunks());
+
+        // The arena is full of edited chunks
+        try {
+            store.writeChunk(5, 0, createData(ChunkMemoryStore.BLOCK_SIZE, 5), true);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        assertNull(store.readChunk(5, 0));
+        assertEquals(4, store.size());
+        assertEquals(8 * ChunkMemoryStore.BLOCK_SIZE, store.getUsedBytes());
+
+        // Edited chunks which do not fit anymore are stored beyond the capacity
+        store.writeChunk(2, 0, createData(3 * ChunkMemoryStore.BLOCK_SIZE, 6), false);
+        store.writeChunk(5, 0, createData(9 * ChunkMemoryStore.BLOCK_SIZE, 7), false);
+
+        assertEquals(createData(3 * ChunkMemoryStore.BLOCK_SIZE, 6), store.readChunk(2, 0));
+        assertEquals(createData(9 * ChunkMemoryStore.BLOCK_SIZE, 7), store.readChunk(5, 0));
+        assertEquals(createData(2 * ChunkMemoryStore.BLOCK_SIZE, 0), store.readChunk(0, 0));
+        assertEquals(5, store.size());
+        assertEquals(1, store.getDroppedChunks());
+    }
+
+    public void testEvictedEditedChunksAreKept() throws Exception {
+        ChunkMemoryStore store = new ChunkMemoryStore(8 * ChunkMemoryStore.BLOCK_SIZE);
+        ChunkIOService ioService = new ChunkIOService(store, 2);
+        Random random = new Random(1);
+        byte[][] chunks = new byte[32][];
+
+        try {
+            // Evict edited chunks which do not compress into a small store
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = new byte[2 * ChunkMemoryStore.BLOCK_SIZE];
+                random.nextBytes(chunks[i]);
+
+                ioService.queueWrite(i, 0, chunks[i], false);
+            }
+
+            ioService.flush();
+
+            for (int i = 0; i < chunks.length; i++)
+                assertTrue(Arrays.equals(chunks[i], ioService.loadChunk(i, 0)));
+
+            assertEquals(chunks.length, store.size());
+            assertEquals(0, store.getDroppedChunks());
+        } finally {
+            ioService.dispose();
+        }
+    }
+
+    public void testArenaIsAllocatedLazily() throws Exception {
+        ChunkMemoryStore store = new ChunkMemoryStore(64 * 1024 * 1024);
+        assertEquals(0, store.getAllocatedBytes());
+
+        store.writeChunk(0, 0, createData(3000, 1), false);
+        assertEquals(1024 * 1024, store.getAllocatedBytes());
+
+        // Chunks spanning multiple slabs are split up
+        store.writeChunk(1, 0, createData(2 * 1024 * 1024, 2), false);
+
+        assertEquals(createData(3000, 1), store.readChunk(0, 0));
+        assertEquals(createData(2 * 1024 * 1024, 2), store.readChunk(1, 0));
+        assertEquals(3 * 1024 * 1024, store.getAllocatedBytes());
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.world.chunk.ChunkMesh;
+import com.github.begla.blockmania.world.chunk.ChunkMeshBuilder;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.util.vector.Vector4f;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class BlockmaniaChunkMeshBuilderTest extends junit.framework.TestCase {
+
+    private final ChunkMeshBuilder _builder = ChunkMeshBuilder.getInstance();
+    private final Vector4f _color = new Vector4f(1.0f, 0.5f, 0.0f, 1.0f);
+
+    @Override
+    protected void setUp() throws Exception {
+        _builder.reset();
+    }
+
+    public void testBuild() throws Exception {
+        _builder.setOrigin(-32, 16, 64);
+
+        // Enough quads to grow the initial arrays
+        for (int i = 0; i < 4000; i++)
+            _builder.addVertex(0, -32 + (i % 16), 16.25f, 63.5f, 35, 1, 0, 1.0f, 0.5f, _color);
+
+        for (int i = 0; i < 4; i++)
+            _builder.addVertex(2, 0, 0, 0, 0, 16, 2, 0, 0, _color);
+
+        assertEquals(4000, _builder.getVertexCount(0));
+
+        ChunkMesh mesh = new ChunkMesh();
+        _builder.build(mesh);
+
+        assertEquals(0, _builder.getVertexCount(0));
+
+        ChunkMesh.VertexElements opaque = mesh._vertexElements[0];
+        assertEquals(4000 * ChunkMeshBuilder.VERTEX_SIZE, opaque.vertices.limit());
+        assertEquals(4000, opaque.vertexCount);
+        assertEquals(1000 * 6, opaque.indexCount);
+        assertEquals(GL11.GL_UNSIGNED_SHORT, opaque.indexType);
+
+        ByteBuffer vertices = opaque.vertices.duplicate().order(ByteOrder.nativeOrder());
+        int last = 3999 * ChunkMeshBuilder.VERTEX_SIZE;
+
+        assertEquals(15 * ChunkMeshBuilder.POSITION_SCALE, vertices.getShort(last));
+        assertEquals(ChunkMeshBuilder.POSITION_SCALE / 4, vertices.getShort(last + 2));
+        assertEquals(-ChunkMeshBuilder.POSITION_SCALE / 2, vertices.getShort(last + 4));
+        assertEquals(35, vertices.getShort(last + 6));
+        assertEquals(255, vertices.get(last + 8) & 0xFF);
+        assertEquals(128, vertices.get(last + 9) & 0xFF);
+        assertEquals(1, vertices.get(last + 10));
+        assertEquals(0, vertices.get(last + 11));
+        assertEquals(255, vertices.get(last + 12) & 0xFF);
+        assertEquals(0, vertices.get(last + 14));
+
+        ByteBuffer indices = opaque.indices.duplicate().order(ByteOrder.nativeOrder());
+        assertEquals(3996, indices.getShort(999 * 6 * 2));
+        assertEquals(3998, indices.getShort((999 * 6 + 2) * 2));
+        assertEquals(3999, indices.getShort((999 * 6 + 4) * 2));
+
+        ChunkMesh.VertexElements billboards = mesh._vertexElements[2];
+        assertEquals(6, billboards.indexCount);
+        assertEquals(16, billboards.vertices.get(10));
+        assertEquals(2, billboards.vertices.get(11));
+
+        // No buffers are allocated for empty vertex elements
+        assertNull(mesh._vertexElements[1].vertices);
+        assertNull(mesh._vertexElements[1].indices);
+        assertEquals(0, mesh._vertexElements[1].indexCount);
+    }
+
+    public void testIntIndices() throws Exception {
+        for (int i = 0; i < 70000; i++)
+            _builder.addVertex(1, 0, 0, 0, 0, 0, 0, 0, 0, _color);
+
+        ChunkMesh mesh = new ChunkMesh();
+        _builder.build(mesh);
+
+        ChunkMesh.VertexElements translucent = mesh._vertexElements[1];
+        assertEquals(GL11.GL_UNSIGNED_INT, translucent.indexType);
+        assertEquals(70000 / 4 * 6 * 4, translucent.indices.limit());
+        assertEquals(69999, translucent.indices.duplicate().order(ByteOrder.nativeOrder()).getInt((70000 / 4 * 6 - 2) * 4));
+    }
+
+    public void testReset() throws Exception {
+        _builder.addVertex(1, 0, 0, 0, 0, 0, 0, 0, 0, _color);
+        assertEquals(1, _builder.getVertexCount(1));
+
+        _builder.reset();
+        assertEquals(0, _builder.getVertexCount(1));
+    }
+
+}
@@ -1,10 +1,16 @@
 package com.github.begla.blockmania.tests;
 
 
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.world.World;
 import com.github.begla.blockmania.world.chunk.Chunk;
+import com.github.begla.blockmania.world.chunk.ChunkSection;
 import org.junit.Test;
 import org.lwjgl.util.vector.Vector3f;
 
+import java.io.File;
+import java.util.Arrays;
+
 public class BlockmaniaChunkTest extends junit.framework.TestCase {
 
 
@@ -39,4 +45,197 @@ public class BlockmaniaChunkTest extends junit.framework.TestCase {
         assertEquals(-17, chunk2.getBlockWorldPosZ(blockPosZ));
     }
 
+    private static byte[] getBlocks(Chunk chunk) {
+        byte[] blocks = new byte[(int) (Configuration.CHUNK_DIMENSIONS.x * Configuration.CHUNK_DIMENSIONS.y * Configuration.CHUNK_DIMENSIONS.z)];
+        int i = 0;
+
+        for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
+            for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
+                for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++)
+                    blocks[i++] = chunk.getBlock(x, y, z);
+            }
+        }
+
+        return blocks;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+
+        file.delete();
+    }
+
+    public void testEditLogRegeneration() throws Exception {
+        boolean deltaSaves = Configuration.getSettingBoolean("DELTA_SAVES");
+        Configuration.setSetting("DELTA_SAVES", true);
+
+        World world = new World("EditLogTest" + System.nanoTime(), "abcd", true);
+
+        try {
+            Chunk[] neighbors = new Chunk[9];
+
+            for (int i = 0; i < neighbors.length; i++) {
+                neighbors[i] = world.getChunkCache().loadOrCreateChunk(1 + i / 3, -1 + i % 3);
+                neighbors[i].generate();
+            }
+
+            Chunk chunk = neighbors[4];
+            chunk.setBlock(7, 120, 7, (byte) 0x1);
+            assertTrue(chunk.writeChunkToDisk());
+
+            byte[][] blocks = new byte[neighbors.length][];
+
+            for (int i = 0; i < neighbors.length; i++)
+                blocks[i] = getBlocks(neighbors[i]);
+
+            // Loading the chunk regenerates it, which must not touch the loaded neighbors
+            Chunk loaded = world.prepareNewChunk(2, 0);
+            assertTrue(loaded.generate());
+
+            assertTrue(Arrays.equals(blocks[4], getBlocks(loaded)));
+
+            for (int i = 0; i < neighbors.length; i++)
+                assertTrue(Arrays.equals(blocks[i], getBlocks(neighbors[i])));
+        } finally {
+            world.dispose();
+            delete(new File(world.getWorldSavePath()));
+
+            Configuration.setSetting("DELTA_SAVES", deltaSaves);
+        }
+    }
+
+    public void testEditWhileLighting() throws Exception {
+        World world = new World("LightingTest" + System.nanoTime(), "abcd", true);
+
+        try {
+            for (int i = 0; i < 9; i++)
+                world.getChunkCache().loadOrCreateChunk(1 + i / 3, -1 + i % 3).generate();
+
+            final Chunk chunk = world.getChunkCache().loadOrCreateChunk(2, 0);
+            final Throwable[] error = new Throwable[1];
+            assertTrue(chunk.isLightDirty());
+
+            Thread lighting = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        chunk.updateLight();
+                    } catch (Throwable t) {
+                        error[0] = t;
+                    }
+                }
+            });
+
+            lighting.start();
+
+            // Place blocks within the upper sections while the light spreads through them
+            int placed = 0;
+
+            while (lighting.isAlive() && placed < 16 * 16 * 64) {
+                chunk.setBlock(placed % 16, 64 + placed / 256, (placed / 16) % 16, (byte) 0x1);
+                placed++;
+            }
+
+            lighting.join();
+            assertNull(error[0]);
+
+            for (int i = 0; i < placed; i++)
+                assertEquals(1, chunk.getBlock(i % 16, 64 + i / 256, (i / 16) % 16));
+        } finally {
+            world.dispose();
+            delete(new File(world.getWorldSavePath()));
+        }
+    }
+
+    public void testModificationCount() throws Exception {
+        Chunk chunk = new Chunk(null, new Vector3f(0, 0, 0), null);
+        int count = chunk.getModificationCount();
+
+        chunk.setBlock(1, 2, 3, (byte) 1);
+        assertEquals(count + 1, chunk.getModificationCount());
+
+        // Setting the same values again is not a modification
+        chunk.setBlock(1, 2, 3, (byte) 1);
+        chunk.setLight(1, 2, 3, (byte) 0, Chunk.LIGHT_TYPE.BLOCK);
+        assertEquals(count + 1, chunk.getModificationCount());
+
+        chunk.setLight(1, 2, 3, (byte) 5, Chunk.LIGHT_TYPE.BLOCK);
+        assertEquals(count + 2, chunk.getModificationCount());
+    }
+
+    public void testParallelModificationCount() throws Exception {
+        final Chunk chunk = new Chunk(null, new Vector3f(0, 0, 0), null);
+        int count = chunk.getModificationCount();
+
+        // Each thread modifies the blocks of its own section
+        Thread[] threads = new Thread[ChunkSection.SECTIONS_PER_CHUNK];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int section = i;
+
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
+                        for (int y = 0; y < ChunkSection.HEIGHT; y++) {
+                            for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++)
+                                chunk.setBlock(x, section * ChunkSection.HEIGHT + y, z, (byte) 1);
+                        }
+                    }
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(count + getBlocks(chunk).length, chunk.getModificationCount());
+    }
+
+    public void testSectionLayers() throws Exception {
+        ChunkSection section = new ChunkSection((byte) 1, (byte) 15, (byte) 0);
+        section.setBlock(3, 4, 5, (byte) 7);
+        section.setLight(3, 0, 0, (byte) 9);
+
+        byte[] blocks = new byte[ChunkSection.LAYER_SIZE];
+        byte[] light = new byte[ChunkSection.LAYER_SIZE];
+        section.getLayer(ChunkSection.CHANNEL_BLOCKS, 3, blocks, 0);
+        section.getLayer(ChunkSection.CHANNEL_LIGHT, 3, light, 0);
+
+        assertEquals(7, blocks[4 * 16 + 5]);
+        assertEquals(1, blocks[4 * 16 + 6]);
+        assertEquals(9, light[0]);
+
+        ChunkSection copy = new ChunkSection((byte) 0, (byte) 0, (byte) 0);
+        byte[] layer = new byte[ChunkSection.LAYER_SIZE];
+
+        for (int x = 0; x < 16; x++) {
+            for (int channel = ChunkSection.CHANNEL_BLOCKS; channel <= ChunkSection.CHANNEL_LIGHT; channel++) {
+                section.getLayer(channel, x, layer, 0);
+                copy.setLayer(channel, x, layer, 0);
+            }
+        }
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < ChunkSection.HEIGHT; y++) {
+                for (int z = 0; z < 16; z++) {
+                    assertEquals(section.getBlock(x, y, z), copy.getBlock(x, y, z));
+                    assertEquals(section.getSunlight(x, y, z), copy.getSunlight(x, y, z));
+                    assertEquals(section.getLight(x, y, z), copy.getLight(x, y, z));
+                }
+            }
+        }
+
+        // Layers matching the uniform value don't allocate any storage
+        ChunkSection uniform = new ChunkSection((byte) 2, (byte) 0, (byte) 0);
+        Arrays.fill(layer, (byte) 2);
+        uniform.setLayer(ChunkSection.CHANNEL_BLOCKS, 0, layer, 0);
+        assertTrue(uniform.isBlockUniform());
+    }
+
 }
@@ -0,0 +1,51 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.datastructures.BlockmaniaIntQueue;
+
+public class BlockmaniaIntQueueTest extends junit.framework.TestCase {
+
+    private final BlockmaniaIntQueue _queue = new BlockmaniaIntQueue(4);
+
+    public void testOrder() throws Exception {
+        assertTrue(_queue.isEmpty());
+
+        _queue.add(1);
+        _queue.add(2);
+        _queue.add(3);
+
+        assertEquals(3, _queue.size());
+        assertEquals(1, _queue.poll());
+        assertEquals(2, _queue.poll());
+        assertEquals(3, _queue.poll());
+        assertTrue(_queue.isEmpty());
+    }
+
+    public void testWrapAroundAndGrowth() throws Exception {
+        int next = 0, expected = 0;
+
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < round % 7 + 1; i++)
+                _queue.add(next++);
+
+            for (int i = 0; i < round % 5 && !_queue.isEmpty(); i++)
+                assertEquals(expected++, _queue.poll());
+        }
+
+        while (!_queue.isEmpty())
+            assertEquals(expected++, _queue.poll());
+
+        assertEquals(next, expected);
+        assertTrue(_queue.getCapacity() > 4);
+    }
+
+    public void testPollEmpty() throws Exception {
+        try {
+            _queue.poll();
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+}
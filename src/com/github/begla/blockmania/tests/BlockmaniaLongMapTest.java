@@ -0,0 +1,93 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.datastructures.BlockmaniaLongMap;
+import com.github.begla.blockmania.utilities.MathHelper;
+import javolution.util.FastList;
+
+import java.util.HashMap;
+
+public class BlockmaniaLongMapTest extends junit.framework.TestCase {
+
+    private final BlockmaniaLongMap<String> _map = new BlockmaniaLongMap<String>();
+
+    public void testPutAndGet() throws Exception {
+        assertNull(_map.get(1L));
+        assertNull(_map.put(1L, "a"));
+        assertEquals("a", _map.get(1L));
+        assertEquals("a", _map.put(1L, "b"));
+        assertEquals("b", _map.get(1L));
+        assertEquals("b", _map.putIfAbsent(1L, "c"));
+        assertEquals("b", _map.get(1L));
+        assertEquals(1, _map.size());
+    }
+
+    public void testRemoveAndReinsert() throws Exception {
+        for (int i = 0; i < 100; i++)
+            _map.put(i, "v" + i);
+
+        for (int i = 0; i < 100; i += 2)
+            assertEquals("v" + i, _map.remove(i));
+
+        assertEquals(50, _map.size());
+        assertNull(_map.get(10L));
+        assertEquals("v11", _map.get(11L));
+
+        _map.put(10L, "again");
+        assertEquals("again", _map.get(10L));
+        assertEquals(51, _map.size());
+    }
+
+    public void testPackedCoordinates() throws Exception {
+        long key = MathHelper.packCoordinates(-100000, 123456);
+
+        assertEquals(-100000, MathHelper.unpackX(key));
+        assertEquals(123456, MathHelper.unpackZ(key));
+        assertTrue(MathHelper.packCoordinates(1, -1) != MathHelper.packCoordinates(-1, 1));
+    }
+
+    public void testRegion() throws Exception {
+        for (int x = -10; x < 10; x++)
+            for (int z = -10; z < 10; z++)
+                _map.put(MathHelper.packCoordinates(x, z), x + "," + z);
+
+        FastList<String> small = new FastList<String>();
+        _map.valuesInRegion(-1, -1, 1, 1, small);
+        assertEquals(9, small.size());
+        assertTrue(small.contains("-1,1"));
+
+        FastList<String> large = new FastList<String>();
+        _map.valuesInRegion(-1000, 0, 1000, 0, large);
+        assertEquals(20, large.size());
+        assertTrue(large.contains("9,0"));
+    }
+
+    public void testAgainstHashMap() throws Exception {
+        HashMap<Long, String> reference = new HashMap<Long, String>();
+        java.util.Random rand = new java.util.Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            long key = MathHelper.packCoordinates(rand.nextInt(64) - 32, rand.nextInt(64) - 32);
+
+            if (rand.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), _map.remove(key));
+            } else {
+                String value = Integer.toString(i);
+                assertEquals(reference.put(key, value), _map.put(key, value));
+            }
+        }
+
+        assertEquals(reference.size(), _map.size());
+
+        int count = 0;
+        for (String value : _map) {
+            assertTrue(reference.containsValue(value));
+            count++;
+        }
+        assertEquals(reference.size(), count);
+
+        for (Long key : reference.keySet())
+            assertEquals(reference.get(key), _map.get(key));
+    }
+
+}
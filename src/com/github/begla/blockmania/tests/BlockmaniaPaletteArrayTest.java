@@ -0,0 +1,93 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.datastructures.BlockmaniaPaletteArray;
+import com.github.begla.blockmania.utilities.FastRandom;
+
+public class BlockmaniaPaletteArrayTest extends junit.framework.TestCase {
+
+    private final byte[][][] _testArray = new byte[16][128][16];
+    private final BlockmaniaPaletteArray _array = new BlockmaniaPaletteArray(16, 128, 16);
+
+    public void testOrigin() throws Exception {
+        assertEquals(0, _array.get(0, 0, 0));
+        _array.set(0, 0, 0, (byte) 15);
+        assertEquals(15, _array.get(0, 0, 0));
+        _array.set(0, 0, 0, (byte) 3);
+        assertEquals(3, _array.get(0, 0, 0));
+    }
+
+    public void testBitWidthGrowth() throws Exception {
+        assertEquals(0, _array.getBitsPerEntry());
+
+        _array.set(1, 2, 3, (byte) 1);
+        assertEquals(1, _array.getBitsPerEntry());
+
+        _array.set(1, 2, 4, (byte) 2);
+        assertEquals(2, _array.getBitsPerEntry());
+
+        for (int i = 3; i < 17; i++)
+            _array.set(i % 16, 5, 5, (byte) i);
+        assertEquals(8, _array.getBitsPerEntry());
+
+        assertEquals(1, _array.get(1, 2, 3));
+        assertEquals(2, _array.get(1, 2, 4));
+        assertEquals(16, _array.get(0, 5, 5));
+    }
+
+    public void testCompact() throws Exception {
+        for (int i = 0; i < 16; i++)
+            _array.set(i, 0, 0, (byte) i);
+
+        for (int i = 0; i < 16; i++)
+            _array.set(i, 0, 0, (byte) 0x3);
+
+        _array.compact();
+        assertEquals(1, _array.getBitsPerEntry());
+        assertEquals(3, _array.get(4, 0, 0));
+        assertEquals(0, _array.get(4, 1, 0));
+
+        for (int i = 0; i < 16; i++)
+            _array.set(i, 0, 0, (byte) 0x0);
+
+        _array.compact();
+        assertTrue(_array.isUniform());
+        assertEquals(0, _array.get(4, 0, 0));
+    }
+
+    public void testRawBytes() throws Exception {
+        _array.set(15, 127, 15, (byte) 7);
+        assertEquals(7, _array.getRawByte(_array.getSize() - 1));
+
+        _array.setRawByte(0, (byte) -5);
+        assertEquals(-5, _array.get(0, 0, 0));
+    }
+
+    public void testAgainstArray() throws Exception {
+
+        FastRandom rand = new FastRandom();
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 128; y++) {
+                for (int z = 0; z < 16; z++) {
+                    int r = rand.randomInt();
+                    r = (r < 0) ? -r : r;
+
+                    _testArray[x][y][z] = (byte) (r % 36);
+                    _array.set(x, y, z, _testArray[x][y][z]);
+                }
+            }
+        }
+
+        _array.compact();
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 128; y++) {
+                for (int z = 0; z < 16; z++) {
+                    assertEquals(_testArray[x][y][z], _array.get(x, y, z));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.noise.PerlinNoise;
+
+public class BlockmaniaPerlinNoiseTest extends junit.framework.TestCase {
+
+    private static final int SIZE_X = 5, SIZE_Y = 3, SIZE_Z = 17;
+
+    private final PerlinNoise _noise = new PerlinNoise(42);
+
+    public void testFastFloor() {
+        assertEquals(1, PerlinNoise.fastFloor(1.5));
+        assertEquals(-2, PerlinNoise.fastFloor(-1.5));
+        assertEquals(-1, PerlinNoise.fastFloor(-1.0));
+        assertEquals(0, PerlinNoise.fastFloor(0.0));
+        assertEquals(-1, PerlinNoise.fastFloor(-0.25f));
+    }
+
+    public void testGridNoise() {
+        double[] result = new double[SIZE_X * SIZE_Y * SIZE_Z];
+        _noise.noise(result, -3.7, 0.2, 12.1, 0.31, 1.7, -0.43, SIZE_X, SIZE_Y, SIZE_Z);
+
+        int i = 0;
+
+        for (int x = 0; x < SIZE_X; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_Z; z++, i++)
+                    assertEquals(_noise.noise(-3.7 + x * 0.31, 0.2 + y * 1.7, 12.1 + z * -0.43), result[i], 1e-12);
+            }
+        }
+    }
+
+    public void testGridFBm() {
+        double[] result = new double[SIZE_X * SIZE_Y * SIZE_Z];
+        float[] resultFloat = new float[SIZE_X * SIZE_Y * SIZE_Z];
+
+        _noise.fBm(result, -30.5, 0, 7.25, 0.0173, 0.06, 0.0173, SIZE_X, SIZE_Y, SIZE_Z, 7, 2.1836171, 0.7631);
+        _noise.fBm(resultFloat, -30.5f, 0, 7.25f, 0.0173f, 0.06f, 0.0173f, SIZE_X, SIZE_Y, SIZE_Z, 7, 2.1836171, 0.7631);
+
+        int i = 0;
+
+        for (int x = 0; x < SIZE_X; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_Z; z++, i++) {
+                    double expected = _noise.fBm(-30.5 + x * 0.0173, y * 0.06, 7.25 + z * 0.0173, 7, 2.1836171, 0.7631);
+
+                    assertEquals(expected, result[i], 1e-9);
+                    assertEquals(expected, resultFloat[i], 1e-3);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.utilities.MathHelper;
+import com.github.begla.blockmania.world.chunk.RegionFile;
+import com.github.begla.blockmania.world.chunk.RegionFileCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+
+public class BlockmaniaRegionFileTest extends junit.framework.TestCase {
+
+    private File _directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        _directory = File.createTempFile("blockmania", "regions");
+        _directory.delete();
+        _directory.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File f : _directory.listFiles())
+            f.delete();
+
+        _directory.delete();
+    }
+
+    private static ByteBuffer createData(int length, int seed) {
+        ByteBuffer data = ByteBuffer.allocate(length);
+
+        for (int i = 0; i < length; i++)
+            data.put((byte) (i * 31 + seed));
+
+        data.flip();
+        return data;
+    }
+
+    public void testReadWrite() throws Exception {
+        RegionFile regionFile = new RegionFile(new File(_directory, "test.bcr"));
+
+        assertNull(regionFile.readChunk(3, 4));
+
+        regionFile.writeChunk(3, 4, createData(10000, 1));
+        regionFile.writeChunk(31, 31, createData(100, 2));
+
+        assertTrue(regionFile.hasChunk(3, 4));
+        assertFalse(regionFile.hasChunk(4, 3));
+        regionFile.close();
+
+        // Reopen the file to check the header
+        regionFile = new RegionFile(new File(_directory, "test.bcr"));
+        assertEquals(createData(10000, 1), regionFile.readChunk(3, 4));
+        assertEquals(createData(100, 2), regionFile.readChunk(31, 31));
+        regionFile.close();
+    }
+
+    public void testRewriteAndCompact() throws Exception {
+        RegionFile regionFile = new RegionFile(new File(_directory, "test.bcr"));
+
+        regionFile.writeChunk(0, 0, createData(5000, 1));
+        regionFile.writeChunk(1, 0, createData(5000, 2));
+        int sectors = regionFile.getSectorCount();
+
+        // Smaller data is rewritten in place
+        regionFile.writeChunk(0, 0, createData(3000, 3));
+        assertEquals(sectors, regionFile.getSectorCount());
+        assertEquals(1, regionFile.getFreeSectorCount());
+
+        // Larger data is moved to the end of the file
+        regionFile.writeChunk(0, 0, createData(9000, 4));
+        assertEquals(sectors + 3, regionFile.getSectorCount());
+        assertEquals(2, regionFile.getFreeSectorCount());
+
+        assertEquals(2, regionFile.compact());
+        assertEquals(0, regionFile.getFreeSectorCount());
+        assertEquals(sectors + 1, regionFile.getSectorCount());
+        assertEquals(createData(9000, 4), regionFile.readChunk(0, 0));
+        assertEquals(createData(5000, 2), regionFile.readChunk(1, 0));
+
+        regionFile.close();
+    }
+
+    public void testMappedWindows() throws Exception {
+        RegionFile regionFile = new RegionFile(new File(_directory, "test.bcr"));
+
+        // Spans multiple mapped windows and forces windows to be released
+        for (int i = 0; i < 12; i++)
+            regionFile.writeChunk(i, 0, createData(700000, i));
+
+        for (int i = 0; i < 12; i++)
+            assertEquals(createData(700000, i), regionFile.readChunk(i, 0));
+
+        regionFile.flush();
+        regionFile.close();
+
+        regionFile = new RegionFile(new File(_directory, "test.bcr"));
+        assertEquals(0, regionFile.getFreeSectorCount());
+        assertEquals(createData(700000, 11), regionFile.readChunk(11, 0));
+        regionFile.close();
+    }
+
+    public void testOpenRegionFilesAreLimited() throws Exception {
+        RegionFileCache regionFiles = new RegionFileCache(_directory);
+        int regions = RegionFileCache.MAX_OPEN_REGION_FILES + 8;
+
+        for (int i = 0; i < regions; i++) {
+            regionFiles.writeChunk(i * RegionFile.REGION_SIZE, 3, createData(5000, i), false);
+            assertTrue(regionFiles.getOpenRegionFileCount() <= RegionFileCache.MAX_OPEN_REGION_FILES);
+        }
+
+        assertEquals(regions, _directory.listFiles().length);
+
+        // The closed region files are opened again
+        for (int i = 0; i < regions; i++)
+            assertEquals(createData(5000, i), regionFiles.readChunk(i * RegionFile.REGION_SIZE, 3));
+
+        assertEquals(RegionFileCache.MAX_OPEN_REGION_FILES, regionFiles.getOpenRegionFileCount());
+
+        regionFiles.close();
+    }
+
+    public void testMigration() throws Exception {
+        FileOutputStream oS = new FileOutputStream(new File(_directory, MathHelper.cantorize(-33, 7) + ".bc"));
+        oS.write(createData(1000, 5).array());
+        oS.close();
+
+        RegionFileCache regionFiles = new RegionFileCache(_directory);
+
+        assertEquals(createData(1000, 5), regionFiles.readChunk(-33, 7));
+        assertNull(regionFiles.readChunk(33, 7));
+        assertEquals(0, _directory.listFiles().length - 1);
+
+        regionFiles.close();
+    }
+
+}
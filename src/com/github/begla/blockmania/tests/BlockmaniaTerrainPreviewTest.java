@@ -0,0 +1,55 @@
+package com.github.begla.blockmania.tests;
+
+
+import com.github.begla.blockmania.debug.TerrainPreviewGenerator;
+import com.github.begla.blockmania.noise.NoiseGenerator;
+
+import java.awt.image.BufferedImage;
+import java.util.zip.CRC32;
+
+public class BlockmaniaTerrainPreviewTest extends junit.framework.TestCase {
+
+    private static final int SIZE = 256;
+
+    /* CHECKSUMS OF KNOWN GOOD IMAGES, CHANGES OF THE NOISE GENERATORS MUST NOT ALTER EXISTING WORLDS */
+
+    private static long checksum(BufferedImage image) {
+        CRC32 crc = new CRC32();
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+
+                crc.update(rgb >> 16);
+                crc.update(rgb >> 8);
+                crc.update(rgb);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    public void testPerlinPreview() {
+        TerrainPreviewGenerator gen = new TerrainPreviewGenerator("abcd", NoiseGenerator.NOISE_TYPE.PERLIN);
+
+        assertEquals(3972080095L, checksum(gen.createBiomeMap(SIZE)));
+        assertEquals(3330657432L, checksum(gen.createBaseTerrainImage(SIZE)));
+    }
+
+    public void testSimplexPreview() {
+        TerrainPreviewGenerator gen = new TerrainPreviewGenerator("abcd", NoiseGenerator.NOISE_TYPE.SIMPLEX);
+
+        assertEquals(3055791767L, checksum(gen.createBiomeMap(SIZE)));
+        assertEquals(2610598453L, checksum(gen.createBaseTerrainImage(SIZE)));
+    }
+
+    public void testSimplexRange() {
+        NoiseGenerator noise = NoiseGenerator.create(NoiseGenerator.NOISE_TYPE.SIMPLEX, 42);
+
+        for (int i = 0; i < 10000; i++) {
+            double value = noise.noise(i * 0.137, i * -0.071, i * 0.029);
+            assertTrue(value >= -1.0 && value <= 1.0);
+        }
+    }
+
+}
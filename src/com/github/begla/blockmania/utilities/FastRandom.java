@@ -119,6 +119,28 @@ public class FastRandom {
         return u1 * p; // or u2 * p
     }
 
+    /**
+     * Derives a seed from a base seed and a position, so each position gets its own sequence of
+     * random values which does not depend on the order the positions are processed in.
+     *
+     * @param seed The base seed
+     * @param x    The position on the x-axis
+     * @param y    The position on the y-axis
+     * @param z    The position on the z-axis
+     * @return The derived seed (never zero, which would stall the generator)
+     */
+    public static long deriveSeed(long seed, int x, int y, int z) {
+        long h = seed * 0x9E3779B97F4A7C15L + x * 0xC2B2AE3D27D4EB4FL + y * 0x165667B19E3779F9L + z * 0x27D4EB2F165667C5L;
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+
+        return h != 0 ? h : 1;
+    }
+
     /**
      * Some random noise.
      *
@@ -47,6 +47,51 @@ public class MathHelper {
         return -x * 2 - 1;
     }
 
+    /**
+     * Inverse function of {@link #mapToPositive(int)}.
+     *
+     * @param x Positive value
+     * @return The original value
+     */
+    public static int mapFromPositive(int x) {
+        if ((x & 1) == 0)
+            return x / 2;
+
+        return -(x + 1) / 2;
+    }
+
+    /**
+     * Packs 2D integer coordinates into one long value. Unlike Cantor's pairing function
+     * this mapping never overflows.
+     *
+     * @param x X-coordinate
+     * @param z Z-coordinate
+     * @return The packed coordinates
+     */
+    public static long packCoordinates(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the x-coordinate of packed coordinates.
+     *
+     * @param packed The packed coordinates
+     * @return X-coordinate
+     */
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Returns the z-coordinate of packed coordinates.
+     *
+     * @param packed The packed coordinates
+     * @return Z-coordinate
+     */
+    public static int unpackZ(long packed) {
+        return (int) packed;
+    }
+
     /**
      * Applies Cantor's pairing function to 2D coordinates.
      *
@@ -78,7 +123,7 @@ public class MathHelper {
      * @param c Cantor value
      * @return Value along the y-axis
      */
-    private static int cantorY(int c) {
+    public static int cantorY(int c) {
         int j = (int) (Math.sqrt(0.25 + 2 * c) - 0.5);
         return c - j * (j + 1) / 2;
     }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world;
+
+import com.github.begla.blockmania.blocks.Block;
+import com.github.begla.blockmania.datastructures.BlockmaniaIntQueue;
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.world.chunk.Chunk;
+
+/**
+ * Propagates sunlight and block light using breadth-first searches.
+ * <p/>
+ * The nodes of the searches are packed into single int values (position relative to the
+ * origin of the current operation and the light value) and stored in ring buffer queues, so the
+ * propagation does not allocate any memory per block. All accesses go through the
+ * {@link WorldAccessor} of the owning thread, so the light can cross chunk borders without
+ * resolving the chunk again for each step.
+ * <p/>
+ * Each thread owns its own light engine, see {@link WorldAccessor#getLightEngine()}.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class LightEngine {
+
+    /* PACKING OF THE QUEUE NODES: | X (10 BIT) | Z (10 BIT) | Y (7 BIT) | LIGHT (4 BIT) | */
+    private static final int LIGHT_BITS = 4;
+    private static final int Y_BITS = Integer.numberOfTrailingZeros((int) Configuration.CHUNK_DIMENSIONS.y);
+    private static final int HORIZONTAL_BITS = 10;
+    private static final int Y_SHIFT = LIGHT_BITS;
+    private static final int Z_SHIFT = Y_SHIFT + Y_BITS;
+    private static final int X_SHIFT = Z_SHIFT + HORIZONTAL_BITS;
+    private static final int HORIZONTAL_OFFSET = 1 << (HORIZONTAL_BITS - 1);
+    private static final int HORIZONTAL_MASK = (1 << HORIZONTAL_BITS) - 1;
+    private static final int Y_MASK = (1 << Y_BITS) - 1;
+    private static final int LIGHT_MASK = (1 << LIGHT_BITS) - 1;
+    /* ------ */
+    private static final int MAX_Y = (int) Configuration.CHUNK_DIMENSIONS.y - 1;
+    /* ------ */
+    private static final int[] DIRECTIONS_X = {1, -1, 0, 0, 0, 0};
+    private static final int[] DIRECTIONS_Y = {0, 0, 1, -1, 0, 0};
+    private static final int[] DIRECTIONS_Z = {0, 0, 0, 0, 1, -1};
+    /* ------ */
+    private final WorldAccessor _accessor;
+    private final BlockmaniaIntQueue _spreadQueue = new BlockmaniaIntQueue(4096);
+    private final BlockmaniaIntQueue _removalQueue = new BlockmaniaIntQueue(4096);
+    /* ------ */
+    private int _originX, _originZ;
+
+    LightEngine(WorldAccessor accessor) {
+        _accessor = accessor;
+    }
+
+    /**
+     * Sets the light value at the given position and spreads it into the surrounding blocks.
+     *
+     * @param x          The X-coordinate
+     * @param y          The Y-coordinate
+     * @param z          The Z-coordinate
+     * @param lightValue The light value
+     * @param type       The type of the light
+     */
+    public void spreadLight(int x, int y, int z, byte lightValue, Chunk.LIGHT_TYPE type) {
+        if (y < 0 || y > MAX_Y)
+            return;
+
+        setOrigin(x, z);
+
+        if (!isInRange(x, z))
+            return;
+
+        _accessor.setLight(x, y, z, lightValue, type);
+        enqueue(_spreadQueue, x, y, z, lightValue);
+
+        propagate(type);
+    }
+
+    /**
+     * Queues a position for spreading its current light value. The queued positions are
+     * processed on the next call of {@link #propagate(Chunk.LIGHT_TYPE)}.
+     *
+     * @param x          The X-coordinate
+     * @param y          The Y-coordinate
+     * @param z          The Z-coordinate
+     * @param lightValue The current light value at the position
+     */
+    public void queueSpread(int x, int y, int z, byte lightValue) {
+        if (y < 0 || y > MAX_Y || lightValue <= 1)
+            return;
+
+        setOrigin(x, z);
+
+        if (isInRange(x, z))
+            enqueue(_spreadQueue, x, y, z, lightValue);
+    }
+
+    /**
+     * Removes the light emitted by the given position from the surrounding blocks. Light from
+     * other sources, which was hidden by the removed light, is spread again afterwards.
+     *
+     * @param x          The X-coordinate
+     * @param y          The Y-coordinate
+     * @param z          The Z-coordinate
+     * @param lightValue The light value which was present at the position before
+     * @param type       The type of the light
+     */
+    public void unspreadLight(int x, int y, int z, byte lightValue, Chunk.LIGHT_TYPE type) {
+        if (y < 0 || y > MAX_Y)
+            return;
+
+        setOrigin(x, z);
+
+        if (!isInRange(x, z))
+            return;
+
+        _accessor.setLight(x, y, z, (byte) 0, type);
+        enqueue(_removalQueue, x, y, z, lightValue);
+
+        while (!_removalQueue.isEmpty()) {
+            int node = _removalQueue.poll();
+
+            int nodeX = unpackX(node);
+            int nodeY = unpackY(node);
+            int nodeZ = unpackZ(node);
+            int nodeLight = node & LIGHT_MASK;
+
+            for (int i = 0; i < 6; i++) {
+                int nx = nodeX + DIRECTIONS_X[i];
+                int ny = nodeY + DIRECTIONS_Y[i];
+                int nz = nodeZ + DIRECTIONS_Z[i];
+
+                if (ny < 0 || ny > MAX_Y || !isInRange(nx, nz))
+                    continue;
+
+                byte neighborLight = _accessor.getLight(nx, ny, nz, type);
+
+                if (neighborLight != 0 && neighborLight < nodeLight) {
+                    // This light originated from the removed light
+                    _accessor.setLight(nx, ny, nz, (byte) 0, type);
+                    enqueue(_removalQueue, nx, ny, nz, neighborLight);
+
+                    // Light sources keep emitting their own light
+                    if (type == Chunk.LIGHT_TYPE.BLOCK) {
+                        byte luminance = Block.getBlockForType(_accessor.getBlock(nx, ny, nz)).getLuminance();
+
+                        if (luminance > 0) {
+                            _accessor.setLight(nx, ny, nz, luminance, type);
+                            enqueue(_spreadQueue, nx, ny, nz, luminance);
+                        }
+                    }
+                } else if (neighborLight >= nodeLight) {
+                    // Brighter light from another source, which has to fill the gap again
+                    enqueue(_spreadQueue, nx, ny, nz, neighborLight);
+                }
+            }
+        }
+
+        propagate(type);
+    }
+
+    /**
+     * Spreads the light of all queued positions.
+     *
+     * @param type The type of the light
+     */
+    public void propagate(Chunk.LIGHT_TYPE type) {
+        while (!_spreadQueue.isEmpty()) {
+            int node = _spreadQueue.poll();
+
+            int nodeX = unpackX(node);
+            int nodeY = unpackY(node);
+            int nodeZ = unpackZ(node);
+            int newLight = (node & LIGHT_MASK) - 1;
+
+            if (newLight <= 0)
+                continue;
+
+            for (int i = 0; i < 6; i++) {
+                int nx = nodeX + DIRECTIONS_X[i];
+                int ny = nodeY + DIRECTIONS_Y[i];
+                int nz = nodeZ + DIRECTIONS_Z[i];
+
+                if (ny < 0 || ny > MAX_Y || !isInRange(nx, nz))
+                    continue;
+
+                if (_accessor.getLight(nx, ny, nz, type) >= newLight)
+                    continue;
+
+                if (!Block.getBlockForType(_accessor.getBlock(nx, ny, nz)).isBlockTypeTranslucent())
+                    continue;
+
+                _accessor.setLight(nx, ny, nz, (byte) newLight, type);
+
+                if (newLight > 1)
+                    enqueue(_spreadQueue, nx, ny, nz, newLight);
+            }
+        }
+    }
+
+    /**
+     * Moves the origin of the packed positions. The origin can only be moved while no
+     * positions are queued.
+     */
+    private void setOrigin(int x, int z) {
+        if (!_spreadQueue.isEmpty() || !_removalQueue.isEmpty())
+            return;
+
+        _originX = x;
+        _originZ = z;
+    }
+
+    /**
+     * Returns true if the position can be packed relative to the current origin. Light
+     * never travels that far, so this only guards against corrupting the queue.
+     */
+    private boolean isInRange(int x, int z) {
+        int dx = x - _originX + HORIZONTAL_OFFSET;
+        int dz = z - _originZ + HORIZONTAL_OFFSET;
+
+        return dx >= 0 && dx <= HORIZONTAL_MASK && dz >= 0 && dz <= HORIZONTAL_MASK;
+    }
+
+    private void enqueue(BlockmaniaIntQueue queue, int x, int y, int z, int lightValue) {
+        int dx = x - _originX + HORIZONTAL_OFFSET;
+        int dz = z - _originZ + HORIZONTAL_OFFSET;
+
+        queue.add((dx << X_SHIFT) | (dz << Z_SHIFT) | (y << Y_SHIFT) | (lightValue & LIGHT_MASK));
+    }
+
+    private int unpackX(int node) {
+        return ((node >>> X_SHIFT) & HORIZONTAL_MASK) - HORIZONTAL_OFFSET + _originX;
+    }
+
+    private int unpackY(int node) {
+        return (node >>> Y_SHIFT) & Y_MASK;
+    }
+
+    private int unpackZ(int node) {
+        return ((node >>> Z_SHIFT) & HORIZONTAL_MASK) - HORIZONTAL_OFFSET + _originZ;
+    }
+}
@@ -28,8 +28,13 @@ import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.characters.Player;
 import com.github.begla.blockmania.world.chunk.Chunk;
 import com.github.begla.blockmania.world.chunk.ChunkCache;
+import com.github.begla.blockmania.world.chunk.ChunkIOService;
+import com.github.begla.blockmania.world.chunk.ChunkMemoryStore;
 import com.github.begla.blockmania.world.chunk.ChunkMesh;
+import com.github.begla.blockmania.world.chunk.ChunkPrefetcher;
+import com.github.begla.blockmania.world.chunk.ChunkStore;
 import com.github.begla.blockmania.world.chunk.ChunkUpdateManager;
+import com.github.begla.blockmania.world.chunk.RegionFileCache;
 import com.github.begla.blockmania.world.entity.Entity;
 import com.github.begla.blockmania.world.horizon.Clouds;
 import com.github.begla.blockmania.world.horizon.SunMoon;
@@ -61,6 +66,8 @@ import static org.lwjgl.opengl.GL11.*;
  */
 public final class World implements RenderableObject {
 
+    /* CHUNKS OUTSIDE OF THE VIEWING DISTANCE WHICH ARE READ AHEAD */
+    private static final int PREFETCH_DISTANCE = 2;
     /* PLAYER */
     private Player _player;
     /* WORLD GENERATION */
@@ -79,9 +86,19 @@ public final class World implements RenderableObject {
     /* UPDATING & CACHING */
     private final ChunkUpdateManager _chunkUpdateManager = new ChunkUpdateManager(this);
     private final ChunkCache _chunkCache = new ChunkCache(this);
+    private final ChunkPrefetcher _chunkPrefetcher = new ChunkPrefetcher(this);
+    private final ChunkStore _chunkStore;
+    private final ChunkIOService _chunkIOService;
+    private final ThreadLocal<WorldAccessor> _accessors = new ThreadLocal<WorldAccessor>() {
+        @Override
+        protected WorldAccessor initialValue() {
+            return new WorldAccessor(_chunkCache);
+        }
+    };
     private boolean _updatingEnabled = false;
     private boolean _updateThreadAlive = true;
     private final Thread _updateThread;
+    private int _lastPlayerChunkX = Integer.MIN_VALUE, _lastPlayerChunkZ = Integer.MIN_VALUE;
     /* ENTITIES */
     private final FastList<Entity> _entities = new FastList<Entity>();
     /* PARTICLE EMITTERS */
@@ -89,6 +106,8 @@ public final class World implements RenderableObject {
     /* HORIZON */
     private final Clouds _clouds;
     private final SunMoon _sunMoon;
+    /* ------ */
+    private final boolean _headless;
     /* WATER AND LAVA ANIMATION */
     private int _textureAnimationTick = 0;
     private long _lastWaterAnimationTickUpdate;
@@ -98,9 +117,20 @@ public final class World implements RenderableObject {
      *
      * @param title The title/description of the world
      * @param seed  The seed string used to generate the terrain
-     * @param p     The player
      */
     public World(String title, String seed) {
+        this(title, seed, false);
+    }
+
+    /**
+     * Initializes a new world. Headless worlds do not need an OpenGL context and do not
+     * update their chunks on their own: the owner of the world generates and lights the chunks.
+     *
+     * @param title    The title/description of the world
+     * @param seed     The seed string used to generate the terrain
+     * @param headless True if the world is not rendered
+     */
+    public World(String title, String seed, boolean headless) {
         if (title == null) {
             throw new IllegalArgumentException("No title provided.");
         }
@@ -120,12 +150,22 @@ public final class World implements RenderableObject {
         this._title = title;
         this._seed = seed;
 
+        // Chunks can't be saved to disk within the sandbox, so they are kept in memory instead
+        if (Blockmania.getInstance().isSandboxed())
+            _chunkStore = new ChunkMemoryStore(Configuration.getSettingNumeric("SANDBOX_CHUNK_STORE_SIZE").intValue() * 1024 * 1024);
+        else
+            _chunkStore = new RegionFileCache(new File(getWorldSavePath()));
+
+        _chunkIOService = new ChunkIOService(_chunkStore, Configuration.getSettingNumeric("CHUNK_IO_WORKERS").intValue());
+
         // Load the meta data of this world
         loadMetaData();
 
+        _headless = headless;
+
         // Init. horizon
-        _clouds = new Clouds(this);
-        _sunMoon = new SunMoon(this);
+        _clouds = headless ? null : new Clouds(this);
+        _sunMoon = headless ? null : new SunMoon(this);
 
         // Init. etc.
         _lastWaterAnimationTickUpdate = Blockmania.getInstance().getTime();
@@ -175,7 +215,7 @@ public final class World implements RenderableObject {
     }
 
     /**
-     * Stops the updating thread and writes all chunks to disk.
+     * Stops the updating threads and writes all chunks to disk.
      */
     public void dispose() {
         Blockmania.getInstance().getLogger().log(Level.INFO, "Disposing world {0} and saving all chunks.", _title);
@@ -185,14 +225,28 @@ public final class World implements RenderableObject {
             _updateThread.notify();
         }
 
+        // The update thread might be waiting for chunk updates
+        _chunkUpdateManager.wakeUp();
+
         try {
             _updateThread.join();
         } catch (InterruptedException e) {
 
         }
 
+        _chunkUpdateManager.dispose();
+
         saveMetaData();
         _chunkCache.saveAndDisposeAllChunks();
+
+        // Wait until the I/O threads wrote all chunks
+        _chunkIOService.dispose();
+
+        try {
+            _chunkStore.close();
+        } catch (IOException e) {
+            Blockmania.getInstance().getLogger().log(Level.SEVERE, null, e);
+        }
     }
 
     /**
@@ -376,6 +430,8 @@ public final class World implements RenderableObject {
         updateWaterLavaAnimationTick();
 
         _player.update();
+        updatePlayerChunkPosition();
+        _chunkPrefetcher.update();
         _chunkUpdateManager.updateVBOs();
 
         _clouds.update();
@@ -389,6 +445,49 @@ public final class World implements RenderableObject {
         updateParticleEmitters();
     }
 
+    /**
+     * Reschedules the chunk updates if the player entered another chunk, so the
+     * updates are prioritized using the new position of the player.
+     */
+    private void updatePlayerChunkPosition() {
+        int chunkX = calcPlayerChunkOffsetX();
+        int chunkZ = calcPlayerChunkOffsetZ();
+
+        if (chunkX != _lastPlayerChunkX || chunkZ != _lastPlayerChunkZ) {
+            _lastPlayerChunkX = chunkX;
+            _lastPlayerChunkZ = chunkZ;
+
+            _chunkUpdateManager.wakeUp();
+            prefetchChunks();
+        }
+    }
+
+    /**
+     * Reads the chunks ahead which are located right outside of the viewing distance, so they
+     * are available without waiting for the disk when they enter the viewing distance.
+     */
+    private void prefetchChunks() {
+        if (Blockmania.getInstance().isSandboxed())
+            return;
+
+        int distX = Configuration.getSettingNumeric("V_DIST_X").intValue() / 2;
+        int distZ = Configuration.getSettingNumeric("V_DIST_Z").intValue() / 2;
+
+        for (int x = -distX - PREFETCH_DISTANCE; x < distX + PREFETCH_DISTANCE; x++) {
+            for (int z = -distZ - PREFETCH_DISTANCE; z < distZ + PREFETCH_DISTANCE; z++) {
+                // Chunks within the viewing distance are cached already
+                if (x >= -distX && x < distX && z >= -distZ && z < distZ)
+                    continue;
+
+                int chunkX = _lastPlayerChunkX + x;
+                int chunkZ = _lastPlayerChunkZ + z;
+
+                if (_chunkCache.getCachedChunk(chunkX, chunkZ) == null)
+                    _chunkIOService.prefetch(chunkX, chunkZ);
+            }
+        }
+    }
+
     private void updateWaterLavaAnimationTick() {
         if (Blockmania.getInstance().getTime() - _lastWaterAnimationTickUpdate >= 200) {
             _textureAnimationTick++;
@@ -458,13 +557,10 @@ public final class World implements RenderableObject {
      * @param overwrite
      */
     public final boolean setBlock(int x, int y, int z, byte type, boolean updateLight, boolean overwrite) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
+        int blockPosX = WorldAccessor.calcBlockPosX(x);
+        int blockPosZ = WorldAccessor.calcBlockPosZ(z);
 
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
+        Chunk c = getAccessor().getChunkForBlock(x, z);
 
         if (c == null) {
             return false;
@@ -528,7 +624,7 @@ public final class World implements RenderableObject {
      * @return
      */
     public final byte getBlockAtPosition(Vector3f pos) {
-        return getBlock((int) (pos.x + ((pos.x >= 0) ? 0.5f : -0.5f)), (int) (pos.y + ((pos.y >= 0) ? 0.5f : -0.5f)), (int) (pos.z + ((pos.z >= 0) ? 0.5f : -0.5f)));
+        return getAccessor().getBlockAtPosition(pos.x, pos.y, pos.z);
     }
 
 
@@ -549,19 +645,7 @@ public final class World implements RenderableObject {
      * @return The type of the block
      */
     public final byte getBlock(int x, int y, int z) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
-
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
-
-        if (c != null) {
-            return c.getBlock(blockPosX, y, blockPosZ);
-        }
-
-        return 0;
+        return getAccessor().getBlock(x, y, z);
     }
 
     /**
@@ -601,22 +685,7 @@ public final class World implements RenderableObject {
      * @return The light value
      */
     public final byte getLight(int x, int y, int z, Chunk.LIGHT_TYPE type) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
-
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
-
-        if (c != null) {
-            return c.getLight(blockPosX, y, blockPosZ, type);
-        }
-
-        if (type == Chunk.LIGHT_TYPE.SUN)
-            return 15;
-        else
-            return 0;
+        return getAccessor().getLight(x, y, z, type);
     }
 
     /**
@@ -629,17 +698,7 @@ public final class World implements RenderableObject {
      * @param type
      */
     public void setLight(int x, int y, int z, byte intens, Chunk.LIGHT_TYPE type) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
-
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
-
-        if (c != null) {
-            c.setLight(blockPosX, y, blockPosZ, intens, type);
-        }
+        getAccessor().setLight(x, y, z, intens, type);
     }
 
     /**
@@ -651,65 +710,16 @@ public final class World implements RenderableObject {
      * @param z
      */
     public void refreshSunlightAt(int x, int z, boolean spreadLight, boolean refreshSunlight) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
+        int blockPosX = WorldAccessor.calcBlockPosX(x);
+        int blockPosZ = WorldAccessor.calcBlockPosZ(z);
 
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
+        Chunk c = getAccessor().getChunkForBlock(x, z);
 
         if (c != null) {
             c.refreshSunlightAtLocalPos(blockPosX, blockPosZ, spreadLight, refreshSunlight);
         }
     }
 
-    /**
-     * Recursive light calculation.
-     *
-     * @param x
-     * @param y
-     * @param z
-     * @param lightValue
-     * @param depth
-     * @param type
-     */
-    public void unspreadLight(int x, int y, int z, byte lightValue, int depth, Chunk.LIGHT_TYPE type, FastList<Vector3f> brightSpots) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
-
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
-        if (c != null) {
-            c.unspreadLight(blockPosX, y, blockPosZ, lightValue, depth, type, brightSpots);
-        }
-    }
-
-    /**
-     * Recursive light calculation.
-     *
-     * @param x
-     * @param y
-     * @param z
-     * @param lightValue
-     * @param depth
-     * @param type
-     */
-    public void spreadLight(int x, int y, int z, byte lightValue, int depth, Chunk.LIGHT_TYPE type) {
-        int chunkPosX = calcChunkPosX(x);
-        int chunkPosZ = calcChunkPosZ(z);
-
-        int blockPosX = calcBlockPosX(x, chunkPosX);
-        int blockPosZ = calcBlockPosZ(z, chunkPosZ);
-
-        Chunk c = _chunkCache.loadOrCreateChunk(calcChunkPosX(x), calcChunkPosZ(z));
-        if (c != null) {
-            c.spreadLight(blockPosX, y, blockPosZ, lightValue, depth, type);
-        }
-    }
-
     /**
      * Returns the daylight value.
      *
@@ -734,6 +744,63 @@ public final class World implements RenderableObject {
         resetPlayer();
     }
 
+    /**
+     * Creates all chunks within the viewing distance of the player, so the chunk update workers
+     * can start to process them before the first frame is rendered.
+     */
+    public void loadChunksWithinViewingDistance() {
+        int distX = Configuration.getSettingNumeric("V_DIST_X").intValue() / 2;
+        int distZ = Configuration.getSettingNumeric("V_DIST_Z").intValue() / 2;
+
+        for (int x = -distX; x < distX; x++) {
+            for (int z = -distZ; z < distZ; z++)
+                _chunkCache.loadOrCreateChunk(calcPlayerChunkOffsetX() + x, calcPlayerChunkOffsetZ() + z);
+        }
+    }
+
+    /**
+     * Returns the fraction of the chunks within the given radius around the player which are
+     * generated, lit and tessellated. The radius is limited to the viewing distance, since
+     * chunks outside of it are never created.
+     *
+     * @param radius The radius in chunks
+     * @return The fraction of complete chunks (between 0 and 1)
+     */
+    public double calcSpawnAreaProgress(int radius) {
+        int radiusX = Math.max(0, Math.min(radius, Configuration.getSettingNumeric("V_DIST_X").intValue() / 2 - 1));
+        int radiusZ = Math.max(0, Math.min(radius, Configuration.getSettingNumeric("V_DIST_Z").intValue() / 2 - 1));
+        int complete = 0, total = 0;
+
+        for (int x = -radiusX; x <= radiusX; x++) {
+            for (int z = -radiusZ; z <= radiusZ; z++) {
+                Chunk c = _chunkCache.getCachedChunk(calcPlayerChunkOffsetX() + x, calcPlayerChunkOffsetZ() + z);
+                total++;
+
+                if (c != null && !c.isFresh() && !c.isLightDirty() && !c.isDirty())
+                    complete++;
+            }
+        }
+
+        return (double) complete / total;
+    }
+
+    /**
+     * Returns true if the given chunk is located within the viewing distance of the player.
+     *
+     * @param c The chunk
+     * @return True if the chunk is within the viewing distance
+     */
+    public boolean isChunkWithinViewingDistance(Chunk c) {
+        if (_player == null)
+            return false;
+
+        int offsetX = (int) c.getPosition().x - calcPlayerChunkOffsetX();
+        int offsetZ = (int) c.getPosition().z - calcPlayerChunkOffsetZ();
+
+        return offsetX >= -(Configuration.getSettingNumeric("V_DIST_X").intValue() / 2) && offsetX < (Configuration.getSettingNumeric("V_DIST_X").intValue() / 2)
+                && offsetZ >= -(Configuration.getSettingNumeric("V_DIST_Z").intValue() / 2) && offsetZ < (Configuration.getSettingNumeric("V_DIST_Z").intValue() / 2);
+    }
+
     /**
      * Calculates the offset of the player relative to the spawning point.
      *
@@ -760,7 +827,7 @@ public final class World implements RenderableObject {
      */
     @Override
     public String toString() {
-        return String.format("world (cdl: %d, cn: %d, cache: %d, ud: %fs, seed: \"%s\", title: \"%s\")", _chunkUpdateManager.getVboUpdatesSize(), _chunkUpdateManager.getUpdatesSize(), _chunkCache.size(), _chunkUpdateManager.getMeanUpdateDuration() / 1000d, _seed, _title);
+        return String.format("world (cdl: %d, cn: %d, pf: %d, cache: %d, ud: %fs, seed: \"%s\", title: \"%s\")", _chunkUpdateManager.getVboUpdatesSize(), _chunkUpdateManager.getUpdatesSize(), _chunkPrefetcher.getPrefetchedChunksSize(), _chunkCache.size(), _chunkUpdateManager.getMeanUpdateDuration() / 1000d, _seed, _title);
     }
 
     /**
@@ -861,6 +928,19 @@ public final class World implements RenderableObject {
         }
     }
 
+    /**
+     * Returns the spawning point of the world. A new spawning point is chosen if the world
+     * does not have one yet.
+     *
+     * @return The spawning point
+     */
+    public Vector3f getSpawningPoint() {
+        if (_spawningPoint == null)
+            _spawningPoint = findSpawningPoint();
+
+        return _spawningPoint;
+    }
+
     /**
      * Sets the spawning point to the player's current position.
      */
@@ -923,11 +1003,13 @@ public final class World implements RenderableObject {
         root.setAttribute("title", _title);
         root.setAttribute("time", Double.toString(_time));
 
-        // Save the player metadata
+        // Save the player metadata (worlds without a player start at the spawning point)
+        Vector3f playerPosition = _player != null ? _player.getPosition() : getSpawningPoint();
+
         Element player = new Element("Player");
-        player.setAttribute("x", Float.toString(_player.getPosition().x));
-        player.setAttribute("y", Float.toString(_player.getPosition().y));
-        player.setAttribute("z", Float.toString(_player.getPosition().z));
+        player.setAttribute("x", Float.toString(playerPosition.x));
+        player.setAttribute("y", Float.toString(playerPosition.y));
+        player.setAttribute("z", Float.toString(playerPosition.z));
         root.addContent(player);
 
 
@@ -998,6 +1080,29 @@ public final class World implements RenderableObject {
         return _chunkCache;
     }
 
+    /**
+     * Returns the world accessor of the current thread.
+     *
+     * @return The accessor
+     */
+    public WorldAccessor getAccessor() {
+        return _accessors.get();
+    }
+
+    /**
+     * Returns the store the chunks of this world are saved in. Sandboxed worlds keep their chunks
+     * in memory, all other worlds use the region files within the save directory.
+     *
+     * @return The chunk store
+     */
+    public ChunkStore getChunkStore() {
+        return _chunkStore;
+    }
+
+    public ChunkIOService getChunkIOService() {
+        return _chunkIOService;
+    }
+
     /**
      * @return
      */
@@ -1005,6 +1110,14 @@ public final class World implements RenderableObject {
         return _chunkUpdateManager;
     }
 
+    public ChunkPrefetcher getChunkPrefetcher() {
+        return _chunkPrefetcher;
+    }
+
+    public boolean isHeadless() {
+        return _headless;
+    }
+
     public FastList<Chunk> getVisibleChunks() {
         return _visibleChunks;
     }
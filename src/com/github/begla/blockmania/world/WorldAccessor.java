@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world;
+
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.world.chunk.Chunk;
+import com.github.begla.blockmania.world.chunk.ChunkCache;
+
+/**
+ * Provides fast access to the blocks and light values of a world. Consecutive accesses almost
+ * always target the same chunk, so the accessor remembers the last chunk it resolved and only
+ * queries the chunk cache if a position within another chunk is requested.
+ * <p/>
+ * An accessor must only be used by one thread. Use {@link World#getAccessor()} to obtain the
+ * accessor of the current thread.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class WorldAccessor {
+
+    /* CHUNK DIMENSIONS AS SHIFT AND MASK VALUES */
+    private static final int CHUNK_SHIFT_X = Integer.numberOfTrailingZeros((int) Configuration.CHUNK_DIMENSIONS.x);
+    private static final int CHUNK_SHIFT_Z = Integer.numberOfTrailingZeros((int) Configuration.CHUNK_DIMENSIONS.z);
+    private static final int CHUNK_MASK_X = (int) Configuration.CHUNK_DIMENSIONS.x - 1;
+    private static final int CHUNK_MASK_Z = (int) Configuration.CHUNK_DIMENSIONS.z - 1;
+    /* ------ */
+    private final ChunkCache _chunkCache;
+    /* ------ */
+    private Chunk _lastChunk;
+    private int _lastChunkX, _lastChunkZ;
+    /* ------ */
+    private LightEngine _lightEngine;
+
+    WorldAccessor(ChunkCache chunkCache) {
+        _chunkCache = chunkCache;
+    }
+
+    /**
+     * Returns the light engine of this accessor.
+     *
+     * @return The light engine
+     */
+    public LightEngine getLightEngine() {
+        if (_lightEngine == null)
+            _lightEngine = new LightEngine(this);
+
+        return _lightEngine;
+    }
+
+    /**
+     * Returns the chunk at the given chunk position.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @return The chunk
+     */
+    public Chunk getChunk(int chunkX, int chunkZ) {
+        Chunk c = _lastChunk;
+
+        // Chunks which were removed from the cache must not be used anymore
+        if (c != null && chunkX == _lastChunkX && chunkZ == _lastChunkZ && c.isCached())
+            return c;
+
+        c = _chunkCache.loadOrCreateChunk(chunkX, chunkZ);
+
+        _lastChunk = c;
+        _lastChunkX = chunkX;
+        _lastChunkZ = chunkZ;
+
+        return c;
+    }
+
+    /**
+     * Returns the chunk containing the given block position.
+     *
+     * @param x The X-coordinate of the block
+     * @param z The Z-coordinate of the block
+     * @return The chunk
+     */
+    public Chunk getChunkForBlock(int x, int z) {
+        return getChunk(x >> CHUNK_SHIFT_X, z >> CHUNK_SHIFT_Z);
+    }
+
+    /**
+     * Returns the position of a block within its chunk.
+     *
+     * @param x The X-coordinate of the block
+     * @return The local X-coordinate
+     */
+    public static int calcBlockPosX(int x) {
+        return x & CHUNK_MASK_X;
+    }
+
+    /**
+     * Returns the position of a block within its chunk.
+     *
+     * @param z The Z-coordinate of the block
+     * @return The local Z-coordinate
+     */
+    public static int calcBlockPosZ(int z) {
+        return z & CHUNK_MASK_Z;
+    }
+
+    /**
+     * Returns the block at the given position.
+     *
+     * @param x The X-coordinate
+     * @param y The Y-coordinate
+     * @param z The Z-coordinate
+     * @return The type of the block
+     */
+    public byte getBlock(int x, int y, int z) {
+        Chunk c = getChunkForBlock(x, z);
+
+        if (c != null)
+            return c.getBlock(x & CHUNK_MASK_X, y, z & CHUNK_MASK_Z);
+
+        return 0;
+    }
+
+    /**
+     * Returns the block at the given position. The position is rounded to the closest block.
+     *
+     * @param x The X-coordinate
+     * @param y The Y-coordinate
+     * @param z The Z-coordinate
+     * @return The type of the block
+     */
+    public byte getBlockAtPosition(float x, float y, float z) {
+        return getBlock((int) (x + ((x >= 0) ? 0.5f : -0.5f)), (int) (y + ((y >= 0) ? 0.5f : -0.5f)), (int) (z + ((z >= 0) ? 0.5f : -0.5f)));
+    }
+
+    /**
+     * Returns the light value at the given position.
+     *
+     * @param x    The X-coordinate
+     * @param y    The Y-coordinate
+     * @param z    The Z-coordinate
+     * @param type The type of the light
+     * @return The light value
+     */
+    public byte getLight(int x, int y, int z, Chunk.LIGHT_TYPE type) {
+        Chunk c = getChunkForBlock(x, z);
+
+        if (c != null)
+            return c.getLight(x & CHUNK_MASK_X, y, z & CHUNK_MASK_Z, type);
+
+        if (type == Chunk.LIGHT_TYPE.SUN)
+            return 15;
+        else
+            return 0;
+    }
+
+    /**
+     * Sets the light value at the given position.
+     *
+     * @param x         The X-coordinate
+     * @param y         The Y-coordinate
+     * @param z         The Z-coordinate
+     * @param intensity The light intensity value
+     * @param type      The type of the light
+     */
+    public void setLight(int x, int y, int z, byte intensity, Chunk.LIGHT_TYPE type) {
+        Chunk c = getChunkForBlock(x, z);
+
+        if (c != null)
+            c.setLight(x & CHUNK_MASK_X, y, z & CHUNK_MASK_Z, intensity, type);
+    }
+}
@@ -17,22 +17,26 @@ package com.github.begla.blockmania.world.chunk;
 
 import com.github.begla.blockmania.blocks.Block;
 import com.github.begla.blockmania.datastructures.AABB;
-import com.github.begla.blockmania.datastructures.BlockmaniaArray;
-import com.github.begla.blockmania.datastructures.BlockmaniaSmartArray;
 import com.github.begla.blockmania.generators.ChunkGenerator;
 import com.github.begla.blockmania.main.Blockmania;
 import com.github.begla.blockmania.main.Configuration;
 import com.github.begla.blockmania.utilities.Helper;
 import com.github.begla.blockmania.utilities.MathHelper;
+import com.github.begla.blockmania.world.LightEngine;
 import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.WorldAccessor;
 import com.github.begla.blockmania.world.entity.StaticEntity;
 import javolution.util.FastList;
-import org.lwjgl.BufferUtils;
+import javolution.util.FastMap;
 import org.lwjgl.util.vector.Vector3f;
 
-import java.io.*;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 
 /**
@@ -43,38 +47,56 @@ import java.util.logging.Level;
  * Chunks are tessellated on creation and saved to vertex arrays. From those Vertex Buffer Objects are generated
  * which are then used for the actual rendering process.
  * <p/>
- * The default size of one chunk is 16x128x16 (32768) blocks.
+ * The default size of one chunk is 16x128x16 (32768) blocks. Internally the chunk is split into
+ * vertical sections of 16x16x16 blocks (see {@link ChunkSection}). Each section tracks its own
+ * dirty flag and owns its own mesh, so modifying a block only causes the affected sections to be
+ * tessellated again.
  *
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
  */
 public final class Chunk extends StaticEntity implements Comparable<Chunk> {
 
-    private static final
-    Vector3f[] _lightDirections = {new Vector3f(1, 0, 0), new Vector3f(-1, 0, 0), new Vector3f(0, 1, 0), new Vector3f(0, -1, 0), new Vector3f(0, 0, 1), new Vector3f(0, 0, -1)};
-    /* ------ */
     private static int _statVertexArrayUpdateCount = 0;
-    /* ------ */
-    private boolean _dirty;
-    private boolean _lightDirty;
+    /* FLAGS STORED WITHIN THE FIRST BYTE OF SAVED CHUNKS */
+    private static final short FLAG_LIGHT_DIRTY = 0;
+    private static final short FLAG_EDIT_LOG = 1;
+    private static final short FLAG_EDITED = 2;
+    /* BIT MASK CONTAINING ALL SECTIONS */
+    private static final int ALL_SECTIONS = (1 << ChunkSection.SECTIONS_PER_CHUNK) - 1;
+    /* BIT MASK OF THE DIRTY SECTIONS, SHARED BY THE MAIN THREAD AND THE UPDATE WORKERS */
+    private final AtomicInteger _dirtySections = new AtomicInteger();
+    /* THE LIGHT IS ALWAYS CALCULATED FOR THE WHOLE CHUNK */
+    private volatile boolean _lightDirty;
     private boolean _fresh;
-    private boolean _cached;
+    private volatile boolean _cached;
+    /* ------ */
+    private final AtomicInteger _modificationCount = new AtomicInteger();
+    private int _savedModificationCount = -1;
+    private long _savedContentHash = -1;
+    /* ------ */
+    private FastMap<Integer, Byte> _editLog;
+    /* TRUE IF BLOCKS WERE CHANGED AFTER THE GENERATION */
+    private volatile boolean _edited;
     /* ------ */
     private Integer _chunkId = -1;
+    private long _chunkKey;
     /* ------ */
-    private ChunkMesh _activeMesh;
-    private ChunkMesh _newMesh;
+    private final ChunkMesh[] _activeMeshes = new ChunkMesh[ChunkSection.SECTIONS_PER_CHUNK];
+    /* MESHES GENERATED BY THE WORKERS, TAKEN OVER BY THE OPENGL THREAD USING ATOMIC SWAPS */
+    private final AtomicReferenceArray<ChunkMesh> _newMeshes = new AtomicReferenceArray<ChunkMesh>(ChunkSection.SECTIONS_PER_CHUNK);
+    private final Collection<ChunkMesh> _disposableMeshes = new FastList<ChunkMesh>().shared();
     /* ------ */
     private final World _parent;
     /* ------ */
-    private final BlockmaniaArray _blocks;
-    private final BlockmaniaSmartArray _sunlight;
-    private final BlockmaniaSmartArray _light;
+    /* WRITES TO THE SECTIONS AND THE REPLACEMENT OF SECTIONS SYNCHRONIZE ON THIS ARRAY */
+    private final AtomicReferenceArray<ChunkSection> _sections = new AtomicReferenceArray<ChunkSection>(ChunkSection.SECTIONS_PER_CHUNK);
     /* ------ */
     private final FastList<ChunkGenerator> _generators = new FastList<ChunkGenerator>();
     /* ------ */
     private final ChunkMeshGenerator _meshGenerator;
     /* ------ */
     private AABB _aabb;
+    private AABB[] _sectionAABBs;
     private final Vector3f _position = new Vector3f();
 
     public enum LIGHT_TYPE {
@@ -94,16 +116,18 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         setPosition(position);
         // Set the chunk ID
         _chunkId = Integer.valueOf(MathHelper.cantorize((int) _position.x, (int) _position.z));
+        _chunkKey = MathHelper.packCoordinates((int) _position.x, (int) _position.z);
 
         _parent = p;
-        _blocks = new BlockmaniaArray((int) Configuration.CHUNK_DIMENSIONS.x, (int) Configuration.CHUNK_DIMENSIONS.y, (int) Configuration.CHUNK_DIMENSIONS.z);
-        _sunlight = new BlockmaniaSmartArray((int) Configuration.CHUNK_DIMENSIONS.x, (int) Configuration.CHUNK_DIMENSIONS.y, (int) Configuration.CHUNK_DIMENSIONS.z);
-        _light = new BlockmaniaSmartArray((int) Configuration.CHUNK_DIMENSIONS.x, (int) Configuration.CHUNK_DIMENSIONS.y, (int) Configuration.CHUNK_DIMENSIONS.z);
+
+        // Empty sections do not need any storage until the first block is placed
+        for (int i = 0; i < _sections.length(); i++)
+            _sections.set(i, ChunkSection.getSharedSection((byte) 0x0, (byte) 0x0, (byte) 0x0));
 
         _meshGenerator = new ChunkMeshGenerator(this);
 
-        _lightDirty = true;
-        _dirty = true;
+        setLightDirty(true);
+        setDirty(true);
         _fresh = true;
         _cached = false;
 
@@ -122,31 +146,61 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @param type The type of vertices to render
      */
     public void render(ChunkMesh.RENDER_TYPE type) {
-        // Render the generated chunk mesh
-        if (_activeMesh != null) {
-            _activeMesh.render(type);
+        // Render the generated meshes of the visible sections
+        for (int i = 0; i < _activeMeshes.length; i++) {
+            ChunkMesh mesh = _activeMeshes[i];
+
+            if (mesh != null && !mesh.isEmpty() && isSectionInFrustum(i)) {
+                mesh.render(type);
+            }
         }
     }
 
     public void update() {
-        if (_newMesh != null) {
-            // Do not update the mesh if one of the VISIBLE neighbors is dirty
-            for (Chunk nc : loadOrCreateNeighbors())
-                if ((nc.isDirty() || nc.isLightDirty()) && nc.isChunkInFrustum())
-                    return;
+        disposeMeshes();
+
+        boolean neighborsChecked = false;
+
+        for (int i = 0; i < _newMeshes.length(); i++) {
+            ChunkMesh newMesh = _newMeshes.get(i);
+
+            if (newMesh == null)
+                continue;
 
-            if (_newMesh.isGenerated() && !isDirty() && !isFresh() && !isLightDirty()) {
-                ChunkMesh oldMesh = _activeMesh;
+            if (!neighborsChecked) {
+                // Do not update the meshes if one of the VISIBLE neighbors is dirty
+                for (Chunk nc : loadOrCreateNeighbors())
+                    if ((nc.isDirty() || nc.isLightDirty()) && nc.isChunkInFrustum())
+                        return;
+
+                neighborsChecked = true;
+            }
+
+            if (newMesh.isGenerated() && !isSectionDirty(i) && !isFresh() && !isLightDirty()) {
+                // A worker might have replaced the mesh in the meantime, which disposes it later on
+                if (!_newMeshes.compareAndSet(i, newMesh, null))
+                    continue;
+
+                ChunkMesh oldMesh = _activeMeshes[i];
 
                 if (oldMesh != null)
                     oldMesh.disposeMesh();
 
-                _activeMesh = _newMesh;
-                _newMesh = null;
+                _activeMeshes[i] = newMesh;
             }
         }
     }
 
+    /**
+     * Disposes meshes which were replaced before they were ever displayed.
+     */
+    private void disposeMeshes() {
+        for (ChunkMesh mesh : _disposableMeshes) {
+            mesh.disposeMesh();
+            _disposableMeshes.remove(mesh);
+        }
+    }
+
     /**
      * Tries to load a chunk from disk. If the chunk is not present,
      * it is created from scratch.
@@ -160,45 +214,148 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
 
             // Try to load the chunk from disk
             if (loadChunkFromFile()) {
+                compactSections();
                 _fresh = false;
                 Blockmania.getInstance().getLogger().log(Level.FINEST, "Chunk ({1}) loaded from disk ({0}s).", new Object[]{(System.currentTimeMillis() - timeStart) / 1000d, this});
                 return true;
             }
 
-            for (FastList.Node<ChunkGenerator> n = _generators.head(), end = _generators.tail(); (n = n.getNext()) != end; ) {
-                n.getValue().generate(this);
-            }
-
+            runGenerators();
             generateSunlight();
+
+            // Release the storage of sections which ended up uniform during the generation process
+            compactSections();
             _fresh = false;
 
+            // Record the following modifications, so only those need to be saved
+            if (Configuration.getSettingBoolean("DELTA_SAVES"))
+                _editLog = new FastMap<Integer, Byte>().shared();
+
             Blockmania.getInstance().getLogger().log(Level.FINEST, "Chunk ({1}) generated ({0}s).", new Object[]{(System.currentTimeMillis() - timeStart) / 1000d, this});
             return true;
         }
         return false;
     }
 
+    private void runGenerators() {
+        for (FastList.Node<ChunkGenerator> n = _generators.head(), end = _generators.tail(); (n = n.getNext()) != end; ) {
+            n.getValue().generate(this);
+        }
+    }
+
     /**
      * Updates the light of this chunk.
      */
     public void updateLight() {
         if (!_fresh) { // Do NOT update fresh chunks
-            for (int x = 0; x < (int) Configuration.CHUNK_DIMENSIONS.x; x++) {
-                for (int z = 0; z < (int) Configuration.CHUNK_DIMENSIONS.z; z++) {
-                    for (int y = 0; y < (int) Configuration.CHUNK_DIMENSIONS.y; y++) {
+            LightEngine lightEngine = getParent().getAccessor().getLightEngine();
+
+            for (LIGHT_TYPE type : LIGHT_TYPE.values()) {
+                for (int i = 0; i < _sections.length(); i++)
+                    queueLightSources(lightEngine, i, type);
+
+                lightEngine.propagate(type);
+            }
+
+            _lightDirty = false;
+
+            // The sections are not compacted here since the main thread modifies lit chunks concurrently
+        }
+    }
+
+    /**
+     * Queues all blocks of a section which spread light of the given type.
+     *
+     * @param lightEngine The light engine
+     * @param index       The index of the section
+     * @param type        The type of the light
+     */
+    private void queueLightSources(LightEngine lightEngine, int index, LIGHT_TYPE type) {
+        ChunkSection section = _sections.get(index);
+
+        // Sections without any blocks emitting light do not contain any block light sources
+        if (type == LIGHT_TYPE.BLOCK && section.isBlockUniform() && Block.getBlockForType(section.getUniformBlock()).getLuminance() == 0)
+            return;
+
+        // Within uniform sections all neighbors of inner blocks share the same light value,
+        // so the light can only spread from the blocks on the boundary of the section
+        boolean uniform = section.isUniform();
+
+        for (int x = 0; x < (int) Configuration.CHUNK_DIMENSIONS.x; x++) {
+            for (int z = 0; z < (int) Configuration.CHUNK_DIMENSIONS.z; z++) {
+                for (int sy = 0; sy < ChunkSection.HEIGHT; sy++) {
+                    if (uniform && type == LIGHT_TYPE.SUN && !isOnSectionBoundary(x, sy, z))
+                        continue;
+
+                    int y = (index << ChunkSection.HEIGHT_BITS) + sy;
+                    Block block = Block.getBlockForType(getBlock(x, y, z));
+
+                    if (type == LIGHT_TYPE.SUN) {
                         byte lightValue = getLight(x, y, z, LIGHT_TYPE.SUN);
 
                         // Spread the sunlight in translucent blocks with a light value greater than zero.
-                        if (lightValue > 0 && Block.getBlockForType(getBlock(x, y, z)).isBlockTypeTranslucent()) {
-                            spreadLight(x, y, z, lightValue, LIGHT_TYPE.SUN);
+                        if (lightValue > 0 && block.isBlockTypeTranslucent())
+                            lightEngine.queueSpread(getBlockWorldPosX(x), y, getBlockWorldPosZ(z), lightValue);
+                    } else {
+                        byte luminance = block.getLuminance();
+
+                        // Blocks emitting light are the sources of the block light
+                        if (luminance > 0) {
+                            if (getLight(x, y, z, LIGHT_TYPE.BLOCK) < luminance)
+                                setLight(x, y, z, luminance, LIGHT_TYPE.BLOCK);
+
+                            lightEngine.queueSpread(getBlockWorldPosX(x), y, getBlockWorldPosZ(z), luminance);
                         }
                     }
                 }
             }
-            setLightDirty(false);
+        }
+    }
+
+    private static boolean isOnSectionBoundary(int x, int sy, int z) {
+        return x == 0 || z == 0 || sy == 0 || x == (int) Configuration.CHUNK_DIMENSIONS.x - 1 || z == (int) Configuration.CHUNK_DIMENSIONS.z - 1 || sy == ChunkSection.HEIGHT - 1;
+    }
+
+    /**
+     * Replaces sections which became uniform by the matching shared sections and
+     * shrinks the storage of all other sections. Compacting modifies the sections in place,
+     * so this is only done while the chunk is generated or loaded.
+     */
+    private void compactSections() {
+        synchronized (_sections) {
+            for (int i = 0; i < _sections.length(); i++)
+                _sections.set(i, _sections.get(i).compact());
         }
     }
 
+    /**
+     * Sets the given bits of a bit mask.
+     *
+     * @param flags The bit mask
+     * @param bits  The bits to set
+     */
+    private static void setFlags(AtomicInteger flags, int bits) {
+        int value;
+
+        do {
+            value = flags.get();
+        } while (!flags.compareAndSet(value, value | bits));
+    }
+
+    /**
+     * Resets the given bits of a bit mask.
+     *
+     * @param flags The bit mask
+     * @param bits  The bits to reset
+     */
+    private static void clearFlags(AtomicInteger flags, int bits) {
+        int value;
+
+        do {
+            value = flags.get();
+        } while (!flags.compareAndSet(value, value & ~bits));
+    }
+
     /**
      * Generates the initial sunlight.
      */
@@ -211,13 +368,24 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
     }
 
     /**
-     * Generates the terrain mesh (creates the internal vertex arrays).
+     * Generates the terrain meshes of all dirty sections (creates the internal vertex arrays).
      */
     public void generateMesh() {
         if (!_fresh) {
-            _newMesh = _meshGenerator.generateMesh();
+            for (int i = 0; i < _sections.length(); i++) {
+                if (!isSectionDirty(i))
+                    continue;
+
+                // Reset the flag first so modifications during the tessellation are not lost
+                clearFlags(_dirtySections, 1 << i);
+
+                // The replaced mesh was never taken over by the OpenGL thread
+                ChunkMesh oldMesh = _newMeshes.getAndSet(i, _meshGenerator.generateMesh(i));
+
+                if (oldMesh != null)
+                    _disposableMeshes.add(oldMesh);
+            }
 
-            setDirty(false);
             _statVertexArrayUpdateCount++;
         }
     }
@@ -234,35 +402,35 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         boolean covered = false;
 
         for (int y = (int) Configuration.CHUNK_DIMENSIONS.y - 1; y >= 0; y--) {
-            Block b = Block.getBlockForType(_blocks.get(x, y, z));
+            Block b = Block.getBlockForType(getBlock(x, y, z));
 
             // Remember if this "column" is covered
             if ((!b.isBlockInvisible() && b.getBlockForm() != Block.BLOCK_FORM.BILLBOARD) && !covered) {
                 covered = true;
             }
 
-            byte oldValue = _sunlight.get(x, y, z);
+            byte oldValue = getLight(x, y, z, LIGHT_TYPE.SUN);
             byte newValue;
 
             // If the column is not covered...
             if (!covered) {
                 if (b.isBlockInvisible() || b.getBlockForm() == Block.BLOCK_FORM.BILLBOARD)
-                    _sunlight.set(x, y, z, Configuration.MAX_LIGHT);
+                    setSunlightInternal(x, y, z, Configuration.MAX_LIGHT);
                 else
-                    _sunlight.set(x, y, z, (byte) 0x0);
+                    setSunlightInternal(x, y, z, (byte) 0x0);
 
-                newValue = _sunlight.get(x, y, z);
+                newValue = getLight(x, y, z, LIGHT_TYPE.SUN);
 
                 // Otherwise the column is covered. Don't generate any light in the cells...
             } else {
-                _sunlight.set(x, y, z, (byte) 0);
+                setSunlightInternal(x, y, z, (byte) 0);
 
                 // Update the sunlight at the current position (check the surrounding cells)
                 if (refreshSunlight) {
                     refreshLightAtLocalPos(x, y, z, LIGHT_TYPE.SUN);
                 }
 
-                newValue = _sunlight.get(x, y, z);
+                newValue = getLight(x, y, z, LIGHT_TYPE.SUN);
             }
 
 
@@ -289,6 +457,7 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         int blockPosZ = getBlockWorldPosZ(z);
 
         byte bType = getBlock(x, y, z);
+        WorldAccessor accessor = getParent().getAccessor();
 
         // If a block was just placed, remove the light value at this point
         if (!Block.getBlockForType(bType).isBlockTypeTranslucent()) {
@@ -296,13 +465,13 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         } else {
             // If the block was removed: Find the brightest neighbor and
             // set the current light value to this value - 1
-            byte val = getParent().getLight(blockPosX, y, blockPosZ, type);
-            byte val1 = getParent().getLight(blockPosX + 1, y, blockPosZ, type);
-            byte val2 = getParent().getLight(blockPosX - 1, y, blockPosZ, type);
-            byte val3 = getParent().getLight(blockPosX, y, blockPosZ + 1, type);
-            byte val4 = getParent().getLight(blockPosX, y, blockPosZ - 1, type);
-            byte val5 = getParent().getLight(blockPosX, y + 1, blockPosZ, type);
-            byte val6 = getParent().getLight(blockPosX, y - 1, blockPosZ, type);
+            byte val = accessor.getLight(blockPosX, y, blockPosZ, type);
+            byte val1 = accessor.getLight(blockPosX + 1, y, blockPosZ, type);
+            byte val2 = accessor.getLight(blockPosX - 1, y, blockPosZ, type);
+            byte val3 = accessor.getLight(blockPosX, y, blockPosZ + 1, type);
+            byte val4 = accessor.getLight(blockPosX, y, blockPosZ - 1, type);
+            byte val5 = accessor.getLight(blockPosX, y + 1, blockPosZ, type);
+            byte val6 = accessor.getLight(blockPosX, y - 1, blockPosZ, type);
 
             byte max = (byte) (Math.max(Math.max(Math.max(val1, val2), Math.max(val3, val4)), Math.max(val5, val6)) - 1);
 
@@ -319,57 +488,21 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
     }
 
     /**
-     * Recursive light calculation.
+     * Removes the light emitted from the given position and fills the gap with the
+     * light of the surrounding light sources.
      *
      * @param x          Local block position on the x-axis
      * @param y          Local block position on the y-axis
      * @param z          Local block position on the z-axis
-     * @param lightValue The light value used to spread the light
+     * @param lightValue The light value which was present at the position before
      * @param type       The type of the light
      */
     public void unspreadLight(int x, int y, int z, byte lightValue, LIGHT_TYPE type) {
-        FastList<Vector3f> brightSpots = new FastList<Vector3f>();
-        unspreadLight(x, y, z, lightValue, 0, type, brightSpots);
-
-        for (Vector3f pos : brightSpots) {
-            getParent().spreadLight((int) pos.x, (int) pos.y, (int) pos.z, _parent.getLight((int) pos.x, (int) pos.y, (int) pos.z, type), 0, type);
-        }
+        getParent().getAccessor().getLightEngine().unspreadLight(getBlockWorldPosX(x), y, getBlockWorldPosZ(z), lightValue, type);
     }
 
     /**
-     * Recursive light calculation.
-     *
-     * @param x           Local block position on the x-axis
-     * @param y           Local block position on the y-axis
-     * @param z           Local block position on the z-axis
-     * @param lightValue  The light value used to spread the light
-     * @param depth       Depth of the recursion
-     * @param type        The type of the light
-     * @param brightSpots Log of light spots, which where brighter than the current light node
-     */
-    public void unspreadLight(int x, int y, int z, byte lightValue, int depth, LIGHT_TYPE type, FastList<Vector3f> brightSpots) {
-        int blockPosX = getBlockWorldPosX(x);
-        int blockPosZ = getBlockWorldPosZ(z);
-
-        // Remove the light at this point
-        getParent().setLight(blockPosX, y, blockPosZ, (byte) 0x0, type);
-
-        for (int i = 0; i < 6; i++) {
-
-            byte neighborValue = getParent().getLight(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z, type);
-            byte neighborType = getParent().getBlock(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z);
-
-            if (neighborValue < lightValue && neighborValue > 0 && Block.getBlockForType(neighborType).isBlockTypeTranslucent()) {
-                getParent().unspreadLight(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z, (byte) (lightValue - 1), depth + 1, type, brightSpots);
-            } else if (neighborValue >= lightValue) {
-                brightSpots.add(new Vector3f(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z));
-            }
-        }
-    }
-
-
-    /**
-     * Recursive light calculation.
+     * Sets the light value at the given position and spreads it into the surrounding blocks.
      *
      * @param x          Local block position on the x-axis
      * @param y          Local block position on the y-axis
@@ -378,40 +511,7 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @param type       The type of the light
      */
     public void spreadLight(int x, int y, int z, byte lightValue, LIGHT_TYPE type) {
-        spreadLight(x, y, z, lightValue, 0, type);
-    }
-
-    /**
-     * Recursive light calculation.
-     *
-     * @param x          Local block position on the x-axis
-     * @param y          Local block position on the y-axis
-     * @param z          Local block position on the z-axis
-     * @param lightValue The light value used to spread the light
-     * @param depth      Depth of the recursion
-     * @param type       The type of the light
-     */
-    public void spreadLight(int x, int y, int z, byte lightValue, int depth, LIGHT_TYPE type) {
-        if (depth > lightValue || lightValue - depth < 1) {
-            return;
-        }
-
-        int blockPosX = getBlockWorldPosX(x);
-        int blockPosZ = getBlockWorldPosZ(z);
-
-        byte newLightValue;
-        newLightValue = (byte) (lightValue - depth);
-
-        getParent().setLight(blockPosX, y, blockPosZ, newLightValue, type);
-
-        for (int i = 0; i < 6; i++) {
-            byte neighborValue = getParent().getLight(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z, type);
-            byte neighborType = getParent().getBlock(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z);
-
-            if (neighborValue < newLightValue - 1 && Block.getBlockForType(neighborType).isBlockTypeTranslucent()) {
-                getParent().spreadLight(blockPosX + (int) _lightDirections[i].x, y + (int) _lightDirections[i].y, blockPosZ + (int) _lightDirections[i].z, lightValue, depth + 1, type);
-            }
-        }
+        getParent().getAccessor().getLightEngine().spreadLight(getBlockWorldPosX(x), y, getBlockWorldPosZ(z), lightValue, type);
     }
 
     /**
@@ -424,22 +524,21 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @return The light intensity
      */
     public byte getLight(int x, int y, int z, LIGHT_TYPE type) {
-        byte result;
-
-        if (type == LIGHT_TYPE.SUN) {
-            result = _sunlight.get(x, y, z);
-        } else {
-            result = _light.get(x, y, z);
+        if (!isInBounds(x, y, z)) {
+            if (type == Chunk.LIGHT_TYPE.SUN)
+                return 15;
+            else
+                return 0;
         }
 
-        if (result >= 0) {
-            return result;
+        ChunkSection section = _sections.get(y >> ChunkSection.HEIGHT_BITS);
+        int sy = y & (ChunkSection.HEIGHT - 1);
+
+        if (type == LIGHT_TYPE.SUN) {
+            return section.getSunlight(x, sy, z);
         }
 
-        if (type == Chunk.LIGHT_TYPE.SUN)
-            return 15;
-        else
-            return 0;
+        return section.getLight(x, sy, z);
     }
 
     /**
@@ -452,24 +551,40 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @param type      The type of the light
      */
     public void setLight(int x, int y, int z, byte intensity, LIGHT_TYPE type) {
-        BlockmaniaSmartArray lSource;
-        if (type == LIGHT_TYPE.SUN) {
-            lSource = _sunlight;
-        } else if (type == LIGHT_TYPE.BLOCK) {
-            lSource = _light;
-        } else {
+        if (!isInBounds(x, y, z))
             return;
+
+        int sy = y & (ChunkSection.HEIGHT - 1);
+
+        synchronized (_sections) {
+            if (getLight(x, y, z, type) == intensity)
+                return;
+
+            if (type == LIGHT_TYPE.SUN) {
+                getWritableSection(y).setSunlight(x, sy, z, intensity);
+            } else if (type == LIGHT_TYPE.BLOCK) {
+                getWritableSection(y).setLight(x, sy, z, intensity);
+            } else {
+                return;
+            }
         }
 
+        _modificationCount.incrementAndGet();
+        markDirty(x, y, z);
+    }
 
-        byte oldValue = lSource.get(x, y, z);
-        lSource.set(x, y, z, intensity);
+    /**
+     * Sets the sunlight value without marking the affected sections dirty.
+     */
+    private void setSunlightInternal(int x, int y, int z, byte intensity) {
+        synchronized (_sections) {
+            if (getLight(x, y, z, LIGHT_TYPE.SUN) == intensity)
+                return;
 
-        if (oldValue != intensity) {
-            setDirty(true);
-            // Mark the neighbors as dirty
-            markNeighborsDirty(x, z);
+            getWritableSection(y).setSunlight(x, y & (ChunkSection.HEIGHT - 1), z, intensity);
         }
+
+        _modificationCount.incrementAndGet();
     }
 
     /**
@@ -481,7 +596,10 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @return The block type
      */
     public byte getBlock(int x, int y, int z) {
-        byte result = _blocks.get(x, y, z);
+        if (!isInBounds(x, y, z))
+            return 0;
+
+        byte result = _sections.get(y >> ChunkSection.HEIGHT_BITS).getBlock(x, y & (ChunkSection.HEIGHT - 1), z);
 
         if (result >= 0) {
             return result;
@@ -508,15 +626,63 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @param type The block type
      */
     public void setBlock(int x, int y, int z, byte type) {
-        byte oldValue = _blocks.get(x, y, z);
-        _blocks.set(x, y, z, type);
+        if (!isInBounds(x, y, z))
+            return;
+
+        synchronized (_sections) {
+            if (getBlock(x, y, z) == type)
+                return;
+
+            getWritableSection(y).setBlock(x, y & (ChunkSection.HEIGHT - 1), z, type);
+        }
+
+        _modificationCount.incrementAndGet();
+
+        if (!_fresh)
+            _edited = true;
+
+        if (_editLog != null)
+            _editLog.put(getBlockIndex(x, y, z), type);
+        // Update vertex arrays and light
+        markDirty(x, y, z);
+    }
 
-        if (oldValue != type) {
-            // Update vertex arrays and light
-            setDirty(true);
-            // Mark the neighbors as dirty
-            markNeighborsDirty(x, z);
+    private static int getBlockIndex(int x, int y, int z) {
+        return (x * (int) Configuration.CHUNK_DIMENSIONS.y + y) * (int) Configuration.CHUNK_DIMENSIONS.z + z;
+    }
+
+    private static boolean isInBounds(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < Configuration.CHUNK_DIMENSIONS.x && y < Configuration.CHUNK_DIMENSIONS.y && z < Configuration.CHUNK_DIMENSIONS.z;
+    }
+
+    /**
+     * Returns the section containing the given local block position on the y-axis. Shared
+     * sections are replaced by a private copy first, so the returned section can be modified.
+     * The caller has to hold the lock of the sections while modifying the returned section.
+     *
+     * @param y Local block position on the y-axis
+     * @return The writable section
+     */
+    private ChunkSection getWritableSection(int y) {
+        int index = y >> ChunkSection.HEIGHT_BITS;
+        ChunkSection section = _sections.get(index);
+
+        if (section.isShared()) {
+            section = section.copy();
+            _sections.set(index, section);
         }
+
+        return section;
+    }
+
+    /**
+     * Returns the section with the given index.
+     *
+     * @param index The index of the section
+     * @return The section
+     */
+    public ChunkSection getSection(int index) {
+        return _sections.get(index);
     }
 
     /**
@@ -548,52 +714,79 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
     }
 
     /**
-     * Marks those neighbors of a chunk dirty, that are adjacent to
-     * the given block coordinate.
+     * Marks the sections affected by a modification at the given block position dirty. Besides the
+     * section containing the block, the adjacent sections of this chunk and of the neighboring chunks
+     * are marked dirty if the block is located on their boundary.
      *
      * @param x Local block position on the x-axis
+     * @param y Local block position on the y-axis
      * @param z Local block position on the z-axis
      */
-    private void markNeighborsDirty(int x, int z) {
-        Chunk[] neighbors = loadOrCreateNeighbors();
+    private void markDirty(int x, int y, int z) {
+        markSectionsDirty(y);
 
-        if (x == 0 && neighbors[1] != null) {
-            neighbors[1].setDirty(true);
-        }
+        if (_parent == null)
+            return;
 
-        if (x == Configuration.CHUNK_DIMENSIONS.x - 1 && neighbors[0] != null) {
-            neighbors[0].setDirty(true);
-        }
+        int maxX = (int) Configuration.CHUNK_DIMENSIONS.x - 1;
+        int maxZ = (int) Configuration.CHUNK_DIMENSIONS.z - 1;
 
-        if (z == 0 && neighbors[3] != null) {
-            neighbors[3].setDirty(true);
-        }
+        int offsetX = x == 0 ? -1 : (x == maxX ? 1 : 0);
+        int offsetZ = z == 0 ? -1 : (z == maxZ ? 1 : 0);
 
-        if (z == Configuration.CHUNK_DIMENSIONS.z - 1 && neighbors[2] != null) {
-            neighbors[2].setDirty(true);
-        }
+        if (offsetX != 0)
+            markNeighborDirty(offsetX, 0, y);
 
-        if (x == Configuration.CHUNK_DIMENSIONS.x - 1 && z == 0 && neighbors[7] != null) {
-            neighbors[7].setDirty(true);
-        }
+        if (offsetZ != 0)
+            markNeighborDirty(0, offsetZ, y);
 
-        if (x == 0 && z == Configuration.CHUNK_DIMENSIONS.z - 1 && neighbors[6] != null) {
-            neighbors[6].setDirty(true);
-        }
+        if (offsetX != 0 && offsetZ != 0)
+            markNeighborDirty(offsetX, offsetZ, y);
+    }
 
-        if (x == 0 && z == 0 && neighbors[5] != null) {
-            neighbors[5].setDirty(true);
-        }
+    private void markNeighborDirty(int offsetX, int offsetZ, int y) {
+        Chunk neighbor = getParent().getChunkCache().loadOrCreateChunk((int) _position.x + offsetX, (int) _position.z + offsetZ);
 
-        if (x == Configuration.CHUNK_DIMENSIONS.x - 1 && z == Configuration.CHUNK_DIMENSIONS.z - 1 && neighbors[4] != null) {
-            neighbors[4].setDirty(true);
-        }
+        if (neighbor != null)
+            neighbor.markSectionsDirty(y);
     }
 
     /**
-     * Saves this chunk to disk.
+     * Marks the section containing the given local block position on the y-axis dirty. The
+     * vertically adjacent section is marked dirty as well if the block is located on its boundary.
      *
-     * @return True if the chunk was successfully written to the disk
+     * @param y Local block position on the y-axis
+     */
+    void markSectionsDirty(int y) {
+        int index = y >> ChunkSection.HEIGHT_BITS;
+        int sy = y & (ChunkSection.HEIGHT - 1);
+
+        int sections = 1 << index;
+
+        if (sy == 0 && index > 0)
+            sections |= 1 << (index - 1);
+        else if (sy == ChunkSection.HEIGHT - 1 && index < _sections.length() - 1)
+            sections |= 1 << (index + 1);
+
+        setFlags(_dirtySections, sections);
+
+        queueUpdate();
+    }
+
+    /**
+     * Notifies the update manager about the modification of this chunk. Chunks which are
+     * not cached (yet) are queued as soon as they are added to the chunk cache.
+     */
+    private void queueUpdate() {
+        if (_parent != null && _cached)
+            _parent.getChunkUpdateManager().queueChunkUpdate(this);
+    }
+
+    /**
+     * Queues a snapshot of this chunk for writing to disk. Chunks which were not modified since
+     * they were loaded or saved the last time are skipped.
+     *
+     * @return True if the chunk was queued for writing
      */
     public boolean writeChunkToDisk() {
         // Don't save fresh chunks
@@ -601,57 +794,162 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
             return false;
         }
 
-        if (Blockmania.getInstance().isSandboxed()) {
+        // Read the counter before serializing, so modifications during the serialization are not lost
+        int modificationCount = _modificationCount.get();
+        // The saved state is outdated if the last write failed
+        boolean writeFailed = _parent.getChunkIOService().isWriteFailed((int) _position.x, (int) _position.z);
+
+        if (modificationCount == _savedModificationCount && !writeFailed) {
             return false;
         }
-        // Generate the save directory if needed
-        File dir = new File(_parent.getWorldSavePath());
-        if (!dir.exists()) {
-            if (!dir.mkdirs()) {
-                Blockmania.getInstance().getLogger().log(Level.SEVERE, "Could not create save directory.");
-                return false;
-            }
+
+        byte[] data = serialize();
+        long contentHash = calcContentHash(data);
+
+        _savedModificationCount = modificationCount;
+
+        // Modifications might have been reverted (or the light was recalculated to the same values)
+        if (contentHash == _savedContentHash && !writeFailed) {
+            return false;
+        }
+
+        _savedContentHash = contentHash;
+
+        // Chunks which were not edited can be generated again if the store has to drop them
+        _parent.getChunkIOService().queueWrite((int) _position.x, (int) _position.z, data, !_edited);
+        Blockmania.getInstance().getLogger().log(Level.FINE, "Queued chunk {0} for writing to disk.", this);
+
+        return true;
+    }
+
+    /**
+     * Calculates a 64 bit hash of the given data (MurmurHash64A).
+     *
+     * @param data The data
+     * @return The hash
+     */
+    private static long calcContentHash(byte[] data) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int words = data.length / 8;
+        long h = data.length * m;
+
+        for (int i = 0; i < words; i++) {
+            long k = buffer.getLong(i * 8);
+
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+
+            h ^= k;
+            h *= m;
+        }
+
+        int remaining = data.length & 7;
+
+        if (remaining > 0) {
+            for (int i = remaining - 1; i >= 0; i--)
+                h ^= (long) (data[words * 8 + i] & 0xFF) << (i * 8);
+
+            h *= m;
         }
 
-        ByteBuffer output = BufferUtils.createByteBuffer(_blocks.getSize() + _sunlight.getPackedSize() + _light.getPackedSize() + 1);
-        File f = new File(String.format("%s/%d.bc", getParent().getWorldSavePath(), getChunkId()));
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+
+        return h;
+    }
+
+    /**
+     * Returns the amount of modifications of the blocks and light values of this chunk.
+     *
+     * @return The modification count
+     */
+    public int getModificationCount() {
+        return _modificationCount.get();
+    }
+
+    /**
+     * Serializes the blocks and light values of this chunk. Chunks recording their
+     * modifications are stored as the list of modifications if delta saves are enabled.
+     *
+     * @return The serialized data
+     */
+    private byte[] serialize() {
+        if (_editLog != null && Configuration.getSettingBoolean("DELTA_SAVES"))
+            return serializeEditLog();
+
+        int size = getBlockCount();
+        byte[] output = new byte[size * 2 + 1];
 
         // Save flags...
         byte flags = 0x0;
-        if (_lightDirty) {
-            flags = Helper.setFlag(flags, (short) 0);
+        if (isLightDirty()) {
+            flags = Helper.setFlag(flags, FLAG_LIGHT_DIRTY);
+        }
+        if (_edited) {
+            flags = Helper.setFlag(flags, FLAG_EDITED);
         }
 
-        // The flags are stored within the first byte of the file...
-        output.put(flags);
+        // The flags are stored within the first byte of the data...
+        output[0] = flags;
 
+        // The sections are stored as one continuous block of the whole chunk
+        byte[] sunlight = new byte[size];
+        byte[] light = new byte[size];
 
-        for (int i = 0; i < _blocks.getSize(); i++)
-            output.put(_blocks.getRawByte(i));
+        for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
+            for (int i = 0; i < _sections.length(); i++) {
+                int offset = getBlockIndex(x, i * ChunkSection.HEIGHT, 0);
+                ChunkSection section = _sections.get(i);
 
-        for (int i = 0; i < _sunlight.getPackedSize(); i++)
-            output.put(_sunlight.getRawByte(i));
+                section.getLayer(ChunkSection.CHANNEL_BLOCKS, x, output, offset + 1);
+                section.getLayer(ChunkSection.CHANNEL_SUNLIGHT, x, sunlight, offset);
+                section.getLayer(ChunkSection.CHANNEL_LIGHT, x, light, offset);
+            }
+        }
 
-        for (int i = 0; i < _light.getPackedSize(); i++)
-            output.put(_light.getRawByte(i));
+        packNibbles(sunlight, output, size + 1);
+        packNibbles(light, output, size + 1 + size / 2);
 
-        output.rewind();
+        return output;
+    }
 
-        try {
-            FileOutputStream oS = new FileOutputStream(f);
-            FileChannel c = oS.getChannel();
-            c.write(output);
-            Blockmania.getInstance().getLogger().log(Level.FINE, "Wrote chunk {0} to disk.", this);
-            oS.close();
-        } catch (FileNotFoundException ex) {
-            Blockmania.getInstance().getLogger().log(Level.SEVERE, null, ex);
-            return false;
-        } catch (IOException ex) {
-            Blockmania.getInstance().getLogger().log(Level.SEVERE, null, ex);
-            return false;
+    /**
+     * Serializes the blocks modified after the generation of this chunk, sorted by their
+     * position within the chunk:
+     * <pre>
+     * | FLAGS (BYTE) | COUNT (INT) | COUNT x (BLOCK INDEX (SHORT) | TYPE (BYTE)) |
+     * </pre>
+     * Loading the chunk regenerates it and applies the modifications again. The light is
+     * not stored at all.
+     *
+     * @return The serialized data
+     */
+    private byte[] serializeEditLog() {
+        FastMap<Integer, Byte> editLog = new FastMap<Integer, Byte>(_editLog);
+        int[] indices = new int[editLog.size()];
+        int i = 0;
+
+        for (FastMap.Entry<Integer, Byte> e = editLog.head(), end = editLog.tail(); (e = e.getNext()) != end; )
+            indices[i++] = e.getKey();
+
+        Arrays.sort(indices);
+
+        ByteBuffer output = ByteBuffer.allocate(5 + indices.length * 3);
+        byte flags = Helper.setFlag((byte) 0x0, FLAG_EDIT_LOG);
+        output.put(_edited ? Helper.setFlag(flags, FLAG_EDITED) : flags);
+        output.putInt(indices.length);
+
+        for (int index : indices) {
+            output.putShort((short) index);
+            output.put(editLog.get(index));
         }
 
-        return true;
+        return output.array();
     }
 
     /**
@@ -660,57 +958,159 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
      * @return True if the chunk was successfully loaded
      */
     public boolean loadChunkFromFile() {
-        if (Blockmania.getInstance().isSandboxed()) {
+        int size = getBlockCount();
+        byte[] data;
+
+        try {
+            data = _parent.getChunkIOService().loadChunk((int) _position.x, (int) _position.z);
+        } catch (IOException ex) {
+            Blockmania.getInstance().getLogger().log(Level.SEVERE, "Could not load chunk " + this + ".", ex);
             return false;
         }
 
-        ByteBuffer input = BufferUtils.createByteBuffer(_blocks.getSize() + _sunlight.getPackedSize() + _light.getPackedSize() + 1);
-        File f = new File(String.format("%s/%d.bc", getParent().getWorldSavePath(), getChunkId()));
-
-        if (!f.exists()) {
+        if (data == null) {
             return false;
         }
 
-        try {
-            FileInputStream iS = new FileInputStream(f);
-            FileChannel c = iS.getChannel();
-            c.read(input);
-            Blockmania.getInstance().getLogger().log(Level.FINE, "Loaded chunk {0} from disk.", this);
-            iS.close();
-        } catch (FileNotFoundException ex) {
-            Blockmania.getInstance().getLogger().log(Level.SEVERE, null, ex);
-            return false;
-        } catch (IOException ex) {
-            Blockmania.getInstance().getLogger().log(Level.SEVERE, null, ex);
+        if (data.length > 0 && Helper.isFlagSet(data[0], FLAG_EDIT_LOG)) {
+            deserializeEditLog(data);
+        } else if (data.length == size * 2 + 1) {
+            deserialize(data);
+        } else {
+            Blockmania.getInstance().getLogger().log(Level.SEVERE, "Saved chunk {0} has an unexpected length.", this);
             return false;
         }
 
-        input.rewind();
+        // The chunk matches the data on disk
+        _savedModificationCount = _modificationCount.get();
+        _savedContentHash = calcContentHash(data);
+
+        Blockmania.getInstance().getLogger().log(Level.FINE, "Loaded chunk {0} from disk.", this);
+
+        return true;
+    }
+
+    /**
+     * Restores the blocks and light values of this chunk from serialized data.
+     *
+     * @param data The serialized data
+     */
+    private void deserialize(byte[] data) {
+        int size = getBlockCount();
 
         // The first byte contains the flags...
-        byte flags = input.get();
+        byte flags = data[0];
         // Parse the flags...
-        _lightDirty = Helper.isFlagSet(flags, (short) 0);
+        setLightDirty(Helper.isFlagSet(flags, FLAG_LIGHT_DIRTY));
+        _edited = Helper.isFlagSet(flags, FLAG_EDITED);
 
-        for (int i = 0; i < _blocks.getSize(); i++)
-            _blocks.setRawByte(i, input.get());
+        byte[] sunlight = new byte[size];
+        byte[] light = new byte[size];
 
-        for (int i = 0; i < _sunlight.getPackedSize(); i++)
-            _sunlight.setRawByte(i, input.get());
+        unpackNibbles(data, size + 1, sunlight);
+        unpackNibbles(data, size + 1 + size / 2, light);
 
-        for (int i = 0; i < _light.getPackedSize(); i++)
-            _light.setRawByte(i, input.get());
+        for (int i = 0; i < _sections.length(); i++) {
+            ChunkSection section = new ChunkSection((byte) 0x0, (byte) 0x0, (byte) 0x0);
 
-        return true;
+            for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
+                int offset = getBlockIndex(x, i * ChunkSection.HEIGHT, 0);
+
+                section.setLayer(ChunkSection.CHANNEL_BLOCKS, x, data, offset + 1);
+                section.setLayer(ChunkSection.CHANNEL_SUNLIGHT, x, sunlight, offset);
+                section.setLayer(ChunkSection.CHANNEL_LIGHT, x, light, offset);
+            }
+
+            _sections.set(i, section.compact());
+        }
+    }
+
+    /**
+     * Regenerates this chunk and applies the modifications stored within the given serialized
+     * edit log. The light of the chunk is calculated from scratch afterwards. The generators only
+     * write to the chunk they generate, so the neighbors which are loaded already stay untouched.
+     *
+     * @param data The serialized edit log
+     */
+    private void deserializeEditLog(byte[] data) {
+        ByteBuffer input = ByteBuffer.wrap(data);
+        _edited = Helper.isFlagSet(input.get(), FLAG_EDITED);
+
+        runGenerators();
+
+        FastMap<Integer, Byte> editLog = new FastMap<Integer, Byte>().shared();
+        int count = input.getInt();
+
+        for (int i = 0; i < count; i++) {
+            int index = input.getShort() & 0xFFFF;
+            byte type = input.get();
+
+            int z = index % (int) Configuration.CHUNK_DIMENSIONS.z;
+            int y = (index / (int) Configuration.CHUNK_DIMENSIONS.z) % (int) Configuration.CHUNK_DIMENSIONS.y;
+            int x = index / ((int) Configuration.CHUNK_DIMENSIONS.z * (int) Configuration.CHUNK_DIMENSIONS.y);
+
+            synchronized (_sections) {
+                getWritableSection(y).setBlock(x, y & (ChunkSection.HEIGHT - 1), z, type);
+            }
+
+            editLog.put(index, type);
+        }
+
+        _editLog = editLog;
+
+        generateSunlight();
+        setLightDirty(true);
+    }
+
+    private static int getBlockCount() {
+        return (int) Configuration.CHUNK_DIMENSIONS.x * (int) Configuration.CHUNK_DIMENSIONS.y * (int) Configuration.CHUNK_DIMENSIONS.z;
+    }
+
+    /**
+     * Packs light values into nibbles. The first half of the values is stored in the lower
+     * nibbles, the second half in the upper nibbles.
+     *
+     * @param values The light values
+     * @param output The array to store the packed values in
+     * @param offset The position of the first packed value within the output array
+     */
+    private static void packNibbles(byte[] values, byte[] output, int offset) {
+        int half = values.length / 2;
+
+        for (int i = 0; i < half; i++)
+            output[offset + i] = (byte) ((values[i] & 0x0F) | (values[i + half] << 4));
+    }
+
+    /**
+     * Restores light values packed by {@link #packNibbles(byte[], byte[], int)}.
+     *
+     * @param input  The array containing the packed values
+     * @param offset The position of the first packed value within the input array
+     * @param values The array to store the light values in
+     */
+    private static void unpackNibbles(byte[] input, int offset, byte[] values) {
+        int half = values.length / 2;
+
+        for (int i = 0; i < half; i++) {
+            byte packed = input[offset + i];
+
+            values[i] = (byte) (packed & 0x0F);
+            values[i + half] = (byte) ((packed >> 4) & 0x0F);
+        }
     }
 
     public void disposeChunk() {
-        if (_newMesh != null)
-            _newMesh.disposeMesh();
-        _newMesh = null;
-        if (_activeMesh != null)
-            _activeMesh.disposeMesh();
-        _activeMesh = null;
+        disposeMeshes();
+
+        for (int i = 0; i < _sections.length(); i++) {
+            ChunkMesh newMesh = _newMeshes.getAndSet(i, null);
+
+            if (newMesh != null)
+                newMesh.disposeMesh();
+            if (_activeMeshes[i] != null)
+                _activeMeshes[i].disposeMesh();
+            _activeMeshes[i] = null;
+        }
     }
 
     @Override
@@ -751,6 +1151,28 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         return _aabb;
     }
 
+    /**
+     * Returns the bounding box of the section with the given index.
+     *
+     * @param index The index of the section
+     * @return The bounding box
+     */
+    public AABB getSectionAABB(int index) {
+        if (_sectionAABBs == null) {
+            AABB[] aabbs = new AABB[_sections.length()];
+
+            for (int i = 0; i < aabbs.length; i++) {
+                Vector3f dimensions = new Vector3f(Configuration.CHUNK_DIMENSIONS.x / 2, ChunkSection.HEIGHT / 2, Configuration.CHUNK_DIMENSIONS.z / 2);
+                Vector3f position = new Vector3f(getChunkWorldPosX() + dimensions.getX(), i * ChunkSection.HEIGHT + dimensions.getY(), getChunkWorldPosZ() + dimensions.getZ());
+                aabbs[i] = new AABB(position, dimensions);
+            }
+
+            _sectionAABBs = aabbs;
+        }
+
+        return _sectionAABBs[index];
+    }
+
 
     /**
      * Generates the display lists and swaps the old mesh with the current mesh.
@@ -759,8 +1181,11 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         if (!isCached())
             return;
 
-        if (_newMesh != null) {
-            _newMesh.generateVBOs();
+        for (int i = 0; i < _newMeshes.length(); i++) {
+            ChunkMesh newMesh = _newMeshes.get(i);
+
+            if (newMesh != null)
+                newMesh.generateVBOs();
         }
     }
 
@@ -811,7 +1236,11 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
     }
 
     public boolean isDirty() {
-        return _dirty;
+        return _dirtySections.get() != 0;
+    }
+
+    private boolean isSectionDirty(int index) {
+        return (_dirtySections.get() & (1 << index)) != 0;
     }
 
     public boolean isFresh() {
@@ -822,18 +1251,33 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         return _lightDirty;
     }
 
-    void setDirty(boolean _dirty) {
-        this._dirty = _dirty;
+    void setDirty(boolean dirty) {
+        _dirtySections.set(dirty ? ALL_SECTIONS : 0);
+
+        if (dirty)
+            queueUpdate();
     }
 
-    void setLightDirty(boolean _lightDirty) {
-        this._lightDirty = _lightDirty;
+    void setLightDirty(boolean lightDirty) {
+        _lightDirty = lightDirty;
+
+        if (lightDirty)
+            queueUpdate();
     }
 
     public Integer getChunkId() {
         return _chunkId;
     }
 
+    /**
+     * Returns the packed chunk coordinates used as key within the chunk cache.
+     *
+     * @return The key
+     */
+    public long getChunkKey() {
+        return _chunkKey;
+    }
+
     public void setCached(boolean b) {
         _cached = b;
     }
@@ -847,6 +1291,10 @@ public final class Chunk extends StaticEntity implements Comparable<Chunk> {
         return _parent.getPlayer().getViewFrustum().intersects(getAABB());
     }
 
+    private boolean isSectionInFrustum(int index) {
+        return _parent.getPlayer().getViewFrustum().intersects(getSectionAABB(index));
+    }
+
     public Vector3f getPosition() {
         return _position;
     }
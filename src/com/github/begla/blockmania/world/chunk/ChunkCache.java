@@ -15,11 +15,11 @@
  */
 package com.github.begla.blockmania.world.chunk;
 
+import com.github.begla.blockmania.datastructures.BlockmaniaLongMap;
 import com.github.begla.blockmania.main.Configuration;
 import com.github.begla.blockmania.utilities.MathHelper;
 import com.github.begla.blockmania.world.World;
 import javolution.util.FastList;
-import javolution.util.FastMap;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -31,7 +31,7 @@ import java.util.Collections;
  */
 public final class ChunkCache {
 
-    private final FastMap<Integer, Chunk> _chunkCache = new FastMap<Integer, Chunk>(capacity()).shared();
+    private final BlockmaniaLongMap<Chunk> _chunkCache = new BlockmaniaLongMap<Chunk>(capacity());
     private final Collection<Chunk> _disposableChunks = new FastList<Chunk>().shared();
     private final World _parent;
 
@@ -56,7 +56,7 @@ public final class ChunkCache {
         // Try to load the chunk from the cache
         Chunk c;
 
-        c = _chunkCache.get(Integer.valueOf(MathHelper.cantorize(x, z)));
+        c = _chunkCache.get(MathHelper.packCoordinates(x, z));
 
         // We got a chunk! Already! Great!
         if (c != null) {
@@ -66,28 +66,53 @@ public final class ChunkCache {
         // Init a new chunk
         c = _parent.prepareNewChunk(x, z);
 
-        _chunkCache.put(c.getChunkId(), c);
+        // Another thread might have created the same chunk in the meantime
+        Chunk present = _chunkCache.putIfAbsent(c.getChunkKey(), c);
+
+        if (present != null)
+            return present;
+
         c.setCached(true);
 
+        // Schedule the generation of the new chunk and the eviction of the chunks exceeding the capacity
+        _parent.getChunkUpdateManager().queueChunkUpdate(c);
+
         return c;
     }
 
+    /**
+     * Writes the chunks farthest from the player to disk and removes them from the cache until the
+     * cache does not exceed its capacity. Chunks which are processed by the chunk update workers
+     * are skipped.
+     */
     public void freeCacheSpace() {
         if (_chunkCache.size() <= capacity()) {
             return;
         }
 
-        FastList<Chunk> cachedChunks = new FastList<Chunk>(_chunkCache.values());
+        FastList<Chunk> cachedChunks = new FastList<Chunk>(_chunkCache.size());
+        _chunkCache.values(cachedChunks);
         Collections.sort(cachedChunks);
 
-        while (_chunkCache.size() > capacity()) {
+        ChunkUpdateManager updateManager = _parent.getChunkUpdateManager();
+
+        while (_chunkCache.size() > capacity() && !cachedChunks.isEmpty()) {
             Chunk chunkToDelete = cachedChunks.removeLast();
-            _chunkCache.remove(chunkToDelete.getChunkId());
 
-            chunkToDelete.setCached(false);
-            chunkToDelete.writeChunkToDisk();
+            // Chunks processed by the workers are evicted later on
+            if (!updateManager.claimChunkForEviction(chunkToDelete))
+                continue;
+
+            try {
+                _chunkCache.remove(chunkToDelete.getChunkKey());
 
-            _disposableChunks.add(chunkToDelete);
+                chunkToDelete.setCached(false);
+                chunkToDelete.writeChunkToDisk();
+
+                _disposableChunks.add(chunkToDelete);
+            } finally {
+                updateManager.releaseEvictedChunk(chunkToDelete);
+            }
         }
     }
 
@@ -99,21 +124,52 @@ public final class ChunkCache {
     }
 
     /**
-     * @param key
-     * @return
+     * Returns a cached chunk without creating it if it is not present.
+     *
+     * @param x X-coordinate of the chunk
+     * @param z Z-coordinate of the chunk
+     * @return The chunk or null if the chunk is not cached
      */
-    public Chunk getChunkByKey(int key) {
-        return _chunkCache.get(Integer.valueOf(key));
+    public Chunk getCachedChunk(int x, int z) {
+        return _chunkCache.get(MathHelper.packCoordinates(x, z));
+    }
+
+    /**
+     * Adds all cached chunks within the given region of chunk coordinates (inclusive) to the
+     * given collection. Chunks which are not cached are not created.
+     *
+     * @param minX   Minimum chunk position on the x-axis
+     * @param minZ   Minimum chunk position on the z-axis
+     * @param maxX   Maximum chunk position on the x-axis
+     * @param maxZ   Maximum chunk position on the z-axis
+     * @param result The collection
+     */
+    public void getCachedChunksInRegion(int minX, int minZ, int maxX, int maxZ, Collection<Chunk> result) {
+        _chunkCache.valuesInRegion(minX, minZ, maxX, maxZ, result);
+    }
+
+    /**
+     * Writes the given chunk to disk, disposes it and removes it from the cache.
+     *
+     * @param c The chunk
+     */
+    public void saveAndDisposeChunk(Chunk c) {
+        if (_chunkCache.remove(c.getChunkKey()) == null)
+            return;
+
+        c.setCached(false);
+        c.writeChunkToDisk();
+        c.disposeChunk();
     }
 
     /**
      * Writes all chunks to disk and disposes them.
      */
     public void saveAndDisposeAllChunks() {
-        for (FastMap.Entry<Integer, Chunk> e = _chunkCache.head(), end = _chunkCache.tail(); (e = e.getNext()) != end; ) {
-            e.getValue().setCached(false);
-            e.getValue().writeChunkToDisk();
-            e.getValue().disposeChunk();
+        for (Chunk c : _chunkCache) {
+            c.setCached(false);
+            c.writeChunkToDisk();
+            c.disposeChunk();
         }
 
         _chunkCache.clear();
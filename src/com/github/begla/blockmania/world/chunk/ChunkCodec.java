@@ -0,0 +1,52 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the serialized data of chunks before they are written to disk.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public interface ChunkCodec {
+
+    /**
+     * Returns the unique id of the codec, which is stored within the header of the saved chunks.
+     *
+     * @return The id
+     */
+    public byte getId();
+
+    /**
+     * Compresses the given data.
+     *
+     * @param data   The data
+     * @param length The amount of bytes to compress
+     * @return The compressed data
+     */
+    public byte[] encode(byte[] data, int length);
+
+    /**
+     * Decompresses the remaining bytes of the given buffer.
+     *
+     * @param input  The compressed data
+     * @param output The array the decompressed data is written to. Its length matches the length of the original data
+     * @throws IOException If the data is corrupted
+     */
+    public void decode(ByteBuffer input, byte[] output) throws IOException;
+}
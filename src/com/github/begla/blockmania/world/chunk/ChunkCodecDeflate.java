@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Slow codec with a high compression ratio used for archiving worlds.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkCodecDeflate implements ChunkCodec {
+
+    public static final byte ID = 2;
+
+    public byte getId() {
+        return ID;
+    }
+
+    public byte[] encode(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+
+        byte[] output = new byte[length / 4 + 64];
+        int outPos = 0;
+
+        while (!deflater.finished()) {
+            if (outPos == output.length)
+                output = Arrays.copyOf(output, output.length * 2);
+
+            outPos += deflater.deflate(output, outPos, output.length - outPos);
+        }
+
+        deflater.end();
+
+        return Arrays.copyOf(output, outPos);
+    }
+
+    public void decode(ByteBuffer input, byte[] output) throws IOException {
+        byte[] compressed = new byte[input.remaining()];
+        input.get(compressed);
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+
+        try {
+            int pos = 0;
+
+            while (pos < output.length && !inflater.finished()) {
+                int inflated = inflater.inflate(output, pos, output.length - pos);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+
+                pos += inflated;
+            }
+
+            if (pos != output.length)
+                throw new IOException("Deflated chunk data is truncated.");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted deflated chunk data.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
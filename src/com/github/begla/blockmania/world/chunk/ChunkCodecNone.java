@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores the data of chunks without any compression.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkCodecNone implements ChunkCodec {
+
+    public static final byte ID = 0;
+
+    public byte getId() {
+        return ID;
+    }
+
+    public byte[] encode(byte[] data, int length) {
+        return Arrays.copyOf(data, length);
+    }
+
+    public void decode(ByteBuffer input, byte[] output) throws IOException {
+        if (input.remaining() != output.length)
+            throw new IOException("Uncompressed chunk data has an unexpected length.");
+
+        input.get(output);
+    }
+}
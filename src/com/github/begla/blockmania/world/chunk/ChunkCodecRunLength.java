@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fast run-length codec used for streaming chunks to and from the disk.
+ * <p/>
+ * The data is stored as a sequence of packets. Each packet starts with a control byte. If the highest
+ * bit is not set, the lower seven bits plus one give the amount of literal bytes following the
+ * control byte. Otherwise the packet describes a run of the byte following the control byte. Runs
+ * of up to 129 bytes are stored within the lower seven bits (minus three), longer runs store the
+ * remaining length as a variable-length integer after the control byte.
+ * <p/>
+ * The blocks and the light values of chunks are made up of long runs (stone, air and
+ * full sunlight), so this codec shrinks saved chunks by an order of magnitude.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkCodecRunLength implements ChunkCodec {
+
+    public static final byte ID = 1;
+    /* ------ */
+    private static final int MIN_RUN = 3;
+    private static final int MAX_LITERALS = 128;
+    private static final int MAX_SHORT_RUN = 0x7E + MIN_RUN;
+    private static final int LONG_RUN = 0x7F;
+
+    public byte getId() {
+        return ID;
+    }
+
+    public byte[] encode(byte[] data, int length) {
+        // Worst case: one control byte per 128 literals
+        byte[] output = new byte[length + length / MAX_LITERALS + 1];
+        int outPos = 0;
+        int literalStart = 0;
+        int pos = 0;
+
+        while (pos < length) {
+            byte value = data[pos];
+            int runEnd = pos + 1;
+
+            while (runEnd < length && data[runEnd] == value)
+                runEnd++;
+
+            int runLength = runEnd - pos;
+
+            if (runLength < MIN_RUN) {
+                pos = runEnd;
+                continue;
+            }
+
+            outPos = writeLiterals(data, literalStart, pos, output, outPos);
+
+            if (runLength <= MAX_SHORT_RUN) {
+                output[outPos++] = (byte) (0x80 | (runLength - MIN_RUN));
+            } else {
+                output[outPos++] = (byte) (0x80 | LONG_RUN);
+                outPos = writeVarInt(runLength - MAX_SHORT_RUN - 1, output, outPos);
+            }
+
+            output[outPos++] = value;
+
+            pos = literalStart = runEnd;
+        }
+
+        outPos = writeLiterals(data, literalStart, length, output, outPos);
+
+        return Arrays.copyOf(output, outPos);
+    }
+
+    private static int writeLiterals(byte[] data, int start, int end, byte[] output, int outPos) {
+        while (start < end) {
+            int count = Math.min(MAX_LITERALS, end - start);
+
+            output[outPos++] = (byte) (count - 1);
+            System.arraycopy(data, start, output, outPos, count);
+
+            outPos += count;
+            start += count;
+        }
+
+        return outPos;
+    }
+
+    private static int writeVarInt(int value, byte[] output, int outPos) {
+        while ((value & ~0x7F) != 0) {
+            output[outPos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        output[outPos++] = (byte) value;
+        return outPos;
+    }
+
+    public void decode(ByteBuffer input, byte[] output) throws IOException {
+        int pos = 0;
+
+        try {
+            while (input.hasRemaining()) {
+                int control = input.get() & 0xFF;
+
+                if ((control & 0x80) == 0) {
+                    int count = control + 1;
+
+                    input.get(output, pos, count);
+                    pos += count;
+                } else {
+                    int runLength = (control & 0x7F) + MIN_RUN;
+
+                    if ((control & 0x7F) == LONG_RUN)
+                        runLength = readVarInt(input) + MAX_SHORT_RUN + 1;
+
+                    byte value = input.get();
+
+                    Arrays.fill(output, pos, pos + runLength, value);
+                    pos += runLength;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Buffer underflows and index violations
+            throw new IOException("Corrupted run-length encoded chunk data.", e);
+        }
+
+        if (pos != output.length)
+            throw new IOException("Run-length encoded chunk data is truncated.");
+    }
+
+    private static int readVarInt(ByteBuffer input) {
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            byte b = input.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wraps the serialized data of chunks into the versioned on-disk format.
+ * <p/>
+ * Each saved chunk starts with a header:
+ * <pre>
+ * | MAGIC (BYTE) | VERSION (BYTE) | CODEC (BYTE) | LENGTH OF THE UNCOMPRESSED DATA (INT) |
+ * </pre>
+ * followed by the data compressed with the given codec. Chunks saved by older versions do not
+ * contain a header and start with the flags of the chunk instead (which never match the magic byte).
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkFormat {
+
+    public static final byte MAGIC = (byte) 0xBC;
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 7;
+    /* UPPER BOUND FOR THE LENGTH OF SERIALIZED CHUNKS TO DETECT CORRUPTED HEADERS */
+    private static final int MAX_LENGTH = 1 << 24;
+    /* ------ */
+    private static final ChunkCodec[] CODECS = new ChunkCodec[]{new ChunkCodecNone(), new ChunkCodecRunLength(), new ChunkCodecDeflate()};
+    /* ------ */
+    /* FAST CODEC USED WHILE PLAYING */
+    public static final ChunkCodec DEFAULT_CODEC = getCodec(ChunkCodecRunLength.ID);
+    /* SLOW CODEC WITH A HIGH COMPRESSION RATIO USED FOR ARCHIVING WORLDS */
+    public static final ChunkCodec ARCHIVE_CODEC = getCodec(ChunkCodecDeflate.ID);
+
+    private ChunkFormat() {
+    }
+
+    /**
+     * Returns the codec with the given id.
+     *
+     * @param id The id of the codec
+     * @return The codec or null if no codec with the given id exists
+     */
+    public static ChunkCodec getCodec(byte id) {
+        if (id < 0 || id >= CODECS.length)
+            return null;
+
+        return CODECS[id];
+    }
+
+    /**
+     * Compresses the given serialized chunk data and adds the header.
+     *
+     * @param data   The serialized chunk data
+     * @param length The length of the data
+     * @param codec  The codec
+     * @return The buffer containing the header and the compressed data
+     */
+    public static ByteBuffer encode(byte[] data, int length, ChunkCodec codec) {
+        byte[] encoded = codec.encode(data, length);
+
+        ByteBuffer output = ByteBuffer.allocate(HEADER_SIZE + encoded.length);
+        output.put(MAGIC);
+        output.put(VERSION);
+        output.put(codec.getId());
+        output.putInt(length);
+        output.put(encoded);
+        output.flip();
+
+        return output;
+    }
+
+    /**
+     * Reads the header of the given saved chunk and decompresses the data.
+     *
+     * @param input  The saved chunk
+     * @param length The expected length of the serialized chunk data
+     * @return The serialized chunk data
+     * @throws IOException If the saved chunk is corrupted or was saved using an unknown format
+     */
+    public static byte[] decode(ByteBuffer input, int length) throws IOException {
+        byte[] output = decode(input);
+
+        if (output.length != length)
+            throw new IOException("The saved chunk has an unexpected length of " + output.length + " bytes.");
+
+        return output;
+    }
+
+    /**
+     * Reads the header of the given saved chunk and decompresses the data. The length of the
+     * serialized data is taken from the header.
+     *
+     * @param input The saved chunk
+     * @return The serialized chunk data
+     * @throws IOException If the saved chunk is corrupted or was saved using an unknown format
+     */
+    public static byte[] decode(ByteBuffer input) throws IOException {
+        if (!input.hasRemaining() || input.get(input.position()) != MAGIC) {
+            // Chunks saved without a header
+            byte[] output = new byte[input.remaining()];
+            getCodec(ChunkCodecNone.ID).decode(input, output);
+            return output;
+        }
+
+        if (input.remaining() < HEADER_SIZE)
+            throw new IOException("The header of the saved chunk is truncated.");
+
+        input.get();
+        byte version = input.get();
+        byte codecId = input.get();
+        int length = input.getInt();
+
+        if (version > VERSION)
+            throw new IOException("Unsupported chunk format version " + version + ".");
+
+        if (length < 0 || length > MAX_LENGTH)
+            throw new IOException("The saved chunk has an invalid length of " + length + " bytes.");
+
+        ChunkCodec codec = getCodec(codecId);
+
+        if (codec == null)
+            throw new IOException("Unknown chunk codec " + codecId + ".");
+
+        byte[] output = new byte[length];
+        codec.decode(input, output);
+
+        return output;
+    }
+
+    /**
+     * Decompresses the given saved chunk and compresses it again using the given codec.
+     *
+     * @param input The saved chunk
+     * @param codec The codec
+     * @return The recompressed chunk
+     * @throws IOException If the saved chunk is corrupted
+     */
+    public static ByteBuffer recode(ByteBuffer input, ChunkCodec codec) throws IOException {
+        byte[] data = decode(input);
+
+        return encode(data, data.length, codec);
+    }
+}
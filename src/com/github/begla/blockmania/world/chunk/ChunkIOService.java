@@ -0,0 +1,381 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import com.github.begla.blockmania.main.Blockmania;
+import com.github.begla.blockmania.utilities.MathHelper;
+import javolution.util.FastList;
+import javolution.util.FastMap;
+import javolution.util.FastSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+/**
+ * Reads and writes chunks on a set of dedicated I/O threads.
+ * <p/>
+ * Chunks are written using snapshots of their serialized data, so the chunk can be disposed
+ * right after the write was requested. Repeated writes of the same chunk are coalesced: only the
+ * latest snapshot which was not yet picked up by an I/O thread is written. Until a snapshot is
+ * written, loading the chunk returns the snapshot instead of the outdated data on disk.
+ * <p/>
+ * Chunks which are about to enter the viewing distance can be read ahead, so the chunk update
+ * workers do not have to wait for the disk when they load the chunk later on. Reads overlapping
+ * with a write of the same chunk are discarded, so outdated data is never kept.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkIOService {
+
+    /* MAXIMUM AMOUNT OF CHUNKS KEPT IN THE READ AHEAD BUFFER */
+    private static final int MAX_READ_AHEAD = 512;
+    /* MARKS CHUNKS WHICH WERE READ AHEAD BUT ARE NOT SAVED ON DISK */
+    private static final ByteBuffer NOT_SAVED = ByteBuffer.allocate(0);
+    /* ------ */
+    private final ChunkStore _store;
+    /* ------ */
+    private final FastMap<Long, byte[]> _pendingWrites = new FastMap<Long, byte[]>();
+    private final FastSet<Long> _regenerableWrites = new FastSet<Long>();
+    private final FastList<Long> _writeQueue = new FastList<Long>();
+    private final FastSet<Long> _queuedWrites = new FastSet<Long>();
+    private final FastSet<Long> _activeWrites = new FastSet<Long>();
+    /* CHUNKS WHOSE LATEST WRITE FAILED */
+    private final FastSet<Long> _failedWrites = new FastSet<Long>();
+    /* ------ */
+    private final FastList<Long> _readQueue = new FastList<Long>();
+    private final FastSet<Long> _queuedReads = new FastSet<Long>();
+    private final FastMap<Long, ByteBuffer> _readAhead = new FastMap<Long, ByteBuffer>();
+    private final FastMap<Long, Integer> _activeReads = new FastMap<Long, Integer>();
+    /* ------ */
+    private final Thread[] _workers;
+    private boolean _workersAlive = true;
+
+    /**
+     * Starts the I/O threads.
+     *
+     * @param store       The store the chunks are saved in
+     * @param threadCount The amount of I/O threads
+     */
+    public ChunkIOService(ChunkStore store, int threadCount) {
+        _store = store;
+        _workers = new Thread[Math.max(1, threadCount)];
+
+        for (int i = 0; i < _workers.length; i++) {
+            _workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    while (processNextRequest()) {
+                        // Process requests until the service is disposed
+                    }
+                }
+            }, "Chunk I/O Worker " + i);
+
+            _workers[i].setDaemon(true);
+            _workers[i].start();
+        }
+    }
+
+    /**
+     * Queues the given snapshot of the serialized data of a chunk for writing. The chunk is treated
+     * as edited, so the store always keeps it.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @param data   The serialized data of the chunk, which must not be modified afterwards
+     */
+    public void queueWrite(int chunkX, int chunkZ, byte[] data) {
+        queueWrite(chunkX, chunkZ, data, false);
+    }
+
+    /**
+     * Queues the given snapshot of the serialized data of a chunk for writing. A snapshot queued
+     * before for the same chunk is replaced if it was not written yet.
+     *
+     * @param chunkX      The chunk position on the x-axis
+     * @param chunkZ      The chunk position on the z-axis
+     * @param data        The serialized data of the chunk, which must not be modified afterwards
+     * @param regenerable True if the chunk was not edited since its generation
+     */
+    public void queueWrite(int chunkX, int chunkZ, byte[] data, boolean regenerable) {
+        Long key = MathHelper.packCoordinates(chunkX, chunkZ);
+
+        synchronized (this) {
+            _pendingWrites.put(key, data);
+            _failedWrites.remove(key);
+
+            if (regenerable)
+                _regenerableWrites.add(key);
+            else
+                _regenerableWrites.remove(key);
+            _readAhead.remove(key);
+
+            // Reads which are in progress return outdated data
+            Integer writeGeneration = _activeReads.get(key);
+
+            if (writeGeneration != null)
+                _activeReads.put(key, writeGeneration + 1);
+
+            if (_queuedWrites.add(key))
+                _writeQueue.addLast(key);
+
+            notifyAll();
+        }
+    }
+
+    /**
+     * Requests reading the given chunk in the background. The chunk is kept in memory until it
+     * is loaded using {@link #loadChunk(int, int)}.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     */
+    public void prefetch(int chunkX, int chunkZ) {
+        Long key = MathHelper.packCoordinates(chunkX, chunkZ);
+
+        synchronized (this) {
+            if (_pendingWrites.containsKey(key) || _readAhead.containsKey(key) || _activeReads.containsKey(key) || !_queuedReads.add(key))
+                return;
+
+            _readQueue.addLast(key);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Loads the serialized data of the given chunk. Snapshots waiting to be written and chunks which
+     * were read ahead are returned without accessing the disk. If the chunk is being read ahead at
+     * the moment, the result of the read ahead is awaited instead of reading the chunk again.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @return The serialized data or null if the chunk was never saved
+     * @throws IOException
+     */
+    public byte[] loadChunk(int chunkX, int chunkZ) throws IOException {
+        Long key = MathHelper.packCoordinates(chunkX, chunkZ);
+        ByteBuffer savedChunk;
+
+        synchronized (this) {
+            // The chunk is read right away
+            if (_queuedReads.remove(key))
+                _readQueue.remove(key);
+
+            while (true) {
+                byte[] pendingData = _pendingWrites.get(key);
+
+                if (pendingData != null)
+                    return pendingData;
+
+                savedChunk = _readAhead.remove(key);
+
+                if (savedChunk != null || !_activeReads.containsKey(key))
+                    break;
+
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (savedChunk == null)
+            savedChunk = _store.readChunk(chunkX, chunkZ);
+
+        if (savedChunk == null || savedChunk == NOT_SAVED)
+            return null;
+
+        return ChunkFormat.decode(savedChunk);
+    }
+
+    /**
+     * Processes the next request. Reads are processed before writes since other threads might be
+     * waiting for them. Blocks until a request is available.
+     *
+     * @return False if the service was disposed
+     */
+    private boolean processNextRequest() {
+        Long key = null;
+        byte[] data = null;
+        boolean regenerable = false;
+
+        synchronized (this) {
+            while (key == null) {
+                if (!_readQueue.isEmpty()) {
+                    key = _readQueue.removeFirst();
+                    _queuedReads.remove(key);
+                    _activeReads.put(key, 0);
+                } else {
+                    for (FastList.Node<Long> n = _writeQueue.head(), end = _writeQueue.tail(); (n = n.getNext()) != end; ) {
+                        // Writes of the same chunk must not overtake each other
+                        if (_activeWrites.contains(n.getValue()))
+                            continue;
+
+                        key = n.getValue();
+                        data = _pendingWrites.get(key);
+                        regenerable = _regenerableWrites.contains(key);
+
+                        _writeQueue.delete(n);
+                        _queuedWrites.remove(key);
+                        _activeWrites.add(key);
+                        break;
+                    }
+                }
+
+                if (key == null) {
+                    if (!_workersAlive)
+                        return false;
+
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        int chunkX = MathHelper.unpackX(key);
+        int chunkZ = MathHelper.unpackZ(key);
+
+        if (data != null)
+            write(key, chunkX, chunkZ, data, regenerable);
+        else
+            read(key, chunkX, chunkZ);
+
+        return true;
+    }
+
+    private void write(Long key, int chunkX, int chunkZ, byte[] data, boolean regenerable) {
+        boolean failed = true;
+
+        try {
+            _store.writeChunk(chunkX, chunkZ, ChunkFormat.encode(data, data.length, ChunkFormat.DEFAULT_CODEC), regenerable);
+            failed = false;
+        } catch (IOException e) {
+            Blockmania.getInstance().getLogger().log(Level.SEVERE, "Could not write chunk (" + chunkX + ", " + chunkZ + ").", e);
+        } finally {
+            synchronized (this) {
+                _activeWrites.remove(key);
+
+                // Keep newer snapshots which were queued in the meantime
+                if (_pendingWrites.get(key) == data) {
+                    _pendingWrites.remove(key);
+                    _regenerableWrites.remove(key);
+
+                    if (failed)
+                        _failedWrites.add(key);
+                }
+
+                notifyAll();
+            }
+        }
+    }
+
+    private void read(Long key, int chunkX, int chunkZ) {
+        ByteBuffer savedChunk = null;
+        boolean failed = false;
+
+        try {
+            savedChunk = _store.readChunk(chunkX, chunkZ);
+        } catch (IOException e) {
+            Blockmania.getInstance().getLogger().log(Level.SEVERE, "Could not read chunk (" + chunkX + ", " + chunkZ + ").", e);
+            failed = true;
+        }
+
+        synchronized (this) {
+            int writeGeneration = _activeReads.remove(key);
+
+            // Wake up the threads waiting for the read ahead
+            notifyAll();
+
+            // The data on disk is outdated if the chunk was saved in the meantime, even if the
+            // write already finished
+            if (failed || writeGeneration != 0 || _pendingWrites.containsKey(key))
+                return;
+
+            _readAhead.put(key, savedChunk != null ? savedChunk : NOT_SAVED);
+
+            // Drop the chunks which were read ahead first
+            while (_readAhead.size() > MAX_READ_AHEAD)
+                _readAhead.remove(_readAhead.head().getNext().getKey());
+        }
+    }
+
+    /**
+     * Blocks until all queued writes are finished and written to the disk.
+     */
+    public void flush() {
+        synchronized (this) {
+            while (!_writeQueue.isEmpty() || !_activeWrites.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        _store.flush();
+    }
+
+    /**
+     * Finishes all queued writes and stops the I/O threads.
+     */
+    public void dispose() {
+        flush();
+
+        synchronized (this) {
+            _workersAlive = false;
+            _readQueue.clear();
+            _queuedReads.clear();
+            _readAhead.clear();
+
+            notifyAll();
+        }
+
+        for (Thread worker : _workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the latest snapshot queued for the given chunk could not be written, so the
+     * chunk has to be written again even if it was not modified since.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @return True if the write failed
+     */
+    public synchronized boolean isWriteFailed(int chunkX, int chunkZ) {
+        return _failedWrites.contains(MathHelper.packCoordinates(chunkX, chunkZ));
+    }
+
+    /**
+     * Returns the amount of chunks waiting to be written.
+     *
+     * @return The amount of chunks
+     */
+    public synchronized int getPendingWritesSize() {
+        return _pendingWrites.size();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import com.github.begla.blockmania.utilities.MathHelper;
+import javolution.util.FastMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Keeps the encoded chunks of a world in memory. Used if the chunks can not be saved to disk
+ * (like in the applet).
+ * <p/>
+ * The data is stored outside of the Java heap within an arena, which is divided into blocks of 1 KB.
+ * The data of each chunk occupies a continuous run of blocks. The memory of the arena is allocated
+ * in slabs of 1 MB once the blocks within them are used for the first time.
+ * <p/>
+ * The capacity of the arena is a soft limit. If the arena is full, the least recently used chunks
+ * which were not edited since their generation are dropped until the new data fits, so those chunks
+ * are generated again when they are visited the next time. Edited chunks are never dropped: if they
+ * fill the arena, the arena grows beyond its capacity, since the chunks were already removed from
+ * the chunk cache and the edits would be lost otherwise.
+ * <p/>
+ * All methods are synchronized, so the store can be shared by multiple threads.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkMemoryStore implements ChunkStore {
+
+    public static final int BLOCK_SIZE = 1024;
+    /* BLOCKS PER SLAB OF THE ARENA */
+    private static final int SLAB_BLOCKS = 1024;
+    private static final int SLAB_SIZE = SLAB_BLOCKS * BLOCK_SIZE;
+    /* ------ */
+    private ByteBuffer[] _slabs;
+    private final int _blockCount;
+    private final BitSet _usedBlocks = new BitSet();
+    /* FIRST BLOCK, LENGTH AND REGENERABLE FLAG OF THE STORED CHUNKS (LEAST RECENTLY USED FIRST) */
+    private final FastMap<Long, int[]> _entries = new FastMap<Long, int[]>();
+    /* ------ */
+    private int _droppedChunks;
+
+    /**
+     * Creates an empty store. No memory is allocated until chunks are written.
+     *
+     * @param capacity The size of the arena in bytes, which is only exceeded by edited chunks
+     */
+    public ChunkMemoryStore(int capacity) {
+        _blockCount = Math.max(1, capacity / BLOCK_SIZE);
+        _slabs = new ByteBuffer[(_blockCount + SLAB_BLOCKS - 1) / SLAB_BLOCKS];
+    }
+
+    public synchronized ByteBuffer readChunk(int chunkX, int chunkZ) {
+        Long key = MathHelper.packCoordinates(chunkX, chunkZ);
+        int[] entry = _entries.remove(key);
+
+        if (entry == null)
+            return null;
+
+        // Move the chunk to the end of the list of recently used chunks
+        _entries.put(key, entry);
+
+        ByteBuffer data = ByteBuffer.allocate(entry[1]);
+        readArena(data, entry[0]);
+        data.flip();
+
+        return data;
+    }
+
+    public synchronized void writeChunk(int chunkX, int chunkZ, ByteBuffer data, boolean regenerable) throws IOException {
+        Long key = MathHelper.packCoordinates(chunkX, chunkZ);
+        int length = data.remaining();
+        int blocks = blocksFor(length);
+
+        if (regenerable && blocks > _blockCount)
+            throw new IOException("Chunk (" + chunkX + ", " + chunkZ + ") is larger than the chunk store.");
+
+        // The blocks of the old data can be reused
+        int[] entry = _entries.remove(key);
+
+        if (entry != null)
+            release(entry);
+
+        int offset;
+
+        while ((offset = allocate(blocks, _blockCount)) < 0) {
+            Long droppable = findDroppableChunk();
+
+            if (droppable == null) {
+                // Edited chunks are stored beyond the capacity of the arena
+                if (!regenerable) {
+                    offset = allocate(blocks, Integer.MAX_VALUE);
+                    break;
+                }
+
+                // Keep the old data, which was not overwritten yet
+                if (entry != null) {
+                    _usedBlocks.set(entry[0], entry[0] + blocksFor(entry[1]));
+                    _entries.put(key, entry);
+                }
+
+                throw new IOException("The chunk store is full of edited chunks, chunk (" + chunkX + ", " + chunkZ + ") can not be stored.");
+            }
+
+            release(_entries.remove(droppable));
+            _droppedChunks++;
+        }
+
+        writeArena(data.duplicate(), offset);
+
+        _usedBlocks.set(offset, offset + blocks);
+        _entries.put(key, new int[]{offset, length, regenerable ? 1 : 0});
+    }
+
+    /**
+     * Returns the least recently used chunk which can be generated again.
+     *
+     * @return The position of the chunk or null if all chunks were edited
+     */
+    private Long findDroppableChunk() {
+        for (FastMap.Entry<Long, int[]> e = _entries.head(), end = _entries.tail(); (e = e.getNext()) != end; ) {
+            if (e.getValue()[2] != 0)
+                return e.getKey();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the first block of a run of free blocks with the given length.
+     *
+     * @param blocks The length of the run
+     * @param limit  The run has to end before this block
+     * @return The first block or -1 if no run is large enough
+     */
+    private int allocate(int blocks, int limit) {
+        int start = _usedBlocks.nextClearBit(0);
+
+        while (start <= limit - blocks) {
+            int end = _usedBlocks.nextSetBit(start);
+
+            if (end < 0 || end - start >= blocks)
+                return start;
+
+            start = _usedBlocks.nextClearBit(end);
+        }
+
+        return -1;
+    }
+
+    private void readArena(ByteBuffer buffer, int block) {
+        int position = block * BLOCK_SIZE;
+
+        while (buffer.hasRemaining()) {
+            ByteBuffer slab = getSlab(position / SLAB_SIZE);
+            slab.position(position % SLAB_SIZE);
+            slab.limit(Math.min(slab.capacity(), slab.position() + buffer.remaining()));
+
+            position += slab.remaining();
+            buffer.put(slab);
+        }
+    }
+
+    private void writeArena(ByteBuffer buffer, int block) {
+        int position = block * BLOCK_SIZE;
+
+        while (buffer.hasRemaining()) {
+            ByteBuffer slab = getSlab(position / SLAB_SIZE);
+            slab.position(position % SLAB_SIZE);
+
+            ByteBuffer part = buffer.duplicate();
+            part.limit(part.position() + Math.min(part.remaining(), slab.remaining()));
+
+            position += part.remaining();
+            buffer.position(part.limit());
+            slab.put(part);
+        }
+    }
+
+    /**
+     * Returns a view of the given slab of the arena. The slab is allocated on its first use.
+     */
+    private ByteBuffer getSlab(int index) {
+        if (index >= _slabs.length)
+            _slabs = Arrays.copyOf(_slabs, index + 1);
+
+        if (_slabs[index] == null)
+            _slabs[index] = ByteBuffer.allocateDirect(SLAB_SIZE);
+
+        return _slabs[index].duplicate();
+    }
+
+    private void release(int[] entry) {
+        _usedBlocks.clear(entry[0], entry[0] + blocksFor(entry[1]));
+    }
+
+    private static int blocksFor(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    public void flush() {
+        // Nothing to do
+    }
+
+    public synchronized void close() {
+        _entries.clear();
+        _usedBlocks.clear();
+    }
+
+    /**
+     * Returns the amount of stored chunks.
+     *
+     * @return The amount of chunks
+     */
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Returns the amount of bytes occupied by the stored chunks.
+     *
+     * @return The amount of bytes
+     */
+    public synchronized int getUsedBytes() {
+        return _usedBlocks.cardinality() * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the amount of memory allocated for the arena.
+     *
+     * @return The amount of bytes
+     */
+    public synchronized int getAllocatedBytes() {
+        int bytes = 0;
+
+        for (ByteBuffer slab : _slabs) {
+            if (slab != null)
+                bytes += slab.capacity();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Returns the amount of chunks which were dropped because the arena was full. Chunks which
+     * could not be stored at all are not counted.
+     *
+     * @return The amount of chunks
+     */
+    public synchronized int getDroppedChunks() {
+        return _droppedChunks;
+    }
+}
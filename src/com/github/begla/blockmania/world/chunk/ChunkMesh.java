@@ -1,14 +1,13 @@
 package com.github.begla.blockmania.world.chunk;
 
 import com.github.begla.blockmania.rendering.VBOHelper;
-import gnu.trove.list.array.TFloatArrayList;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.ARBVertexBufferObject;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
-import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL20;
 
-import java.nio.FloatBuffer;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -18,46 +17,58 @@ import static org.lwjgl.opengl.GL11.*;
  */
 public class ChunkMesh {
 
+    /**
+     * The final vertex and index buffers of one render type, see {@link ChunkMeshBuilder}.
+     */
     public class VertexElements {
-        public VertexElements() {
-            quads = new TFloatArrayList();
-            tex = new TFloatArrayList();
-            color = new TFloatArrayList();
-        }
-
-        public final TFloatArrayList quads;
-        public final TFloatArrayList tex;
-        public final TFloatArrayList color;
-
-        public FloatBuffer vertices;
-        public IntBuffer indices;
+        public ByteBuffer vertices;
+        public ByteBuffer indices;
+        /* GL_UNSIGNED_SHORT OR GL_UNSIGNED_INT */
+        public int indexType;
+        public int indexCount;
+        public int vertexCount;
     }
 
     public enum RENDER_TYPE {
         OPAQUE, BILLBOARD_AND_TRANSLUCENT, WATER, LAVA
     }
 
-    private static final int STRIDE = (3 + 2 + 2 + 4) * 4;
+    /* AMOUNT OF VERTEX ELEMENTS (BILLBOARDS ARE STORED SEPARATELY FROM THE TRANSLUCENT BLOCKS) */
+    public static final int VERTEX_ELEMENTS = 5;
+    /* ------ */
+    /* PACKED VERTEX LAYOUT, SEE ChunkMeshBuilder */
+    private static final int STRIDE = ChunkMeshBuilder.VERTEX_SIZE;
     private static final int OFFSET_VERTEX = 0;
-    private static final int OFFSET_TEX_0 = (3 * 4);
-    private static final int OFFSET_TEX_1 = ((2 + 3) * 4);
-    private static final int OFFSET_COLOR = ((2 + 3 + 2) * 4);
+    private static final int OFFSET_LIGHT_AND_TILING = (4 * 2);
+    private static final int OFFSET_COLOR = (4 * 2 + 4);
+    /* ------ */
+    /* THE ATTRIBUTE IS BOUND TO THIS LOCATION BEFORE THE CHUNK SHADER IS LINKED, SEE ShaderManager */
+    public static final String ATTRIBUTE_LIGHT_AND_TILING = "lightAndTiling";
+    public static final int ATTRIBUTE_LIGHT_AND_TILING_LOCATION = 6;
 
     /* ------ */
 
-    private final int[] _vertexBuffers = new int[5];
-    private final int[] _idxBuffers = new int[5];
-    private final int[] _idxBufferCount = new int[5];
-    public VertexElements[] _vertexElements = new VertexElements[5];
+    private final int[] _vertexBuffers = new int[VERTEX_ELEMENTS];
+    private final int[] _idxBuffers = new int[VERTEX_ELEMENTS];
+    private final int[] _idxBufferCount = new int[VERTEX_ELEMENTS];
+    private final int[] _idxBufferTypes = new int[VERTEX_ELEMENTS];
+    private final int[] _vertexCount = new int[VERTEX_ELEMENTS];
+    public VertexElements[] _vertexElements = new VertexElements[VERTEX_ELEMENTS];
 
     private boolean _generated;
+    private boolean _empty;
+    /* THE PACKED POSITIONS ARE RELATIVE TO THIS ORIGIN */
+    private float _originX, _originY, _originZ;
 
     public ChunkMesh() {
-        _vertexElements[0] = new VertexElements();
-        _vertexElements[1] = new VertexElements();
-        _vertexElements[2] = new VertexElements();
-        _vertexElements[3] = new VertexElements();
-        _vertexElements[4] = new VertexElements();
+        for (int i = 0; i < VERTEX_ELEMENTS; i++)
+            _vertexElements[i] = new VertexElements();
+    }
+
+    void setOrigin(float x, float y, float z) {
+        _originX = x;
+        _originY = y;
+        _originZ = z;
     }
 
     /**
@@ -68,6 +79,8 @@ public class ChunkMesh {
         if (_generated)
             return;
 
+        _empty = true;
+
         for (int i = 0; i < _vertexBuffers.length; i++)
             generateVBO(i);
 
@@ -78,9 +91,20 @@ public class ChunkMesh {
     }
 
     private void generateVBO(int id) {
+        // Don't waste buffer objects on empty vertex arrays
+        if (_vertexElements[id].indexCount == 0) {
+            _vertexBuffers[id] = -1;
+            _idxBuffers[id] = -1;
+            return;
+        }
+
+        _empty = false;
+
         _vertexBuffers[id] = VBOHelper.getInstance().createVboId();
         _idxBuffers[id] = VBOHelper.getInstance().createVboId();
-        _idxBufferCount[id] = _vertexElements[id].indices.limit();
+        _idxBufferCount[id] = _vertexElements[id].indexCount;
+        _idxBufferTypes[id] = _vertexElements[id].indexType;
+        _vertexCount[id] = _vertexElements[id].vertexCount;
 
         VBOHelper.getInstance().bufferVboElementData(_idxBuffers[id], _vertexElements[id].indices, ARBVertexBufferObject.GL_STATIC_DRAW_ARB);
         VBOHelper.getInstance().bufferVboData(_vertexBuffers[id], _vertexElements[id].vertices, ARBVertexBufferObject.GL_STATIC_DRAW_ARB);
@@ -92,26 +116,26 @@ public class ChunkMesh {
             return;
 
         glEnableClientState(GL_VERTEX_ARRAY);
-        glEnableClientState(GL_TEXTURE_COORD_ARRAY);
         glEnableClientState(GL_COLOR_ARRAY);
+        GL20.glEnableVertexAttribArray(ATTRIBUTE_LIGHT_AND_TILING_LOCATION);
 
         ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, _idxBuffers[id]);
         ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, _vertexBuffers[id]);
 
-        glVertexPointer(3, GL11.GL_FLOAT, STRIDE, OFFSET_VERTEX);
-
-        GL13.glClientActiveTexture(GL13.GL_TEXTURE0);
-        glTexCoordPointer(2, GL11.GL_FLOAT, STRIDE, OFFSET_TEX_0);
+        // The fourth component of the position contains the index of the texture tile
+        glVertexPointer(4, GL11.GL_SHORT, STRIDE, OFFSET_VERTEX);
+        GL20.glVertexAttribPointer(ATTRIBUTE_LIGHT_AND_TILING_LOCATION, 4, GL11.GL_UNSIGNED_BYTE, false, STRIDE, OFFSET_LIGHT_AND_TILING);
+        glColorPointer(4, GL11.GL_UNSIGNED_BYTE, STRIDE, OFFSET_COLOR);
 
-        GL13.glClientActiveTexture(GL13.GL_TEXTURE1);
-        glTexCoordPointer(2, GL11.GL_FLOAT, STRIDE, OFFSET_TEX_1);
+        glPushMatrix();
+        glTranslatef(_originX, _originY, _originZ);
 
-        glColorPointer(4, GL11.GL_FLOAT, STRIDE, OFFSET_COLOR);
+        GL12.glDrawRangeElements(GL11.GL_TRIANGLES, 0, _vertexCount[id] - 1, _idxBufferCount[id], _idxBufferTypes[id], 0);
 
-        GL12.glDrawRangeElements(GL11.GL_TRIANGLES, 0, _idxBufferCount[id], _idxBufferCount[id], GL_UNSIGNED_INT, 0);
+        glPopMatrix();
 
+        GL20.glDisableVertexAttribArray(ATTRIBUTE_LIGHT_AND_TILING_LOCATION);
         glDisableClientState(GL_COLOR_ARRAY);
-        glDisableClientState(GL_TEXTURE_COORD_ARRAY);
         glDisableClientState(GL_VERTEX_ARRAY);
 
         ARBVertexBufferObject.glBindBufferARB(ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, 0);
@@ -155,16 +179,28 @@ public class ChunkMesh {
         return _generated;
     }
 
+    /**
+     * Returns true if the generated mesh does not contain any vertices.
+     *
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return _empty;
+    }
+
     public void disposeMesh() {
         IntBuffer ib = BufferUtils.createIntBuffer(_vertexBuffers.length + _idxBuffers.length);
         for (int i = 0; i < _vertexBuffers.length; i++) {
-            ib.put(_idxBuffers[i]);
-            ib.put(_vertexBuffers[i]);
+            if (_idxBuffers[i] > 0)
+                ib.put(_idxBuffers[i]);
+            if (_vertexBuffers[i] > 0)
+                ib.put(_vertexBuffers[i]);
             _idxBuffers[i] = -1;
             _vertexBuffers[i] = -1;
         }
         ib.flip();
 
-        ARBVertexBufferObject.glDeleteBuffersARB(ib);
+        if (ib.limit() > 0)
+            ARBVertexBufferObject.glDeleteBuffersARB(ib);
     }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.util.vector.Vector4f;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Collects the packed vertices of a chunk mesh in growable primitive arrays.
+ * <p/>
+ * Each vertex is packed into 16 bytes:
+ * <pre>
+ * | X, Y, Z (SHORT) | TILE (SHORT) | SUN, BLOCK LIGHT, TILING U, V (UBYTE) | R, G, B, A (UBYTE) |
+ * </pre>
+ * Positions are stored relative to the origin of the mesh as fixed point values with
+ * {@link #POSITION_SCALE} steps per block. The texture is stored as the index of the tile within
+ * the texture atlas and the position within the (repeated) tile. The chunk vertex shader unpacks
+ * the values again.
+ * <p/>
+ * The arrays only grow and are reused for each mesh, so tessellating a chunk does not produce
+ * any garbage besides the final buffers handed to the mesh. A builder must only be used by one
+ * thread. Use {@link #getInstance()} to obtain the builder of the current thread.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkMeshBuilder {
+
+    /* SIZE OF A PACKED VERTEX IN BYTES */
+    public static final int VERTEX_SIZE = 16;
+    /* FIXED POINT STEPS PER BLOCK */
+    public static final int POSITION_SCALE = 16;
+    /* THE TILES OF THE TEXTURE ATLAS PER ROW */
+    public static final int ATLAS_TILES = 16;
+    /* ------ */
+    private static final int INITIAL_CAPACITY = 1024 * VERTEX_SIZE;
+    private static final int MAX_SHORT_INDEX = 0xFFFF;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    /* ------ */
+    private static final ThreadLocal<ChunkMeshBuilder> _builders = new ThreadLocal<ChunkMeshBuilder>() {
+        @Override
+        protected ChunkMeshBuilder initialValue() {
+            return new ChunkMeshBuilder();
+        }
+    };
+
+    private final byte[][] _vertices = new byte[ChunkMesh.VERTEX_ELEMENTS][];
+    private final int[] _sizes = new int[ChunkMesh.VERTEX_ELEMENTS];
+    private float _originX, _originY, _originZ;
+
+    /**
+     * Returns the builder of the current thread.
+     *
+     * @return The builder
+     */
+    public static ChunkMeshBuilder getInstance() {
+        return _builders.get();
+    }
+
+    private ChunkMeshBuilder() {
+        for (int i = 0; i < _vertices.length; i++)
+            _vertices[i] = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Removes all vertices collected so far.
+     */
+    public void reset() {
+        for (int i = 0; i < _sizes.length; i++)
+            _sizes[i] = 0;
+
+        _originX = _originY = _originZ = 0;
+    }
+
+    /**
+     * Sets the origin the positions of the following vertices are stored relative to.
+     *
+     * @param x Position on the x-axis
+     * @param y Position on the y-axis
+     * @param z Position on the z-axis
+     */
+    public void setOrigin(int x, int y, int z) {
+        _originX = x;
+        _originY = y;
+        _originZ = z;
+    }
+
+    /**
+     * Adds a vertex to the given vertex element. Four consecutive vertices form a quad.
+     *
+     * @param element  The index of the vertex element
+     * @param x        Position on the x-axis
+     * @param y        Position on the y-axis
+     * @param z        Position on the z-axis
+     * @param tile     The index of the texture tile within the atlas
+     * @param tilingU  The position within the repeated texture tile on the u-axis
+     * @param tilingV  The position within the repeated texture tile on the v-axis
+     * @param sunlight The sunlight value (0.0 to 1.0)
+     * @param light    The block light value (0.0 to 1.0)
+     * @param color    The color
+     */
+    public void addVertex(int element, float x, float y, float z, int tile, int tilingU, int tilingV, float sunlight, float light, Vector4f color) {
+        byte[] vertices = _vertices[element];
+        int size = _sizes[element];
+
+        if (size + VERTEX_SIZE > vertices.length) {
+            byte[] grown = new byte[vertices.length << 1];
+            System.arraycopy(vertices, 0, grown, 0, size);
+
+            _vertices[element] = vertices = grown;
+        }
+
+        putShort(vertices, size, Math.round((x - _originX) * POSITION_SCALE));
+        putShort(vertices, size + 2, Math.round((y - _originY) * POSITION_SCALE));
+        putShort(vertices, size + 4, Math.round((z - _originZ) * POSITION_SCALE));
+        putShort(vertices, size + 6, tile);
+
+        vertices[size + 8] = toUnsignedByte(sunlight);
+        vertices[size + 9] = toUnsignedByte(light);
+        vertices[size + 10] = (byte) tilingU;
+        vertices[size + 11] = (byte) tilingV;
+
+        vertices[size + 12] = toUnsignedByte(color.x);
+        vertices[size + 13] = toUnsignedByte(color.y);
+        vertices[size + 14] = toUnsignedByte(color.z);
+        vertices[size + 15] = toUnsignedByte(color.w);
+
+        _sizes[element] = size + VERTEX_SIZE;
+    }
+
+    private static void putShort(byte[] array, int index, int value) {
+        if (LITTLE_ENDIAN) {
+            array[index] = (byte) value;
+            array[index + 1] = (byte) (value >> 8);
+        } else {
+            array[index] = (byte) (value >> 8);
+            array[index + 1] = (byte) value;
+        }
+    }
+
+    private static byte toUnsignedByte(float value) {
+        return (byte) Math.round(Math.max(0f, Math.min(1f, value)) * 255f);
+    }
+
+    /**
+     * Returns the amount of vertices collected for the given vertex element.
+     *
+     * @param element The index of the vertex element
+     * @return The amount of vertices
+     */
+    public int getVertexCount(int element) {
+        return _sizes[element] / VERTEX_SIZE;
+    }
+
+    /**
+     * Copies the collected vertices into the buffers of the given mesh and resets the builder.
+     * Indices are stored as unsigned shorts if possible. Empty vertex elements are left untouched,
+     * so no buffers are allocated for them.
+     *
+     * @param mesh The mesh
+     */
+    public void build(ChunkMesh mesh) {
+        mesh.setOrigin(_originX, _originY, _originZ);
+
+        for (int i = 0; i < ChunkMesh.VERTEX_ELEMENTS; i++) {
+            int vertexCount = getVertexCount(i);
+            int quads = vertexCount / 4;
+
+            if (quads == 0)
+                continue;
+
+            boolean shortIndices = vertexCount <= MAX_SHORT_INDEX + 1;
+
+            ByteBuffer vertices = BufferUtils.createByteBuffer(_sizes[i]);
+            vertices.put(_vertices[i], 0, _sizes[i]);
+            vertices.flip();
+
+            ByteBuffer indices = BufferUtils.createByteBuffer(quads * 6 * (shortIndices ? 2 : 4));
+
+            for (int q = 0, index = 0; q < quads; q++, index += 4) {
+                putIndex(indices, index, shortIndices);
+                putIndex(indices, index + 1, shortIndices);
+                putIndex(indices, index + 2, shortIndices);
+
+                putIndex(indices, index + 2, shortIndices);
+                putIndex(indices, index + 3, shortIndices);
+                putIndex(indices, index, shortIndices);
+            }
+
+            indices.flip();
+
+            ChunkMesh.VertexElements vertexElements = mesh._vertexElements[i];
+            vertexElements.vertices = vertices;
+            vertexElements.indices = indices;
+            vertexElements.indexType = shortIndices ? GL11.GL_UNSIGNED_SHORT : GL11.GL_UNSIGNED_INT;
+            vertexElements.indexCount = quads * 6;
+            vertexElements.vertexCount = vertexCount;
+        }
+
+        reset();
+    }
+
+    private static void putIndex(ByteBuffer buffer, int index, boolean shortIndex) {
+        if (shortIndex)
+            buffer.putShort((short) index);
+        else
+            buffer.putInt(index);
+    }
+}
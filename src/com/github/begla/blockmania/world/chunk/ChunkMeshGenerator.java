@@ -20,29 +20,154 @@ import com.github.begla.blockmania.blocks.BlockAir;
 import com.github.begla.blockmania.blocks.BlockLava;
 import com.github.begla.blockmania.blocks.BlockWater;
 import com.github.begla.blockmania.main.Configuration;
-import org.lwjgl.BufferUtils;
-import org.lwjgl.util.vector.Vector3f;
+import com.github.begla.blockmania.world.WorldAccessor;
+import org.lwjgl.util.vector.Vector2f;
 import org.lwjgl.util.vector.Vector4f;
 
 /**
- * Generates tessellated chunk meshes from chunks.
+ * Generates tessellated meshes from the sections of chunks.
+ * <p/>
+ * If greedy meshing is enabled, coplanar opaque faces sharing the same block type and light
+ * values are merged into larger quads. The texture of a merged quad is repeated for each block
+ * by the chunk shader.
+ * <p/>
+ * The vertices are written into the {@link ChunkMeshBuilder} of the generating thread and all
+ * face data is taken from static tables, so no objects are allocated per block or vertex.
  *
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
  */
 public class ChunkMeshGenerator {
 
+    private static final int SIZE_X = (int) Configuration.CHUNK_DIMENSIONS.x;
+    private static final int SIZE_Z = (int) Configuration.CHUNK_DIMENSIONS.z;
+    private static final int[] SIZES = {SIZE_X, ChunkSection.HEIGHT, SIZE_Z};
+    private static final int[] MASK_STRIDES = {ChunkSection.HEIGHT * SIZE_Z, SIZE_Z, 1};
+    /* VERTEX ELEMENTS OF THE MESH */
+    private static final int ELEMENT_OPAQUE = 0, ELEMENT_TRANSLUCENT = 1, ELEMENT_BILLBOARD = 2, ELEMENT_WATER = 3, ELEMENT_LAVA = 4;
+    /* FACES OF A BLOCK */
+    private static final int FACE_TOP = 0, FACE_FRONT = 1, FACE_BACK = 2, FACE_LEFT = 3, FACE_RIGHT = 4, FACE_BOTTOM = 5;
+    private static final Block.SIDE[] FACE_SIDES = {Block.SIDE.TOP, Block.SIDE.FRONT, Block.SIDE.BACK, Block.SIDE.LEFT, Block.SIDE.RIGHT, Block.SIDE.BOTTOM};
+    private static final int[][] FACE_NORMALS = {{0, 1, 0}, {0, 0, -1}, {0, 0, 1}, {-1, 0, 0}, {1, 0, 0}, {0, -1, 0}};
+    private static final int[] FACE_NORMAL_AXES = {1, 2, 2, 0, 0, 1};
+    private static final float[][][] FACE_CORNERS = {
+            {{-0.5f, 0.5f, 0.5f}, {0.5f, 0.5f, 0.5f}, {0.5f, 0.5f, -0.5f}, {-0.5f, 0.5f, -0.5f}},
+            {{-0.5f, 0.5f, -0.5f}, {0.5f, 0.5f, -0.5f}, {0.5f, -0.5f, -0.5f}, {-0.5f, -0.5f, -0.5f}},
+            {{-0.5f, -0.5f, 0.5f}, {0.5f, -0.5f, 0.5f}, {0.5f, 0.5f, 0.5f}, {-0.5f, 0.5f, 0.5f}},
+            {{-0.5f, -0.5f, -0.5f}, {-0.5f, -0.5f, 0.5f}, {-0.5f, 0.5f, 0.5f}, {-0.5f, 0.5f, -0.5f}},
+            {{0.5f, 0.5f, -0.5f}, {0.5f, 0.5f, 0.5f}, {0.5f, -0.5f, 0.5f}, {0.5f, -0.5f, -0.5f}},
+            {{-0.5f, -0.5f, -0.5f}, {0.5f, -0.5f, -0.5f}, {0.5f, -0.5f, 0.5f}, {-0.5f, -0.5f, 0.5f}}
+    };
+    private static final float[][][] BILLBOARD_CORNERS = {
+            {{-0.5f, -0.5f, 0.5f}, {0.5f, -0.5f, -0.5f}, {0.5f, 0.5f, -0.5f}, {-0.5f, 0.5f, 0.5f}},
+            {{-0.5f, -0.5f, -0.5f}, {0.5f, -0.5f, 0.5f}, {0.5f, 0.5f, 0.5f}, {-0.5f, 0.5f, -0.5f}}
+    };
+    private static final Block.SIDE[] BILLBOARD_SIDES = {Block.SIDE.FRONT, Block.SIDE.BACK};
+    /* TEXTURE COORDINATES OF THE CORNERS IN TILES (ROTATED ACCORDING TO THE ORIENTATION OF THE FACE) */
+    private static final int[][] TILING_DEFAULT = {{0, 0}, {1, 0}, {1, 1}, {0, 1}};
+    private static final int[][] TILING_ROTATED = {{0, 1}, {1, 1}, {1, 0}, {0, 0}};
+    private static final boolean[] FACE_ROTATED = {false, false, true, true, false, false};
+    /* OFFSETS OF THE BLOCKS SAMPLED FOR THE LIGHT AND OCCLUSION OF A VERTEX */
+    private static final float[][] VERTEX_SAMPLES = {
+            {0.5f, 0.5f, 0.5f}, {0.5f, 0.5f, -0.5f}, {-0.5f, 0.5f, -0.5f}, {-0.5f, 0.5f, 0.5f},
+            {0.5f, -0.5f, 0.5f}, {0.5f, -0.5f, -0.5f}, {-0.5f, -0.5f, -0.5f}, {-0.5f, -0.5f, 0.5f}
+    };
+    /* INDEX OF THE TEXTURE TILE FOR EACH BLOCK TYPE AND SIDE */
+    private static final int[] TEXTURE_TILES = new int[256 * 6];
+    /* ------ */
+    private static final ThreadLocal<GreedyMask> _greedyMasks = new ThreadLocal<GreedyMask>() {
+        @Override
+        protected GreedyMask initialValue() {
+            return new GreedyMask();
+        }
+    };
+
+    static {
+        // The offsets are constant, but the blocks create new vectors on each call
+        for (int i = 0; i < 256; i++) {
+            Block block = Block.getBlockForType((byte) i);
+
+            for (Block.SIDE side : Block.SIDE.values()) {
+                Vector2f offset = block.getTextureOffsetFor(side);
+
+                int tileX = Math.round(offset.x * ChunkMeshBuilder.ATLAS_TILES);
+                int tileY = Math.round(offset.y * ChunkMeshBuilder.ATLAS_TILES);
+
+                TEXTURE_TILES[i * 6 + side.ordinal()] = tileY * ChunkMeshBuilder.ATLAS_TILES + tileX;
+            }
+        }
+    }
+
+    /**
+     * The faces queued for merging, stored per face direction for each block of a section.
+     * Only the merged quads allocate memory, so each thread reuses its own mask.
+     */
+    private static final class GreedyMask {
+        final int[][] types = new int[FACE_SIDES.length][SIZE_X * ChunkSection.HEIGHT * SIZE_Z];
+        final float[][] sunlight = new float[FACE_SIDES.length][SIZE_X * ChunkSection.HEIGHT * SIZE_Z];
+        final float[][] light = new float[FACE_SIDES.length][SIZE_X * ChunkSection.HEIGHT * SIZE_Z];
+        final int[] pos = new int[3];
+
+        boolean matches(int face, int a, int b) {
+            return types[face][a] == types[face][b] && sunlight[face][a] == sunlight[face][b] && light[face][a] == light[face][b];
+        }
+    }
+
+    /* ------ */
     private final Chunk _chunk;
+    /* STATE OF THE THREAD CURRENTLY GENERATING A MESH */
+    private WorldAccessor _accessor;
+    private ChunkMeshBuilder _builder;
+    /* MASK OF THE THREAD CURRENTLY GENERATING A MESH OR NULL IF GREEDY MESHING IS DISABLED */
+    private GreedyMask _greedyMask;
+    /* CORNERS OF THE FACE CURRENTLY BEING TESSELLATED */
+    private final float[][] _corners = new float[4][3];
 
     public ChunkMeshGenerator(Chunk chunk) {
         _chunk = chunk;
     }
 
-    public ChunkMesh generateMesh() {
+    /**
+     * Generates the mesh for the section with the given index.
+     *
+     * @param sectionIndex The index of the section
+     * @return The generated mesh
+     */
+    public ChunkMesh generateMesh(int sectionIndex) {
         ChunkMesh mesh = new ChunkMesh();
+        ChunkSection section = _chunk.getSection(sectionIndex);
+
+        _accessor = _chunk.getParent().getAccessor();
+        _builder = ChunkMeshBuilder.getInstance();
+        _builder.reset();
+        _builder.setOrigin(_chunk.getBlockWorldPosX(0), sectionIndex << ChunkSection.HEIGHT_BITS, _chunk.getBlockWorldPosZ(0));
+        _greedyMask = Configuration.getSettingBoolean("GREEDY_MESHING") ? _greedyMasks.get() : null;
+
+        boolean boundaryOnly = false;
+
+        if (section.isBlockUniform()) {
+            Block block = Block.getBlockForType(section.getUniformBlock());
+
+            // Sections containing only invisible blocks do not produce any geometry
+            if (block.isBlockInvisible()) {
+                _builder.build(mesh);
+                return mesh;
+            }
+
+            // Inner faces of a section filled with one type of solid blocks are never visible
+            boundaryOnly = !block.doNotTessellate() && block.getBlockForm() != Block.BLOCK_FORM.BILLBOARD;
+        }
+
+        int maxX = SIZE_X - 1;
+        int maxZ = SIZE_Z - 1;
+
+        for (int sy = 0; sy < ChunkSection.HEIGHT; sy++) {
+            int y = (sectionIndex << ChunkSection.HEIGHT_BITS) + sy;
+
+            for (int x = 0; x <= maxX; x++) {
+                for (int z = 0; z <= maxZ; z++) {
+                    if (boundaryOnly && sy != 0 && sy != ChunkSection.HEIGHT - 1 && x != 0 && x != maxX && z != 0 && z != maxZ)
+                        continue;
 
-        for (int y = 0; y < Configuration.CHUNK_DIMENSIONS.y; y++) {
-            for (int x = 0; x < Configuration.CHUNK_DIMENSIONS.x; x++) {
-                for (int z = 0; z < Configuration.CHUNK_DIMENSIONS.z; z++) {
                     byte blockType = _chunk.getBlock(x, y, z);
                     Block block = Block.getBlockForType(blockType);
 
@@ -52,83 +177,178 @@ public class ChunkMeshGenerator {
                     Block.BLOCK_FORM blockForm = block.getBlockForm();
 
                     if (blockForm == Block.BLOCK_FORM.LOWERED_BOCK || blockForm == Block.BLOCK_FORM.CACTUS || blockForm == Block.BLOCK_FORM.NORMAL)
-                        generateBlockVertices(mesh, x, y, z);
+                        generateBlockVertices(x, y, z);
                     else if (blockForm == Block.BLOCK_FORM.BILLBOARD)
-                        generateBillboardVertices(mesh, x, y, z);
+                        generateBillboardVertices(x, y, z);
                 }
             }
         }
 
-        generateOptimizedBuffers(mesh);
+        if (_greedyMask != null)
+            generateGreedyQuads(sectionIndex);
+
+        _builder.build(mesh);
 
         return mesh;
     }
 
-    private void generateOptimizedBuffers(ChunkMesh mesh) {
-        for (int j = 0; j < mesh._vertexElements.length; j++) {
-            mesh._vertexElements[j].vertices = BufferUtils.createFloatBuffer(mesh._vertexElements[j].quads.size() + mesh._vertexElements[j].tex.size() * 2 + mesh._vertexElements[j].color.size());
-            mesh._vertexElements[j].indices = BufferUtils.createIntBuffer(mesh._vertexElements[j].quads.size());
-
-            int cTex = 0;
-            int cColor = 0;
-            int cIndex = 0;
-            for (int i = 0; i < mesh._vertexElements[j].quads.size(); i += 3, cTex += 2, cColor += 4) {
-
-                if (i % 4 == 0) {
-                    mesh._vertexElements[j].indices.put(cIndex);
-                    mesh._vertexElements[j].indices.put(cIndex + 1);
-                    mesh._vertexElements[j].indices.put(cIndex + 2);
-
-                    mesh._vertexElements[j].indices.put(cIndex + 2);
-                    mesh._vertexElements[j].indices.put(cIndex + 3);
-                    mesh._vertexElements[j].indices.put(cIndex);
-                    cIndex += 4;
+    /**
+     * Merges the queued faces of each slice of the section into as few quads as possible.
+     *
+     * @param sectionIndex The index of the section
+     */
+    private void generateGreedyQuads(int sectionIndex) {
+        GreedyMask mask = _greedyMask;
+        int[] pos = mask.pos;
+
+        for (int face = 0; face < FACE_SIDES.length; face++) {
+            int n = FACE_NORMAL_AXES[face];
+            int a = (n + 1) % 3;
+            int b = (n + 2) % 3;
+
+            int[] types = mask.types[face];
+
+            for (pos[n] = 0; pos[n] < SIZES[n]; pos[n]++) {
+                for (int j = 0; j < SIZES[b]; j++) {
+                    for (int i = 0; i < SIZES[a]; ) {
+                        pos[a] = i;
+                        pos[b] = j;
+
+                        int index = pos[0] * MASK_STRIDES[0] + pos[1] * MASK_STRIDES[1] + pos[2];
+
+                        if (types[index] == 0) {
+                            i++;
+                            continue;
+                        }
+
+                        // Extend the quad along the first axis...
+                        int w = 1;
+                        while (i + w < SIZES[a] && mask.matches(face, index, index + w * MASK_STRIDES[a]))
+                            w++;
+
+                        // ...and afterwards along the second axis as long as complete rows match
+                        int h = 1;
+                        extend:
+                        while (j + h < SIZES[b]) {
+                            for (int k = 0; k < w; k++) {
+                                if (!mask.matches(face, index, index + k * MASK_STRIDES[a] + h * MASK_STRIDES[b]))
+                                    break extend;
+                            }
+
+                            h++;
+                        }
+
+                        generateGreedyQuad(face, sectionIndex, pos, a, b, w, h, (byte) (types[index] - 1), mask.sunlight[face][index], mask.light[face][index]);
+
+                        for (int l = 0; l < h; l++) {
+                            for (int k = 0; k < w; k++)
+                                types[index + k * MASK_STRIDES[a] + l * MASK_STRIDES[b]] = 0;
+                        }
+
+                        i += w;
+                    }
                 }
+            }
+        }
+    }
 
-                Vector3f vertexPos = new Vector3f(mesh._vertexElements[j].quads.get(i), mesh._vertexElements[j].quads.get(i + 1), mesh._vertexElements[j].quads.get(i + 2));
+    private void generateGreedyQuad(int face, int sectionIndex, int[] pos, int a, int b, int w, int h, byte blockType, float sunlight, float light) {
+        Vector4f colorOffset = Block.getBlockForType(blockType).getColorOffsetFor(FACE_SIDES[face]);
+        int tile = getTextureTile(blockType, FACE_SIDES[face]);
 
-                mesh._vertexElements[j].vertices.put(vertexPos.x);
-                mesh._vertexElements[j].vertices.put(vertexPos.y);
-                mesh._vertexElements[j].vertices.put(vertexPos.z);
+        float[][] corners = FACE_CORNERS[face];
+        int[][] tiling = FACE_ROTATED[face] ? TILING_ROTATED : TILING_DEFAULT;
 
-                mesh._vertexElements[j].vertices.put(mesh._vertexElements[j].tex.get(cTex));
-                mesh._vertexElements[j].vertices.put(mesh._vertexElements[j].tex.get(cTex + 1));
+        // The texture coordinates follow the axes along which the corners of the face change
+        int uAxis = differingAxis(corners[0], corners[1]);
+        int vAxis = differingAxis(corners[1], corners[2]);
+        int uRepeat = (uAxis == a) ? w : h;
+        int vRepeat = (vAxis == a) ? w : h;
 
-                double occlusionValue = getOcclusionValue(vertexPos);
-                mesh._vertexElements[j].vertices.put((float) (getLightForVertexPos(vertexPos, Chunk.LIGHT_TYPE.SUN) * occlusionValue));
-                mesh._vertexElements[j].vertices.put((float) (getLightForVertexPos(vertexPos, Chunk.LIGHT_TYPE.BLOCK) * occlusionValue));
+        int offsetX = _chunk.getBlockWorldPosX(0);
+        int offsetY = sectionIndex << ChunkSection.HEIGHT_BITS;
+        int offsetZ = _chunk.getBlockWorldPosZ(0);
 
-                mesh._vertexElements[j].vertices.put(mesh._vertexElements[j].color.get(cColor));
-                mesh._vertexElements[j].vertices.put(mesh._vertexElements[j].color.get(cColor + 1));
-                mesh._vertexElements[j].vertices.put(mesh._vertexElements[j].color.get(cColor + 2));
-                mesh._vertexElements[j].vertices.put(mesh._vertexElements[j].color.get(cColor + 3));
+        for (int c = 0; c < 4; c++) {
+            float[] corner = corners[c];
 
-            }
+            // Corners on the positive side of an axis belong to the last block of the quad
+            float x = offsetX + pos[0] + corner[0] + ((corner[0] > 0) ? extentAlong(0, a, b, w, h) : 0);
+            float y = offsetY + pos[1] + corner[1] + ((corner[1] > 0) ? extentAlong(1, a, b, w, h) : 0);
+            float z = offsetZ + pos[2] + corner[2] + ((corner[2] > 0) ? extentAlong(2, a, b, w, h) : 0);
 
-            mesh._vertexElements[j].vertices.flip();
-            mesh._vertexElements[j].indices.flip();
+            _builder.addVertex(ELEMENT_OPAQUE, x, y, z, tile, tiling[c][0] * uRepeat, tiling[c][1] * vRepeat, sunlight, light, colorOffset);
         }
     }
 
-    private double getLightForVertexPos(Vector3f vertexPos, Chunk.LIGHT_TYPE lightType) {
-        double result = 0.0;
+    private static int extentAlong(int axis, int a, int b, int w, int h) {
+        if (axis == a)
+            return w - 1;
+        if (axis == b)
+            return h - 1;
+
+        return 0;
+    }
+
+    private static int differingAxis(float[] c1, float[] c2) {
+        for (int i = 0; i < 3; i++) {
+            if (c1[i] != c2[i])
+                return i;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Queues the given face for greedy meshing. Only full opaque faces with the same
+     * light and occlusion value at each corner are merged, all other faces are tessellated
+     * separately.
+     *
+     * @return True if the face was queued
+     */
+    private boolean queueGreedyFace(int face, int x, int y, int z, byte block, int element, Block.BLOCK_FORM blockForm) {
+        if (_greedyMask == null || element != ELEMENT_OPAQUE || blockForm != Block.BLOCK_FORM.NORMAL)
+            return false;
+
+        float[][] corners = FACE_CORNERS[face];
+        float sunlight = 0, light = 0;
+
+        for (int c = 0; c < 4; c++) {
+            float vx = _chunk.getBlockWorldPosX(x) + corners[c][0];
+            float vy = y + corners[c][1];
+            float vz = _chunk.getBlockWorldPosZ(z) + corners[c][2];
+
+            float occlusionValue = getOcclusionValue(vx, vy, vz);
+            float cornerSunlight = getLightForVertexPos(vx, vy, vz, Chunk.LIGHT_TYPE.SUN) * occlusionValue;
+            float cornerLight = getLightForVertexPos(vx, vy, vz, Chunk.LIGHT_TYPE.BLOCK) * occlusionValue;
+
+            if (c == 0) {
+                sunlight = cornerSunlight;
+                light = cornerLight;
+            } else if (cornerSunlight != sunlight || cornerLight != light) {
+                return false;
+            }
+        }
 
-        double[] lights = new double[8];
+        int index = x * MASK_STRIDES[0] + (y & (ChunkSection.HEIGHT - 1)) * MASK_STRIDES[1] + z;
 
-        lights[0] = _chunk.getParent().getLight((int) (vertexPos.x + 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z + 0.5f), lightType) / 15f;
-        lights[1] = _chunk.getParent().getLight((int) (vertexPos.x + 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z - 0.5f), lightType) / 15f;
-        lights[2] = _chunk.getParent().getLight((int) (vertexPos.x - 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z - 0.5f), lightType) / 15f;
-        lights[3] = _chunk.getParent().getLight((int) (vertexPos.x - 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z + 0.5f), lightType) / 15f;
+        _greedyMask.types[face][index] = (block & 0xFF) + 1;
+        _greedyMask.sunlight[face][index] = sunlight;
+        _greedyMask.light[face][index] = light;
 
-        lights[4] = _chunk.getParent().getLight((int) (vertexPos.x + 0.5f), (int) (vertexPos.y - 0.5f), (int) (vertexPos.z + 0.5f), lightType) / 15f;
-        lights[5] = _chunk.getParent().getLight((int) (vertexPos.x + 0.5f), (int) (vertexPos.y - 0.5f), (int) (vertexPos.z - 0.5f), lightType) / 15f;
-        lights[6] = _chunk.getParent().getLight((int) (vertexPos.x - 0.5f), (int) (vertexPos.y - 0.5f), (int) (vertexPos.z - 0.5f), lightType) / 15f;
-        lights[7] = _chunk.getParent().getLight((int) (vertexPos.x - 0.5f), (int) (vertexPos.y - 0.5f), (int) (vertexPos.z + 0.5f), lightType) / 15f;
+        return true;
+    }
 
+    private float getLightForVertexPos(float x, float y, float z, Chunk.LIGHT_TYPE lightType) {
+        int result = 0;
         int counter = 0;
-        for (int i = 0; i < 8; i++) {
-            if (lights[i] > 0) {
-                result += lights[i];
+
+        for (int i = 0; i < VERTEX_SAMPLES.length; i++) {
+            float[] sample = VERTEX_SAMPLES[i];
+            byte light = _accessor.getLight((int) (x + sample[0]), (int) (y + sample[1]), (int) (z + sample[2]), lightType);
+
+            if (light > 0) {
+                result += light;
                 counter++;
             }
         }
@@ -136,21 +356,17 @@ public class ChunkMeshGenerator {
         if (counter == 0)
             return 0;
 
-        return result / counter;
+        return result / (15f * counter);
     }
 
-    private double getOcclusionValue(Vector3f vertexPos) {
-
-        double result = 1.0;
-        byte[] blocks = new byte[8];
-
-        blocks[0] = _chunk.getParent().getBlock((int) (vertexPos.x + 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z + 0.5f));
-        blocks[1] = _chunk.getParent().getBlock((int) (vertexPos.x + 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z - 0.5f));
-        blocks[2] = _chunk.getParent().getBlock((int) (vertexPos.x - 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z - 0.5f));
-        blocks[3] = _chunk.getParent().getBlock((int) (vertexPos.x - 0.5f), (int) (vertexPos.y + 0.5f), (int) (vertexPos.z + 0.5f));
+    private float getOcclusionValue(float x, float y, float z) {
+        float result = 1.0f;
 
+        // Only the blocks above the vertex cast shadows
         for (int i = 0; i < 4; i++) {
-            Block b = Block.getBlockForType(blocks[i]);
+            float[] sample = VERTEX_SAMPLES[i];
+            Block b = Block.getBlockForType(_accessor.getBlock((int) (x + sample[0]), (int) (y + sample[1]), (int) (z + sample[2])));
+
             if (b.isCastingShadows() && b.getBlockForm() != Block.BLOCK_FORM.BILLBOARD) {
                 result -= Configuration.OCCLUSION_AMOUNT;
             } else if (b.isCastingShadows() && b.getBlockForm() == Block.BLOCK_FORM.BILLBOARD) {
@@ -164,338 +380,148 @@ public class ChunkMeshGenerator {
     /**
      * Generates the billboard vertices for a given local block position.
      *
-     * @param mesh The active mesh
-     * @param x    Local block position on the x-axis
-     * @param y    Local block position on the y-axis
-     * @param z    Local block position on the z-axis
+     * @param x Local block position on the x-axis
+     * @param y Local block position on the y-axis
+     * @param z Local block position on the z-axis
      */
-    private void generateBillboardVertices(ChunkMesh mesh, int x, int y, int z) {
+    private void generateBillboardVertices(int x, int y, int z) {
         byte block = _chunk.getBlock(x, y, z);
 
-        /*
-         * First side of the billboard
-         */
-        Vector4f colorBillboardOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.FRONT);
-        Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.FRONT).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.FRONT).y, 0);
-
-        Vector3f p1 = new Vector3f(-0.5f, -0.5f, 0.5f);
-        Vector3f p2 = new Vector3f(0.5f, -0.5f, -0.5f);
-        Vector3f p3 = new Vector3f(0.5f, 0.5f, -0.5f);
-        Vector3f p4 = new Vector3f(-0.5f, 0.5f, 0.5f);
+        for (int i = 0; i < BILLBOARD_SIDES.length; i++) {
+            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(BILLBOARD_SIDES[i]);
 
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p1));
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p2));
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p3));
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p4));
-        addBlockTextureData(mesh._vertexElements[2], texOffset, new Vector3f(0, 0, 1));
-
-        /*
-        * Second side of the billboard
-        */
-        colorBillboardOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.BACK);
-        texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.BACK).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.BACK).y, 0);
-
-        p1 = new Vector3f(-0.5f, -0.5f, -0.5f);
-        p2 = new Vector3f(0.5f, -0.5f, 0.5f);
-        p3 = new Vector3f(0.5f, 0.5f, 0.5f);
-        p4 = new Vector3f(-0.5f, 0.5f, -0.5f);
-
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p1));
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p2));
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p3));
-        addBlockVertexData(mesh._vertexElements[2], colorBillboardOffset, moveVectorToWorldSpace(x, y, z, p4));
-        addBlockTextureData(mesh._vertexElements[2], texOffset, new Vector3f(0, 0, 1));
+            addFaceVertices(ELEMENT_BILLBOARD, x, y, z, BILLBOARD_CORNERS[i], TILING_ROTATED, getTextureTile(block, BILLBOARD_SIDES[i]), colorOffset);
+        }
     }
 
-    private void generateBlockVertices(ChunkMesh mesh, int x, int y, int z) {
+    private void generateBlockVertices(int x, int y, int z) {
         byte block = _chunk.getBlock(x, y, z);
+        Block b = Block.getBlockForType(block);
 
         /*
          * Determine the render process.
          */
-        ChunkMesh.RENDER_TYPE renderType = ChunkMesh.RENDER_TYPE.BILLBOARD_AND_TRANSLUCENT;
-
-        if (!Block.getBlockForType(block).isBlockTypeTranslucent())
-            renderType = ChunkMesh.RENDER_TYPE.OPAQUE;
-        if (Block.getBlockForType(block).getClass().equals(BlockWater.class))
-            renderType = ChunkMesh.RENDER_TYPE.WATER;
-        if (Block.getBlockForType(block).getClass().equals(BlockLava.class))
-            renderType = ChunkMesh.RENDER_TYPE.LAVA;
-
-
-        boolean drawFront, drawBack, drawLeft, drawRight, drawTop, drawBottom;
-
-        byte blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y + 1, _chunk.getBlockWorldPosZ(z));
-        drawTop = isSideVisibleForBlockTypes(blockToCheck, block);
-        blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y, _chunk.getBlockWorldPosZ(z - 1));
-        drawFront = isSideVisibleForBlockTypes(blockToCheck, block);
-        blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y, _chunk.getBlockWorldPosZ(z + 1));
-        drawBack = isSideVisibleForBlockTypes(blockToCheck, block);
-        blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x - 1), y, _chunk.getBlockWorldPosZ(z));
-        drawLeft = isSideVisibleForBlockTypes(blockToCheck, block);
-        blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x + 1), y, _chunk.getBlockWorldPosZ(z));
-        drawRight = isSideVisibleForBlockTypes(blockToCheck, block);
-
-        // Don't draw anything "below" the world
-        if (y > 0) {
-            blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y - 1, _chunk.getBlockWorldPosZ(z));
-            drawBottom = isSideVisibleForBlockTypes(blockToCheck, block);
-        } else {
-            drawBottom = false;
-        }
-
-        Block.BLOCK_FORM blockForm = Block.getBlockForType(block).getBlockForm();
-
-        // If the block is lowered, some more faces have to be drawn
-        if (blockForm == Block.BLOCK_FORM.LOWERED_BOCK) {
-            blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y - 1, _chunk.getBlockWorldPosZ(z - 1));
-            drawFront = isSideVisibleForBlockTypes(blockToCheck, block) || drawFront;
-            blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y - 1, _chunk.getBlockWorldPosZ(z + 1));
-            drawBack = isSideVisibleForBlockTypes(blockToCheck, block) || drawBack;
-            blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x - 1), y - 1, _chunk.getBlockWorldPosZ(z));
-            drawLeft = isSideVisibleForBlockTypes(blockToCheck, block) || drawLeft;
-            blockToCheck = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x + 1), y - 1, _chunk.getBlockWorldPosZ(z));
-            drawRight = isSideVisibleForBlockTypes(blockToCheck, block) || drawRight;
-        }
-
-        if (drawTop) {
-            Vector3f p1 = new Vector3f(-0.5f, 0.5f, 0.5f);
-            Vector3f p2 = new Vector3f(0.5f, 0.5f, 0.5f);
-            Vector3f p3 = new Vector3f(0.5f, 0.5f, -0.5f);
-            Vector3f p4 = new Vector3f(-0.5f, 0.5f, -0.5f);
-
-            Vector3f norm = new Vector3f(0, 1, 0);
-
-            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.TOP);
-
-            Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.TOP).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.TOP).y, 0f);
-            generateVerticesForBlockSide(mesh, x, y, z, p1, p2, p3, p4, norm, colorOffset, texOffset, renderType, blockForm);
-        }
-
-        if (drawFront) {
-
-            Vector3f p1 = new Vector3f(-0.5f, 0.5f, -0.5f);
-            Vector3f p2 = new Vector3f(0.5f, 0.5f, -0.5f);
-            Vector3f p3 = new Vector3f(0.5f, -0.5f, -0.5f);
-            Vector3f p4 = new Vector3f(-0.5f, -0.5f, -0.5f);
-
-            Vector3f norm = new Vector3f(0, 0, -1);
+        int element = ELEMENT_TRANSLUCENT;
 
-            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.FRONT);
+        if (!b.isBlockTypeTranslucent())
+            element = ELEMENT_OPAQUE;
+        if (b.getClass().equals(BlockWater.class))
+            element = ELEMENT_WATER;
+        if (b.getClass().equals(BlockLava.class))
+            element = ELEMENT_LAVA;
 
-            Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.FRONT).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.FRONT).y, 0f);
-            generateVerticesForBlockSide(mesh, x, y, z, p1, p2, p3, p4, norm, colorOffset, texOffset, renderType, blockForm);
-        }
-
-        if (drawBack) {
-            Vector3f p1 = new Vector3f(-0.5f, -0.5f, 0.5f);
-            Vector3f p2 = new Vector3f(0.5f, -0.5f, 0.5f);
-            Vector3f p3 = new Vector3f(0.5f, 0.5f, 0.5f);
-            Vector3f p4 = new Vector3f(-0.5f, 0.5f, 0.5f);
-
-            Vector3f norm = new Vector3f(0, 0, 1);
-
-            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.BACK);
-
-            Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.BACK).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.BACK).y, 0f);
-            generateVerticesForBlockSide(mesh, x, y, z, p1, p2, p3, p4, norm, colorOffset, texOffset, renderType, blockForm);
-        }
-
-        if (drawLeft) {
-            Vector3f p1 = new Vector3f(-0.5f, -0.5f, -0.5f);
-            Vector3f p2 = new Vector3f(-0.5f, -0.5f, 0.5f);
-            Vector3f p3 = new Vector3f(-0.5f, 0.5f, 0.5f);
-            Vector3f p4 = new Vector3f(-0.5f, 0.5f, -0.5f);
+        Block.BLOCK_FORM blockForm = b.getBlockForm();
 
-            Vector3f norm = new Vector3f(-1, 0, 0);
+        int worldX = _chunk.getBlockWorldPosX(x);
+        int worldZ = _chunk.getBlockWorldPosZ(z);
 
-            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.LEFT);
+        for (int face = 0; face < FACE_SIDES.length; face++) {
+            int[] normal = FACE_NORMALS[face];
 
-            Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.LEFT).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.LEFT).y, 0f);
-            generateVerticesForBlockSide(mesh, x, y, z, p1, p2, p3, p4, norm, colorOffset, texOffset, renderType, blockForm);
-        }
+            boolean draw;
 
-        if (drawRight) {
-            Vector3f p1 = new Vector3f(0.5f, 0.5f, -0.5f);
-            Vector3f p2 = new Vector3f(0.5f, 0.5f, 0.5f);
-            Vector3f p3 = new Vector3f(0.5f, -0.5f, 0.5f);
-            Vector3f p4 = new Vector3f(0.5f, -0.5f, -0.5f);
+            // Don't draw anything "below" the world
+            if (face == FACE_BOTTOM && y <= 0)
+                draw = false;
+            else
+                draw = isSideVisibleForBlockTypes(_accessor.getBlock(worldX + normal[0], y + normal[1], worldZ + normal[2]), block);
 
-            Vector3f norm = new Vector3f(1, 0, 0);
+            // If the block is lowered, some more faces have to be drawn
+            if (blockForm == Block.BLOCK_FORM.LOWERED_BOCK && normal[1] == 0)
+                draw = isSideVisibleForBlockTypes(_accessor.getBlock(worldX + normal[0], y - 1, worldZ + normal[2]), block) || draw;
 
-            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.RIGHT);
+            if (!draw || queueGreedyFace(face, x, y, z, block, element, blockForm))
+                continue;
 
-            Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.RIGHT).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.RIGHT).y, 0f);
-            generateVerticesForBlockSide(mesh, x, y, z, p1, p2, p3, p4, norm, colorOffset, texOffset, renderType, blockForm);
-        }
-
-        if (drawBottom) {
-            Vector3f p1 = new Vector3f(-0.5f, -0.5f, -0.5f);
-            Vector3f p2 = new Vector3f(0.5f, -0.5f, -0.5f);
-            Vector3f p3 = new Vector3f(0.5f, -0.5f, 0.5f);
-            Vector3f p4 = new Vector3f(-0.5f, -0.5f, 0.5f);
-
-            Vector3f norm = new Vector3f(0, -1, 0);
-
-            Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(Block.SIDE.BOTTOM);
-
-            Vector3f texOffset = new Vector3f(Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.BOTTOM).x, Block.getBlockForType(block).getTextureOffsetFor(Block.SIDE.BOTTOM).y, 0f);
-            generateVerticesForBlockSide(mesh, x, y, z, p1, p2, p3, p4, norm, colorOffset, texOffset, renderType, blockForm);
+            generateVerticesForBlockSide(x, y, z, face, block, element, blockForm);
         }
     }
 
-    void generateVerticesForBlockSide(ChunkMesh mesh, int x, int y, int z, Vector3f p1, Vector3f p2, Vector3f p3, Vector3f p4, Vector3f norm, Vector4f colorOffset, Vector3f texOffset, ChunkMesh.RENDER_TYPE renderType, Block.BLOCK_FORM blockForm) {
-        ChunkMesh.VertexElements vertexElements = mesh._vertexElements[0];
+    private void generateVerticesForBlockSide(int x, int y, int z, int face, byte block, int element, Block.BLOCK_FORM blockForm) {
+        float[][] corners = _corners;
 
-        switch (renderType) {
-            case BILLBOARD_AND_TRANSLUCENT:
-                vertexElements = mesh._vertexElements[1];
-                break;
-            case WATER:
-                vertexElements = mesh._vertexElements[3];
-                break;
-            case LAVA:
-                vertexElements = mesh._vertexElements[4];
-                break;
-        }
+        for (int c = 0; c < 4; c++)
+            System.arraycopy(FACE_CORNERS[face][c], 0, corners[c], 0, 3);
 
         switch (blockForm) {
             case CACTUS:
-                generateCactusSide(p1, p2, p3, p4, norm);
+                generateCactusSide(face, corners);
                 break;
             case LOWERED_BOCK:
-                generateLoweredBlock(x, y, z, p1, p2, p3, p4, norm);
+                generateLoweredBlock(x, y, z, face, corners);
                 break;
         }
 
-        addBlockTextureData(vertexElements, texOffset, norm);
+        Vector4f colorOffset = Block.getBlockForType(block).getColorOffsetFor(FACE_SIDES[face]);
 
-        addBlockVertexData(vertexElements, colorOffset, moveVectorToWorldSpace(x, y, z, p1));
-        addBlockVertexData(vertexElements, colorOffset, moveVectorToWorldSpace(x, y, z, p2));
-        addBlockVertexData(vertexElements, colorOffset, moveVectorToWorldSpace(x, y, z, p3));
-        addBlockVertexData(vertexElements, colorOffset, moveVectorToWorldSpace(x, y, z, p4));
+        addFaceVertices(element, x, y, z, corners, FACE_ROTATED[face] ? TILING_ROTATED : TILING_DEFAULT, getTextureTile(block, FACE_SIDES[face]), colorOffset);
     }
 
-    private Vector3f moveVectorToWorldSpace(int cPosX, int cPosY, int cPosZ, Vector3f offset) {
-        double offsetX = _chunk.getPosition().x * Configuration.CHUNK_DIMENSIONS.x;
-        double offsetY = _chunk.getPosition().y * Configuration.CHUNK_DIMENSIONS.y;
-        double offsetZ = _chunk.getPosition().z * Configuration.CHUNK_DIMENSIONS.z;
+    private void addFaceVertices(int element, int x, int y, int z, float[][] corners, int[][] tiling, int tile, Vector4f colorOffset) {
+        for (int c = 0; c < 4; c++) {
+            float vx = _chunk.getBlockWorldPosX(x) + corners[c][0];
+            float vy = y + corners[c][1];
+            float vz = _chunk.getBlockWorldPosZ(z) + corners[c][2];
 
-        offset.x += offsetX + cPosX;
-        offset.y += offsetY + cPosY;
-        offset.z += offsetZ + cPosZ;
+            float occlusionValue = getOcclusionValue(vx, vy, vz);
+            float sunlight = getLightForVertexPos(vx, vy, vz, Chunk.LIGHT_TYPE.SUN) * occlusionValue;
+            float light = getLightForVertexPos(vx, vy, vz, Chunk.LIGHT_TYPE.BLOCK) * occlusionValue;
 
-        return offset;
+            _builder.addVertex(element, vx, vy, vz, tile, tiling[c][0], tiling[c][1], sunlight, light, colorOffset);
+        }
     }
 
-    private void generateLoweredBlock(int x, int y, int z, Vector3f p1, Vector3f p2, Vector3f p3, Vector3f p4, Vector3f norm) {
-        byte bottomBlock = _chunk.getParent().getBlock(_chunk.getBlockWorldPosX(x), y - 1, _chunk.getBlockWorldPosZ(z));
-        boolean lowerBottom = Block.getBlockForType(bottomBlock).getBlockForm() == Block.BLOCK_FORM.LOWERED_BOCK || bottomBlock == 0x0;
-
-        if (norm.x == 1.0f) {
-            p1.y -= 0.25;
-            p2.y -= 0.25;
-
-            if (lowerBottom) {
-                p3.y -= 0.25;
-                p4.y -= 0.25;
-            }
-        } else if (norm.x == -1.0f) {
-            p3.y -= 0.25;
-            p4.y -= 0.25;
+    private static int getTextureTile(byte block, Block.SIDE side) {
+        return TEXTURE_TILES[(block & 0xFF) * 6 + side.ordinal()];
+    }
 
-            if (lowerBottom) {
-                p1.y -= 0.25;
-                p2.y -= 0.25;
-            }
-        } else if (norm.z == 1.0f) {
-            p3.y -= 0.25;
-            p4.y -= 0.25;
+    private void generateLoweredBlock(int x, int y, int z, int face, float[][] corners) {
+        byte bottomBlock = _accessor.getBlock(_chunk.getBlockWorldPosX(x), y - 1, _chunk.getBlockWorldPosZ(z));
+        boolean lowerBottom = Block.getBlockForType(bottomBlock).getBlockForm() == Block.BLOCK_FORM.LOWERED_BOCK || bottomBlock == 0x0;
 
-            if (lowerBottom) {
-                p1.y -= 0.25;
-                p2.y -= 0.25;
-            }
-        } else if (norm.z == -1.0f) {
+        switch (face) {
+            case FACE_RIGHT:
+            case FACE_FRONT:
+                lowerCorners(corners, 0, 1);
 
-            p1.y -= 0.25;
-            p2.y -= 0.25;
+                if (lowerBottom)
+                    lowerCorners(corners, 2, 3);
+                break;
+            case FACE_LEFT:
+            case FACE_BACK:
+                lowerCorners(corners, 2, 3);
 
-            if (lowerBottom) {
-                p3.y -= 0.25;
-                p4.y -= 0.25;
-            }
-        } else if (norm.y == 1.0f) {
-            p1.y -= 0.25;
-            p2.y -= 0.25;
-            p3.y -= 0.25;
-            p4.y -= 0.25;
-        } else if (norm.y == -1.0f) {
-            if (lowerBottom) {
-                p1.y -= 0.25;
-                p2.y -= 0.25;
-                p3.y -= 0.25;
-                p4.y -= 0.25;
-            }
+                if (lowerBottom)
+                    lowerCorners(corners, 0, 1);
+                break;
+            case FACE_TOP:
+                lowerCorners(corners, 0, 1);
+                lowerCorners(corners, 2, 3);
+                break;
+            case FACE_BOTTOM:
+                if (lowerBottom) {
+                    lowerCorners(corners, 0, 1);
+                    lowerCorners(corners, 2, 3);
+                }
+                break;
         }
     }
 
-    private void generateCactusSide(Vector3f p1, Vector3f p2, Vector3f p3, Vector3f p4, Vector3f norm) {
-        if (norm.x == 1.0f || norm.x == -1.0f) {
-            p1.x -= 0.0625 * norm.x;
-            p2.x -= 0.0625 * norm.x;
-            p3.x -= 0.0625 * norm.x;
-            p4.x -= 0.0625 * norm.x;
-        } else if (norm.z == 1.0f || norm.z == -1.0f) {
-            p1.z -= 0.0625 * norm.z;
-            p2.z -= 0.0625 * norm.z;
-            p3.z -= 0.0625 * norm.z;
-            p4.z -= 0.0625 * norm.z;
-        }
+    private static void lowerCorners(float[][] corners, int c1, int c2) {
+        corners[c1][1] -= 0.25f;
+        corners[c2][1] -= 0.25f;
     }
 
-    private void addBlockTextureData(ChunkMesh.VertexElements vertexElements, Vector3f texOffset, Vector3f norm) {
-        /*
-        * Rotate the texture coordinates according to the
-        * orientation of the plane.
-        */
-        if (norm.z == 1 || norm.x == -1) {
-            vertexElements.tex.add(texOffset.x);
-            vertexElements.tex.add(texOffset.y + 0.0624f);
-
-            vertexElements.tex.add(texOffset.x + 0.0624f);
-            vertexElements.tex.add(texOffset.y + 0.0624f);
-
-            vertexElements.tex.add(texOffset.x + 0.0624f);
-            vertexElements.tex.add(texOffset.y);
-
-            vertexElements.tex.add(texOffset.x);
-            vertexElements.tex.add(texOffset.y);
-        } else {
-            vertexElements.tex.add(texOffset.x);
-            vertexElements.tex.add(texOffset.y);
-
-            vertexElements.tex.add(texOffset.x + 0.0624f);
-            vertexElements.tex.add(texOffset.y);
+    private static void generateCactusSide(int face, float[][] corners) {
+        int[] normal = FACE_NORMALS[face];
 
-            vertexElements.tex.add(texOffset.x + 0.0624f);
-            vertexElements.tex.add(texOffset.y + 0.0624f);
-
-            vertexElements.tex.add(texOffset.x);
-            vertexElements.tex.add(texOffset.y + 0.0624f);
+        // Only the sides of a cactus are moved inwards
+        for (int c = 0; c < 4; c++) {
+            corners[c][0] -= 0.0625f * normal[0];
+            corners[c][2] -= 0.0625f * normal[2];
         }
     }
 
-    private void addBlockVertexData(ChunkMesh.VertexElements vertexElements, Vector4f colorOffset, Vector3f vertex) {
-        vertexElements.color.add(colorOffset.x);
-        vertexElements.color.add(colorOffset.y);
-        vertexElements.color.add(colorOffset.z);
-        vertexElements.color.add(colorOffset.w);
-        vertexElements.quads.add(vertex.x);
-        vertexElements.quads.add(vertex.y);
-        vertexElements.quads.add(vertex.z);
-    }
-
     /**
      * Returns true if the block side is adjacent to a translucent block or an air
      * block.
@@ -508,6 +534,6 @@ public class ChunkMeshGenerator {
         Block bCheck = Block.getBlockForType(blockToCheck);
         Block cBlock = Block.getBlockForType(currentBlock);
 
-        return bCheck.getClass() == BlockAir.class || cBlock.doNotTessellate() || bCheck.getBlockForm() == Block.BLOCK_FORM.BILLBOARD || (Block.getBlockForType(blockToCheck).isBlockTypeTranslucent() && !Block.getBlockForType(currentBlock).isBlockTypeTranslucent());
+        return bCheck.getClass() == BlockAir.class || cBlock.doNotTessellate() || bCheck.getBlockForm() == Block.BLOCK_FORM.BILLBOARD || (bCheck.isBlockTypeTranslucent() && !cBlock.isBlockTypeTranslucent());
     }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import com.github.begla.blockmania.main.Blockmania;
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.utilities.MathHelper;
+import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.characters.Player;
+import javolution.util.FastSet;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ * Predicts the movement of the player and prepares the chunks ahead of the player before
+ * they enter the viewing distance.
+ * <p/>
+ * The motion of the player is measured using the change of the position between two updates,
+ * so the prediction works for all kinds of movement (including the demo flight). The chunks
+ * covered by the viewing distance after moving a few chunks along the motion (slightly bent
+ * towards the viewing direction) are created and handed to the chunk update manager, which
+ * processes them after all chunks within the viewing distance. The amount of chunks prepared
+ * ahead is limited by the setting PREFETCH_BUDGET.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkPrefetcher {
+
+    /* TIME BETWEEN TWO PREDICTIONS IN MS */
+    private static final long PREDICTION_INTERVAL = 250;
+    /* AMOUNT OF UPDATES THE PREDICTION LOOKS AHEAD */
+    private static final int LOOK_AHEAD_UPDATES = 240;
+    /* THE MOTION IS IGNORED BELOW THIS SPEED (BLOCKS PER UPDATE) */
+    private static final float MIN_SPEED = 0.01f;
+    /* ------ */
+    private final World _parent;
+    /* ------ */
+    private final Vector3f _lastPosition = new Vector3f();
+    private final Vector3f _motion = new Vector3f();
+    private boolean _positionKnown;
+    private long _lastPrediction;
+    /* ------ */
+    private volatile FastSet<Long> _prefetchedChunks = new FastSet<Long>();
+
+    /**
+     * @param parent The world
+     */
+    public ChunkPrefetcher(World parent) {
+        _parent = parent;
+    }
+
+    /**
+     * Measures the motion of the player and updates the prediction from time to time. Has to be
+     * called once per update of the world.
+     */
+    public void update() {
+        Player player = _parent.getPlayer();
+
+        if (player == null)
+            return;
+
+        Vector3f position = player.getPosition();
+
+        if (_positionKnown) {
+            float dX = position.x - _lastPosition.x;
+            float dZ = position.z - _lastPosition.z;
+
+            // Ignore teleports and respawns
+            if (Math.abs(dX) > Configuration.CHUNK_DIMENSIONS.x || Math.abs(dZ) > Configuration.CHUNK_DIMENSIONS.z) {
+                _motion.set(0, 0, 0);
+            } else {
+                _motion.x = _motion.x * 0.9f + dX * 0.1f;
+                _motion.z = _motion.z * 0.9f + dZ * 0.1f;
+            }
+        }
+
+        _lastPosition.set(position);
+        _positionKnown = true;
+
+        long time = Blockmania.getInstance().getTime();
+
+        if (time - _lastPrediction >= PREDICTION_INTERVAL) {
+            _lastPrediction = time;
+            predict(player);
+        }
+    }
+
+    /**
+     * Creates the chunks the player is heading to and hands them to the chunk update manager.
+     */
+    private void predict(Player player) {
+        int budget = Configuration.getSettingNumeric("PREFETCH_BUDGET").intValue();
+        float speed = (float) Math.sqrt(_motion.x * _motion.x + _motion.z * _motion.z);
+
+        if (speed < MIN_SPEED || budget <= 0) {
+            if (!_prefetchedChunks.isEmpty())
+                _prefetchedChunks = new FastSet<Long>();
+
+            return;
+        }
+
+        // Follow the motion, bent towards the viewing direction
+        Vector3f viewingDirection = player.getViewingDirection();
+        float dirX = _motion.x / speed * 2f + viewingDirection.x;
+        float dirZ = _motion.z / speed * 2f + viewingDirection.z;
+        float length = (float) Math.sqrt(dirX * dirX + dirZ * dirZ);
+
+        if (length < 0.001f)
+            return;
+
+        dirX /= length;
+        dirZ /= length;
+
+        int distX = Configuration.getSettingNumeric("V_DIST_X").intValue() / 2;
+        int distZ = Configuration.getSettingNumeric("V_DIST_Z").intValue() / 2;
+        int playerChunkX = (int) (player.getPosition().x / Configuration.CHUNK_DIMENSIONS.x);
+        int playerChunkZ = (int) (player.getPosition().z / Configuration.CHUNK_DIMENSIONS.z);
+
+        // The faster the player moves, the further the prediction looks ahead
+        int depth = Math.max(1, (int) Math.ceil(speed * LOOK_AHEAD_UPDATES / Configuration.CHUNK_DIMENSIONS.x));
+
+        FastSet<Long> prefetchedChunks = new FastSet<Long>();
+        ChunkCache chunkCache = _parent.getChunkCache();
+
+        for (int step = 1; step <= depth && prefetchedChunks.size() < budget; step++) {
+            int centerX = playerChunkX + Math.round(dirX * step);
+            int centerZ = playerChunkZ + Math.round(dirZ * step);
+
+            for (int x = centerX - distX; x < centerX + distX && prefetchedChunks.size() < budget; x++) {
+                for (int z = centerZ - distZ; z < centerZ + distZ && prefetchedChunks.size() < budget; z++) {
+                    // Chunks within the viewing distance are updated anyway
+                    if (x >= playerChunkX - distX && x < playerChunkX + distX && z >= playerChunkZ - distZ && z < playerChunkZ + distZ)
+                        continue;
+
+                    Long key = MathHelper.packCoordinates(x, z);
+
+                    if (!prefetchedChunks.add(key) || chunkCache.getCachedChunk(x, z) != null)
+                        continue;
+
+                    if (!Blockmania.getInstance().isSandboxed())
+                        _parent.getChunkIOService().prefetch(x, z);
+                }
+            }
+        }
+
+        _prefetchedChunks = prefetchedChunks;
+
+        // Creating the chunks queues their generation
+        for (FastSet.Record r = prefetchedChunks.head(), end = prefetchedChunks.tail(); (r = r.getNext()) != end; ) {
+            long key = prefetchedChunks.valueOf(r);
+            chunkCache.loadOrCreateChunk(MathHelper.unpackX(key), MathHelper.unpackZ(key));
+        }
+
+        _parent.getChunkUpdateManager().wakeUp();
+    }
+
+    /**
+     * Returns true if the given chunk is expected to enter the viewing distance soon.
+     *
+     * @param c The chunk
+     * @return True if the chunk should be updated ahead of time
+     */
+    public boolean isPrefetched(Chunk c) {
+        return _prefetchedChunks.contains(c.getChunkKey());
+    }
+
+    /**
+     * Returns the amount of chunks which are currently prepared ahead of the player.
+     *
+     * @return The amount of chunks
+     */
+    public int getPrefetchedChunksSize() {
+        return _prefetchedChunks.size();
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import com.github.begla.blockmania.datastructures.BlockmaniaPaletteArray;
+import com.github.begla.blockmania.datastructures.BlockmaniaSmartArray;
+import com.github.begla.blockmania.main.Configuration;
+import javolution.util.FastMap;
+
+import java.util.Arrays;
+
+/**
+ * A horizontal slice of a chunk with a height of 16 blocks. Stores the block types, the sunlight
+ * and the block light of the slice.
+ * <p/>
+ * Each of the three channels is either backed by an array or by a single uniform value. The arrays
+ * are only allocated as soon as a differing value is written. Sections which are completely uniform
+ * (like the air above the terrain or the solid stone below it) are replaced by shared immutable
+ * instances after the generation process, so they do not use any memory at all.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class ChunkSection {
+
+    /* HEIGHT OF A SECTION */
+    public static final int HEIGHT_BITS = 4;
+    public static final int HEIGHT = 1 << HEIGHT_BITS;
+    /* AMOUNT OF SECTIONS PER CHUNK */
+    public static final int SECTIONS_PER_CHUNK = (int) Configuration.CHUNK_DIMENSIONS.y / HEIGHT;
+    /* CHANNELS FOR BULK COPIES */
+    public static final int CHANNEL_BLOCKS = 0;
+    public static final int CHANNEL_SUNLIGHT = 1;
+    public static final int CHANNEL_LIGHT = 2;
+    /* ------ */
+    private static final int SIZE_X = (int) Configuration.CHUNK_DIMENSIONS.x;
+    private static final int SIZE_Z = (int) Configuration.CHUNK_DIMENSIONS.z;
+    /* VALUES PER LAYER ON THE X-AXIS */
+    public static final int LAYER_SIZE = HEIGHT * SIZE_Z;
+    /* ------ */
+    private static final FastMap<Integer, ChunkSection> _sharedSections = new FastMap<Integer, ChunkSection>().shared();
+    /* ------ */
+    private final boolean _shared;
+    /* ------ */
+    private byte _uniformBlock, _uniformSunlight, _uniformLight;
+    /* THE ARRAYS ARE READ WITHOUT LOCKING, SO THEY HAVE TO BE PUBLISHED SAFELY */
+    private volatile BlockmaniaPaletteArray _blocks;
+    private volatile BlockmaniaSmartArray _sunlight, _light;
+
+    /**
+     * Returns the shared and immutable section for the given uniform values.
+     *
+     * @param block    The block type
+     * @param sunlight The sunlight value
+     * @param light    The block light value
+     * @return The shared section
+     */
+    public static ChunkSection getSharedSection(byte block, byte sunlight, byte light) {
+        Integer key = (block & 0xFF) | ((sunlight & 0x0F) << 8) | ((light & 0x0F) << 12);
+        ChunkSection section = _sharedSections.get(key);
+
+        if (section == null) {
+            section = new ChunkSection(block, sunlight, light, true);
+            _sharedSections.put(key, section);
+        }
+
+        return section;
+    }
+
+    /**
+     * Init. a new private section filled with the given uniform values.
+     *
+     * @param block    The block type
+     * @param sunlight The sunlight value
+     * @param light    The block light value
+     */
+    public ChunkSection(byte block, byte sunlight, byte light) {
+        this(block, sunlight, light, false);
+    }
+
+    private ChunkSection(byte block, byte sunlight, byte light, boolean shared) {
+        _uniformBlock = block;
+        _uniformSunlight = sunlight;
+        _uniformLight = light;
+        _shared = shared;
+    }
+
+    /**
+     * Returns a private (writable) copy of this section. Only uniform sections can be copied,
+     * which is all that is needed to replace shared sections before they are modified.
+     *
+     * @return The copy
+     */
+    public ChunkSection copy() {
+        if (!isUniform())
+            throw new IllegalStateException("Only uniform chunk sections can be copied.");
+
+        return new ChunkSection(_uniformBlock, _uniformSunlight, _uniformLight, false);
+    }
+
+    public byte getBlock(int x, int y, int z) {
+        BlockmaniaPaletteArray blocks = _blocks;
+
+        if (blocks == null)
+            return _uniformBlock;
+
+        return blocks.get(x, y, z);
+    }
+
+    public byte getSunlight(int x, int y, int z) {
+        BlockmaniaSmartArray sunlight = _sunlight;
+
+        if (sunlight == null)
+            return _uniformSunlight;
+
+        return sunlight.get(x, y, z);
+    }
+
+    public byte getLight(int x, int y, int z) {
+        BlockmaniaSmartArray light = _light;
+
+        if (light == null)
+            return _uniformLight;
+
+        return light.get(x, y, z);
+    }
+
+    public void setBlock(int x, int y, int z, byte type) {
+        checkWritable();
+
+        BlockmaniaPaletteArray blocks = _blocks;
+
+        if (blocks == null) {
+            if (type == _uniformBlock)
+                return;
+
+            blocks = createBlockArray(_uniformBlock);
+            _blocks = blocks;
+        }
+
+        blocks.set(x, y, z, type);
+    }
+
+    public void setSunlight(int x, int y, int z, byte value) {
+        checkWritable();
+
+        BlockmaniaSmartArray sunlight = _sunlight;
+
+        if (sunlight == null) {
+            if (value == _uniformSunlight)
+                return;
+
+            sunlight = createLightArray(_uniformSunlight);
+            _sunlight = sunlight;
+        }
+
+        sunlight.set(x, y, z, value);
+    }
+
+    public void setLight(int x, int y, int z, byte value) {
+        checkWritable();
+
+        BlockmaniaSmartArray light = _light;
+
+        if (light == null) {
+            if (value == _uniformLight)
+                return;
+
+            light = createLightArray(_uniformLight);
+            _light = light;
+        }
+
+        light.set(x, y, z, value);
+    }
+
+    /**
+     * Copies the values of one channel of the layer at the given position on the x-axis into the
+     * given array. The values are stored in the order y, z (z innermost), the same order used by
+     * serialized chunks.
+     *
+     * @param channel The channel
+     * @param x       The position of the layer on the x-axis
+     * @param dest    The destination array
+     * @param offset  The position of the first value within the destination array
+     */
+    public void getLayer(int channel, int x, byte[] dest, int offset) {
+        if (channel == CHANNEL_BLOCKS) {
+            BlockmaniaPaletteArray blocks = _blocks;
+
+            if (blocks == null) {
+                Arrays.fill(dest, offset, offset + LAYER_SIZE, _uniformBlock);
+                return;
+            }
+
+            // The layers of the palette array are continuous
+            int base = x * LAYER_SIZE;
+
+            for (int i = 0; i < LAYER_SIZE; i++)
+                dest[offset + i] = blocks.getRawByte(base + i);
+
+            return;
+        }
+
+        BlockmaniaSmartArray light = channel == CHANNEL_SUNLIGHT ? _sunlight : _light;
+
+        if (light == null) {
+            Arrays.fill(dest, offset, offset + LAYER_SIZE, channel == CHANNEL_SUNLIGHT ? _uniformSunlight : _uniformLight);
+            return;
+        }
+
+        for (int y = 0, i = offset; y < HEIGHT; y++) {
+            for (int z = 0; z < SIZE_Z; z++, i++)
+                dest[i] = light.get(x, y, z);
+        }
+    }
+
+    /**
+     * Replaces the values of one channel of the layer at the given position on the x-axis by the
+     * values of the given array, stored in the order used by {@link #getLayer(int, int, byte[], int)}.
+     * No storage is allocated if all values match the current uniform value.
+     *
+     * @param channel The channel
+     * @param x       The position of the layer on the x-axis
+     * @param src     The source array
+     * @param offset  The position of the first value within the source array
+     */
+    public void setLayer(int channel, int x, byte[] src, int offset) {
+        checkWritable();
+
+        if (channel == CHANNEL_BLOCKS) {
+            BlockmaniaPaletteArray blocks = _blocks;
+
+            if (blocks == null) {
+                if (isUniform(src, offset, _uniformBlock))
+                    return;
+
+                blocks = createBlockArray(_uniformBlock);
+                _blocks = blocks;
+            }
+
+            int base = x * LAYER_SIZE;
+
+            for (int i = 0; i < LAYER_SIZE; i++)
+                blocks.setRawByte(base + i, src[offset + i]);
+
+            return;
+        }
+
+        BlockmaniaSmartArray light = channel == CHANNEL_SUNLIGHT ? _sunlight : _light;
+
+        if (light == null) {
+            byte uniform = channel == CHANNEL_SUNLIGHT ? _uniformSunlight : _uniformLight;
+
+            if (isUniform(src, offset, uniform))
+                return;
+
+            light = createLightArray(uniform);
+
+            if (channel == CHANNEL_SUNLIGHT)
+                _sunlight = light;
+            else
+                _light = light;
+        }
+
+        for (int y = 0, i = offset; y < HEIGHT; y++) {
+            for (int z = 0; z < SIZE_Z; z++, i++)
+                light.set(x, y, z, src[i]);
+        }
+    }
+
+    private static boolean isUniform(byte[] values, int offset, byte value) {
+        for (int i = offset; i < offset + LAYER_SIZE; i++) {
+            if (values[i] != value)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static BlockmaniaPaletteArray createBlockArray(byte type) {
+        BlockmaniaPaletteArray blocks = new BlockmaniaPaletteArray(SIZE_X, HEIGHT, SIZE_Z);
+
+        if (type != 0) {
+            for (int i = 0; i < blocks.getSize(); i++)
+                blocks.setRawByte(i, type);
+        }
+
+        return blocks;
+    }
+
+    private static BlockmaniaSmartArray createLightArray(byte value) {
+        BlockmaniaSmartArray array = new BlockmaniaSmartArray(SIZE_X, HEIGHT, SIZE_Z);
+
+        if (value != 0)
+            array.fill(value);
+
+        return array;
+    }
+
+    private void checkWritable() {
+        if (_shared)
+            throw new IllegalStateException("Shared chunk sections are immutable.");
+    }
+
+    /**
+     * Shrinks the storage of this section. Arrays containing only one distinct value are
+     * replaced by their uniform value. If all channels end up uniform, the matching shared
+     * section is returned and should be used instead of this one.
+     * <p/>
+     * The section is modified in place, so it must not be accessed by other threads meanwhile.
+     *
+     * @return The compacted section
+     */
+    public ChunkSection compact() {
+        if (_shared)
+            return this;
+
+        BlockmaniaPaletteArray blocks = _blocks;
+        BlockmaniaSmartArray sunlight = _sunlight, light = _light;
+
+        if (blocks != null) {
+            blocks.compact();
+
+            if (blocks.isUniform()) {
+                _uniformBlock = blocks.getRawByte(0);
+                _blocks = null;
+            }
+        }
+
+        if (sunlight != null && sunlight.isUniform()) {
+            _uniformSunlight = sunlight.get(0, 0, 0);
+            _sunlight = null;
+        }
+
+        if (light != null && light.isUniform()) {
+            _uniformLight = light.get(0, 0, 0);
+            _light = null;
+        }
+
+        if (isUniform())
+            return getSharedSection(_uniformBlock, _uniformSunlight, _uniformLight);
+
+        return this;
+    }
+
+    /**
+     * Returns true if all blocks of this section are of the same type.
+     *
+     * @return True if the block types are uniform
+     */
+    public boolean isBlockUniform() {
+        return _blocks == null;
+    }
+
+    /**
+     * Returns true if the blocks and both light channels are uniform.
+     *
+     * @return True if uniform
+     */
+    public boolean isUniform() {
+        return _blocks == null && _sunlight == null && _light == null;
+    }
+
+    public boolean isShared() {
+        return _shared;
+    }
+
+    /**
+     * Returns the block type of a uniform section.
+     *
+     * @return The block type
+     */
+    public byte getUniformBlock() {
+        return _uniformBlock;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the encoded data of the chunks of a world.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public interface ChunkStore {
+
+    /**
+     * Reads the data of the given chunk.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @return The data or null if the chunk is not stored
+     * @throws IOException
+     */
+    public ByteBuffer readChunk(int chunkX, int chunkZ) throws IOException;
+
+    /**
+     * Writes the remaining bytes of the given buffer as the data of the given chunk.
+     *
+     * @param chunkX      The chunk position on the x-axis
+     * @param chunkZ      The chunk position on the z-axis
+     * @param data        The data
+     * @param regenerable True if the chunk was not edited since its generation, so the store may
+     *                    drop it and the chunk is generated again
+     * @throws IOException
+     */
+    public void writeChunk(int chunkX, int chunkZ, ByteBuffer data, boolean regenerable) throws IOException;
+
+    /**
+     * Makes sure all written data is persisted.
+     */
+    public void flush();
+
+    /**
+     * Releases all resources of the store.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException;
+}
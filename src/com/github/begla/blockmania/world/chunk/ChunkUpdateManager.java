@@ -15,21 +15,53 @@
  */
 package com.github.begla.blockmania.world.chunk;
 
+import com.github.begla.blockmania.main.Blockmania;
+import com.github.begla.blockmania.main.Configuration;
+import com.github.begla.blockmania.utilities.MathHelper;
 import com.github.begla.blockmania.world.World;
 import javolution.util.FastList;
+import javolution.util.FastSet;
 
 import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 /**
  * Provides support for updating and generating chunks.
+ * <p/>
+ * Chunks notify the manager when they are created or modified. The update thread sleeps until
+ * such an event occurs (or the player enters another chunk) and hands the dirty chunks within the
+ * viewing distance to a pool of worker threads, ordered by their distance to the player. Chunks
+ * the {@link ChunkPrefetcher} expects to enter the viewing distance soon are processed after all
+ * visible chunks. Updating a chunk (generation, lighting and tessellation) reads and modifies the
+ * chunk and its direct neighbors, so each worker claims the 3x3 neighborhood of the chunk it
+ * processes. The generators only write to the chunk they generate and the light spreads less than
+ * the width of a chunk, so no other chunks are modified. Chunks whose claimed neighborhoods do not
+ * overlap are processed concurrently. The generated meshes are handed to the OpenGL thread using a lock-free
+ * queue.
  *
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
  */
 public final class ChunkUpdateManager {
 
-    private final FastList<Chunk> _vboUpdates = new FastList<Chunk>(128);
-
-    private double _meanUpdateDuration = 0.0;
+    private final ConcurrentLinkedQueue<Chunk> _vboUpdates = new ConcurrentLinkedQueue<Chunk>();
+    /* ------ */
+    private final FastSet<Chunk> _dirtyChunks = new FastSet<Chunk>();
+    private final FastList<Chunk> _pendingChunks = new FastList<Chunk>(128);
+    private boolean _updatesScheduled = true;
+    /* RADIUS OF THE NEIGHBORHOOD CLAIMED BY A WORKER */
+    private static final int CLAIM_RADIUS = 1;
+    /* THE CHUNKS PROCESSED BY THE WORKERS */
+    private final FastSet<Chunk> _activeChunks = new FastSet<Chunk>();
+    private final FastSet<Long> _claimedChunks = new FastSet<Long>();
+    /* ------ */
+    private Thread[] _workers;
+    private volatile boolean _workersAlive = true;
+    /* ------ */
+    /* UPDATED BY ALL WORKERS */
+    private final AtomicLong _updateDurationSum = new AtomicLong();
+    private final AtomicLong _updateCount = new AtomicLong();
     private final World _parent;
 
     private int _chunkUpdateAmount;
@@ -41,34 +73,266 @@ public final class ChunkUpdateManager {
         this._parent = _parent;
     }
 
+    /**
+     * Adds the given chunk to the set of dirty chunks and wakes up the update thread. Called
+     * whenever a chunk is created or modified.
+     *
+     * @param c The chunk
+     */
+    public void queueChunkUpdate(Chunk c) {
+        // Headless worlds are updated by their owner
+        if (_parent.isHeadless())
+            return;
+
+        synchronized (_pendingChunks) {
+            _dirtyChunks.add(c);
+
+            _updatesScheduled = true;
+            _pendingChunks.notifyAll();
+        }
+    }
+
+    /**
+     * Wakes up the update thread, so the pending updates are prioritized again. Called if
+     * the player entered another chunk.
+     */
+    public void wakeUp() {
+        synchronized (_pendingChunks) {
+            _updatesScheduled = true;
+            _pendingChunks.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until chunks were modified or the player moved and hands the dirty chunks within
+     * the viewing distance to the workers, ordered by their distance to the player.
+     */
     public void processChunkUpdates() {
-        long timeStart = System.currentTimeMillis();
+        startWorkers();
 
-        FastList<Chunk> dirtyChunks = new FastList<Chunk>(_parent.getVisibleChunks());
+        FastList<Chunk> dirtyChunks = new FastList<Chunk>();
+        FastList<Chunk> prefetchedChunks = new FastList<Chunk>();
+        FastList<Chunk> evictedChunks = new FastList<Chunk>();
+
+        synchronized (_pendingChunks) {
+            while (!_updatesScheduled && _workersAlive) {
+                try {
+                    _pendingChunks.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
 
-        for (int i = dirtyChunks.size() - 1; i >= 0; i--) {
-            Chunk c = dirtyChunks.get(i);
+            _updatesScheduled = false;
 
-            if (c == null) {
-                dirtyChunks.remove(i);
-                continue;
+            for (FastSet.Record r = _dirtyChunks.head(), end = _dirtyChunks.tail(); (r = r.getNext()) != end; ) {
+                Chunk c = _dirtyChunks.valueOf(r);
+
+                if (!c.isCached())
+                    evictedChunks.add(c);
+                else if (_activeChunks.contains(c))
+                    continue;
+                else if (_parent.isChunkWithinViewingDistance(c))
+                    dirtyChunks.add(c);
+                // Chunks ahead of the player are prepared before they enter the viewing distance
+                else if (_parent.getChunkPrefetcher().isPrefetched(c))
+                    prefetchedChunks.add(c);
+                // All other chunks stay dirty until the player approaches them
             }
 
-            if (!(c.isDirty() || c.isFresh() || c.isLightDirty())) {
-                dirtyChunks.remove(i);
+            // Chunks which were evicted from the cache are written to disk and do not need any updates
+            _dirtyChunks.removeAll(evictedChunks);
+        }
+
+        Collections.sort(dirtyChunks);
+        Collections.sort(prefetchedChunks);
+
+        synchronized (_pendingChunks) {
+            // Rebuild the queue, so the priorities reflect the current position of the player
+            _pendingChunks.clear();
+            _pendingChunks.addAll(dirtyChunks);
+            _pendingChunks.addAll(prefetchedChunks);
+
+            _chunkUpdateAmount = dirtyChunks.size() + prefetchedChunks.size();
+
+            _pendingChunks.notifyAll();
+        }
+    }
+
+    /**
+     * Starts the worker threads if they are not running yet.
+     */
+    private void startWorkers() {
+        if (_workers != null)
+            return;
+
+        _workers = new Thread[Math.max(1, Configuration.getSettingNumeric("CHUNK_UPDATE_WORKERS").intValue())];
+
+        for (int i = 0; i < _workers.length; i++) {
+            _workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    while (_workersAlive) {
+                        Chunk c;
+
+                        try {
+                            c = claimNextChunk();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+
+                        if (c == null)
+                            return;
+
+                        long timeStart = System.currentTimeMillis();
+
+                        try {
+                            processChunkUpdate(c);
+                        } catch (Exception e) {
+                            Blockmania.getInstance().getLogger().log(Level.SEVERE, "Failed to update chunk " + c, e);
+                        } finally {
+                            releaseChunk(c);
+                        }
+
+                        _updateDurationSum.addAndGet(System.currentTimeMillis() - timeStart);
+                        _updateCount.incrementAndGet();
+                    }
+                }
+            }, "Chunk Update Worker " + i);
+
+            _workers[i].setDaemon(true);
+            _workers[i].setPriority(Thread.MIN_PRIORITY);
+            _workers[i].start();
+        }
+    }
+
+    /**
+     * Stops the worker threads and waits until the running updates are finished.
+     */
+    public void dispose() {
+        synchronized (_pendingChunks) {
+            _workersAlive = false;
+            _pendingChunks.clear();
+            _pendingChunks.notifyAll();
+        }
+
+        if (_workers == null)
+            return;
+
+        for (Thread worker : _workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
+    }
+
+    /**
+     * Removes the closest pending chunk whose neighborhood is not claimed by another worker from
+     * the queue and claims its neighborhood. Blocks until such a chunk is available.
+     *
+     * @return The chunk or null if the workers were stopped
+     * @throws InterruptedException
+     */
+    private Chunk claimNextChunk() throws InterruptedException {
+        synchronized (_pendingChunks) {
+            while (_workersAlive) {
+                for (FastList.Node<Chunk> n = _pendingChunks.head(), end = _pendingChunks.tail(); (n = n.getNext()) != end; ) {
+                    Chunk c = n.getValue();
+
+                    // Evicted chunks are dropped when the queue is rebuilt
+                    if (!c.isCached())
+                        continue;
+
+                    if (isNeighborhoodClaimed(c))
+                        continue;
 
-        if (!dirtyChunks.isEmpty()) {
-            Collections.sort(dirtyChunks);
-            Chunk closestChunk = dirtyChunks.getFirst();
-            processChunkUpdate(closestChunk);
+                    _pendingChunks.delete(n);
+                    setNeighborhoodClaimed(c, true);
+                    _activeChunks.add(c);
+
+                    return c;
+                }
+
+                _pendingChunks.wait();
+            }
+
+            return null;
         }
+    }
 
-        _chunkUpdateAmount = dirtyChunks.size();
+    /**
+     * Releases the neighborhood of the given chunk and wakes up the waiting threads.
+     *
+     * @param c The chunk
+     */
+    private void releaseChunk(Chunk c) {
+        synchronized (_pendingChunks) {
+            _activeChunks.remove(c);
+            setNeighborhoodClaimed(c, false);
+
+            if (c.isDirty() || c.isFresh() || c.isLightDirty())
+                _updatesScheduled = true;
+            else
+                _dirtyChunks.remove(c);
 
-        _meanUpdateDuration += System.currentTimeMillis() - timeStart;
-        _meanUpdateDuration /= 2;
+            _pendingChunks.notifyAll();
+        }
+    }
+
+    /**
+     * Claims the given chunk, so it can be evicted from the cache. Chunks which are processed by
+     * a worker or lie within a neighborhood claimed by a worker can not be evicted.
+     *
+     * @param c The chunk
+     * @return True if the chunk was claimed
+     */
+    public boolean claimChunkForEviction(Chunk c) {
+        synchronized (_pendingChunks) {
+            if (_activeChunks.contains(c) || !_claimedChunks.add(c.getChunkKey()))
+                return false;
+
+            return true;
+        }
+    }
+
+    /**
+     * Releases a chunk claimed using {@link #claimChunkForEviction(Chunk)}.
+     *
+     * @param c The chunk
+     */
+    public void releaseEvictedChunk(Chunk c) {
+        synchronized (_pendingChunks) {
+            _claimedChunks.remove(c.getChunkKey());
+            _pendingChunks.notifyAll();
+        }
+    }
+
+    private boolean isNeighborhoodClaimed(Chunk c) {
+        int chunkX = (int) c.getPosition().x, chunkZ = (int) c.getPosition().z;
+
+        for (int x = chunkX - CLAIM_RADIUS; x <= chunkX + CLAIM_RADIUS; x++) {
+            for (int z = chunkZ - CLAIM_RADIUS; z <= chunkZ + CLAIM_RADIUS; z++) {
+                if (_claimedChunks.contains(MathHelper.packCoordinates(x, z)))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void setNeighborhoodClaimed(Chunk c, boolean claimed) {
+        int chunkX = (int) c.getPosition().x, chunkZ = (int) c.getPosition().z;
+
+        for (int x = chunkX - CLAIM_RADIUS; x <= chunkX + CLAIM_RADIUS; x++) {
+            for (int z = chunkZ - CLAIM_RADIUS; z <= chunkZ + CLAIM_RADIUS; z++) {
+                if (claimed)
+                    _claimedChunks.add(MathHelper.packCoordinates(x, z));
+                else
+                    _claimedChunks.remove(MathHelper.packCoordinates(x, z));
+            }
+        }
     }
 
     private void processChunkUpdate(Chunk c) {
@@ -116,9 +380,13 @@ public final class ChunkUpdateManager {
         }
     }
 
+    /**
+     * Uploads the meshes generated by the workers. Has to be called from the OpenGL thread.
+     */
     public void updateVBOs() {
-        while (!_vboUpdates.isEmpty()) {
-            Chunk c = _vboUpdates.removeFirst();
+        Chunk c;
+
+        while ((c = _vboUpdates.poll()) != null) {
             c.generateVBOs();
         }
     }
@@ -131,7 +399,17 @@ public final class ChunkUpdateManager {
         return _vboUpdates.size();
     }
 
+    /**
+     * Returns the mean duration of the chunk updates processed by the workers.
+     *
+     * @return The mean duration in milliseconds
+     */
     public double getMeanUpdateDuration() {
-        return _meanUpdateDuration;
+        long count = _updateCount.get();
+
+        if (count == 0)
+            return 0.0;
+
+        return (double) _updateDurationSum.get() / count;
     }
 }
@@ -0,0 +1,501 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import com.github.begla.blockmania.main.Blockmania;
+import javolution.util.FastMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.logging.Level;
+
+/**
+ * Stores the data of 32x32 chunks within one file.
+ * <p/>
+ * The file is divided into sectors of 4096 bytes. The first two sectors contain the header: the
+ * index of the first sector and the length in bytes of each chunk stored within the region. The
+ * data of each chunk occupies a continuous run of sectors. If the data of a chunk still fits into
+ * the sectors it occupied before, it is rewritten in place. Otherwise it is moved to the first run
+ * of free sectors large enough to hold it (or appended to the end of the file). The sectors left
+ * behind can be reclaimed using {@link #compact()}.
+ * <p/>
+ * The file is accessed through memory mapped windows of 1 MB, so chunks are read and written
+ * using bulk copies without any system calls. At most four windows are mapped at the same time;
+ * the least recently used window is released first. Released windows are unmapped right away, so
+ * the file is never resized, deleted or renamed while a mapping of it is still alive. The file
+ * only grows by writing to its end, and no window ever extends beyond the end of the file.
+ * Written data reaches the disk at the latest when {@link #flush()} or {@link #close()} is called.
+ * <p/>
+ * All methods are synchronized, so a region file can be shared by multiple threads.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class RegionFile {
+
+    /* CHUNKS PER REGION ON THE X- AND Z-AXIS */
+    public static final int REGION_BITS = 5;
+    public static final int REGION_SIZE = 1 << REGION_BITS;
+    /* ------ */
+    public static final int SECTOR_SIZE = 4096;
+    private static final int CHUNK_COUNT = REGION_SIZE * REGION_SIZE;
+    private static final int HEADER_SECTORS = (CHUNK_COUNT * 8 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    /* MAPPED WINDOWS */
+    private static final int WINDOW_BITS = 20;
+    private static final int WINDOW_SIZE = 1 << WINDOW_BITS;
+    private static final int MAX_WINDOWS = 4;
+    private static final ByteBuffer ZERO_BYTE = ByteBuffer.allocate(1);
+    /* UNMAPPING */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final boolean UNMAP_SUPPORTED;
+    /* ------ */
+    private final File _file;
+    private RandomAccessFile _randomAccessFile;
+    private FileChannel _channel;
+    private long _fileLength;
+    /* ------ */
+    private final FastMap<Integer, MappedByteBuffer> _windows = new FastMap<Integer, MappedByteBuffer>();
+    /* ------ */
+    private final int[] _offsets = new int[CHUNK_COUNT];
+    private final int[] _lengths = new int[CHUNK_COUNT];
+    private final BitSet _usedSectors = new BitSet();
+    private int _sectorCount;
+
+    /**
+     * Opens the given region file. The file is created if it does not exist.
+     *
+     * @param file The file
+     * @throws IOException
+     */
+    public RegionFile(File file) throws IOException {
+        _file = file;
+
+        open();
+    }
+
+    private void open() throws IOException {
+        _randomAccessFile = new RandomAccessFile(_file, "rw");
+        _channel = _randomAccessFile.getChannel();
+
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            _offsets[i] = 0;
+            _lengths[i] = 0;
+        }
+
+        _usedSectors.clear();
+        _usedSectors.set(0, HEADER_SECTORS);
+
+        _fileLength = _channel.size();
+
+        // Write an empty header
+        if (_fileLength < HEADER_SECTORS * SECTOR_SIZE)
+            ensureLength(HEADER_SECTORS * SECTOR_SIZE);
+
+        _sectorCount = (int) ((_fileLength + SECTOR_SIZE - 1) / SECTOR_SIZE);
+
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_COUNT * 8);
+        readFully(header, 0);
+        header.flip();
+
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            int offset = header.getInt();
+            int length = header.getInt();
+
+            // Ignore corrupted entries
+            if (length <= 0 || offset < HEADER_SECTORS || offset + sectorsFor(length) > _sectorCount)
+                continue;
+
+            _offsets[i] = offset;
+            _lengths[i] = length;
+            _usedSectors.set(offset, offset + sectorsFor(length));
+        }
+    }
+
+    /**
+     * Returns the file of this region.
+     *
+     * @return The file
+     */
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Returns true if data is stored for the given chunk.
+     *
+     * @param localX The position of the chunk within the region on the x-axis
+     * @param localZ The position of the chunk within the region on the z-axis
+     * @return True if the chunk is present
+     */
+    public synchronized boolean hasChunk(int localX, int localZ) {
+        return _lengths[index(localX, localZ)] > 0;
+    }
+
+    /**
+     * Reads the data of the given chunk.
+     *
+     * @param localX The position of the chunk within the region on the x-axis
+     * @param localZ The position of the chunk within the region on the z-axis
+     * @return The data or null if the chunk is not present
+     * @throws IOException
+     */
+    public synchronized ByteBuffer readChunk(int localX, int localZ) throws IOException {
+        int i = index(localX, localZ);
+
+        if (_lengths[i] == 0)
+            return null;
+
+        ByteBuffer data = ByteBuffer.allocate(_lengths[i]);
+        readFully(data, (long) _offsets[i] * SECTOR_SIZE);
+        data.flip();
+
+        return data;
+    }
+
+    /**
+     * Writes the remaining bytes of the given buffer as the data of the given chunk.
+     *
+     * @param localX The position of the chunk within the region on the x-axis
+     * @param localZ The position of the chunk within the region on the z-axis
+     * @param data   The data
+     * @throws IOException
+     */
+    public synchronized void writeChunk(int localX, int localZ, ByteBuffer data) throws IOException {
+        int i = index(localX, localZ);
+        int length = data.remaining();
+        int sectors = sectorsFor(length);
+
+        int offset = _offsets[i];
+        int oldSectors = sectorsFor(_lengths[i]);
+
+        if (length == 0) {
+            removeChunk(localX, localZ);
+            return;
+        }
+
+        if (oldSectors >= sectors && _lengths[i] > 0) {
+            // Rewrite in place and release the sectors which are not needed anymore
+            _usedSectors.clear(offset + sectors, offset + oldSectors);
+        } else {
+            if (_lengths[i] > 0)
+                _usedSectors.clear(offset, offset + oldSectors);
+
+            offset = allocate(sectors);
+        }
+
+        ensureLength((long) offset * SECTOR_SIZE + length);
+        writeFully(data, (long) offset * SECTOR_SIZE);
+        _usedSectors.set(offset, offset + sectors);
+
+        if (offset + sectors > _sectorCount)
+            _sectorCount = offset + sectors;
+
+        writeHeaderEntry(i, offset, length);
+    }
+
+    /**
+     * Removes the data of the given chunk.
+     *
+     * @param localX The position of the chunk within the region on the x-axis
+     * @param localZ The position of the chunk within the region on the z-axis
+     * @throws IOException
+     */
+    public synchronized void removeChunk(int localX, int localZ) throws IOException {
+        int i = index(localX, localZ);
+
+        if (_lengths[i] == 0)
+            return;
+
+        _usedSectors.clear(_offsets[i], _offsets[i] + sectorsFor(_lengths[i]));
+        writeHeaderEntry(i, 0, 0);
+    }
+
+    /**
+     * Returns the amount of sectors within the file which are not occupied by any chunk.
+     *
+     * @return The amount of free sectors
+     */
+    public synchronized int getFreeSectorCount() {
+        return _sectorCount - _usedSectors.cardinality();
+    }
+
+    /**
+     * Returns the total amount of sectors within the file.
+     *
+     * @return The amount of sectors
+     */
+    public synchronized int getSectorCount() {
+        return _sectorCount;
+    }
+
+    /**
+     * Rewrites the file, so the chunks occupy continuous sectors without any gaps.
+     *
+     * @return The amount of sectors which were reclaimed
+     * @throws IOException
+     */
+    public synchronized int compact() throws IOException {
+        int freeSectors = getFreeSectorCount();
+
+        if (freeSectors == 0)
+            return 0;
+
+        File tempFile = new File(_file.getPath() + ".tmp");
+
+        // Remains of a compaction which was interrupted
+        if (tempFile.exists() && !tempFile.delete())
+            throw new IOException("Could not delete " + tempFile + ".");
+
+        RegionFile compacted = new RegionFile(tempFile);
+
+        try {
+            // Copy the chunks in the order of their position within the file to keep the locality
+            long[] chunks = new long[CHUNK_COUNT];
+            int count = 0;
+
+            for (int i = 0; i < CHUNK_COUNT; i++) {
+                if (_lengths[i] > 0)
+                    chunks[count++] = ((long) _offsets[i] << 32) | i;
+            }
+
+            Arrays.sort(chunks, 0, count);
+
+            for (int c = 0; c < count; c++) {
+                int i = (int) chunks[c];
+                compacted.writeChunk(i % REGION_SIZE, i / REGION_SIZE, readChunk(i % REGION_SIZE, i / REGION_SIZE));
+            }
+        } finally {
+            compacted.close();
+        }
+
+        close();
+
+        // Without explicit unmapping the windows are only released once they are collected
+        if (!UNMAP_SUPPORTED)
+            System.gc();
+
+        if (!_file.delete() || !tempFile.renameTo(_file))
+            throw new IOException("Could not replace region file " + _file + " by its compacted version.");
+
+        open();
+
+        return freeSectors;
+    }
+
+    /**
+     * Writes all modifications of the mapped windows to the disk.
+     */
+    public synchronized void flush() {
+        for (MappedByteBuffer window : _windows.values())
+            window.force();
+    }
+
+    /**
+     * Writes all modifications to the disk, releases the mapped windows and closes the file.
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        flush();
+        releaseWindows();
+
+        _channel.force(true);
+        _randomAccessFile.close();
+    }
+
+    /**
+     * Returns the first sector of a run of free sectors with the given length.
+     */
+    private int allocate(int sectors) {
+        int start = _usedSectors.nextClearBit(HEADER_SECTORS);
+
+        while (start < _sectorCount) {
+            int end = _usedSectors.nextSetBit(start);
+
+            if (end < 0 || end - start >= sectors)
+                return start;
+
+            start = _usedSectors.nextClearBit(end);
+        }
+
+        return start;
+    }
+
+    private void writeHeaderEntry(int i, int offset, int length) throws IOException {
+        _offsets[i] = offset;
+        _lengths[i] = length;
+
+        ByteBuffer entry = ByteBuffer.allocate(8);
+        entry.putInt(offset);
+        entry.putInt(length);
+        entry.flip();
+
+        writeFully(entry, i * 8);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        if (position + buffer.remaining() > _fileLength)
+            throw new IOException("Unexpected end of region file " + _file + ".");
+
+        while (buffer.hasRemaining()) {
+            ByteBuffer window = getWindow(position, buffer.remaining());
+            int length = Math.min(buffer.remaining(), window.remaining());
+
+            window.limit(window.position() + length);
+            buffer.put(window);
+            position += length;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            ByteBuffer window = getWindow(position, buffer.remaining());
+            int length = Math.min(buffer.remaining(), window.remaining());
+
+            ByteBuffer part = buffer.duplicate();
+            part.limit(part.position() + length);
+            window.put(part);
+
+            buffer.position(buffer.position() + length);
+            position += length;
+        }
+    }
+
+    /**
+     * Grows the file to the given length (if it is shorter) by writing its last byte through the
+     * channel. The mapped windows do not cover the new part of the file, so they are remapped on
+     * their next use.
+     */
+    private void ensureLength(long length) throws IOException {
+        if (length <= _fileLength)
+            return;
+
+        ByteBuffer zero = ZERO_BYTE.duplicate();
+
+        while (zero.hasRemaining())
+            _channel.write(zero, length - 1);
+
+        _fileLength = length;
+    }
+
+    /**
+     * Unmaps all windows.
+     */
+    private void releaseWindows() {
+        for (MappedByteBuffer window : _windows.values())
+            unmap(window);
+
+        _windows.clear();
+    }
+
+    /**
+     * Returns a view of the mapped window containing the given position of the file. The view
+     * starts at the position and ends at the end of the window or of the file.
+     *
+     * @param position  The position within the file
+     * @param minLength The amount of bytes needed if the window is large enough
+     * @return The view
+     */
+    private ByteBuffer getWindow(long position, int minLength) throws IOException {
+        int index = (int) (position >> WINDOW_BITS);
+        long start = (long) index << WINDOW_BITS;
+        int offset = (int) (position - start);
+
+        if (position + minLength > _fileLength)
+            throw new IOException("Access beyond the end of region file " + _file + ".");
+
+        int available = (int) Math.min(WINDOW_SIZE, _fileLength - start);
+
+        // Move the window to the end of the list of recently used windows
+        MappedByteBuffer window = _windows.remove(index);
+
+        // Windows mapped before the file grew might not cover the requested part
+        if (window == null || window.capacity() < Math.min(available, offset + minLength)) {
+            if (window != null) {
+                window.force();
+                unmap(window);
+            }
+
+            window = _channel.map(FileChannel.MapMode.READ_WRITE, start, available);
+
+            while (_windows.size() >= MAX_WINDOWS) {
+                MappedByteBuffer leastRecentlyUsed = _windows.remove(_windows.head().getNext().getKey());
+                leastRecentlyUsed.force();
+                unmap(leastRecentlyUsed);
+            }
+        }
+
+        _windows.put(index, window);
+
+        ByteBuffer view = window.duplicate();
+        view.position(offset);
+
+        return view;
+    }
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            // Not available on this platform, the windows are released by the garbage collector
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        UNMAP_SUPPORTED = invokeCleaner != null;
+    }
+
+    /**
+     * Releases the mapping of the given window immediately. The window must not be used afterwards.
+     */
+    private static void unmap(MappedByteBuffer window) {
+        if (!UNMAP_SUPPORTED)
+            return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, window);
+        } catch (Exception e) {
+            Blockmania.getInstance().getLogger().log(Level.WARNING, "Could not unmap a window of a region file.", e);
+        }
+    }
+
+    private static int sectorsFor(int length) {
+        return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+
+    private static int index(int localX, int localZ) {
+        if (localX < 0 || localX >= REGION_SIZE || localZ < 0 || localZ >= REGION_SIZE)
+            throw new IllegalArgumentException("Chunk position (" + localX + ", " + localZ + ") is out of the bounds of the region.");
+
+        return localZ * REGION_SIZE + localX;
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2011 Benjamin Glatzel <benjamin.glatzel@me.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.begla.blockmania.world.chunk;
+
+import com.github.begla.blockmania.utilities.MathHelper;
+import javolution.util.FastMap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps the recently used region files of a world open and maps chunk positions to the matching
+ * region file. At most MAX_OPEN_REGION_FILES files are kept open: the least recently used region
+ * files are flushed and closed, and opened again as soon as they are accessed the next time.
+ * Region files which are read or written at the moment are never closed.
+ *
+ * @author Benjamin Glatzel <benjamin.glatzel@me.com>
+ */
+public final class RegionFileCache implements ChunkStore {
+
+    private static final String REGION_FILE_FORMAT = "%s/r.%d.%d.bcr";
+    private static final String LEGACY_CHUNK_FILE_EXTENSION = ".bc";
+    /* MAXIMUM AMOUNT OF OPEN REGION FILES */
+    public static final int MAX_OPEN_REGION_FILES = 16;
+    /* ------ */
+    private final File _directory;
+    /* THE OPEN REGION FILES (LEAST RECENTLY USED FIRST) */
+    private final FastMap<Long, RegionFile> _regionFiles = new FastMap<Long, RegionFile>();
+    /* THE AMOUNT OF THREADS ACCESSING A REGION FILE */
+    private final FastMap<RegionFile, Integer> _activeRegionFiles = new FastMap<RegionFile, Integer>();
+    /* ------ */
+    private boolean _migrated;
+
+    /**
+     * @param directory The directory containing the region files
+     */
+    public RegionFileCache(File directory) {
+        _directory = directory;
+    }
+
+    /**
+     * Returns the region file containing the given chunk. The region file might be closed as soon
+     * as another region file is requested, so it has to be used while holding the lock of the cache.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @param create Creates the region file if it does not exist
+     * @return The region file or null if it does not exist
+     * @throws IOException
+     */
+    private synchronized RegionFile getRegionFile(int chunkX, int chunkZ, boolean create) throws IOException {
+        if (!_migrated) {
+            _migrated = true;
+            migrateLegacyChunkFiles();
+        }
+
+        int regionX = chunkX >> RegionFile.REGION_BITS;
+        int regionZ = chunkZ >> RegionFile.REGION_BITS;
+        long key = MathHelper.packCoordinates(regionX, regionZ);
+
+        RegionFile regionFile = _regionFiles.remove(key);
+
+        // Move the region file to the end of the list of recently used region files
+        if (regionFile != null) {
+            _regionFiles.put(key, regionFile);
+            return regionFile;
+        }
+
+        File file = new File(String.format(REGION_FILE_FORMAT, _directory.getPath(), regionX, regionZ));
+
+        if (!file.exists()) {
+            if (!create)
+                return null;
+
+            if (!_directory.exists() && !_directory.mkdirs())
+                throw new IOException("Could not create the directory " + _directory + ".");
+        }
+
+        regionFile = new RegionFile(file);
+        _regionFiles.put(key, regionFile);
+
+        closeUnusedRegionFiles(regionFile);
+
+        return regionFile;
+    }
+
+    /**
+     * Closes the least recently used region files exceeding MAX_OPEN_REGION_FILES. Region files
+     * which are accessed by other threads are skipped.
+     *
+     * @param requested The region file which was just requested and is kept open
+     * @throws IOException
+     */
+    private void closeUnusedRegionFiles(RegionFile requested) throws IOException {
+        while (_regionFiles.size() > MAX_OPEN_REGION_FILES) {
+            Long unused = null;
+
+            for (FastMap.Entry<Long, RegionFile> e = _regionFiles.head(), end = _regionFiles.tail(); (e = e.getNext()) != end; ) {
+                if (e.getValue() != requested && !_activeRegionFiles.containsKey(e.getValue())) {
+                    unused = e.getKey();
+                    break;
+                }
+            }
+
+            if (unused == null)
+                return;
+
+            _regionFiles.remove(unused).close();
+        }
+    }
+
+    /**
+     * Returns the region file containing the given chunk and prevents it from being closed until
+     * {@link #releaseRegionFile(RegionFile)} is called.
+     */
+    private synchronized RegionFile acquireRegionFile(int chunkX, int chunkZ, boolean create) throws IOException {
+        RegionFile regionFile = getRegionFile(chunkX, chunkZ, create);
+
+        if (regionFile != null) {
+            Integer users = _activeRegionFiles.get(regionFile);
+            _activeRegionFiles.put(regionFile, users == null ? 1 : users + 1);
+        }
+
+        return regionFile;
+    }
+
+    private synchronized void releaseRegionFile(RegionFile regionFile) throws IOException {
+        int users = _activeRegionFiles.get(regionFile);
+
+        if (users > 1) {
+            _activeRegionFiles.put(regionFile, users - 1);
+            return;
+        }
+
+        _activeRegionFiles.remove(regionFile);
+
+        // The region file might have been kept open beyond the limit while it was used
+        closeUnusedRegionFiles(null);
+    }
+
+    /**
+     * Returns the amount of open region files.
+     *
+     * @return The amount of region files
+     */
+    public synchronized int getOpenRegionFileCount() {
+        return _regionFiles.size();
+    }
+
+    /**
+     * Reads the data of the given chunk.
+     *
+     * @param chunkX The chunk position on the x-axis
+     * @param chunkZ The chunk position on the z-axis
+     * @return The data or null if the chunk was never saved
+     * @throws IOException
+     */
+    public ByteBuffer readChunk(int chunkX, int chunkZ) throws IOException {
+        RegionFile regionFile = acquireRegionFile(chunkX, chunkZ, false);
+
+        if (regionFile == null)
+            return null;
+
+        try {
+            return regionFile.readChunk(localPos(chunkX), localPos(chunkZ));
+        } finally {
+            releaseRegionFile(regionFile);
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the given buffer as the data of the given chunk.
+     *
+     * @param chunkX      The chunk position on the x-axis
+     * @param chunkZ      The chunk position on the z-axis
+     * @param data        The data
+     * @param regenerable Ignored, the chunks are always kept
+     * @throws IOException
+     */
+    public void writeChunk(int chunkX, int chunkZ, ByteBuffer data, boolean regenerable) throws IOException {
+        RegionFile regionFile = acquireRegionFile(chunkX, chunkZ, true);
+
+        try {
+            regionFile.writeChunk(localPos(chunkX), localPos(chunkZ), data);
+        } finally {
+            releaseRegionFile(regionFile);
+        }
+    }
+
+    private static int localPos(int chunkPos) {
+        return chunkPos & (RegionFile.REGION_SIZE - 1);
+    }
+
+    /**
+     * Imports the chunk files of older versions (one file per chunk named after the Cantor value
+     * of the chunk position) into the region files and deletes them afterwards.
+     *
+     * @return The amount of imported chunks
+     * @throws IOException
+     */
+    public synchronized int migrateLegacyChunkFiles() throws IOException {
+        _migrated = true;
+
+        File[] legacyFiles = _directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(LEGACY_CHUNK_FILE_EXTENSION);
+            }
+        });
+
+        if (legacyFiles == null)
+            return 0;
+
+        int imported = 0;
+
+        for (File legacyFile : legacyFiles) {
+            String name = legacyFile.getName();
+            int cantorValue;
+
+            try {
+                cantorValue = Integer.parseInt(name.substring(0, name.length() - LEGACY_CHUNK_FILE_EXTENSION.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            int chunkX = MathHelper.mapFromPositive(MathHelper.cantorX(cantorValue));
+            int chunkZ = MathHelper.mapFromPositive(MathHelper.cantorY(cantorValue));
+
+            ByteBuffer data = ByteBuffer.allocate((int) legacyFile.length());
+            FileInputStream iS = new FileInputStream(legacyFile);
+
+            try {
+                FileChannel c = iS.getChannel();
+
+                while (data.hasRemaining()) {
+                    if (c.read(data) < 0)
+                        break;
+                }
+            } finally {
+                iS.close();
+            }
+
+            data.flip();
+
+            RegionFile regionFile = getRegionFile(chunkX, chunkZ, true);
+
+            // Chunks which were saved in the new format are more recent
+            if (!regionFile.hasChunk(localPos(chunkX), localPos(chunkZ))) {
+                regionFile.writeChunk(localPos(chunkX), localPos(chunkZ), data);
+                imported++;
+            }
+
+            if (!legacyFile.delete())
+                throw new IOException("Could not delete the imported chunk file " + legacyFile + ".");
+        }
+
+        return imported;
+    }
+
+    /**
+     * Compresses all chunks within the directory again using the given codec.
+     *
+     * @param codec The codec
+     * @throws IOException
+     */
+    public synchronized void recode(ChunkCodec codec) throws IOException {
+        for (File file : listRegionFiles()) {
+            RegionFile regionFile = getRegionFile(file);
+
+            for (int x = 0; x < RegionFile.REGION_SIZE; x++) {
+                for (int z = 0; z < RegionFile.REGION_SIZE; z++) {
+                    ByteBuffer data = regionFile.readChunk(x, z);
+
+                    if (data != null)
+                        regionFile.writeChunk(x, z, ChunkFormat.recode(data, codec));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compacts all region files within the directory.
+     *
+     * @return The amount of sectors which were reclaimed
+     * @throws IOException
+     */
+    public synchronized int compact() throws IOException {
+        int reclaimed = 0;
+
+        for (File file : listRegionFiles())
+            reclaimed += getRegionFile(file).compact();
+
+        return reclaimed;
+    }
+
+    private File[] listRegionFiles() {
+        File[] files = _directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.matches("r\\.-?\\d+\\.-?\\d+\\.bcr");
+            }
+        });
+
+        return files != null ? files : new File[0];
+    }
+
+    private RegionFile getRegionFile(File file) throws IOException {
+        String[] parts = file.getName().split("\\.");
+        int regionX = Integer.parseInt(parts[1]);
+        int regionZ = Integer.parseInt(parts[2]);
+
+        return getRegionFile(regionX << RegionFile.REGION_BITS, regionZ << RegionFile.REGION_BITS, false);
+    }
+
+    /**
+     * Writes all modifications of the open region files to the disk.
+     */
+    public synchronized void flush() {
+        for (RegionFile regionFile : _regionFiles.values())
+            regionFile.flush();
+    }
+
+    /**
+     * Closes all open region files.
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        for (RegionFile regionFile : _regionFiles.values())
+            regionFile.close();
+
+        _regionFiles.clear();
+    }
+}
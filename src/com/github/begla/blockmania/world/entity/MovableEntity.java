@@ -23,6 +23,7 @@ import com.github.begla.blockmania.datastructures.BlockPosition;
 import com.github.begla.blockmania.main.Configuration;
 import com.github.begla.blockmania.utilities.FastRandom;
 import com.github.begla.blockmania.world.World;
+import com.github.begla.blockmania.world.WorldAccessor;
 import javolution.util.FastList;
 import org.lwjgl.util.vector.Vector3f;
 import org.newdawn.slick.openal.Audio;
@@ -144,9 +145,10 @@ public abstract class MovableEntity extends Entity {
      */
     private boolean verticalHitTest(Vector3f origin) {
         FastList<BlockPosition> blockPositions = gatherAdjacentBlockPositions(origin);
+        WorldAccessor accessor = _parent.getAccessor();
 
         for (FastList.Node<BlockPosition> n = blockPositions.head(), end = blockPositions.tail(); (n = n.getNext()) != end; ) {
-            byte blockType1 = _parent.getBlockAtPosition(new Vector3f(n.getValue().x, n.getValue().y, n.getValue().z));
+            byte blockType1 = accessor.getBlock(n.getValue().x, n.getValue().y, n.getValue().z);
             AABB entityAABB = getAABB();
 
             if (Block.getBlockForType(blockType1).isPenetrable() || !entityAABB.overlaps(Block.AABBForBlockAt(n.getValue().x, n.getValue().y, n.getValue().z)))
@@ -202,10 +204,11 @@ public abstract class MovableEntity extends Entity {
     private boolean horizontalHitTest(Vector3f origin) {
         boolean result = false;
         FastList<BlockPosition> blockPositions = gatherAdjacentBlockPositions(origin);
+        WorldAccessor accessor = _parent.getAccessor();
 
         // Check each block position for collision
         for (FastList.Node<BlockPosition> n = blockPositions.head(), end = blockPositions.tail(); (n = n.getNext()) != end; ) {
-            byte blockType = _parent.getBlockAtPosition(new Vector3f(n.getValue().x, n.getValue().y, n.getValue().z));
+            byte blockType = accessor.getBlock(n.getValue().x, n.getValue().y, n.getValue().z);
             AABB blockAABB = Block.AABBForBlockAt(n.getValue().x, n.getValue().y, n.getValue().z);
 
             if (!Block.getBlockForType(blockType).isPenetrable()) {
@@ -361,11 +364,12 @@ public abstract class MovableEntity extends Entity {
 
     protected void updateSwimStatus() {
         FastList<BlockPosition> blockPositions = gatherAdjacentBlockPositions(getPosition());
+        WorldAccessor accessor = _parent.getAccessor();
 
         boolean swimming = false, headUnderWater = false;
 
         for (FastList.Node<BlockPosition> n = blockPositions.head(), end = blockPositions.tail(); (n = n.getNext()) != end; ) {
-            byte blockType = _parent.getBlockAtPosition(new Vector3f(n.getValue().x, n.getValue().y, n.getValue().z));
+            byte blockType = accessor.getBlock(n.getValue().x, n.getValue().y, n.getValue().z);
             AABB blockAABB = Block.AABBForBlockAt(n.getValue().x, n.getValue().y, n.getValue().z);
 
             if (Block.getBlockForType(blockType).getClass().equals(BlockWater.class) && getAABB().overlaps(blockAABB)) {